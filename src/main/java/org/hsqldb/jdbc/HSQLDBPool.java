@@ -7,8 +7,53 @@ import org.hsqldb.jdbc.pool.JDBCPooledConnection;
 
 public class HSQLDBPool extends JDBCPool {
 
+	/** Ceiling for pool size. Underlying arrays are this size, but only <tt>poolSize</tt> slots are used. */
+	private final int maxPoolSize;
+	private volatile int poolSize;
+
 	public HSQLDBPool(int poolSize) {
-		super(poolSize);
+		this(poolSize, poolSize);
+	}
+
+	/**
+	 * Creates pool that uses <tt>poolSize</tt> connections, but can be grown up to <tt>maxPoolSize</tt>.
+	 * <p>
+	 * Connections are only opened when needed, so unused slots cost very little.
+	 */
+	public HSQLDBPool(int poolSize, int maxPoolSize) {
+		super(Math.max(poolSize, maxPoolSize));
+
+		this.maxPoolSize = Math.max(poolSize, maxPoolSize);
+		this.poolSize = poolSize;
+	}
+
+	public int getPoolSize() {
+		return this.poolSize;
+	}
+
+	public int getMaxPoolSize() {
+		return this.maxPoolSize;
+	}
+
+	/**
+	 * Increases number of usable connections by up to <tt>increment</tt>, without exceeding max pool size.
+	 *
+	 * @return new pool size
+	 */
+	public synchronized int grow(int increment) {
+		this.poolSize = Math.min(this.maxPoolSize, this.poolSize + Math.max(0, increment));
+		return this.poolSize;
+	}
+
+	/** Returns number of connections currently handed out by pool. */
+	public int getAllocatedCount() {
+		int allocatedCount = 0;
+
+		for (int i = 0; i < states.length(); i++)
+			if (states.get(i) == RefState.allocated)
+				++allocatedCount;
+
+		return allocatedCount;
 	}
 
 	/**
@@ -19,7 +64,9 @@ public class HSQLDBPool extends JDBCPool {
 	 * @exception SQLException if a database access error occurs
 	 */
 	public Connection tryConnection() throws SQLException {
-		for (int i = 0; i < states.length(); i++) {
+		final int poolSize = this.poolSize;
+
+		for (int i = 0; i < poolSize; i++) {
 			if (states.compareAndSet(i, RefState.available, RefState.allocated)) {
 				JDBCPooledConnection pooledConnection = connections[i];
 
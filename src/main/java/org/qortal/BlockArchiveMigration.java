@@ -0,0 +1,101 @@
+package org.qortal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.repository.BlockArchiveWriter;
+import org.qortal.settings.Settings;
+
+/**
+ * Rewrites block archive files in another format version, e.g. to compress an existing archive.
+ * <p>
+ * Usage: <tt>BlockArchiveMigration [settings-file [version]]</tt>, where version defaults to 2.
+ * <p>
+ * The node must not be running.
+ */
+public class BlockArchiveMigration {
+
+	static {
+		// This must go before any calls to LogManager/Logger
+		System.setProperty("java.util.logging.manager", "org.apache.logging.log4j.jul.LogManager");
+	}
+
+	private static final Logger LOGGER = LogManager.getLogger(BlockArchiveMigration.class);
+
+	public static void main(String[] args) {
+		LOGGER.info("Block archive migration starting up...");
+
+		// Load/check settings, for repository path
+		try {
+			if (args.length > 0)
+				Settings.fileInstance(args[0]);
+			else
+				Settings.getInstance();
+		} catch (Throwable t) {
+			LOGGER.error("Settings file error: " + t.getMessage());
+			System.exit(2);
+		}
+
+		int version = 2;
+		if (args.length > 1) {
+			try {
+				version = Integer.parseInt(args[1]);
+			} catch (NumberFormatException e) {
+				LOGGER.error("Invalid archive version: " + args[1]);
+				System.exit(2);
+			}
+		}
+
+		Path archivePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive").toAbsolutePath();
+
+		List<Path> archiveFiles;
+		try (Stream<Path> paths = Files.list(archivePath)) {
+			archiveFiles = paths.filter(path -> path.getFileName().toString().matches("\\d+-\\d+\\.dat"))
+					.sorted()
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			LOGGER.error("Unable to list archive files in {}: {}", archivePath, e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		LOGGER.info("Migrating {} archive files to version {}. This can take a while...", archiveFiles.size(), version);
+
+		long oldTotalSize = 0;
+		long newTotalSize = 0;
+		int failedCount = 0;
+
+		for (Path archiveFile : archiveFiles) {
+			try {
+				final long oldSize = Files.size(archiveFile);
+
+				boolean wasMigrated = BlockArchiveWriter.migrateFile(archiveFile, version);
+
+				final long newSize = Files.size(archiveFile);
+				oldTotalSize += oldSize;
+				newTotalSize += newSize;
+
+				if (wasMigrated)
+					LOGGER.info("Migrated {}: {} -> {} bytes", archiveFile.getFileName(), oldSize, newSize);
+				else
+					LOGGER.info("Skipped {}: already version {}", archiveFile.getFileName(), version);
+			} catch (IOException | IllegalArgumentException e) {
+				LOGGER.error("Unable to migrate {}: {}", archiveFile.getFileName(), e.getMessage());
+				++failedCount;
+			}
+		}
+
+		LOGGER.info("Block archive migration completed: {} -> {} bytes, {} failures", oldTotalSize, newTotalSize, failedCount);
+
+		if (failedCount > 0)
+			System.exit(1);
+	}
+
+}
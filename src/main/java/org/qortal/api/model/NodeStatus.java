@@ -20,11 +20,14 @@ public class NodeStatus {
 
 	public final int height;
 
+	public final Synchronizer.PhaseTimings lastSyncPhaseTimings;
+
 	public NodeStatus() {
 		this.isMintingPossible = Controller.getInstance().isMintingPossible();
 
 		this.syncPercent = Synchronizer.getInstance().getSyncPercent();
 		this.isSynchronizing = Synchronizer.getInstance().isSynchronizing();
+		this.lastSyncPhaseTimings = Synchronizer.getInstance().getLastPhaseTimings();
 
 		this.numberOfConnections = Network.getInstance().getImmutableHandshakedPeers().size();
 
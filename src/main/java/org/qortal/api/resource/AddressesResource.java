@@ -238,6 +238,24 @@ public class AddressesResource {
 		}
 	}
 
+	@GET
+	@Path("/online/stats")
+	@Operation(
+		summary = "Fetch statistics snapshot for online accounts import",
+		description = "Returns online accounts count, import queue depth and import rate",
+		responses = {
+			@ApiResponse(
+				content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = OnlineAccountsManager.StatsSnapshot.class))
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public OnlineAccountsManager.StatsSnapshot getOnlineAccountsStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return OnlineAccountsManager.getInstance().getStatsSnapshot();
+	}
+
 	@GET
 	@Path("/balance/{address}")
 	@Operation(
@@ -42,9 +42,11 @@ import org.qortal.api.model.ActivitySummary;
 import org.qortal.api.model.NodeInfo;
 import org.qortal.api.model.NodeStatus;
 import org.qortal.block.BlockChain;
+import org.qortal.block.ChainValidator;
 import org.qortal.controller.Controller;
 import org.qortal.controller.Synchronizer;
 import org.qortal.controller.Synchronizer.SynchronizationResult;
+import org.qortal.controller.repository.AtStatesMaintenance;
 import org.qortal.data.account.MintingAccountData;
 import org.qortal.data.account.RewardShareData;
 import org.qortal.network.Network;
@@ -52,7 +54,13 @@ import org.qortal.network.Peer;
 import org.qortal.network.PeerAddress;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryFactory;
 import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBConnectionMonitor;
+import org.qortal.repository.hsqldb.HSQLDBOrderBook;
+import org.qortal.repository.hsqldb.HSQLDBRepositoryFactory;
+import org.qortal.repository.hsqldb.HSQLDBRewardShareIndex;
+import org.qortal.repository.hsqldb.HSQLDBStatementCache;
 import org.qortal.settings.Settings;
 import org.qortal.utils.Base58;
 import org.qortal.utils.NTP;
@@ -233,6 +241,150 @@ public class AdminResource {
 		return Controller.getInstance().getStatsSnapshot();
 	}
 
+	@GET
+	@Path("/repository/statements")
+	@Operation(
+		summary = "Fetch prepared statement cache statistics for repository connections",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = HSQLDBStatementCache.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public HSQLDBStatementCache.StatsSnapshot getStatementCacheStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return HSQLDBStatementCache.getStatsSnapshot();
+	}
+
+	@GET
+	@Path("/repository/rewardshares")
+	@Operation(
+		summary = "Fetch in-memory reward-share index statistics",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = HSQLDBRewardShareIndex.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public HSQLDBRewardShareIndex.StatsSnapshot getRewardShareIndexStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return HSQLDBRewardShareIndex.getStatsSnapshot();
+	}
+
+	@GET
+	@Path("/repository/orderbook")
+	@Operation(
+		summary = "Fetch in-memory asset order book statistics",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = HSQLDBOrderBook.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public HSQLDBOrderBook.StatsSnapshot getOrderBookStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return HSQLDBOrderBook.getStatsSnapshot();
+	}
+
+	@GET
+	@Path("/repository/atstates")
+	@Operation(
+		summary = "Fetch AT state trimming/pruning progress and statistics",
+		description = "Includes rows processed per second and backlog in blocks, for both trimming and pruning",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = AtStatesMaintenance.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public AtStatesMaintenance.StatsSnapshot getAtStatesMaintenanceStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return AtStatesMaintenance.getStatsSnapshot();
+	}
+
+	@GET
+	@Path("/repository/connections")
+	@Operation(
+		summary = "Fetch repository connection pool statistics, for main or read-only pool",
+		description = "Includes acquire latency percentiles (µs) and current connection holders, longest-held first",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = HSQLDBConnectionMonitor.StatsSnapshot.class
+					)
+				)
+			)
+		}
+	)
+	@ApiErrors({ApiError.REPOSITORY_ISSUE})
+	@SecurityRequirement(name = "apiKey")
+	public HSQLDBConnectionMonitor.StatsSnapshot getConnectionPoolStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey,
+			@Parameter(description = "Fetch statistics for read-only connection pool instead") @QueryParam("readOnly") Boolean readOnly) {
+		Security.checkApiCallAllowed(request);
+
+		RepositoryFactory repositoryFactory = RepositoryManager.getRepositoryFactory();
+		if (!(repositoryFactory instanceof HSQLDBRepositoryFactory))
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE);
+
+		if (Boolean.TRUE.equals(readOnly))
+			return ((HSQLDBRepositoryFactory) repositoryFactory).getReadOnlyConnectionStatsSnapshot();
+
+		return ((HSQLDBRepositoryFactory) repositoryFactory).getConnectionStatsSnapshot();
+	}
+
+	@GET
+	@Path("/validation")
+	@Operation(
+		summary = "Fetch progress of current, or most recent, blockchain validation",
+		description = "Validation is started by /bootstrap/validate, or when creating a bootstrap",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = ChainValidator.Progress.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public ChainValidator.Progress getValidationProgress(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return ChainValidator.getInstance().getProgress();
+	}
+
 	@GET
 	@Path("/mintingaccounts")
 	@Operation(
@@ -85,7 +85,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 		    // Check the database first
 			BlockData blockData = repository.getBlockRepository().fromSignature(signature);
 			if (blockData != null) {
@@ -134,7 +134,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 
             // Check the database first
 			BlockData blockData = repository.getBlockRepository().fromSignature(signature);
@@ -196,7 +196,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 		    // Check if the block exists in either the database or archive
 			if (repository.getBlockRepository().getHeightFromSignature(signature) == 0 &&
 					repository.getBlockArchiveRepository().getHeightFromSignature(signature) == 0) {
@@ -230,7 +230,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public BlockData getFirstBlock() {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Check the database first
 			BlockData blockData = repository.getBlockRepository().fromHeight(1);
 			if (blockData != null) {
@@ -269,7 +269,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public BlockData getLastBlock(@QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			BlockData blockData = repository.getBlockRepository().getLastBlock();
 
 			if (includeOnlineSignatures == null || includeOnlineSignatures == false) {
@@ -310,7 +310,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			BlockData childBlockData = null;
 
 			// Check if block exists in database
@@ -361,7 +361,7 @@ public class BlocksResource {
 		ApiError.REPOSITORY_ISSUE
 	})
 	public int getHeight() {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			return repository.getBlockRepository().getBlockchainHeight();
 		} catch (DataException e) {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
@@ -397,7 +397,7 @@ public class BlocksResource {
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_SIGNATURE, e);
 		}
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Firstly check the database
 			BlockData blockData = repository.getBlockRepository().fromSignature(signature);
 			if (blockData != null) {
@@ -438,7 +438,7 @@ public class BlocksResource {
 	})
 	public BlockData getByHeight(@PathParam("height") int height,
 								 @QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Firstly check the database
 			BlockData blockData = repository.getBlockRepository().fromHeight(height);
 			if (blockData != null) {
@@ -484,7 +484,7 @@ public class BlocksResource {
 			ApiError.BLOCK_UNKNOWN, ApiError.REPOSITORY_ISSUE
 	})
 	public BlockMintingInfo getBlockMintingInfoByHeight(@PathParam("height") int height) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Try the database
 			BlockData blockData = repository.getBlockRepository().fromHeight(height);
 			if (blockData == null) {
@@ -556,7 +556,7 @@ public class BlocksResource {
 	})
 	public BlockData getByTimestamp(@PathParam("timestamp") long timestamp,
 									@QueryParam("includeOnlineSignatures") Boolean includeOnlineSignatures) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			BlockData blockData = null;
 
 			// Try the Blocks table
@@ -616,7 +616,7 @@ public class BlocksResource {
 	public List<BlockData> getBlockRange(@PathParam("height") int height, @Parameter(
 		ref = "count"
 	) @QueryParam("count") int count) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			List<BlockData> blocks = new ArrayList<>();
 
 			for (/* count already set */; count > 0; --count, ++height) {
@@ -667,7 +667,7 @@ public class BlocksResource {
 		if (!Crypto.isValidAddress(address))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			// Get public key from address
 			AccountData accountData = repository.getAccountRepository().getAccount(address);
 			if (accountData == null || accountData.getPublicKey() == null)
@@ -726,7 +726,7 @@ public class BlocksResource {
 			) @QueryParam("offset") Integer offset, @Parameter(
 				ref = "reverse"
 			) @QueryParam("reverse") Boolean reverse) {
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 			for (String address : addresses)
 				if (!Crypto.isValidAddress(address))
 					throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_ADDRESS);
@@ -771,7 +771,7 @@ public class BlocksResource {
 		if ((startHeight != null && startHeight < 1) || (endHeight != null && endHeight < 1) || (count != null && count < 1))
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
 
 			/*
 			 * start	end		count		result
@@ -30,6 +30,7 @@ import org.qortal.crosschain.SupportedBlockchain;
 import org.qortal.crosschain.ACCT;
 import org.qortal.crosschain.AcctMode;
 import org.qortal.crypto.Crypto;
+import org.qortal.data.TradeCandleData;
 import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.crosschain.CrossChainTradeData;
@@ -272,6 +273,58 @@ public class CrossChainResource {
 		}
 	}
 
+	@GET
+	@Path("/candles/{blockchain}")
+	@Operation(
+		summary = "Completed trade price/volume candles",
+		description = "Returns OHLCV candles for successfully completed cross-chain trades with given foreign blockchain, across all ACCT versions. "
+				+ "Prices are QORT per unit foreign currency, so volume is in foreign currency and otherVolume is in QORT.",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					array = @ArraySchema(
+						schema = @Schema(
+							implementation = TradeCandleData.class
+						)
+					)
+				)
+			)
+		}
+	)
+	@ApiErrors({ApiError.INVALID_CRITERIA, ApiError.REPOSITORY_ISSUE})
+	public List<TradeCandleData> getTradeCandles(
+			@Parameter(
+					description = "foreign blockchain",
+					example = "LITECOIN",
+					schema = @Schema(implementation = SupportedBlockchain.class)
+				) @PathParam("blockchain") SupportedBlockchain foreignBlockchain,
+			@Parameter(
+					description = "candle period",
+					example = "HOUR",
+					schema = @Schema(implementation = TradeCandleData.Interval.class)
+				) @QueryParam("interval") TradeCandleData.Interval interval,
+			@Parameter(
+				description = "Only return candles starting on/after this timestamp (milliseconds since epoch)",
+				example = "1597310000000"
+			) @QueryParam("minimumTimestamp") Long minimumTimestamp,
+			@Parameter(
+				description = "Only return candles starting on/before this timestamp (milliseconds since epoch)"
+			) @QueryParam("maximumTimestamp") Long maximumTimestamp,
+			@Parameter( ref = "limit") @QueryParam("limit") Integer limit,
+			@Parameter( ref = "offset" ) @QueryParam("offset") Integer offset,
+			@Parameter( ref = "reverse" ) @QueryParam("reverse") Boolean reverse) {
+		// foreignBlockchain and interval are required
+		if (foreignBlockchain == null || interval == null)
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
+
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+			return repository.getCrossChainRepository().getTradeCandles(foreignBlockchain.name(), interval,
+					minimumTimestamp, maximumTimestamp, limit, offset, reverse);
+		} catch (DataException e) {
+			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.REPOSITORY_ISSUE, e);
+		}
+	}
+
 	@GET
 	@Path("/price/{blockchain}")
 	@Operation(
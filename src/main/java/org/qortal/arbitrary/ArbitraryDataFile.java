@@ -10,6 +10,8 @@ import org.qortal.utils.Base58;
 import org.qortal.utils.FilesystemUtils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -80,19 +82,34 @@ public class ArbitraryDataFile {
     }
 
     public ArbitraryDataFile(byte[] fileContent, byte[] signature) throws DataException {
+        this(fileContent != null ? ByteBuffer.wrap(fileContent) : null, signature);
+    }
+
+    /**
+     * Writes file content from <tt>fileContent</tt>'s position to its limit, without copying into an intermediate array.
+     * <p>
+     * Typically passed a read-only slice of a network receive buffer. <tt>fileContent</tt>'s position is not modified.
+     */
+    public ArbitraryDataFile(ByteBuffer fileContent, byte[] signature) throws DataException {
         if (fileContent == null) {
             LOGGER.error("fileContent is null");
             return;
         }
 
-        this.hash58 = Base58.encode(Crypto.digest(fileContent));
+        final int fileSize = fileContent.remaining();
+
+        this.hash58 = Base58.encode(Crypto.digest(fileContent.duplicate()));
         this.signature = signature;
-        LOGGER.trace(String.format("File digest: %s, size: %d bytes", this.hash58, fileContent.length));
+        LOGGER.trace(String.format("File digest: %s, size: %d bytes", this.hash58, fileSize));
 
         Path outputFilePath = getOutputFilePath(this.hash58, signature, true);
         File outputFile = outputFilePath.toFile();
         try (FileOutputStream outputStream = new FileOutputStream(outputFile)) {
-            outputStream.write(fileContent);
+            ByteBuffer contentBuffer = fileContent.duplicate();
+            FileChannel outputChannel = outputStream.getChannel();
+            while (contentBuffer.hasRemaining()) {
+                outputChannel.write(contentBuffer);
+            }
             this.filePath = outputFilePath;
             // Verify hash
             if (!this.hash58.equals(this.digest58())) {
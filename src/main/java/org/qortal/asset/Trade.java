@@ -52,6 +52,9 @@ public class Trade {
 
 		commonPrep();
 
+		// Update price/volume candles for asset pair
+		assetRepository.addTradeToCandles(initiatingOrder.getHaveAssetId(), initiatingOrder.getWantAssetId(), tradeData);
+
 		// Update corresponding Orders on both sides of trade
 		initiatingOrder.setFulfilled(initiatingOrder.getFulfilled() + fulfilled);
 		initiatingOrder.setIsFulfilled(Order.isFulfilled(initiatingOrder));
@@ -111,6 +114,9 @@ public class Trade {
 
 		// Remove trade from repository
 		assetRepository.delete(tradeData);
+
+		// Recalculate price/volume candles for asset pair without this trade
+		assetRepository.removeTradeFromCandles(initiatingOrder.getHaveAssetId(), initiatingOrder.getWantAssetId(), tradeData);
 	}
 
 }
@@ -100,17 +100,44 @@ public class AT {
 	 * @throws DataException
 	 */
 	public List<AtTransaction> run(int blockHeight, long blockTimestamp) throws DataException {
-		String atAddress = this.atData.getATAddress();
-
-		QortalATAPI api = new QortalATAPI(repository, this.atData, blockTimestamp);
-		QortalAtLoggerFactory loggerFactory = QortalAtLoggerFactory.getInstance();
-
-		if (!api.willExecute(blockHeight))
+		if (!this.willExecute(blockHeight, blockTimestamp))
 			// this.atStateData will be null
 			return Collections.emptyList();
 
 		// Fetch latest ATStateData for this AT
-		ATStateData latestAtStateData = this.repository.getATRepository().getLatestATState(atAddress);
+		ATStateData latestAtStateData = this.repository.getATRepository().getLatestATState(this.atData.getATAddress());
+
+		return this.run(blockHeight, blockTimestamp, latestAtStateData);
+	}
+
+	/**
+	 * Returns whether AT might execute, i.e. isn't sleeping until a message that hasn't arrived.
+	 * <p>
+	 * Sleeping until a height is handled during execution itself.
+	 */
+	public boolean willExecute(int blockHeight, long blockTimestamp) throws DataException {
+		QortalATAPI api = new QortalATAPI(repository, this.atData, blockTimestamp);
+		return api.willExecute(blockHeight);
+	}
+
+	/**
+	 * Execute AT, using already fetched latest AT state data.
+	 * <p>
+	 * Caller is responsible for checking {@link #willExecute(int, long)} first.
+	 * <p>
+	 * {@link #getATStateData()} will return null if nothing happened.
+	 *
+	 * @param blockHeight
+	 * @param blockTimestamp
+	 * @param latestAtStateData
+	 * @return AT-generated transactions, possibly empty
+	 * @throws DataException
+	 */
+	public List<AtTransaction> run(int blockHeight, long blockTimestamp, ATStateData latestAtStateData) throws DataException {
+		String atAddress = this.atData.getATAddress();
+
+		QortalATAPI api = new QortalATAPI(repository, this.atData, blockTimestamp);
+		QortalAtLoggerFactory loggerFactory = QortalAtLoggerFactory.getInstance();
 
 		// There should be at least initial deployment AT state data
 		if (latestAtStateData == null)
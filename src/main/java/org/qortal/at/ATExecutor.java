@@ -0,0 +1,263 @@
+package org.qortal.at;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.qortal.data.at.ATData;
+import org.qortal.data.at.ATStateData;
+import org.qortal.repository.ATRepository;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.settings.Settings;
+import org.qortal.transaction.AtTransaction;
+import org.qortal.utils.DaemonThreadFactory;
+
+/**
+ * Executes all ATs for a new block, as used by block minting and validation.
+ * <p>
+ * ATs that will still be sleeping are filtered out by the repository, and latest AT states
+ * for the remaining ATs are fetched in one query, instead of one query per AT.
+ * <p>
+ * ATs execute against repository state prior to the new block, as AT-generated transactions
+ * are only applied when the block is processed. So ATs can't affect each other during execution,
+ * regardless of which accounts they touch, and can be executed in parallel.
+ * Results are always collected in AT creation order, so are identical to sequential execution.
+ * <p>
+ * Parallel execution shares the caller's repository session, as this might contain uncommitted changes,
+ * e.g. during synchronization. Repository sessions aren't thread-safe, so repository calls are serialized.
+ */
+public class ATExecutor {
+
+	/** Don't bother with parallel execution unless there are at least this many ATs to run */
+	private static final int MIN_PARALLEL_AT_COUNT = 8;
+
+	private static ExecutorService executorService = null;
+
+	public static class Result {
+		private final List<AtTransaction> atTransactions;
+		private final List<ATStateData> atStates;
+		private final long atFees;
+
+		private Result(List<AtTransaction> atTransactions, List<ATStateData> atStates, long atFees) {
+			this.atTransactions = atTransactions;
+			this.atStates = atStates;
+			this.atFees = atFees;
+		}
+
+		/** AT-generated transactions, in AT creation order */
+		public List<AtTransaction> getAtTransactions() {
+			return this.atTransactions;
+		}
+
+		/** New AT states, in AT creation order */
+		public List<ATStateData> getAtStates() {
+			return this.atStates;
+		}
+
+		public long getAtFees() {
+			return this.atFees;
+		}
+	}
+
+	private static class AtRun {
+		private final ATData atData;
+		private final ATStateData latestAtStateData;
+
+		private List<AtTransaction> atTransactions;
+		private ATStateData atStateData;
+		private Exception exception;
+
+		private AtRun(ATData atData, ATStateData latestAtStateData) {
+			this.atData = atData;
+			this.latestAtStateData = latestAtStateData;
+		}
+	}
+
+	private final Repository repository;
+	private final int blockHeight;
+	private final long blockTimestamp;
+	private final int parallelism;
+
+	public ATExecutor(Repository repository, int blockHeight, long blockTimestamp, int parallelism) {
+		this.repository = repository;
+		this.blockHeight = blockHeight;
+		this.blockTimestamp = blockTimestamp;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public ATExecutor(Repository repository, int blockHeight, long blockTimestamp) {
+		this(repository, blockHeight, blockTimestamp, Settings.getInstance().getAtExecutionPoolSize());
+	}
+
+	public Result execute() throws DataException {
+		ATRepository atRepository = this.repository.getATRepository();
+
+		// Executing ATs see blockchain height prior to new block
+		final int currentBlockHeight = this.repository.getBlockRepository().getBlockchainHeight();
+
+		// Find all executable, non-sleeping ATs, ordered by earliest creation date first
+		List<ATData> executableATs = atRepository.getAllExecutableATs(currentBlockHeight);
+
+		// Check whether ATs sleeping until message have received one
+		List<ATData> atsToRun = new ArrayList<>(executableATs.size());
+		for (ATData atData : executableATs)
+			if (new AT(this.repository, atData).willExecute(this.blockHeight, this.blockTimestamp))
+				atsToRun.add(atData);
+
+		// Fetch latest AT states in one go
+		List<String> atAddresses = atsToRun.stream().map(ATData::getATAddress).collect(Collectors.toList());
+
+		Map<String, ATStateData> latestAtStates = new HashMap<>();
+		for (ATStateData latestAtStateData : atRepository.getLatestATStates(atAddresses))
+			latestAtStates.put(latestAtStateData.getATAddress(), latestAtStateData);
+
+		List<AtRun> atRuns = new ArrayList<>(atsToRun.size());
+		for (ATData atData : atsToRun)
+			atRuns.add(new AtRun(atData, latestAtStates.get(atData.getATAddress())));
+
+		if (this.parallelism > 1 && atRuns.size() >= MIN_PARALLEL_AT_COUNT)
+			this.runParallel(atRuns);
+		else
+			for (AtRun atRun : atRuns)
+				this.run(atRun, this.repository);
+
+		List<AtTransaction> allAtTransactions = new ArrayList<>();
+		List<ATStateData> atStates = new ArrayList<>();
+		long atFees = 0;
+
+		for (AtRun atRun : atRuns) {
+			// Didn't execute? (e.g. nothing to do)
+			if (atRun.atStateData == null)
+				continue;
+
+			allAtTransactions.addAll(atRun.atTransactions);
+			atStates.add(atRun.atStateData);
+			atFees += atRun.atStateData.getFees();
+		}
+
+		return new Result(allAtTransactions, atStates, atFees);
+	}
+
+	private void run(AtRun atRun, Repository repository) throws DataException {
+		AT at = new AT(repository, atRun.atData);
+
+		atRun.atTransactions = at.run(this.blockHeight, this.blockTimestamp, atRun.latestAtStateData);
+		atRun.atStateData = at.getATStateData();
+	}
+
+	private void runParallel(List<AtRun> atRuns) throws DataException {
+		Repository serializedRepository = SerializingHandler.wrap(Repository.class, this.repository, new Object());
+
+		AtomicInteger nextIndex = new AtomicInteger();
+		// Once an AT fails, there's no point running any further ATs
+		AtomicInteger failedIndex = new AtomicInteger(Integer.MAX_VALUE);
+
+		Runnable worker = () -> {
+			int index;
+			while ((index = nextIndex.getAndIncrement()) < atRuns.size() && index < failedIndex.get()) {
+				AtRun atRun = atRuns.get(index);
+
+				try {
+					this.run(atRun, serializedRepository);
+				} catch (Exception e) {
+					atRun.exception = e;
+					failedIndex.accumulateAndGet(index, Math::min);
+				}
+			}
+		};
+
+		ExecutorService executor = getExecutorService();
+
+		final int workerCount = Math.min(this.parallelism, atRuns.size());
+		List<Future<?>> futures = new ArrayList<>(workerCount);
+		for (int i = 0; i < workerCount; ++i)
+			futures.add(executor.submit(worker));
+
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			futures.forEach(future -> future.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new DataException("Interrupted while executing ATs", e);
+		} catch (ExecutionException e) {
+			throw new DataException("Unexpected failure while executing ATs", e.getCause());
+		}
+
+		// Report first failure in creation order, as sequential execution would.
+		// ATs were started in creation order, so all ATs before it were run.
+		for (AtRun atRun : atRuns) {
+			if (atRun.exception instanceof DataException)
+				throw (DataException) atRun.exception;
+
+			if (atRun.exception instanceof RuntimeException)
+				throw (RuntimeException) atRun.exception;
+
+			if (atRun.exception != null)
+				throw new DataException(String.format("Unable to execute AT '%s'", atRun.atData.getATAddress()), atRun.exception);
+
+			// AT-generated transactions need to use actual repository when block is processed
+			if (atRun.atTransactions != null)
+				atRun.atTransactions = atRun.atTransactions.stream()
+						.map(atTransaction -> new AtTransaction(this.repository, atTransaction.getTransactionData()))
+						.collect(Collectors.toList());
+		}
+	}
+
+	private static synchronized ExecutorService getExecutorService() {
+		// Threads are only created when needed, and exit when idle
+		if (executorService == null)
+			executorService = Executors.newCachedThreadPool(new DaemonThreadFactory("AT-Executor"));
+
+		return executorService;
+	}
+
+	/** Serializes calls to repository, and any sub-repositories fetched from it, using <tt>lock</tt>. */
+	private static class SerializingHandler implements InvocationHandler {
+		private final Object target;
+		private final Object lock;
+
+		private SerializingHandler(Object target, Object lock) {
+			this.target = target;
+			this.lock = lock;
+		}
+
+		private static <T> T wrap(Class<T> repositoryClass, Object target, Object lock) {
+			return repositoryClass.cast(Proxy.newProxyInstance(repositoryClass.getClassLoader(), new Class<?>[] { repositoryClass },
+					new SerializingHandler(target, lock)));
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result;
+
+			synchronized (this.lock) {
+				try {
+					result = method.invoke(this.target, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+
+			// Sub-repositories, e.g. from getATRepository(), need serializing too
+			Class<?> returnType = method.getReturnType();
+			if (result != null && returnType.isInterface() && returnType.getSimpleName().endsWith("Repository"))
+				return wrap(returnType, result, this.lock);
+
+			return result;
+		}
+	}
+
+}
@@ -20,10 +20,13 @@ import org.qortal.account.PrivateKeyAccount;
 import org.qortal.account.PublicKeyAccount;
 import org.qortal.asset.Asset;
 import org.qortal.at.AT;
+import org.qortal.at.ATExecutor;
 import org.qortal.block.BlockChain.BlockTimingByHeight;
 import org.qortal.block.BlockChain.AccountLevelShareBin;
 import org.qortal.controller.OnlineAccountsManager;
+import org.qortal.crosschain.CompletedTrades;
 import org.qortal.crypto.Crypto;
+import org.qortal.crypto.SignatureBatchVerifier;
 import org.qortal.data.account.AccountBalanceData;
 import org.qortal.data.account.AccountData;
 import org.qortal.data.account.EligibleQoraHolderData;
@@ -40,6 +43,7 @@ import org.qortal.repository.ATRepository;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.TransactionRepository;
+import org.qortal.settings.Settings;
 import org.qortal.transaction.AtTransaction;
 import org.qortal.transaction.Transaction;
 import org.qortal.transaction.Transaction.ApprovalStatus;
@@ -50,6 +54,7 @@ import org.qortal.transform.block.BlockTransformer;
 import org.qortal.transform.transaction.TransactionTransformer;
 import org.qortal.utils.Amounts;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
 import org.qortal.utils.NTP;
 
 import com.google.common.primitives.Bytes;
@@ -330,7 +335,8 @@ public class Block {
 		// Load sorted list of reward share public keys into memory, so that the indexes can be obtained.
 		// This is up to 100x faster than querying each index separately. For 4150 reward share keys, it
 		// was taking around 5000ms to query individually, vs 50ms using this approach.
-		List<byte[]> allRewardSharePublicKeys = repository.getAccountRepository().getRewardSharePublicKeys();
+		// (Usually served from repository's in-memory reward-share index).
+		Map<ByteArray, Integer> rewardShareIndexes = getRewardShareIndexes(repository.getAccountRepository().getRewardSharePublicKeys());
 
 		// Map using index into sorted list of reward-shares as key
 		Map<Integer, OnlineAccountData> indexedOnlineAccounts = new HashMap<>();
@@ -339,7 +345,7 @@ public class Block {
 			if (onlineAccountData.getTimestamp() != onlineAccountsTimestamp)
 				continue;
 
-			Integer accountIndex = getRewardShareIndex(onlineAccountData.getPublicKey(), allRewardSharePublicKeys);
+			Integer accountIndex = rewardShareIndexes.get(ByteArray.wrap(onlineAccountData.getPublicKey()));
 			if (accountIndex == null)
 				// Online account (reward-share) with current timestamp but reward-share cancelled
 				continue;
@@ -987,10 +993,11 @@ public class Block {
 		byte[] onlineTimestampBytes = Longs.toByteArray(onlineTimestamp);
 
 		// If this block is much older than current online timestamp, then there's no point checking current online accounts
-		List<OnlineAccountData> currentOnlineAccounts = onlineTimestamp < NTP.getTime() - OnlineAccountsManager.ONLINE_TIMESTAMP_MODULUS
+		Set<OnlineAccountData> currentOnlineAccounts = onlineTimestamp < NTP.getTime() - OnlineAccountsManager.ONLINE_TIMESTAMP_MODULUS
 				? null
-				: OnlineAccountsManager.getInstance().getOnlineAccounts();
-		List<OnlineAccountData> latestBlocksOnlineAccounts = OnlineAccountsManager.getInstance().getLatestBlocksOnlineAccounts();
+				: new HashSet<>(OnlineAccountsManager.getInstance().getOnlineAccounts());
+		List<OnlineAccountData> latestBlocksOnlineAccountsList = OnlineAccountsManager.getInstance().getLatestBlocksOnlineAccounts();
+		Set<OnlineAccountData> latestBlocksOnlineAccounts = latestBlocksOnlineAccountsList == null ? null : new HashSet<>(latestBlocksOnlineAccountsList);
 
 		// Extract online accounts' timestamp signatures from block data
 		List<byte[]> onlineAccountsSignatures = BlockTransformer.decodeTimestampSignatures(this.blockData.getOnlineAccountsSignatures());
@@ -999,6 +1006,9 @@ public class Block {
 		// and this will become latestBlocksOnlineAccounts (above) to reduce CPU load when we process next block...
 		List<OnlineAccountData> ourOnlineAccounts = new ArrayList<>();
 
+		// Signatures that we haven't already seen, so need full Ed25519 verify
+		List<SignatureBatchVerifier.Entry> signaturesToVerify = new ArrayList<>();
+
 		for (int i = 0; i < onlineAccountsSignatures.size(); ++i) {
 			byte[] signature = onlineAccountsSignatures.get(i);
 			byte[] publicKey = onlineRewardShares.get(i).getRewardSharePublicKey();
@@ -1007,19 +1017,19 @@ public class Block {
 			ourOnlineAccounts.add(onlineAccountData);
 
 			// If signature is still current then no need to perform Ed25519 verify
-			if (currentOnlineAccounts != null && currentOnlineAccounts.remove(onlineAccountData))
-				// remove() returned true, so online account still current
-				// and one less entry in currentOnlineAccounts to check next time
+			if (currentOnlineAccounts != null && currentOnlineAccounts.contains(onlineAccountData))
 				continue;
 
 			// If signature was okay in latest block then no need to perform Ed25519 verify
 			if (latestBlocksOnlineAccounts != null && latestBlocksOnlineAccounts.contains(onlineAccountData))
 				continue;
 
-			if (!Crypto.verify(publicKey, signature, onlineTimestampBytes))
-				return ValidationResult.ONLINE_ACCOUNT_SIGNATURE_INCORRECT;
+			signaturesToVerify.add(new SignatureBatchVerifier.Entry(publicKey, signature, onlineTimestampBytes));
 		}
 
+		if (!SignatureBatchVerifier.getInstance().verifyAll(signaturesToVerify))
+			return ValidationResult.ONLINE_ACCOUNT_SIGNATURE_INCORRECT;
+
 		// All online accounts valid, so save our list of online accounts for potential later use
 		this.cachedValidOnlineAccounts = ourOnlineAccounts;
 		this.cachedOnlineRewardShares = onlineRewardShares;
@@ -1250,28 +1260,14 @@ public class Block {
 		if (this.ourAtStates != null)
 			throw new IllegalStateException("Attempted to execute ATs when block's local AT state data already exists");
 
-		// AT-Transactions generated by running ATs, to be prepended to block's transactions
-		List<AtTransaction> allAtTransactions = new ArrayList<>();
-
-		this.ourAtStates = new ArrayList<>();
-		this.ourAtFees = 0;
-
-		// Find all executable ATs, ordered by earliest creation date first
-		List<ATData> executableATs = this.repository.getATRepository().getAllExecutableATs();
+		// Run all executable ATs, ordered by earliest creation date first, possibly in parallel
+		ATExecutor.Result atResult = new ATExecutor(this.repository, this.blockData.getHeight(), this.blockData.getTimestamp()).execute();
 
-		// Run each AT, appends AT-Transactions and corresponding AT states, to our lists
-		for (ATData atData : executableATs) {
-			AT at = new AT(this.repository, atData);
-			List<AtTransaction> atTransactions = at.run(this.blockData.getHeight(), this.blockData.getTimestamp());
-			ATStateData atStateData = at.getATStateData();
-			// Didn't execute? (e.g. sleeping)
-			if (atStateData == null)
-				continue;
+		// AT-Transactions generated by running ATs, to be prepended to block's transactions
+		List<AtTransaction> allAtTransactions = atResult.getAtTransactions();
 
-			allAtTransactions.addAll(atTransactions);
-			this.ourAtStates.add(atStateData);
-			this.ourAtFees += atStateData.getFees();
-		}
+		this.ourAtStates = atResult.getAtStates();
+		this.ourAtFees = atResult.getAtFees();
 
 		// AT Transactions never need approval
 		allAtTransactions.forEach(transaction -> transaction.getTransactionData().setApprovalStatus(ApprovalStatus.NOT_REQUIRED));
@@ -1325,6 +1321,10 @@ public class Block {
 
 		LOGGER.trace(() -> String.format("Processing block %d", this.blockData.getHeight()));
 
+		// Balance changes, e.g. block rewards, fees and payments, are collated then written in one batch
+		if (Settings.getInstance().isBalanceBufferingEnabled())
+			this.repository.getAccountRepository().bufferBalanceChanges();
+
 		if (this.blockData.getHeight() > 1) {
 			// Increase account levels
 			increaseAccountLevels();
@@ -1353,6 +1353,9 @@ public class Block {
 			accountRefCache.commit();
 		}
 
+		// Write collated balance changes
+		this.repository.getAccountRepository().flushBalanceChanges();
+
 		// Link block into blockchain by fetching signature of highest block and setting that as our reference
 		BlockData latestBlockData = this.repository.getBlockRepository().fromHeight(blockchainHeight);
 		if (latestBlockData != null)
@@ -1513,9 +1516,13 @@ public class Block {
 
 			// Update AT info with latest state
 			ATData atData = atRepository.fromATAddress(atStateData.getATAddress());
+			final boolean wasFinished = atData.getIsFinished();
 
 			AT at = new AT(repository, atData, atStateData);
 			at.update(this.blockData.getHeight(), this.blockData.getTimestamp());
+
+			// Record cross-chain trade if AT has just completed one
+			CompletedTrades.processAtState(this.repository, atData, wasFinished, atStateData, this.blockData.getTimestamp());
 		}
 	}
 
@@ -1553,6 +1560,10 @@ public class Block {
 	public void orphan() throws DataException {
 		LOGGER.trace(() -> String.format("Orphaning block %d", this.blockData.getHeight()));
 
+		// Balance changes, e.g. block rewards, fees and payments, are collated then written in one batch
+		if (Settings.getInstance().isBalanceBufferingEnabled())
+			this.repository.getAccountRepository().bufferBalanceChanges();
+
 		// Log some debugging info relating to the block weight calculation
 		this.logDebugInfo();
 
@@ -1580,6 +1591,9 @@ public class Block {
 			decreaseAccountLevels();
 		}
 
+		// Write collated balance changes
+		this.repository.getAccountRepository().flushBalanceChanges();
+
 		// Delete block from blockchain
 		this.repository.getBlockRepository().delete(this.blockData);
 		this.blockData.setHeight(null);
@@ -1674,6 +1688,9 @@ public class Block {
 			// Revert AT info to prior values
 			ATData atData = atRepository.fromATAddress(atStateData.getATAddress());
 
+			// Remove cross-chain trade if AT completed one in this block
+			CompletedTrades.orphanAtState(this.repository, atData);
+
 			AT at = new AT(repository, atData, atStateData);
 			at.revert(this.blockData.getHeight(), this.blockData.getTimestamp());
 		}
@@ -2031,21 +2048,21 @@ public class Block {
 	// Utils
 
 	/**
-	 * Find index of rewardSharePublicKey in list of rewardSharePublicKeys
+	 * Map each of rewardSharePublicKeys to its index
 	 *
-	 * @param rewardSharePublicKey - the key to query
-	 * @param rewardSharePublicKeys - a sorted list of keys
-	 * @return - the index of the key, or null if not found
+	 * @param rewardSharePublicKeys - a sorted list of keys, or null if no keys
+	 * @return - map of key to index into list
 	 */
-	private static Integer getRewardShareIndex(byte[] rewardSharePublicKey, List<byte[]> rewardSharePublicKeys) {
+	private static Map<ByteArray, Integer> getRewardShareIndexes(List<byte[]> rewardSharePublicKeys) {
+		Map<ByteArray, Integer> rewardShareIndexes = new HashMap<>();
+		if (rewardSharePublicKeys == null)
+			return rewardShareIndexes;
+
 		int index = 0;
-		for (byte[] publicKey : rewardSharePublicKeys) {
-			if (Arrays.equals(rewardSharePublicKey, publicKey)) {
-				return index;
-			}
-			index++;
-		}
-		return null;
+		for (byte[] publicKey : rewardSharePublicKeys)
+			rewardShareIndexes.put(ByteArray.wrap(publicKey), index++);
+
+		return rewardShareIndexes;
 	}
 
 	private void logDebugInfo() {
@@ -26,7 +26,6 @@ import org.qortal.data.block.BlockData;
 import org.qortal.network.Network;
 import org.qortal.repository.*;
 import org.qortal.settings.Settings;
-import org.qortal.utils.Base58;
 import org.qortal.utils.StringLongMapXmlAdapter;
 
 /**
@@ -599,37 +598,15 @@ public class BlockChain {
 	 * @throws DataException
 	 */
 	public static void validateAllBlocks() throws DataException {
+		final int chainTipHeight;
 		try (final Repository repository = RepositoryManager.getRepository()) {
-			BlockData chainTip = repository.getBlockRepository().getLastBlock();
-			final int chainTipHeight = chainTip.getHeight();
-			final int oldestBlock = 1; // TODO: increase if in pruning mode
-			byte[] lastReference = null;
-
-			for (int height = chainTipHeight; height > oldestBlock; height--) {
-				BlockData blockData = repository.getBlockRepository().fromHeight(height);
-				if (blockData == null) {
-					blockData = repository.getBlockArchiveRepository().fromHeight(height);
-				}
-
-				if (blockData == null) {
-					String error = String.format("Missing block at height %d", height);
-					LOGGER.error(error);
-					throw new DataException(error);
-				}
+			chainTipHeight = repository.getBlockRepository().getBlockchainHeight();
+		}
 
-				if (height != chainTipHeight) {
-					// Check reference
-					if (!Arrays.equals(blockData.getSignature(), lastReference)) {
-						String error = String.format("Invalid reference for block at height %d: %s (should be %s)",
-								height, Base58.encode(blockData.getReference()), Base58.encode(lastReference));
-						LOGGER.error(error);
-						throw new DataException(error);
-					}
-				}
+		final int oldestBlock = 2; // TODO: increase if in pruning mode
 
-				lastReference = blockData.getReference();
-			}
-		}
+		// Signatures are verified in parallel, then remaining checks are done in height order
+		ChainValidator.getInstance().validate(oldestBlock, chainTipHeight);
 	}
 
 	private static boolean isGenesisBlockValid() {
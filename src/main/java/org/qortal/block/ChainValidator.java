@@ -0,0 +1,408 @@
+package org.qortal.block;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.block.BlockChain.BlockTimingByHeight;
+import org.qortal.data.at.ATStateData;
+import org.qortal.data.block.BlockData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.BlockArchiveReader;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.transaction.Transaction;
+import org.qortal.transaction.Transaction.TransactionType;
+import org.qortal.utils.Base58;
+import org.qortal.utils.Triple;
+
+/**
+ * Re-validates a range of blocks already in our chain, whether in the repository or the block archive.
+ * <p>
+ * Validation is in two stages:
+ * <ol>
+ * <li>Stateless checks, spread across a fork/join pool: block minter and transactions signatures
+ * (which includes each transaction's signature), and that each block references the one before it.
+ * As the minter signature covers the parent block's signature, this verifies the whole signature chain.</li>
+ * <li>Checks needing the previous block, done in height order: block timestamps are after,
+ * and no sooner than allowed by, their parent's.</li>
+ * </ol>
+ * Only one validation can run at a time. Progress of the current, or most recent, validation
+ * is available from {@link #getProgress()}.
+ */
+public class ChainValidator {
+
+	private static final Logger LOGGER = LogManager.getLogger(ChainValidator.class);
+
+	/** Number of blocks each fork/join leaf task validates before it stops splitting. */
+	private static final int LEAF_SIZE = 500;
+
+	private static ChainValidator instance;
+
+	private final ForkJoinPool pool;
+	private final AtomicInteger threadNumber = new AtomicInteger(1);
+	private final ReentrantLock validationLock = new ReentrantLock();
+
+	public enum Stage {
+		IDLE, VERIFYING_SIGNATURES, CHECKING_CHAIN, COMPLETE, FAILED;
+	}
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class Progress {
+		public Stage stage;
+		public int startHeight;
+		public int endHeight;
+		/** Number of blocks whose signatures, and transactions' signatures, have been verified */
+		public long blocksVerified;
+		public long transactionsVerified;
+		/** Number of blocks checked in sequential stage */
+		public long blocksChecked;
+		public Long startTimestamp;
+		/** Duration so far, or of whole validation if finished (ms) */
+		public long duration;
+		/** Throughput of current stage, or of signature stage if finished */
+		public double blocksPerSecond;
+		/** Reason for failure, if stage is FAILED */
+		public String error;
+
+		public Progress() {
+		}
+	}
+
+	// Progress of current/most recent validation
+	private volatile Stage stage = Stage.IDLE;
+	private volatile int startHeight;
+	private volatile int endHeight;
+	private final AtomicLong blocksVerified = new AtomicLong();
+	private final AtomicLong transactionsVerified = new AtomicLong();
+	private final AtomicLong blocksChecked = new AtomicLong();
+	private volatile Long startTimestamp;
+	private volatile long stageStartTimestamp;
+	private volatile Long finishTimestamp;
+	private volatile double signatureStageBlocksPerSecond;
+	private volatile String error;
+
+	/** Per-block info gathered by signature stage, for use by sequential stage. Indexed by height - startHeight. */
+	private static class RangeInfo {
+		final long[] timestamps;
+		/** Reference of first block in each leaf, and signature of last block in each leaf, keyed by leaf start height */
+		final byte[][] firstReferences;
+		final byte[][] lastSignatures;
+
+		RangeInfo(int blockCount) {
+			this.timestamps = new long[blockCount];
+			int leafCount = (blockCount + LEAF_SIZE - 1) / LEAF_SIZE;
+			this.firstReferences = new byte[leafCount][];
+			this.lastSignatures = new byte[leafCount][];
+		}
+	}
+
+	private class VerifyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final RangeInfo rangeInfo;
+		private final int fromHeight;
+		private final int toHeight;
+		private final AtomicReference<String> failure;
+
+		/** Verifies <tt>fromHeight</tt> (inclusive) to <tt>toHeight</tt> (exclusive). Ranges are split on leaf boundaries. */
+		VerifyTask(RangeInfo rangeInfo, int fromHeight, int toHeight, AtomicReference<String> failure) {
+			this.rangeInfo = rangeInfo;
+			this.fromHeight = fromHeight;
+			this.toHeight = toHeight;
+			this.failure = failure;
+		}
+
+		@Override
+		protected void compute() {
+			final int leafCount = (this.toHeight - this.fromHeight + LEAF_SIZE - 1) / LEAF_SIZE;
+
+			if (leafCount <= 1) {
+				try {
+					verifyLeaf(this.rangeInfo, this.fromHeight, this.toHeight, this.failure);
+				} catch (DataException e) {
+					this.failure.compareAndSet(null, String.format("Repository issue while validating blocks %d to %d: %s",
+							this.fromHeight, this.toHeight - 1, e.getMessage()));
+				}
+				return;
+			}
+
+			int midHeight = this.fromHeight + (leafCount / 2) * LEAF_SIZE;
+			invokeAll(new VerifyTask(this.rangeInfo, this.fromHeight, midHeight, this.failure),
+					new VerifyTask(this.rangeInfo, midHeight, this.toHeight, this.failure));
+		}
+	}
+
+	public ChainValidator(int parallelism) {
+		this.pool = new ForkJoinPool(Math.max(1, parallelism), this::newWorkerThread, null, false);
+	}
+
+	public static synchronized ChainValidator getInstance() {
+		if (instance == null)
+			// Leave one core free for networking, etc.
+			instance = new ChainValidator(Runtime.getRuntime().availableProcessors() - 1);
+
+		return instance;
+	}
+
+	private ForkJoinWorkerThread newWorkerThread(ForkJoinPool pool) {
+		ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName("Chain-Validator-" + this.threadNumber.getAndIncrement());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	public boolean isValidating() {
+		return this.validationLock.isLocked();
+	}
+
+	/**
+	 * Validates blocks from <tt>startHeight</tt> to <tt>endHeight</tt> inclusive.
+	 * <p>
+	 * Genesis block is never validated, as it has no minter signature, so <tt>startHeight</tt> should be at least 2.
+	 *
+	 * @throws DataException if any block is missing or invalid, or another validation is already running
+	 */
+	public void validate(int startHeight, int endHeight) throws DataException {
+		if (!this.validationLock.tryLock())
+			throw new DataException("Chain validation already in progress");
+
+		try {
+			startHeight = Math.max(startHeight, 2);
+
+			this.resetProgress(startHeight, endHeight);
+
+			if (endHeight < startHeight) {
+				this.finish(Stage.COMPLETE, null);
+				return;
+			}
+
+			LOGGER.info("Validating blocks {} to {}...", startHeight, endHeight);
+
+			// Stage 1: stateless checks, in parallel
+			RangeInfo rangeInfo = new RangeInfo(endHeight - startHeight + 1);
+			AtomicReference<String> failure = new AtomicReference<>();
+
+			this.pool.invoke(new VerifyTask(rangeInfo, startHeight, endHeight + 1, failure));
+
+			this.signatureStageBlocksPerSecond = this.calcBlocksPerSecond(this.blocksVerified.get());
+			LOGGER.info(String.format("Verified signatures of %d blocks at %.1f blocks/s", this.blocksVerified.get(), this.signatureStageBlocksPerSecond));
+
+			if (failure.get() != null)
+				this.fail(failure.get());
+
+			// Stage 2: checks needing previous block, in order
+			this.stage = Stage.CHECKING_CHAIN;
+			this.stageStartTimestamp = System.currentTimeMillis();
+
+			this.checkChain(rangeInfo, startHeight, endHeight);
+
+			this.finish(Stage.COMPLETE, null);
+			LOGGER.info("Blocks {} to {} are valid", startHeight, endHeight);
+		} catch (DataException e) {
+			if (this.stage != Stage.FAILED)
+				this.finish(Stage.FAILED, e.getMessage());
+
+			throw e;
+		} finally {
+			this.validationLock.unlock();
+		}
+	}
+
+	private void verifyLeaf(RangeInfo rangeInfo, int fromHeight, int toHeight, AtomicReference<String> failure) throws DataException {
+		final int rangeStartHeight = this.startHeight;
+		final int leafIndex = (fromHeight - rangeStartHeight) / LEAF_SIZE;
+		byte[] previousSignature = null;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			for (int height = fromHeight; height < toHeight; ++height) {
+				// Another task found a problem so no point continuing
+				if (failure.get() != null)
+					return;
+
+				Block block = fetchBlock(repository, height);
+				if (block == null) {
+					failure.compareAndSet(null, String.format("Missing block at height %d", height));
+					return;
+				}
+
+				BlockData blockData = block.getBlockData();
+
+				if (previousSignature == null)
+					rangeInfo.firstReferences[leafIndex] = blockData.getReference();
+				else if (!Arrays.equals(previousSignature, blockData.getReference())) {
+					failure.compareAndSet(null, String.format("Invalid reference for block at height %d: %s (should be %s)",
+							height, Base58.encode(blockData.getReference()), Base58.encode(previousSignature)));
+					return;
+				}
+
+				final List<Transaction> transactions;
+				try {
+					transactions = block.getTransactions();
+				} catch (IllegalStateException e) {
+					failure.compareAndSet(null, String.format("Missing transactions for block at height %d", height));
+					return;
+				}
+
+				// Also verifies each (non-AT) transaction's signature, while building transactions signature
+				if (!block.isSignatureValid()) {
+					failure.compareAndSet(null, String.format("Invalid signature for block at height %d%s", height, findInvalidTransaction(transactions)));
+					return;
+				}
+
+				rangeInfo.timestamps[height - rangeStartHeight] = blockData.getTimestamp();
+				previousSignature = blockData.getSignature();
+
+				this.blocksVerified.incrementAndGet();
+				this.transactionsVerified.addAndGet(blockData.getTransactionCount());
+			}
+		}
+
+		rangeInfo.lastSignatures[leafIndex] = previousSignature;
+	}
+
+	/** Returns description of first transaction with invalid signature, for error message, or empty string if none. */
+	private static String findInvalidTransaction(List<Transaction> transactions) {
+		for (Transaction transaction : transactions)
+			if (transaction.getTransactionData().getType() != TransactionType.AT && !transaction.isSignatureValid())
+				return String.format(": invalid signature for transaction %s", Base58.encode(transaction.getTransactionData().getSignature()));
+
+		return "";
+	}
+
+	/** Returns block, with its transactions, from repository or block archive, or null if not found. */
+	private static Block fetchBlock(Repository repository, int height) throws DataException {
+		BlockData blockData = repository.getBlockRepository().fromHeight(height);
+		if (blockData != null)
+			return new Block(repository, blockData);
+
+		// Archived blocks include their transactions, unlike archive repository's block data
+		Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo = BlockArchiveReader.getInstance().fetchBlockAtHeight(height);
+		if (blockInfo == null)
+			return null;
+
+		return new Block(repository, blockInfo.getA(), blockInfo.getB(), blockInfo.getC());
+	}
+
+	private void checkChain(RangeInfo rangeInfo, int startHeight, int endHeight) throws DataException {
+		final boolean isTestChain = BlockChain.getInstance().isTestChain();
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			// Range's first block needs comparing with its parent, which wasn't part of signature stage
+			BlockData parentBlockData = repository.getBlockRepository().fromHeight(startHeight - 1);
+			if (parentBlockData == null)
+				parentBlockData = repository.getBlockArchiveRepository().fromHeight(startHeight - 1);
+
+			if (parentBlockData == null)
+				this.fail(String.format("Missing block at height %d", startHeight - 1));
+
+			if (!Arrays.equals(parentBlockData.getSignature(), rangeInfo.firstReferences[0]))
+				this.fail(String.format("Invalid reference for block at height %d", startHeight));
+
+			// Join up references between leaves
+			for (int leafIndex = 1; leafIndex < rangeInfo.firstReferences.length; ++leafIndex)
+				if (!Arrays.equals(rangeInfo.lastSignatures[leafIndex - 1], rangeInfo.firstReferences[leafIndex]))
+					this.fail(String.format("Invalid reference for block at height %d", startHeight + leafIndex * LEAF_SIZE));
+
+			long parentTimestamp = parentBlockData.getTimestamp();
+
+			for (int height = startHeight; height <= endHeight; ++height) {
+				final long timestamp = rangeInfo.timestamps[height - startHeight];
+
+				if (timestamp <= parentTimestamp)
+					this.fail(String.format("Block at height %d has timestamp older than parent", height));
+
+				if (!isTestChain) {
+					BlockTimingByHeight blockTiming = BlockChain.getInstance().getBlockTimingByHeight(height);
+					if (timestamp < parentTimestamp + blockTiming.target - blockTiming.deviation)
+						this.fail(String.format("Block at height %d has timestamp too soon after parent", height));
+				}
+
+				parentTimestamp = timestamp;
+				this.blocksChecked.incrementAndGet();
+			}
+		}
+	}
+
+	private void fail(String error) throws DataException {
+		LOGGER.error(error);
+		this.finish(Stage.FAILED, error);
+		throw new DataException(error);
+	}
+
+	private void resetProgress(int startHeight, int endHeight) {
+		this.stage = Stage.VERIFYING_SIGNATURES;
+		this.startHeight = startHeight;
+		this.endHeight = endHeight;
+		this.blocksVerified.set(0);
+		this.transactionsVerified.set(0);
+		this.blocksChecked.set(0);
+		this.startTimestamp = System.currentTimeMillis();
+		this.stageStartTimestamp = this.startTimestamp;
+		this.finishTimestamp = null;
+		this.signatureStageBlocksPerSecond = 0;
+		this.error = null;
+	}
+
+	private void finish(Stage stage, String error) {
+		this.finishTimestamp = System.currentTimeMillis();
+		this.error = error;
+		this.stage = stage;
+	}
+
+	private double calcBlocksPerSecond(long blockCount) {
+		long duration = Math.max(1L, System.currentTimeMillis() - this.stageStartTimestamp);
+		return blockCount * 1000.0 / duration;
+	}
+
+	public Progress getProgress() {
+		Progress progress = new Progress();
+
+		progress.stage = this.stage;
+		progress.startHeight = this.startHeight;
+		progress.endHeight = this.endHeight;
+		progress.blocksVerified = this.blocksVerified.get();
+		progress.transactionsVerified = this.transactionsVerified.get();
+		progress.blocksChecked = this.blocksChecked.get();
+		progress.startTimestamp = this.startTimestamp;
+		progress.error = this.error;
+
+		if (this.startTimestamp != null) {
+			Long finishTimestamp = this.finishTimestamp;
+			progress.duration = (finishTimestamp != null ? finishTimestamp : System.currentTimeMillis()) - this.startTimestamp;
+		}
+
+		switch (progress.stage) {
+			case VERIFYING_SIGNATURES:
+				progress.blocksPerSecond = this.calcBlocksPerSecond(progress.blocksVerified);
+				break;
+
+			case CHECKING_CHAIN:
+				progress.blocksPerSecond = this.calcBlocksPerSecond(progress.blocksChecked);
+				break;
+
+			default:
+				progress.blocksPerSecond = this.signatureStageBlocksPerSecond;
+				break;
+		}
+
+		return progress;
+	}
+
+	public void shutdown() {
+		this.pool.shutdownNow();
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.qortal.controller;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.block.Block;
+import org.qortal.network.Peer;
+import org.qortal.utils.Base58;
+
+/**
+ * Fetches blocks from several peers at once, returning them in the order they were requested.
+ * <p>
+ * Up to <tt>windowSize</tt> block requests are outstanding at any time, spread round-robin over <tt>peers</tt>.
+ * Each request is performed on an <tt>executor</tt> thread, which also checks the block's signatures,
+ * so that the caller only has to validate and apply blocks in order.
+ * <p>
+ * If a peer doesn't supply a block, e.g. because it's on a different fork, then the other peers are asked in turn.
+ * <p>
+ * Not thread-safe: expected to be used by one (synchronizer) thread.
+ */
+public class BlockFetchPipeline implements AutoCloseable {
+
+	private static final Logger LOGGER = LogManager.getLogger(BlockFetchPipeline.class);
+
+	public interface BlockRequester {
+		/** Returns block with <tt>signature</tt> from <tt>peer</tt>, or null if peer didn't supply it. */
+		Block fetchBlock(Peer peer, byte[] signature) throws InterruptedException;
+	}
+
+	public enum FetchStatus {
+		OK, NO_REPLY, INVALID_SIGNATURE;
+	}
+
+	public static class FetchResult {
+		public final FetchStatus status;
+		public final byte[] signature;
+		/** Block, with valid signatures, if status is OK */
+		public final Block block;
+		/** Peer that supplied block, if status is OK */
+		public final Peer peer;
+
+		private FetchResult(FetchStatus status, byte[] signature, Block block, Peer peer) {
+			this.status = status;
+			this.signature = signature;
+			this.block = block;
+			this.peer = peer;
+		}
+	}
+
+	private static class PendingRequest {
+		public final byte[] signature;
+		public final Future<FetchResult> future;
+
+		public PendingRequest(byte[] signature, Future<FetchResult> future) {
+			this.signature = signature;
+			this.future = future;
+		}
+	}
+
+	private final ExecutorService executor;
+	private final List<Peer> peers;
+	private final int windowSize;
+	private final BlockRequester blockRequester;
+
+	/** Outstanding requests, in the order they were made */
+	private final Deque<PendingRequest> pendingRequests = new ArrayDeque<>();
+	private int nextPeerIndex = 0;
+
+	/**
+	 * @param executor used to perform requests, ideally with at least <tt>windowSize</tt> threads
+	 * @param peers peers to fetch blocks from, e.g. sync peer followed by others that agree on common block
+	 * @param windowSize maximum number of outstanding requests
+	 * @param blockRequester performs actual request to peer
+	 */
+	public BlockFetchPipeline(ExecutorService executor, List<Peer> peers, int windowSize, BlockRequester blockRequester) {
+		if (peers.isEmpty())
+			throw new IllegalArgumentException("Block fetch pipeline needs at least one peer");
+
+		this.executor = executor;
+		this.peers = peers;
+		this.windowSize = Math.max(1, windowSize);
+		this.blockRequester = blockRequester;
+	}
+
+	/** Returns whether another request can be made without exceeding window size. */
+	public boolean hasCapacity() {
+		return this.pendingRequests.size() < this.windowSize;
+	}
+
+	public boolean isEmpty() {
+		return this.pendingRequests.isEmpty();
+	}
+
+	/** Requests block with <tt>signature</tt>. Blocks must be requested in the order they are to be applied. */
+	public void request(byte[] signature) {
+		final int firstPeerIndex = this.nextPeerIndex;
+		this.nextPeerIndex = (this.nextPeerIndex + 1) % this.peers.size();
+
+		Future<FetchResult> future = this.executor.submit(() -> this.fetch(signature, firstPeerIndex));
+		this.pendingRequests.addLast(new PendingRequest(signature, future));
+	}
+
+	/**
+	 * Returns result of earliest outstanding request, waiting for it if necessary.
+	 *
+	 * @throws IllegalStateException if there are no outstanding requests
+	 */
+	public FetchResult take() throws InterruptedException {
+		PendingRequest pendingRequest = this.pendingRequests.pollFirst();
+		if (pendingRequest == null)
+			throw new IllegalStateException("No outstanding block requests");
+
+		try {
+			return pendingRequest.future.get();
+		} catch (ExecutionException e) {
+			LOGGER.warn(String.format("Unexpected failure while fetching block %.8s", Base58.encode(pendingRequest.signature)), e.getCause());
+			return new FetchResult(FetchStatus.NO_REPLY, pendingRequest.signature, null, null);
+		}
+	}
+
+	/** Cancels any outstanding requests. */
+	@Override
+	public void close() {
+		PendingRequest pendingRequest;
+		while ((pendingRequest = this.pendingRequests.pollFirst()) != null)
+			pendingRequest.future.cancel(true);
+	}
+
+	private FetchResult fetch(byte[] signature, int firstPeerIndex) throws InterruptedException {
+		boolean wasInvalidSignatureReceived = false;
+
+		for (int i = 0; i < this.peers.size(); ++i) {
+			Peer peer = this.peers.get((firstPeerIndex + i) % this.peers.size());
+
+			Block block = this.blockRequester.fetchBlock(peer, signature);
+			if (block == null) {
+				LOGGER.trace(() -> String.format("Peer %s didn't supply block %.8s", peer, Base58.encode(signature)));
+				continue;
+			}
+
+			if (!Arrays.equals(block.getSignature(), signature) || !block.isSignatureValid()) {
+				LOGGER.debug(() -> String.format("Peer %s sent block with invalid signature for %.8s", peer, Base58.encode(signature)));
+				wasInvalidSignatureReceived = true;
+				continue;
+			}
+
+			return new FetchResult(FetchStatus.OK, signature, block, peer);
+		}
+
+		return new FetchResult(wasInvalidSignatureReceived ? FetchStatus.INVALID_SIGNATURE : FetchStatus.NO_REPLY, signature, null, null);
+	}
+
+}
@@ -414,7 +414,7 @@ public class BlockMinter extends Thread {
 					BlockData newBlockData = newBlock.getBlockData();
 
 					Network network = Network.getInstance();
-					network.broadcast(broadcastPeer -> network.buildHeightMessage(broadcastPeer, newBlockData));
+					network.broadcast(network.buildHeightMessage(newBlockData));
 				}
 			}
 		} catch (DataException e) {
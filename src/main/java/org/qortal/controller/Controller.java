@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.Security;
@@ -38,6 +39,7 @@ import org.qortal.block.BlockChain.BlockTimingByHeight;
 import org.qortal.controller.arbitrary.*;
 import org.qortal.controller.repository.PruneManager;
 import org.qortal.controller.repository.NamesDatabaseIntegrityCheck;
+import org.qortal.controller.repository.TradeCandlesBuilder;
 import org.qortal.controller.tradebot.TradeBot;
 import org.qortal.data.block.BlockData;
 import org.qortal.data.block.BlockSummaryData;
@@ -58,6 +60,8 @@ import org.qortal.repository.hsqldb.HSQLDBRepositoryFactory;
 import org.qortal.settings.Settings;
 import org.qortal.transaction.Transaction;
 import org.qortal.transaction.Transaction.TransactionType;
+import org.qortal.transform.Transformer;
+import org.qortal.transform.block.BlockTransformer;
 import org.qortal.utils.*;
 
 public class Controller extends Thread {
@@ -105,6 +109,20 @@ public class Controller extends Thread {
 		}
 	};
 
+	/** Number of archived blocks read ahead, after the one requested, when serving an archived block to a peer */
+	private static final int ARCHIVE_READ_AHEAD_BLOCKS = 20;
+	/** Maximum number of read-ahead archived blocks to keep */
+	private static final int ARCHIVED_BLOCK_CACHE_SIZE = 200;
+
+	/** Cache of BlockMessages read ahead from block archive, indexed by block signature */
+	@SuppressWarnings("serial")
+	private final Map<ByteArray, CachedBlockMessage> archivedBlockMessageCache = Collections.synchronizedMap(new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ByteArray, CachedBlockMessage> eldest) {
+			return this.size() > ARCHIVED_BLOCK_CACHE_SIZE;
+		}
+	});
+
 	private long repositoryBackupTimestamp = startTime; // ms
 	private long repositoryMaintenanceTimestamp = startTime; // ms
 	private long repositoryCheckpointTimestamp = startTime; // ms
@@ -125,6 +143,8 @@ public class Controller extends Thread {
 			public AtomicLong cacheHits = new AtomicLong();
 			public AtomicLong unknownBlocks = new AtomicLong();
 			public AtomicLong cacheFills = new AtomicLong();
+			public AtomicLong archiveCacheHits = new AtomicLong();
+			public AtomicLong archiveReadAheads = new AtomicLong();
 
 			public GetBlockMessageStats() {
 			}
@@ -369,6 +389,9 @@ public class Controller extends Thread {
 			namesDatabaseIntegrityCheck.runIntegrityCheck();
 		}
 
+		// Build trade candles from existing trades, if not done already
+		TradeCandlesBuilder.buildIfNeeded();
+
 		LOGGER.info("Validating blockchain");
 		try {
 			BlockChain.validate();
@@ -945,12 +968,12 @@ public class Controller extends Thread {
 
 		// Send our current height
 		BlockData latestBlockData = getChainTip();
-		network.broadcast(peer -> network.buildHeightMessage(peer, latestBlockData));
+		network.broadcast(network.buildHeightMessage(latestBlockData));
 
 		// Request unconfirmed transaction signatures, but only if we're up-to-date.
 		// If we're NOT up-to-date then priority is synchronizing first
 		if (isUpToDate())
-			network.broadcast(network::buildGetUnconfirmedTransactionsMessage);
+			network.broadcast(new GetUnconfirmedTransactionsMessage());
 	}
 
 	public void onMintingPossibleChange(boolean isMintingPossible) {
@@ -1102,7 +1125,7 @@ public class Controller extends Thread {
 		this.callbackExecutor.execute(() -> {
 			// Notify all peers
 			Message newTransactionSignatureMessage = new TransactionSignaturesMessage(Arrays.asList(transactionData.getSignature()));
-			Network.getInstance().broadcast(broadcastPeer -> newTransactionSignatureMessage);
+			Network.getInstance().broadcast(newTransactionSignatureMessage);
 
 			// Notify listeners
 			EventBus.INSTANCE.notify(new NewTransactionEvent(transactionData));
@@ -1249,6 +1272,20 @@ public class Controller extends Thread {
 			return;
 		}
 
+		// Check archived blocks read ahead of earlier requests
+		if (Settings.getInstance().isArchiveEnabled()) {
+			CachedBlockMessage archivedBlockMessage = this.archivedBlockMessageCache.get(signatureAsByteArray);
+
+			if (archivedBlockMessage != null) {
+				this.stats.getBlockMessageStats.archiveCacheHits.incrementAndGet();
+
+				if (!peer.sendMessage(archivedBlockMessage.cloneWithNewId(message.getId())))
+					peer.disconnect("failed to send block");
+
+				return;
+			}
+		}
+
 		try (final Repository repository = RepositoryManager.getRepository()) {
 			BlockData blockData = repository.getBlockRepository().fromSignature(signature);
 
@@ -1262,10 +1299,9 @@ public class Controller extends Thread {
 			// If we have no block data, we should check the archive in case it's there
 			if (blockData == null) {
 				if (Settings.getInstance().isArchiveEnabled()) {
-					byte[] bytes = BlockArchiveReader.getInstance().fetchSerializedBlockBytesForSignature(signature, true, repository);
-					if (bytes != null) {
-						CachedBlockMessage blockMessage = new CachedBlockMessage(bytes);
-						blockMessage.setId(message.getId());
+					CachedBlockMessage archivedBlockMessage = this.readAheadArchivedBlocks(signature, repository);
+					if (archivedBlockMessage != null) {
+						CachedBlockMessage blockMessage = archivedBlockMessage.cloneWithNewId(message.getId());
 
 						// This call also causes the other needed data to be pulled in from repository
 						if (!peer.sendMessage(blockMessage)) {
@@ -1318,6 +1354,37 @@ public class Controller extends Thread {
 		}
 	}
 
+	/**
+	 * Returns BLOCK message for archived block with <tt>signature</tt>, or null if not archived.
+	 * <p>
+	 * Peers catching up request blocks in height order, so the following blocks are streamed from the archive
+	 * at the same time and cached, saving a repository lookup and archive read for each subsequent request.
+	 */
+	private CachedBlockMessage readAheadArchivedBlocks(byte[] signature, Repository repository) throws DataException {
+		BlockArchiveReader reader = BlockArchiveReader.getInstance();
+
+		Integer height = reader.fetchHeightForSignature(signature, repository);
+		if (height == null)
+			return null;
+
+		this.stats.getBlockMessageStats.archiveReadAheads.incrementAndGet();
+
+		List<CachedBlockMessage> blockMessages = new ArrayList<>(ARCHIVE_READ_AHEAD_BLOCKS + 1);
+		reader.streamSerializedBlocks(height, height + ARCHIVE_READ_AHEAD_BLOCKS, (blockHeight, serializedBlock) -> {
+			// BLOCK message data is block height followed by serialized block, as in CachedBlockMessage
+			ByteBuffer messageData = ByteBuffer.allocate(Transformer.INT_LENGTH + serializedBlock.remaining());
+			messageData.putInt(blockHeight);
+			messageData.put(serializedBlock.duplicate());
+
+			CachedBlockMessage blockMessage = new CachedBlockMessage(messageData.array());
+			this.archivedBlockMessageCache.put(ByteArray.wrap(BlockTransformer.getSignatureFromByteBuffer(serializedBlock)), blockMessage);
+			blockMessages.add(blockMessage);
+			return true;
+		});
+
+		return blockMessages.isEmpty() ? null : blockMessages.get(0);
+	}
+
 	private void onNetworkGetBlockSummariesMessage(Peer peer, Message message) {
 		GetBlockSummariesMessage getBlockSummariesMessage = (GetBlockSummariesMessage) message;
 		final byte[] parentSignature = getBlockSummariesMessage.getParentSignature();
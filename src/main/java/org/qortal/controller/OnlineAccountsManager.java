@@ -1,5 +1,6 @@
 package org.qortal.controller;
 
+import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Longs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -17,13 +18,31 @@ import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
 import org.qortal.utils.NTP;
 
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class OnlineAccountsManager extends Thread {
 
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class StatsSnapshot {
+        public int onlineAccountsCount;
+        public int importQueueSize;
+        public long importedCount;
+        public long rejectedCount;
+        public int lastImportBatchSize;
+        public long lastImportBatchDuration; // ms
+        public double lastImportRate; // accounts per second
+
+        public StatsSnapshot() {
+        }
+    }
+
     private class OurOnlineAccountsThread extends Thread {
 
         public void run() {
@@ -58,11 +77,17 @@ public class OnlineAccountsManager extends Thread {
 
     private long onlineAccountsTasksTimestamp = Controller.startTime + ONLINE_ACCOUNTS_TASKS_INTERVAL; // ms
 
-    private final List<OnlineAccountData> onlineAccountsImportQueue = Collections.synchronizedList(new ArrayList<>());
+    private final Set<OnlineAccountData> onlineAccountsImportQueue = ConcurrentHashMap.newKeySet();
+
+    // Import stats
+    private final AtomicLong importedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile int lastImportBatchSize = 0;
+    private volatile long lastImportBatchDuration = 0L; // ms
 
 
     /** Cache of current 'online accounts' */
-    List<OnlineAccountData> onlineAccounts = new ArrayList<>();
+    private final OnlineAccountsStore onlineAccounts = new OnlineAccountsStore();
     /** Cache of latest blocks' online accounts */
     Deque<List<OnlineAccountData>> latestBlocksOnlineAccounts = new ArrayDeque<>(MAX_BLOCKS_CACHED_ONLINE_ACCOUNTS);
 
@@ -127,20 +152,30 @@ public class OnlineAccountsManager extends Thread {
 
         LOGGER.debug("Processing online accounts import queue (size: {})", this.onlineAccountsImportQueue.size());
 
+        final long startTime = System.currentTimeMillis();
+        int batchSize = 0;
+
         try (final Repository repository = RepositoryManager.getRepository()) {
 
-            List<OnlineAccountData> onlineAccountDataCopy = new ArrayList<>(this.onlineAccountsImportQueue);
-            for (OnlineAccountData onlineAccountData : onlineAccountDataCopy) {
+            // Concurrent set iteration is weakly consistent, so entries added while we're iterating may or may not be included
+            Iterator<OnlineAccountData> iterator = this.onlineAccountsImportQueue.iterator();
+            while (iterator.hasNext()) {
                 if (isStopping) {
                     return;
                 }
 
+                OnlineAccountData onlineAccountData = iterator.next();
+
                 this.verifyAndAddAccount(repository, onlineAccountData);
+                ++batchSize;
 
                 // Remove from queue
-                onlineAccountsImportQueue.remove(onlineAccountData);
+                iterator.remove();
             }
 
+            this.lastImportBatchSize = batchSize;
+            this.lastImportBatchDuration = System.currentTimeMillis() - startTime;
+
             LOGGER.debug("Finished processing online accounts import queue");
             
         } catch (DataException e) {
@@ -161,6 +196,14 @@ public class OnlineAccountsManager extends Thread {
         // Check timestamp is 'recent' here
         if (Math.abs(onlineAccountData.getTimestamp() - now) > ONLINE_TIMESTAMP_MODULUS * 2) {
             LOGGER.trace(() -> String.format("Rejecting online account %s with out of range timestamp %d", otherAccount.getAddress(), onlineAccountData.getTimestamp()));
+            this.rejectedCount.incrementAndGet();
+            return;
+        }
+
+        // No point verifying if we already have same, or newer, entry
+        OnlineAccountData existingAccountData = this.onlineAccounts.get(onlineAccountData.getPublicKey());
+        if (existingAccountData != null && existingAccountData.getTimestamp() >= onlineAccountData.getTimestamp()) {
+            LOGGER.trace(() -> String.format("Not updating existing online account %s", otherAccount.getAddress()));
             return;
         }
 
@@ -168,6 +211,7 @@ public class OnlineAccountsManager extends Thread {
         byte[] data = Longs.toByteArray(onlineAccountData.getTimestamp());
         if (!otherAccount.verify(onlineAccountData.getSignature(), data)) {
             LOGGER.trace(() -> String.format("Rejecting invalid online account %s", otherAccount.getAddress()));
+            this.rejectedCount.incrementAndGet();
             return;
         }
 
@@ -176,6 +220,7 @@ public class OnlineAccountsManager extends Thread {
         if (rewardShareData == null) {
             // Reward-share doesn't even exist - probably not a good sign
             LOGGER.trace(() -> String.format("Rejecting unknown online reward-share public key %s", Base58.encode(onlineAccountData.getPublicKey())));
+            this.rejectedCount.incrementAndGet();
             return;
         }
 
@@ -183,28 +228,18 @@ public class OnlineAccountsManager extends Thread {
         if (!mintingAccount.canMint()) {
             // Minting-account component of reward-share can no longer mint - disregard
             LOGGER.trace(() -> String.format("Rejecting online reward-share with non-minting account %s", mintingAccount.getAddress()));
+            this.rejectedCount.incrementAndGet();
             return;
         }
 
-        synchronized (this.onlineAccounts) {
-            OnlineAccountData existingAccountData = this.onlineAccounts.stream().filter(account -> Arrays.equals(account.getPublicKey(), onlineAccountData.getPublicKey())).findFirst().orElse(null);
-
-            if (existingAccountData != null) {
-                if (existingAccountData.getTimestamp() < onlineAccountData.getTimestamp()) {
-                    this.onlineAccounts.remove(existingAccountData);
-
-                    LOGGER.trace(() -> String.format("Updated online account %s with timestamp %d (was %d)", otherAccount.getAddress(), onlineAccountData.getTimestamp(), existingAccountData.getTimestamp()));
-                } else {
-                    LOGGER.trace(() -> String.format("Not updating existing online account %s", otherAccount.getAddress()));
-
-                    return;
-                }
-            } else {
-                LOGGER.trace(() -> String.format("Added online account %s with timestamp %d", otherAccount.getAddress(), onlineAccountData.getTimestamp()));
-            }
-
-            this.onlineAccounts.add(onlineAccountData);
+        if (!this.onlineAccounts.addOrUpdate(onlineAccountData)) {
+            // Another thread beat us to it
+            LOGGER.trace(() -> String.format("Not updating existing online account %s", otherAccount.getAddress()));
+            return;
         }
+
+        this.importedCount.incrementAndGet();
+        LOGGER.trace(() -> String.format("Added online account %s with timestamp %d", otherAccount.getAddress(), onlineAccountData.getTimestamp()));
     }
 
     public void ensureTestingAccountsOnline(PrivateKeyAccount... onlineAccounts) {
@@ -220,19 +255,19 @@ public class OnlineAccountsManager extends Thread {
         final long onlineAccountsTimestamp = toOnlineAccountTimestamp(now);
         byte[] timestampBytes = Longs.toByteArray(onlineAccountsTimestamp);
 
-        synchronized (this.onlineAccounts) {
-            this.onlineAccounts.clear();
+        List<OnlineAccountData> testingOnlineAccounts = new ArrayList<>();
 
-            for (PrivateKeyAccount onlineAccount : onlineAccounts) {
-                // Check mintingAccount is actually reward-share?
+        for (PrivateKeyAccount onlineAccount : onlineAccounts) {
+            // Check mintingAccount is actually reward-share?
 
-                byte[] signature = onlineAccount.sign(timestampBytes);
-                byte[] publicKey = onlineAccount.getPublicKey();
+            byte[] signature = onlineAccount.sign(timestampBytes);
+            byte[] publicKey = onlineAccount.getPublicKey();
 
-                OnlineAccountData ourOnlineAccountData = new OnlineAccountData(onlineAccountsTimestamp, signature, publicKey);
-                this.onlineAccounts.add(ourOnlineAccountData);
-            }
+            OnlineAccountData ourOnlineAccountData = new OnlineAccountData(onlineAccountsTimestamp, signature, publicKey);
+            testingOnlineAccounts.add(ourOnlineAccountData);
         }
+
+        this.onlineAccounts.replaceAll(testingOnlineAccounts);
     }
 
     private void performOnlineAccountsTasks() {
@@ -242,28 +277,17 @@ public class OnlineAccountsManager extends Thread {
 
         // Expire old entries
         final long cutoffThreshold = now - LAST_SEEN_EXPIRY_PERIOD;
-        synchronized (this.onlineAccounts) {
-            Iterator<OnlineAccountData> iterator = this.onlineAccounts.iterator();
-            while (iterator.hasNext()) {
-                OnlineAccountData onlineAccountData = iterator.next();
+        List<OnlineAccountData> expiredOnlineAccounts = this.onlineAccounts.expire(cutoffThreshold);
 
-                if (onlineAccountData.getTimestamp() < cutoffThreshold) {
-                    iterator.remove();
-
-                    LOGGER.trace(() -> {
-                        PublicKeyAccount otherAccount = new PublicKeyAccount(null, onlineAccountData.getPublicKey());
-                        return String.format("Removed expired online account %s with timestamp %d", otherAccount.getAddress(), onlineAccountData.getTimestamp());
-                    });
-                }
+        if (LOGGER.isTraceEnabled())
+            for (OnlineAccountData onlineAccountData : expiredOnlineAccounts) {
+                PublicKeyAccount otherAccount = new PublicKeyAccount(null, onlineAccountData.getPublicKey());
+                LOGGER.trace(String.format("Removed expired online account %s with timestamp %d", otherAccount.getAddress(), onlineAccountData.getTimestamp()));
             }
-        }
 
         // Request data from other peers?
         if ((this.onlineAccountsTasksTimestamp % ONLINE_ACCOUNTS_BROADCAST_INTERVAL) < ONLINE_ACCOUNTS_TASKS_INTERVAL) {
-            List<OnlineAccountData> safeOnlineAccounts;
-            synchronized (this.onlineAccounts) {
-                safeOnlineAccounts = new ArrayList<>(this.onlineAccounts);
-            }
+            List<OnlineAccountData> safeOnlineAccounts = this.onlineAccounts.getAll();
 
             Message messageV1 = new GetOnlineAccountsMessage(safeOnlineAccounts);
             Message messageV2 = new GetOnlineAccountsV2Message(safeOnlineAccounts);
@@ -325,33 +349,21 @@ public class OnlineAccountsManager extends Thread {
         byte[] timestampBytes = Longs.toByteArray(onlineAccountsTimestamp);
         List<OnlineAccountData> ourOnlineAccounts = new ArrayList<>();
 
-        MINTING_ACCOUNTS:
         for (MintingAccountData mintingAccountData : mintingAccounts) {
             PrivateKeyAccount mintingAccount = new PrivateKeyAccount(null, mintingAccountData.getPrivateKey());
 
+            // If our online account is already present, with same timestamp, then move on to next mintingAccount
+            OnlineAccountData existingOnlineAccountData = this.onlineAccounts.get(mintingAccount.getPublicKey());
+            if (existingOnlineAccountData != null && existingOnlineAccountData.getTimestamp() == onlineAccountsTimestamp)
+                continue;
+
             byte[] signature = mintingAccount.sign(timestampBytes);
             byte[] publicKey = mintingAccount.getPublicKey();
 
-            // Our account is online
+            // Our account is online, replacing any older entry
             OnlineAccountData ourOnlineAccountData = new OnlineAccountData(onlineAccountsTimestamp, signature, publicKey);
-            synchronized (this.onlineAccounts) {
-                Iterator<OnlineAccountData> iterator = this.onlineAccounts.iterator();
-                while (iterator.hasNext()) {
-                    OnlineAccountData existingOnlineAccountData = iterator.next();
-
-                    if (Arrays.equals(existingOnlineAccountData.getPublicKey(), ourOnlineAccountData.getPublicKey())) {
-                        // If our online account is already present, with same timestamp, then move on to next mintingAccount
-                        if (existingOnlineAccountData.getTimestamp() == onlineAccountsTimestamp)
-                            continue MINTING_ACCOUNTS;
-
-                        // If our online account is already present, but with older timestamp, then remove it
-                        iterator.remove();
-                        break;
-                    }
-                }
-
-                this.onlineAccounts.add(ourOnlineAccountData);
-            }
+            if (!this.onlineAccounts.addOrUpdate(ourOnlineAccountData))
+                continue;
 
             LOGGER.trace(() -> String.format("Added our online account %s with timestamp %d", mintingAccount.getAddress(), onlineAccountsTimestamp));
             ourOnlineAccounts.add(ourOnlineAccountData);
@@ -379,9 +391,23 @@ public class OnlineAccountsManager extends Thread {
     public List<OnlineAccountData> getOnlineAccounts() {
         final long onlineTimestamp = toOnlineAccountTimestamp(NTP.getTime());
 
-        synchronized (this.onlineAccounts) {
-            return this.onlineAccounts.stream().filter(account -> account.getTimestamp() == onlineTimestamp).collect(Collectors.toList());
-        }
+        return this.onlineAccounts.getByTimestamp(onlineTimestamp);
+    }
+
+    public StatsSnapshot getStatsSnapshot() {
+        StatsSnapshot snapshot = new StatsSnapshot();
+
+        snapshot.onlineAccountsCount = this.onlineAccounts.size();
+        snapshot.importQueueSize = this.onlineAccountsImportQueue.size();
+        snapshot.importedCount = this.importedCount.get();
+        snapshot.rejectedCount = this.rejectedCount.get();
+
+        // Read together, but there's no harm if these are slightly out of step
+        snapshot.lastImportBatchSize = this.lastImportBatchSize;
+        snapshot.lastImportBatchDuration = this.lastImportBatchDuration;
+        snapshot.lastImportRate = snapshot.lastImportBatchSize * 1000.0 / Math.max(1L, snapshot.lastImportBatchDuration);
+
+        return snapshot;
     }
 
 
@@ -414,32 +440,30 @@ public class OnlineAccountsManager extends Thread {
 
     // Network handlers
 
-    public void onNetworkGetOnlineAccountsMessage(Peer peer, Message message) {
-        GetOnlineAccountsMessage getOnlineAccountsMessage = (GetOnlineAccountsMessage) message;
+    /** Returns snapshot of online accounts, minus entries with matching timestamp & public key in <tt>excludeAccounts</tt>. */
+    private List<OnlineAccountData> getOnlineAccountsExcluding(List<OnlineAccountData> excludeAccounts) {
+        List<OnlineAccountData> accountsToSend = this.onlineAccounts.getAll();
 
-        List<OnlineAccountData> excludeAccounts = getOnlineAccountsMessage.getOnlineAccounts();
+        Set<ByteArray> excludeKeys = new HashSet<>(excludeAccounts.size());
+        for (OnlineAccountData excludeAccountData : excludeAccounts)
+            excludeKeys.add(toExclusionKey(excludeAccountData));
 
-        // Send online accounts info, excluding entries with matching timestamp & public key from excludeAccounts
-        List<OnlineAccountData> accountsToSend;
-        synchronized (this.onlineAccounts) {
-            accountsToSend = new ArrayList<>(this.onlineAccounts);
-        }
+        accountsToSend.removeIf(onlineAccountData -> excludeKeys.contains(toExclusionKey(onlineAccountData)));
+
+        return accountsToSend;
+    }
 
-        Iterator<OnlineAccountData> iterator = accountsToSend.iterator();
+    private static ByteArray toExclusionKey(OnlineAccountData onlineAccountData) {
+        return ByteArray.wrap(Bytes.concat(Longs.toByteArray(onlineAccountData.getTimestamp()), onlineAccountData.getPublicKey()));
+    }
 
-        SEND_ITERATOR:
-        while (iterator.hasNext()) {
-            OnlineAccountData onlineAccountData = iterator.next();
+    public void onNetworkGetOnlineAccountsMessage(Peer peer, Message message) {
+        GetOnlineAccountsMessage getOnlineAccountsMessage = (GetOnlineAccountsMessage) message;
 
-            for (int i = 0; i < excludeAccounts.size(); ++i) {
-                OnlineAccountData excludeAccountData = excludeAccounts.get(i);
+        List<OnlineAccountData> excludeAccounts = getOnlineAccountsMessage.getOnlineAccounts();
 
-                if (onlineAccountData.getTimestamp() == excludeAccountData.getTimestamp() && Arrays.equals(onlineAccountData.getPublicKey(), excludeAccountData.getPublicKey())) {
-                    iterator.remove();
-                    continue SEND_ITERATOR;
-                }
-            }
-        }
+        // Send online accounts info, excluding entries with matching timestamp & public key from excludeAccounts
+        List<OnlineAccountData> accountsToSend = this.getOnlineAccountsExcluding(excludeAccounts);
 
         Message onlineAccountsMessage = new OnlineAccountsMessage(accountsToSend);
         peer.sendMessage(onlineAccountsMessage);
@@ -467,26 +491,7 @@ public class OnlineAccountsManager extends Thread {
         List<OnlineAccountData> excludeAccounts = getOnlineAccountsMessage.getOnlineAccounts();
 
         // Send online accounts info, excluding entries with matching timestamp & public key from excludeAccounts
-        List<OnlineAccountData> accountsToSend;
-        synchronized (this.onlineAccounts) {
-            accountsToSend = new ArrayList<>(this.onlineAccounts);
-        }
-
-        Iterator<OnlineAccountData> iterator = accountsToSend.iterator();
-
-        SEND_ITERATOR:
-        while (iterator.hasNext()) {
-            OnlineAccountData onlineAccountData = iterator.next();
-
-            for (int i = 0; i < excludeAccounts.size(); ++i) {
-                OnlineAccountData excludeAccountData = excludeAccounts.get(i);
-
-                if (onlineAccountData.getTimestamp() == excludeAccountData.getTimestamp() && Arrays.equals(onlineAccountData.getPublicKey(), excludeAccountData.getPublicKey())) {
-                    iterator.remove();
-                    continue SEND_ITERATOR;
-                }
-            }
-        }
+        List<OnlineAccountData> accountsToSend = this.getOnlineAccountsExcluding(excludeAccounts);
 
         Message onlineAccountsMessage = new OnlineAccountsV2Message(accountsToSend);
         peer.sendMessage(onlineAccountsMessage);
@@ -511,11 +516,10 @@ public class OnlineAccountsManager extends Thread {
             }
 
             // Is it already in the import queue?
-            if (onlineAccountsImportQueue.contains(onlineAccountData)) {
+            if (!onlineAccountsImportQueue.add(onlineAccountData)) {
                 continue;
             }
 
-            onlineAccountsImportQueue.add(onlineAccountData);
             importCount++;
         }
 
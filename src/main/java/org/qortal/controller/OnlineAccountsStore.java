@@ -0,0 +1,159 @@
+package org.qortal.controller;
+
+import org.qortal.data.network.OnlineAccountData;
+import org.qortal.utils.ByteArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent store of online accounts, keyed by reward-share public key and bucketed by online timestamp.
+ * <p>
+ * There is at most one entry per reward-share public key, the one with the latest timestamp.
+ * <p>
+ * Updates for a given public key are serialized by {@link ConcurrentHashMap#compute}, which only locks
+ * the affected hash bin, so imports of different accounts don't contend with each other or with readers.
+ * <p>
+ * Timestamp buckets allow fetching accounts for a particular online timestamp, and expiring old entries,
+ * without scanning the whole store.
+ */
+public class OnlineAccountsStore {
+
+    /** Latest online account entry, keyed by reward-share public key */
+    private final ConcurrentHashMap<ByteArray, OnlineAccountData> onlineAccountsByPublicKey = new ConcurrentHashMap<>();
+
+    /** Online account entries, bucketed by online timestamp */
+    private final ConcurrentSkipListMap<Long, Set<OnlineAccountData>> onlineAccountsByTimestamp = new ConcurrentSkipListMap<>();
+
+    /** Latest cutoff passed to {@link #expire(long)}. Entries with older timestamps are not (re)added. */
+    private final AtomicLong expiryCutoffTimestamp = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Adds online account, replacing any existing entry for the same public key if ours is newer.
+     *
+     * @return true if entry was added or replaced an older entry, false if an existing entry is the same age or newer.
+     */
+    public boolean addOrUpdate(OnlineAccountData onlineAccountData) {
+        boolean[] wasUpdated = new boolean[] { false };
+
+        this.onlineAccountsByPublicKey.compute(ByteArray.wrap(onlineAccountData.getPublicKey()), (publicKey, existingAccountData) -> {
+            if (onlineAccountData.getTimestamp() < this.expiryCutoffTimestamp.get())
+                return existingAccountData;
+
+            if (existingAccountData != null) {
+                if (existingAccountData.getTimestamp() >= onlineAccountData.getTimestamp())
+                    return existingAccountData;
+
+                Set<OnlineAccountData> existingBucket = this.onlineAccountsByTimestamp.get(existingAccountData.getTimestamp());
+                if (existingBucket != null)
+                    existingBucket.remove(existingAccountData);
+            }
+
+            // Expired while we were adding? Any existing entry is older still, so drop that too
+            if (!this.addToBucket(onlineAccountData))
+                return null;
+
+            wasUpdated[0] = true;
+
+            return onlineAccountData;
+        });
+
+        return wasUpdated[0];
+    }
+
+    /** Adds entry to its timestamp bucket, returning false if timestamp has been expired. */
+    private boolean addToBucket(OnlineAccountData onlineAccountData) {
+        final long timestamp = onlineAccountData.getTimestamp();
+
+        while (true) {
+            // Don't recreate a bucket that has just been expired
+            if (timestamp < this.expiryCutoffTimestamp.get())
+                return false;
+
+            Set<OnlineAccountData> bucket = this.onlineAccountsByTimestamp.computeIfAbsent(timestamp, k -> ConcurrentHashMap.newKeySet());
+            bucket.add(onlineAccountData);
+
+            // If bucket was expired while we were adding to it, then try again with a fresh bucket
+            if (this.onlineAccountsByTimestamp.get(timestamp) == bucket)
+                return true;
+
+            bucket.remove(onlineAccountData);
+        }
+    }
+
+    /** Returns whether store contains exact entry (timestamp, signature and public key). */
+    public boolean contains(OnlineAccountData onlineAccountData) {
+        OnlineAccountData existingAccountData = this.onlineAccountsByPublicKey.get(ByteArray.wrap(onlineAccountData.getPublicKey()));
+        return existingAccountData != null && existingAccountData.equals(onlineAccountData);
+    }
+
+    /** Returns entry for reward-share public key, or null. */
+    public OnlineAccountData get(byte[] publicKey) {
+        return this.onlineAccountsByPublicKey.get(ByteArray.wrap(publicKey));
+    }
+
+    /** Returns snapshot of entries with exactly matching online timestamp. */
+    public List<OnlineAccountData> getByTimestamp(long timestamp) {
+        Set<OnlineAccountData> bucket = this.onlineAccountsByTimestamp.get(timestamp);
+        if (bucket == null)
+            return new ArrayList<>();
+
+        return new ArrayList<>(bucket);
+    }
+
+    /** Returns snapshot of all entries. */
+    public List<OnlineAccountData> getAll() {
+        return new ArrayList<>(this.onlineAccountsByPublicKey.values());
+    }
+
+    /**
+     * Removes entries with online timestamp older than <tt>cutoffTimestamp</tt>.
+     *
+     * @return list of removed entries
+     */
+    public List<OnlineAccountData> expire(long cutoffTimestamp) {
+        // Set cutoff first, so concurrent adds don't recreate buckets we're about to remove
+        this.expiryCutoffTimestamp.accumulateAndGet(cutoffTimestamp, Math::max);
+
+        NavigableMap<Long, Set<OnlineAccountData>> expiredBuckets = this.onlineAccountsByTimestamp.headMap(cutoffTimestamp, false);
+        if (expiredBuckets.isEmpty())
+            return Collections.emptyList();
+
+        List<OnlineAccountData> expiredAccounts = new ArrayList<>();
+
+        Map.Entry<Long, Set<OnlineAccountData>> bucketEntry;
+        while ((bucketEntry = expiredBuckets.pollFirstEntry()) != null)
+            for (OnlineAccountData onlineAccountData : bucketEntry.getValue())
+                // Only remove if not replaced by newer entry in the meantime
+                if (this.onlineAccountsByPublicKey.remove(ByteArray.wrap(onlineAccountData.getPublicKey()), onlineAccountData))
+                    expiredAccounts.add(onlineAccountData);
+
+        return expiredAccounts;
+    }
+
+    /** Replaces all entries with passed online accounts. */
+    public void replaceAll(List<OnlineAccountData> onlineAccounts) {
+        this.clear();
+
+        for (OnlineAccountData onlineAccountData : onlineAccounts)
+            this.addOrUpdate(onlineAccountData);
+    }
+
+    public void clear() {
+        this.onlineAccountsByPublicKey.clear();
+        this.onlineAccountsByTimestamp.clear();
+        this.expiryCutoffTimestamp.set(Long.MIN_VALUE);
+    }
+
+    public int size() {
+        return this.onlineAccountsByPublicKey.size();
+    }
+
+}
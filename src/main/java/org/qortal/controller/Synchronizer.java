@@ -5,10 +5,23 @@ import java.security.SecureRandom;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.account.Account;
@@ -41,7 +54,9 @@ import org.qortal.settings.Settings;
 import org.qortal.transaction.Transaction;
 import org.qortal.utils.Base58;
 import org.qortal.utils.ByteArray;
+import org.qortal.utils.DaemonThreadFactory;
 import org.qortal.utils.NTP;
+import org.qortal.utils.Pair;
 
 public class Synchronizer extends Thread {
 
@@ -63,6 +78,13 @@ public class Synchronizer extends Thread {
 
 	private static final long RECOVERY_MODE_TIMEOUT = 10 * 60 * 1000L; // ms
 
+	/** Maximum number of peers we query at the same time when finding common blocks or comparing peers */
+	private static final int MAX_CONCURRENT_PEER_REQUESTS = 8;
+	/** Maximum time we spend on one peer when finding common blocks or comparing peers */
+	private static final long PEER_REQUEST_TIMEOUT = 30 * 1000L; // ms
+	/** How often we check for timed-out peer requests */
+	private static final long PEER_REQUEST_CHECK_INTERVAL = 500L; // ms
+
 
 	private boolean running;
 
@@ -92,6 +114,20 @@ public class Synchronizer extends Thread {
 	public Long timeValidBlockLastReceived = null;
 	public Long timeInvalidBlockLastReceived = null;
 
+	/**
+	 * Used to query multiple peers at the same time, as each request is mostly spent waiting for a response.
+	 * <p>
+	 * Not fixed-size, as timed-out requests are left to finish in the background
+	 * and mustn't hold up later rounds. Concurrency is limited per round instead.
+	 */
+	private final ExecutorService peerRequestExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("Synchronizer-Peers"));
+
+	/** Used to fetch blocks from several peers at once while catching up, see {@link BlockFetchPipeline} */
+	private final ExecutorService blockFetchExecutor = Executors.newFixedThreadPool(Math.max(1, Settings.getInstance().getSyncBlockRequestWindow()), new DaemonThreadFactory("Synchronizer-Blocks"));
+
+	/** Durations of each phase of most recent sync attempt */
+	private volatile PhaseTimings lastPhaseTimings = new PhaseTimings();
+
 	private static Synchronizer instance;
 
 	public enum SynchronizationResult {
@@ -116,6 +152,35 @@ public class Synchronizer extends Thread {
 		}
 	}
 
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class PhaseTimings {
+		/** When sync attempt started, or null if no attempt yet */
+		public Long timestamp;
+		/** Number of peers left after initial filtering */
+		public int peerCount;
+		/** Number of peers that didn't complete within timeout */
+		public int timedOutPeerCount;
+		/** Time spent finding common blocks with peers (ms) */
+		public Long commonBlockSearchDuration;
+		/** Time spent fetching block summaries and comparing peers' chains (ms) */
+		public Long peerComparisonDuration;
+		/** Time spent actually synchronizing with chosen peer (ms), or null if no peer chosen */
+		public Long synchronizationDuration;
+
+		public PhaseTimings() {
+		}
+	}
+
+	/** Request made to a peer by {@link #requestFromPeers(List, PeerRequest)}, which mustn't change peer's state itself. */
+	private interface PeerRequest {
+		/** Returns update to apply to peer's state if request completes in time, or null if none. */
+		PeerUpdate run(Peer peer) throws DataException, InterruptedException;
+	}
+
+	private interface PeerUpdate {
+		void apply();
+	}
+
 	// Constructors
 
 	private Synchronizer() {
@@ -158,6 +223,8 @@ public class Synchronizer extends Thread {
 
 	public void shutdown() {
 		this.running = false;
+		this.peerRequestExecutor.shutdownNow();
+		this.blockFetchExecutor.shutdownNow();
 		this.interrupt();
 	}
 
@@ -195,6 +262,10 @@ public class Synchronizer extends Thread {
 		return this.recoveryMode;
 	}
 
+	public PhaseTimings getLastPhaseTimings() {
+		return this.lastPhaseTimings;
+	}
+
 
 	public boolean potentiallySynchronize() throws InterruptedException {
 		// Already synchronizing via another thread?
@@ -240,11 +311,20 @@ public class Synchronizer extends Thread {
 
 		final int peersBeforeComparison = peers.size();
 
+		PhaseTimings phaseTimings = new PhaseTimings();
+		phaseTimings.timestamp = System.currentTimeMillis();
+		phaseTimings.peerCount = peersBeforeComparison;
+		this.lastPhaseTimings = phaseTimings;
+
 		// Request recent block summaries from the remaining peers, and locate our common block with each
+		long phaseStart = System.currentTimeMillis();
 		Synchronizer.getInstance().findCommonBlocksWithPeers(peers);
+		phaseTimings.commonBlockSearchDuration = System.currentTimeMillis() - phaseStart;
 
 		// Compare the peers against each other, and against our chain, which will return an updated list excluding those without common blocks
+		phaseStart = System.currentTimeMillis();
 		peers = Synchronizer.getInstance().comparePeers(peers);
+		phaseTimings.peerComparisonDuration = System.currentTimeMillis() - phaseStart;
 
 		// We may have added more inferior chain tips when comparing peers, so remove any peers that are currently on those chains
 		peers.removeIf(Controller.hasInferiorChainTip);
@@ -273,7 +353,10 @@ public class Synchronizer extends Thread {
 		int index = new SecureRandom().nextInt(peers.size());
 		Peer peer = peers.get(index);
 
+		phaseStart = System.currentTimeMillis();
 		SynchronizationResult syncResult = actuallySynchronize(peer, false);
+		phaseTimings.synchronizationDuration = System.currentTimeMillis() - phaseStart;
+
 		if (syncResult == SynchronizationResult.NO_BLOCKCHAIN_LOCK) {
 			// No blockchain lock - force a retry by returning false
 			return false;
@@ -375,7 +458,7 @@ public class Synchronizer extends Thread {
 				inferiorChainSignatures.clear();
 
 				Network network = Network.getInstance();
-				network.broadcast(broadcastPeer -> network.buildHeightMessage(broadcastPeer, newChainTip));
+				network.broadcast(network.buildHeightMessage(newChainTip));
 
 				EventBus.INSTANCE.notify(new NewChainTipEvent(priorChainTip, newChainTip));
 			}
@@ -432,6 +515,8 @@ public class Synchronizer extends Thread {
 	 * Iterate through a list of supplied peers, and attempt to find our common block with each.
 	 * If a common block is found, its summary will be retained in the peer's commonBlockSummary property, for processing later.
 	 * <p>
+	 * Peers are queried concurrently, each with a time limit of {@link #PEER_REQUEST_TIMEOUT}.
+	 * <p>
 	 * Will return <tt>SynchronizationResult.OK</tt> on success.
 	 * <p>
 	 * @param peers
@@ -460,33 +545,52 @@ public class Synchronizer extends Thread {
 
 				LOGGER.debug(String.format("Searching for common blocks with %d peers...", peers.size()));
 				final long startTime = System.currentTimeMillis();
-				int commonBlocksFound = 0;
-				boolean wereNewRequestsMade = false;
 
+				List<Peer> peersToSearch = new ArrayList<>();
 				for (Peer peer : peers) {
-					// Are we shutting down?
-					if (Controller.isStopping())
-						return SynchronizationResult.SHUTTING_DOWN;
-
 					// Check if we can use the cached common block data, by comparing the peer's current chain tip against the peer's chain tip when we last found our common block
 					if (peer.canUseCachedCommonBlockData()) {
 						LOGGER.debug(String.format("Skipping peer %s because we already have the latest common block data in our cache. Cached common block sig is %.08s", peer, Base58.encode(peer.getCommonBlockData().getCommonBlockSummary().getSignature())));
-						commonBlocksFound++;
 						continue;
 					}
 
-					// Cached data is stale, so clear it and repopulate
-					peer.setCommonBlockData(null);
+					peersToSearch.add(peer);
+				}
 
-					// Search for the common block
-					Synchronizer.getInstance().findCommonBlockWithPeer(peer, repository);
-					if (peer.getCommonBlockData() != null)
-						commonBlocksFound++;
+				boolean wereNewRequestsMade = !peersToSearch.isEmpty();
 
-					// This round wasn't served entirely from the cache, so we may want to log the results
-					wereNewRequestsMade = true;
+				// Cached data is stale, so clear it and repopulate. Peers that don't respond in time are left without common block data.
+				Map<Peer, CommonBlockData> previousCommonBlockDataByPeer = new HashMap<>();
+				for (Peer peer : peersToSearch) {
+					previousCommonBlockDataByPeer.put(peer, peer.getCommonBlockData());
+					peer.setCommonBlockData(null);
 				}
 
+				// Search for common blocks with several peers at once, each using its own repository session
+				this.requestFromPeers(peersToSearch, peer -> {
+					final CommonBlockData commonBlockData;
+					try (final Repository peerRepository = RepositoryManager.getRepository()) {
+						commonBlockData = this.searchForCommonBlock(peer, peerRepository).getB();
+					}
+
+					if (commonBlockData == null)
+						return null;
+
+					// If common block hasn't changed then peer's chain has probably just grown,
+					// so keep previous block summaries in case they can be reused by comparePeers()
+					CommonBlockData previousCommonBlockData = previousCommonBlockDataByPeer.get(peer);
+					if (previousCommonBlockData != null
+							&& commonBlockData.getCommonBlockSummary().equals(previousCommonBlockData.getCommonBlockSummary()))
+						commonBlockData.setBlockSummariesAfterCommonBlock(previousCommonBlockData.getBlockSummariesAfterCommonBlock());
+
+					return () -> peer.setCommonBlockData(commonBlockData);
+				});
+
+				if (Controller.isStopping())
+					return SynchronizationResult.SHUTTING_DOWN;
+
+				int commonBlocksFound = (int) peers.stream().filter(peer -> peer.getCommonBlockData() != null).count();
+
 				if (wereNewRequestsMade) {
 					final long totalTimeTaken = System.currentTimeMillis() - startTime;
 					LOGGER.debug(String.format("Finished searching for common blocks with %d peer%s. Found: %d. Total time taken: %d ms", peers.size(), (peers.size() != 1 ? "s" : ""), commonBlocksFound, totalTimeTaken));
@@ -514,6 +618,19 @@ public class Synchronizer extends Thread {
 	 * @throws InterruptedException
 	 */
 	public SynchronizationResult findCommonBlockWithPeer(Peer peer, Repository repository) throws InterruptedException {
+		Pair<SynchronizationResult, CommonBlockData> searchResult = this.searchForCommonBlock(peer, repository);
+
+		peer.setCommonBlockData(searchResult.getB());
+
+		return searchResult.getA();
+	}
+
+	/**
+	 * Attempt to find our common block with supplied peer, without changing peer's state.
+	 *
+	 * @return result, as for {@link #findCommonBlockWithPeer(Peer, Repository)}, and common block data, or null if not found
+	 */
+	private Pair<SynchronizationResult, CommonBlockData> searchForCommonBlock(Peer peer, Repository repository) throws InterruptedException {
 		try {
 			final BlockData ourLatestBlockData = repository.getBlockRepository().getLastBlock();
 			final int ourInitialHeight = ourLatestBlockData.getHeight();
@@ -531,8 +648,7 @@ public class Synchronizer extends Thread {
 			SynchronizationResult findCommonBlockResult = fetchSummariesFromCommonBlock(repository, peer, ourInitialHeight, false, peerBlockSummaries, false);
 			if (findCommonBlockResult != SynchronizationResult.OK) {
 				// Logging performed by fetchSummariesFromCommonBlock() above
-				peer.setCommonBlockData(null);
-				return findCommonBlockResult;
+				return new Pair<>(findCommonBlockResult, null);
 			}
 
 			// First summary is common block
@@ -545,13 +661,11 @@ public class Synchronizer extends Thread {
 					commonBlockHeight, commonBlockSig58, commonBlockData.getTimestamp()));
 			peerBlockSummaries.remove(0);
 
-			// Store the common block summary against the peer, and the current chain tip (for caching)
-			peer.setCommonBlockData(new CommonBlockData(commonBlockSummary, peerChainTipData));
-
-			return SynchronizationResult.OK;
+			// Common block summary, and the current chain tip (for caching), to be stored against the peer
+			return new Pair<>(SynchronizationResult.OK, new CommonBlockData(commonBlockSummary, peerChainTipData));
 		} catch (DataException e) {
 			LOGGER.error("Repository issue during synchronization with peer", e);
-			return SynchronizationResult.REPOSITORY_ISSUE;
+			return new Pair<>(SynchronizationResult.REPOSITORY_ISSUE, null);
 		}
 	}
 
@@ -632,60 +746,18 @@ public class Synchronizer extends Thread {
 					final int ourAdditionalBlocksAfterCommonBlock = ourHeight - commonBlockSummary.getHeight();
 					int minChainLength = this.calculateMinChainLengthOfPeers(peersSharingCommonBlock, commonBlockSummary);
 
-					// Fetch block summaries from each peer
-					for (Peer peer : peersSharingCommonBlock) {
-
-						// If we're shutting down, just return the latest peer list
-						if (Controller.isStopping())
-							return peers;
+					// Fetch block summaries from several peers at once
+					List<Peer> incompletePeers = this.requestFromPeers(peersSharingCommonBlock, peer -> this.fetchSummariesAfterCommonBlock(peer, commonBlockSummary));
 
-						// Count the number of blocks this peer has beyond our common block
-						final PeerChainTipData peerChainTipData = peer.getChainTipData();
-						final int peerHeight = peerChainTipData.getLastHeight();
-						final byte[] peerLastBlockSignature = peerChainTipData.getLastBlockSignature();
-						final int peerAdditionalBlocksAfterCommonBlock = peerHeight - commonBlockSummary.getHeight();
-						// Limit the number of blocks we are comparing. FUTURE: we could request more in batches, but there may not be a case when this is needed
-						int summariesRequired = Math.min(peerAdditionalBlocksAfterCommonBlock, MAXIMUM_REQUEST_SIZE);
-
-						// Check if we can use the cached common block summaries, by comparing the peer's current chain tip against the peer's chain tip when we last found our common block
-						boolean useCachedSummaries = false;
-						if (peer.canUseCachedCommonBlockData()) {
-							if (peer.getCommonBlockData().getBlockSummariesAfterCommonBlock() != null) {
-								if (peer.getCommonBlockData().getBlockSummariesAfterCommonBlock().size() == summariesRequired) {
-									LOGGER.trace(String.format("Using cached block summaries for peer %s", peer));
-									useCachedSummaries = true;
-								}
-							}
-						}
+					// Exclude peers that didn't respond in time from this round
+					for (Peer peer : incompletePeers)
+						peer.getCommonBlockData().setBlockSummariesAfterCommonBlock(null);
 
-						if (useCachedSummaries == false) {
-							if (summariesRequired > 0) {
-								LOGGER.trace(String.format("Requesting %d block summar%s from peer %s after common block %.8s. Peer height: %d", summariesRequired, (summariesRequired != 1 ? "ies" : "y"), peer, Base58.encode(commonBlockSummary.getSignature()), peerHeight));
-
-								// Forget any cached summaries
-								peer.getCommonBlockData().setBlockSummariesAfterCommonBlock(null);
-
-								// Request new block summaries
-								List<BlockSummaryData> blockSummaries = this.getBlockSummaries(peer, commonBlockSummary.getSignature(), summariesRequired);
-								if (blockSummaries != null) {
-									LOGGER.trace(String.format("Peer %s returned %d block summar%s", peer, blockSummaries.size(), (blockSummaries.size() != 1 ? "ies" : "y")));
-
-									if (blockSummaries.size() < summariesRequired)
-										// This could mean that the peer has re-orged. Exclude this peer until they return the summaries we expect.
-										LOGGER.debug(String.format("Peer %s returned %d block summar%s instead of expected %d - excluding them from this round", peer, blockSummaries.size(), (blockSummaries.size() != 1 ? "ies" : "y"), summariesRequired));
-									else if (blockSummaryWithSignature(peerLastBlockSignature, blockSummaries) == null)
-										// We don't have a block summary for the peer's reported chain tip, so should exclude it
-										LOGGER.debug(String.format("Peer %s didn't return a block summary with signature %.8s - excluding them from this round", peer, Base58.encode(peerLastBlockSignature)));
-									else
-										// All looks good, so store the retrieved block summaries in the peer's cache
-										peer.getCommonBlockData().setBlockSummariesAfterCommonBlock(blockSummaries);
-								}
-							} else {
-								// There are no block summaries after this common block
-								peer.getCommonBlockData().setBlockSummariesAfterCommonBlock(null);
-							}
-						}
+					// If we're shutting down, just return the latest peer list
+					if (Controller.isStopping())
+						return peers;
 
+					for (Peer peer : peersSharingCommonBlock) {
 						// Ignore this peer if it holds an invalid block
 						if (this.containsInvalidBlockSummary(peer.getCommonBlockData().getBlockSummariesAfterCommonBlock())) {
 							LOGGER.debug("Ignoring peer %s because it holds an invalid block", peer);
@@ -803,6 +875,200 @@ public class Synchronizer extends Thread {
 		}
 	}
 
+	/**
+	 * Fetch peer's block summaries after common block, returning update that stores them in peer's common block data.
+	 * <p>
+	 * Cached summaries for the same common block are reused where possible:
+	 * if peer's chain has only grown since, then only the newer summaries are requested.
+	 * <p>
+	 * If peer doesn't return the summaries we expect, then peer's common block data ends up with no summaries,
+	 * excluding the peer from this round.
+	 */
+	private PeerUpdate fetchSummariesAfterCommonBlock(Peer peer, BlockSummaryData commonBlockSummary) throws InterruptedException {
+		// Count the number of blocks this peer has beyond our common block
+		final CommonBlockData commonBlockData = peer.getCommonBlockData();
+		final PeerChainTipData peerChainTipData = peer.getChainTipData();
+		final int peerHeight = peerChainTipData.getLastHeight();
+		final byte[] peerLastBlockSignature = peerChainTipData.getLastBlockSignature();
+		final int peerAdditionalBlocksAfterCommonBlock = peerHeight - commonBlockSummary.getHeight();
+		// Limit the number of blocks we are comparing. FUTURE: we could request more in batches, but there may not be a case when this is needed
+		final int summariesRequired = Math.min(peerAdditionalBlocksAfterCommonBlock, MAXIMUM_REQUEST_SIZE);
+
+		if (summariesRequired <= 0) {
+			// There are no block summaries after this common block
+			return () -> commonBlockData.setBlockSummariesAfterCommonBlock(null);
+		}
+
+		final List<BlockSummaryData> cachedSummaries = commonBlockData.getBlockSummariesAfterCommonBlock();
+		final int cachedSummariesCount = cachedSummaries != null ? cachedSummaries.size() : 0;
+
+		// Check if we can use the cached common block summaries, by comparing the peer's current chain tip against the peer's chain tip when we last found our common block
+		if (cachedSummariesCount == summariesRequired && peer.canUseCachedCommonBlockData()
+				&& blockSummaryWithSignature(peerLastBlockSignature, cachedSummaries) != null) {
+			LOGGER.trace(String.format("Using cached block summaries for peer %s", peer));
+			return null;
+		}
+
+		List<BlockSummaryData> blockSummaries = null;
+
+		if (cachedSummariesCount > 0 && cachedSummariesCount < summariesRequired) {
+			// Peer's chain has probably grown since we cached summaries, so only request the newer ones
+			BlockSummaryData lastCachedSummary = cachedSummaries.get(cachedSummariesCount - 1);
+			final int newSummariesRequired = summariesRequired - cachedSummariesCount;
+
+			LOGGER.trace(String.format("Requesting %d newer block summar%s from peer %s after cached block %.8s", newSummariesRequired, (newSummariesRequired != 1 ? "ies" : "y"), peer, Base58.encode(lastCachedSummary.getSignature())));
+
+			List<BlockSummaryData> newerSummaries = this.getBlockSummaries(peer, lastCachedSummary.getSignature(), newSummariesRequired);
+			// If peer doesn't have our last cached block, e.g. due to a re-org, then fall back to requesting all summaries
+			if (newerSummaries != null && newerSummaries.size() == newSummariesRequired) {
+				blockSummaries = new ArrayList<>(cachedSummaries);
+				blockSummaries.addAll(newerSummaries);
+			}
+		}
+
+		if (blockSummaries == null) {
+			LOGGER.trace(String.format("Requesting %d block summar%s from peer %s after common block %.8s. Peer height: %d", summariesRequired, (summariesRequired != 1 ? "ies" : "y"), peer, Base58.encode(commonBlockSummary.getSignature()), peerHeight));
+
+			blockSummaries = this.getBlockSummaries(peer, commonBlockSummary.getSignature(), summariesRequired);
+			if (blockSummaries == null)
+				// Forget any cached summaries, as peer didn't respond
+				return () -> commonBlockData.setBlockSummariesAfterCommonBlock(null);
+		}
+
+		LOGGER.trace(String.format("Peer %s returned %d block summar%s", peer, blockSummaries.size(), (blockSummaries.size() != 1 ? "ies" : "y")));
+
+		if (blockSummaries.size() < summariesRequired) {
+			// This could mean that the peer has re-orged. Exclude this peer until they return the summaries we expect.
+			LOGGER.debug(String.format("Peer %s returned %d block summar%s instead of expected %d - excluding them from this round", peer, blockSummaries.size(), (blockSummaries.size() != 1 ? "ies" : "y"), summariesRequired));
+			return () -> commonBlockData.setBlockSummariesAfterCommonBlock(null);
+		}
+
+		if (blockSummaryWithSignature(peerLastBlockSignature, blockSummaries) == null) {
+			// We don't have a block summary for the peer's reported chain tip, so should exclude it
+			LOGGER.debug(String.format("Peer %s didn't return a block summary with signature %.8s - excluding them from this round", peer, Base58.encode(peerLastBlockSignature)));
+			return () -> commonBlockData.setBlockSummariesAfterCommonBlock(null);
+		}
+
+		// All looks good, so store the retrieved block summaries in the peer's cache
+		final List<BlockSummaryData> newBlockSummaries = blockSummaries;
+		return () -> commonBlockData.setBlockSummariesAfterCommonBlock(newBlockSummaries);
+	}
+
+	/**
+	 * Run <tt>peerRequest</tt> for each peer, up to {@link #MAX_CONCURRENT_PEER_REQUESTS} at a time.
+	 * <p>
+	 * Requests still running after {@link #PEER_REQUEST_TIMEOUT} are abandoned,
+	 * so one slow peer doesn't hold up the whole round.
+	 * They aren't interrupted, as interrupting repository I/O can close HSQLDB's file channels,
+	 * so they're left to end when their own network requests time out.
+	 * <p>
+	 * Peer updates returned by requests are applied by the calling thread, and only for requests that completed in time,
+	 * so abandoned requests can't change peer state that the caller has since moved on to use.
+	 * Abandoned requests also release their share of this round's concurrency.
+	 * <p>
+	 * Returns once all requests have completed or timed out.
+	 *
+	 * @return peers whose requests timed out or failed
+	 */
+	private List<Peer> requestFromPeers(List<Peer> peers, PeerRequest peerRequest) throws InterruptedException {
+		List<Peer> incompletePeers = new ArrayList<>();
+		if (peers.isEmpty())
+			return incompletePeers;
+
+		// Limit concurrency per round, so requests abandoned by earlier rounds don't count
+		Semaphore permits = new Semaphore(MAX_CONCURRENT_PEER_REQUESTS);
+		// Whether each request's permit has been released, either by request finishing or timing out
+		AtomicIntegerArray permitsReleased = new AtomicIntegerArray(peers.size());
+		AtomicBoolean isRoundOver = new AtomicBoolean(false);
+
+		// When each request started, or zero if still waiting for a permit
+		AtomicLongArray startTimes = new AtomicLongArray(peers.size());
+		List<Future<PeerUpdate>> futures = new ArrayList<>(peers.size());
+
+		for (int i = 0; i < peers.size(); ++i) {
+			final int index = i;
+			final Peer peer = peers.get(i);
+
+			futures.add(this.peerRequestExecutor.submit(() -> {
+				try {
+					permits.acquire();
+				} catch (InterruptedException e) {
+					// Shutting down
+					return null;
+				}
+
+				try {
+					if (isRoundOver.get() || Controller.isStopping())
+						return null;
+
+					startTimes.set(index, System.currentTimeMillis());
+
+					return peerRequest.run(peer);
+				} catch (DataException e) {
+					LOGGER.error(String.format("Repository issue while requesting data from peer %s", peer), e);
+				} catch (InterruptedException e) {
+					// Shutting down
+				} finally {
+					if (permitsReleased.compareAndSet(index, 0, 1))
+						permits.release();
+				}
+
+				return null;
+			}));
+		}
+
+		int timedOutCount = 0;
+
+		try {
+			for (int i = 0; i < futures.size(); ++i) {
+				Future<PeerUpdate> future = futures.get(i);
+				Peer peer = peers.get(i);
+
+				while (true) {
+					final long startTime = startTimes.get(i);
+					final long remaining = startTime == 0 ? PEER_REQUEST_CHECK_INTERVAL : startTime + PEER_REQUEST_TIMEOUT - System.currentTimeMillis();
+
+					if (remaining <= 0) {
+						LOGGER.debug(String.format("Timed out requesting data from peer %s", peer));
+						future.cancel(false);
+
+						// Let another request in this round start
+						if (permitsReleased.compareAndSet(i, 0, 1))
+							permits.release();
+
+						incompletePeers.add(peer);
+						++timedOutCount;
+						break;
+					}
+
+					try {
+						PeerUpdate peerUpdate = future.get(Math.min(remaining, PEER_REQUEST_CHECK_INTERVAL), TimeUnit.MILLISECONDS);
+						if (peerUpdate != null)
+							peerUpdate.apply();
+						break;
+					} catch (TimeoutException e) {
+						// Check again
+					} catch (ExecutionException e) {
+						LOGGER.warn(String.format("Failed to request data from peer %s", peer), e.getCause());
+						incompletePeers.add(peer);
+						break;
+					} catch (CancellationException e) {
+						incompletePeers.add(peer);
+						break;
+					}
+				}
+			}
+		} finally {
+			// If we were interrupted then don't start any remaining requests
+			isRoundOver.set(true);
+			futures.forEach(future -> future.cancel(false));
+
+			this.lastPhaseTimings.timedOutPeerCount += timedOutCount;
+		}
+
+		return incompletePeers;
+	}
+
 	private List<BlockSummaryData> uniqueCommonBlocks(List<Peer> peers) {
 		List<BlockSummaryData> commonBlocks = new ArrayList<>();
 
@@ -1457,96 +1723,176 @@ public class Synchronizer extends Thread {
 
 	private SynchronizationResult applyNewBlocks(Repository repository, BlockData commonBlockData, int ourInitialHeight,
 												 Peer peer, int peerHeight, List<BlockSummaryData> peerBlockSummaries) throws InterruptedException, DataException {
-		LOGGER.debug(String.format("Fetching new blocks from peer %s", peer));
-
 		final int commonBlockHeight = commonBlockData.getHeight();
 		final byte[] commonBlockSig = commonBlockData.getSignature();
 
+		// Fetch blocks from peers that agree with us, as well as sync peer, so we aren't limited by round-trip time to one peer
+		List<Peer> fetchPeers = this.getBlockFetchPeers(peer, commonBlockData);
+		final int requestWindow = Settings.getInstance().getSyncBlockRequestWindow();
+
+		LOGGER.debug(String.format("Fetching new blocks from peer %s%s", peer,
+				(fetchPeers.size() > 1 ? String.format(" and %d other peer%s", fetchPeers.size() - 1, (fetchPeers.size() != 2 ? "s" : "")) : "")));
+
 		int ourHeight = ourInitialHeight;
 
-		// Fetch, and apply, blocks from peer
+		// Height and signature of latest block requested so far
+		int requestedHeight = ourHeight;
 		byte[] latestPeerSignature = commonBlockSig;
 		int maxBatchHeight = commonBlockHeight + SYNC_BATCH_SIZE;
 
 		// Convert any block summaries from above into signatures to request from peer
 		List<byte[]> peerBlockSignatures = peerBlockSummaries.stream().map(BlockSummaryData::getSignature).collect(Collectors.toList());
+		boolean noMoreSignatures = false;
 
-		while (ourHeight < peerHeight && ourHeight < maxBatchHeight) {
-			if (Controller.isStopping())
-				return SynchronizationResult.SHUTTING_DOWN;
+		final long startTime = System.currentTimeMillis();
 
-			// Do we need more signatures?
-			if (peerBlockSignatures.isEmpty()) {
-				int numberRequested = Math.min(maxBatchHeight - ourHeight, MAXIMUM_REQUEST_SIZE);
+		try (BlockFetchPipeline pipeline = new BlockFetchPipeline(this.blockFetchExecutor, fetchPeers, requestWindow,
+				(fetchPeer, signature) -> this.fetchBlock(repository, fetchPeer, signature))) {
 
-				LOGGER.trace(String.format("Requesting %d signature%s after height %d, sig %.8s",
-						numberRequested, (numberRequested != 1 ? "s": ""), ourHeight, Base58.encode(latestPeerSignature)));
+			while (ourHeight < peerHeight && ourHeight < maxBatchHeight) {
+				if (Controller.isStopping())
+					return SynchronizationResult.SHUTTING_DOWN;
 
-				peerBlockSignatures = this.getBlockSignatures(peer, latestPeerSignature, numberRequested);
+				// Keep request window full
+				while (!noMoreSignatures && pipeline.hasCapacity() && requestedHeight < peerHeight && requestedHeight < maxBatchHeight) {
+					// Do we need more signatures?
+					if (peerBlockSignatures.isEmpty()) {
+						int numberRequested = Math.min(maxBatchHeight - requestedHeight, MAXIMUM_REQUEST_SIZE);
 
-				if (peerBlockSignatures == null || peerBlockSignatures.isEmpty()) {
-					LOGGER.info(String.format("Peer %s failed to respond with more block signatures after height %d, sig %.8s", peer,
-							ourHeight, Base58.encode(latestPeerSignature)));
+						LOGGER.trace(String.format("Requesting %d signature%s after height %d, sig %.8s",
+								numberRequested, (numberRequested != 1 ? "s": ""), requestedHeight, Base58.encode(latestPeerSignature)));
+
+						peerBlockSignatures = this.getBlockSignatures(peer, latestPeerSignature, numberRequested);
+
+						if (peerBlockSignatures == null || peerBlockSignatures.isEmpty()) {
+							LOGGER.info(String.format("Peer %s failed to respond with more block signatures after height %d, sig %.8s", peer,
+									requestedHeight, Base58.encode(latestPeerSignature)));
+
+							// We can still apply any blocks already requested
+							noMoreSignatures = true;
+							break;
+						}
+
+						LOGGER.trace(String.format("Received %s signature%s", peerBlockSignatures.size(), (peerBlockSignatures.size() != 1 ? "s" : "")));
+					}
+
+					latestPeerSignature = peerBlockSignatures.remove(0);
+					++requestedHeight;
+
+					LOGGER.trace(String.format("Requesting block %d, sig %.8s", requestedHeight, Base58.encode(latestPeerSignature)));
+					pipeline.request(latestPeerSignature);
+				}
+
+				if (pipeline.isEmpty())
+					return SynchronizationResult.NO_REPLY;
+
+				BlockFetchPipeline.FetchResult fetchResult = pipeline.take();
+				++ourHeight;
+
+				if (fetchResult.status == BlockFetchPipeline.FetchStatus.NO_REPLY) {
+					LOGGER.info(String.format("Peer %s failed to respond with block for height %d, sig %.8s", peer,
+							ourHeight, Base58.encode(fetchResult.signature)));
 					return SynchronizationResult.NO_REPLY;
 				}
 
-				LOGGER.trace(String.format("Received %s signature%s", peerBlockSignatures.size(), (peerBlockSignatures.size() != 1 ? "s" : "")));
-			}
+				if (fetchResult.status == BlockFetchPipeline.FetchStatus.INVALID_SIGNATURE) {
+					LOGGER.info(String.format("Peer %s sent block with invalid signature for height %d, sig %.8s", peer,
+							ourHeight, Base58.encode(fetchResult.signature)));
+					return SynchronizationResult.INVALID_DATA;
+				}
 
-			latestPeerSignature = peerBlockSignatures.get(0);
-			peerBlockSignatures.remove(0);
-			++ourHeight;
+				Block newBlock = fetchResult.block;
+				LOGGER.trace(String.format("Fetched block %d, sig %.8s from %s", ourHeight, Base58.encode(fetchResult.signature), fetchResult.peer));
 
-			LOGGER.trace(String.format("Fetching block %d, sig %.8s from %s", ourHeight, Base58.encode(latestPeerSignature), peer));
-			Block newBlock = this.fetchBlock(repository, peer, latestPeerSignature);
-			LOGGER.trace(String.format("Fetched block %d, sig %.8s from %s", ourHeight, Base58.encode(latestPeerSignature), peer));
+				// Transactions are transmitted without approval status so determine that now
+				for (Transaction transaction : newBlock.getTransactions())
+					transaction.setInitialApprovalStatus();
 
-			if (newBlock == null) {
-				LOGGER.info(String.format("Peer %s failed to respond with block for height %d, sig %.8s", peer,
-						ourHeight, Base58.encode(latestPeerSignature)));
-				return SynchronizationResult.NO_REPLY;
-			}
+				newBlock.preProcess();
 
-			if (!newBlock.isSignatureValid()) {
-				LOGGER.info(String.format("Peer %s sent block with invalid signature for height %d, sig %.8s", peer,
-						ourHeight, Base58.encode(latestPeerSignature)));
-				return SynchronizationResult.INVALID_DATA;
-			}
+				ValidationResult blockResult = newBlock.isValid();
+				if (blockResult != ValidationResult.OK) {
+					LOGGER.info(String.format("Peer %s sent invalid block for height %d, sig %.8s: %s", fetchResult.peer,
+							ourHeight, Base58.encode(fetchResult.signature), blockResult.name()));
+					this.addInvalidBlockSignature(newBlock.getSignature());
+					this.timeInvalidBlockLastReceived = NTP.getTime();
+					return SynchronizationResult.INVALID_DATA;
+				}
 
-			// Transactions are transmitted without approval status so determine that now
-			for (Transaction transaction : newBlock.getTransactions())
-				transaction.setInitialApprovalStatus();
+				// Block is valid
+				this.timeValidBlockLastReceived = NTP.getTime();
 
-			newBlock.preProcess();
+				// Save transactions attached to this block
+				for (Transaction transaction : newBlock.getTransactions()) {
+					TransactionData transactionData = transaction.getTransactionData();
+					repository.getTransactionRepository().save(transactionData);
+				}
 
-			ValidationResult blockResult = newBlock.isValid();
-			if (blockResult != ValidationResult.OK) {
-				LOGGER.info(String.format("Peer %s sent invalid block for height %d, sig %.8s: %s", peer,
-						ourHeight, Base58.encode(latestPeerSignature), blockResult.name()));
-				this.addInvalidBlockSignature(newBlock.getSignature());
-				this.timeInvalidBlockLastReceived = NTP.getTime();
-				return SynchronizationResult.INVALID_DATA;
-			}
+				newBlock.process();
 
-			// Block is valid
-			this.timeValidBlockLastReceived = NTP.getTime();
+				LOGGER.trace(String.format("Processed block height %d, sig %.8s", newBlock.getBlockData().getHeight(), Base58.encode(newBlock.getBlockData().getSignature())));
 
-			// Save transactions attached to this block
-			for (Transaction transaction : newBlock.getTransactions()) {
-				TransactionData transactionData = transaction.getTransactionData();
-				repository.getTransactionRepository().save(transactionData);
+				repository.saveChanges();
+
+				Controller.getInstance().onNewBlock(newBlock.getBlockData());
 			}
+		} finally {
+			final int blocksApplied = ourHeight - ourInitialHeight;
+			final long duration = Math.max(1L, System.currentTimeMillis() - startTime);
+			if (blocksApplied > 0)
+				LOGGER.debug(String.format("Applied %d block%s from %d peer%s in %d ms (%.1f blocks/s)", blocksApplied, (blocksApplied != 1 ? "s" : ""),
+						fetchPeers.size(), (fetchPeers.size() != 1 ? "s" : ""), duration, blocksApplied * 1000.0 / duration));
+		}
 
-			newBlock.process();
+		return SynchronizationResult.OK;
+	}
 
-			LOGGER.trace(String.format("Processed block height %d, sig %.8s", newBlock.getBlockData().getHeight(), Base58.encode(newBlock.getBlockData().getSignature())));
+	/**
+	 * Returns peers to fetch blocks from while catching up: sync peer first, then others likely to be on the same chain.
+	 * <p>
+	 * Other peers are excluded if we know their common block with us differs from <tt>commonBlockData</tt>.
+	 * Any that turn out not to have the blocks we want simply reply with 'block unknown', so we ask another peer.
+	 * All blocks are checked against signatures supplied by sync peer.
+	 */
+	private List<Peer> getBlockFetchPeers(Peer syncPeer, BlockData commonBlockData) {
+		List<Peer> fetchPeers = new ArrayList<>();
+		fetchPeers.add(syncPeer);
+
+		final int maxPeers = Settings.getInstance().getMaxSyncBlockPeers();
+		if (maxPeers <= 1 || Settings.getInstance().getSyncBlockRequestWindow() <= 1)
+			return fetchPeers;
+
+		List<Peer> candidatePeers = new ArrayList<>(Network.getInstance().getImmutableHandshakedPeers());
+		candidatePeers.remove(syncPeer);
+		candidatePeers.removeIf(Controller.hasMisbehaved);
+		candidatePeers.removeIf(Controller.hasOldVersion);
+		candidatePeers.removeIf(candidatePeer -> candidatePeer.getChainTipData() == null
+				|| candidatePeer.getChainTipData().getLastHeight() <= commonBlockData.getHeight());
+
+		// Peers known to share our common block first
+		List<Peer> agreeingPeers = new ArrayList<>();
+		List<Peer> unknownPeers = new ArrayList<>();
+		for (Peer candidatePeer : candidatePeers) {
+			CommonBlockData peerCommonBlockData = candidatePeer.getCommonBlockData();
+
+			if (peerCommonBlockData == null || peerCommonBlockData.getCommonBlockSummary() == null)
+				unknownPeers.add(candidatePeer);
+			else if (Arrays.equals(peerCommonBlockData.getCommonBlockSummary().getSignature(), commonBlockData.getSignature()))
+				agreeingPeers.add(candidatePeer);
+		}
 
-			repository.saveChanges();
+		Collections.shuffle(agreeingPeers);
+		Collections.shuffle(unknownPeers);
+		agreeingPeers.addAll(unknownPeers);
 
-			Controller.getInstance().onNewBlock(newBlock.getBlockData());
+		for (Peer agreeingPeer : agreeingPeers) {
+			if (fetchPeers.size() >= maxPeers)
+				break;
+
+			fetchPeers.add(agreeingPeer);
 		}
 
-		return SynchronizationResult.OK;
+		return fetchPeers;
 	}
 
 	private List<BlockSummaryData> getBlockSummaries(Peer peer, byte[] parentSignature, int numberRequested) throws InterruptedException {
@@ -11,11 +11,19 @@ import org.qortal.network.message.TransactionSignaturesMessage;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
 import org.qortal.transaction.Transaction;
 import org.qortal.utils.Base58;
+import org.qortal.utils.ByteArray;
+import org.qortal.utils.DaemonThreadFactory;
 import org.qortal.utils.NTP;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -27,6 +35,14 @@ public class TransactionImporter extends Thread {
     private volatile boolean isStopping = false;
 
     private static final int MAX_INCOMING_TRANSACTIONS = 5000;
+    /** Once this many incoming transactions are in the pipeline, we stop requesting more from peers */
+    private static final int INCOMING_TRANSACTIONS_HIGH_WATER_MARK = MAX_INCOMING_TRANSACTIONS * 4 / 5;
+    /** Maximum number of transactions a signature validation thread takes from the queue in one go */
+    private static final int SIGNATURE_VALIDATION_BATCH_SIZE = 50;
+    /** Maximum number of transactions imported while holding blockchain lock */
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    /** Maximum number of transactions validated, saved and committed together */
+    private static final int IMPORT_CHUNK_SIZE = 100;
 
     /** Minimum time before considering an invalid unconfirmed transaction as "stale" */
     public static final long INVALID_TRANSACTION_STALE_TIMEOUT = 30 * 60 * 1000L; // ms
@@ -37,12 +53,23 @@ public class TransactionImporter extends Thread {
     public static final long EXPIRED_TRANSACTION_RECHECK_INTERVAL = 10 * 60 * 1000L; // ms
 
 
-    /** Map of incoming transaction that are in the import queue. Key is transaction data, value is whether signature has been validated. */
-    private final Map<TransactionData, Boolean> incomingTransactions = Collections.synchronizedMap(new HashMap<>());
+    /** Map of incoming transactions anywhere in the import pipeline, keyed by signature. Used for de-duplication. */
+    private final Map<ByteArray, TransactionData> incomingTransactions = new ConcurrentHashMap<>();
+
+    /** Incoming transactions awaiting signature validation. */
+    private final BlockingQueue<TransactionData> signatureValidationQueue = new LinkedBlockingQueue<>(MAX_INCOMING_TRANSACTIONS);
+
+    /** Incoming transactions with valid signatures, awaiting import. */
+    private final BlockingQueue<TransactionData> importQueue = new LinkedBlockingQueue<>();
+
+    /** Transactions with valid signatures, taken from importQueue, but not yet imported. Only accessed by importer thread. */
+    private final List<TransactionData> pendingImport = new ArrayList<>();
 
     /** Map of recent invalid unconfirmed transactions. Key is base58 transaction signature, value is do-not-request expiry timestamp. */
     private final Map<String, Long> invalidUnconfirmedTransactions = Collections.synchronizedMap(new HashMap<>());
 
+    private ExecutorService signatureValidationExecutor;
+
 
     public static synchronized TransactionImporter getInstance() {
         if (instance == null) {
@@ -54,197 +81,233 @@ public class TransactionImporter extends Thread {
 
     @Override
     public void run() {
+        Thread.currentThread().setName("Transaction Importer");
+
+        // Start signature validation stage
+        final int poolSize = Math.max(1, Settings.getInstance().getTransactionSignatureValidationPoolSize());
+        this.signatureValidationExecutor = Executors.newFixedThreadPool(poolSize, new DaemonThreadFactory("Transaction-Signatures"));
+        for (int i = 0; i < poolSize; ++i)
+            this.signatureValidationExecutor.execute(this::validateSignatures);
+
         try {
             while (!Controller.isStopping()) {
                 Thread.sleep(1000L);
 
-                // Process incoming transactions queue
-                processIncomingTransactionsQueue();
+                // Import transactions that have passed signature validation
+                processImportQueue();
                 // Clean up invalid incoming transactions list
                 cleanupInvalidTransactionsList(NTP.getTime());
             }
         } catch (InterruptedException e) {
             // Fall through to exit thread
         }
+
+        this.signatureValidationExecutor.shutdownNow();
     }
 
     public void shutdown() {
         isStopping = true;
         this.interrupt();
+
+        if (this.signatureValidationExecutor != null)
+            this.signatureValidationExecutor.shutdownNow();
     }
 
 
     // Incoming transactions queue
 
     private boolean incomingTransactionQueueContains(byte[] signature) {
-        synchronized (incomingTransactions) {
-            return incomingTransactions.keySet().stream().anyMatch(t -> Arrays.equals(t.getSignature(), signature));
-        }
+        return incomingTransactions.containsKey(ByteArray.wrap(signature));
     }
 
     private void removeIncomingTransaction(byte[] signature) {
-        incomingTransactions.keySet().removeIf(t -> Arrays.equals(t.getSignature(), signature));
+        incomingTransactions.remove(ByteArray.wrap(signature));
     }
 
-    private void processIncomingTransactionsQueue() {
-        if (this.incomingTransactions.isEmpty()) {
-            // Nothing to do?
-            return;
-        }
+    /** Returns whether import pipeline is too full to accept many more incoming transactions. */
+    public boolean isBackPressured() {
+        return this.incomingTransactions.size() >= INCOMING_TRANSACTIONS_HIGH_WATER_MARK;
+    }
 
-        try (final Repository repository = RepositoryManager.getRepository()) {
-            // Take a snapshot of incomingTransactions, so we don't need to lock it while processing
-            Map<TransactionData, Boolean> incomingTransactionsCopy = Map.copyOf(this.incomingTransactions);
+    /** Signature validation stage - run by each thread in signature validation pool. Does not require blockchain lock. */
+    private void validateSignatures() {
+        List<TransactionData> batch = new ArrayList<>(SIGNATURE_VALIDATION_BATCH_SIZE);
 
-            int unvalidatedCount = Collections.frequency(incomingTransactionsCopy.values(), Boolean.FALSE);
-            int validatedCount = 0;
+        try {
+            while (!isStopping) {
+                batch.add(this.signatureValidationQueue.take());
+                this.signatureValidationQueue.drainTo(batch, SIGNATURE_VALIDATION_BATCH_SIZE - 1);
 
-            if (unvalidatedCount > 0) {
-                LOGGER.debug("Validating signatures in incoming transactions queue (size {})...", unvalidatedCount);
-            }
+                LOGGER.trace(() -> String.format("Validating signatures of %d incoming transactions", batch.size()));
 
-            List<Transaction> sigValidTransactions = new ArrayList<>();
+                // Number of transactions from start of batch that have been dropped or passed on to import stage
+                int handledCount = 0;
 
-            // Signature validation round - does not require blockchain lock
-            for (Map.Entry<TransactionData, Boolean> transactionEntry : incomingTransactionsCopy.entrySet()) {
-                // Quick exit?
-                if (isStopping) {
-                    return;
-                }
+                try (final Repository repository = RepositoryManager.getRepository()) {
+                    for (; handledCount < batch.size(); ++handledCount) {
+                        TransactionData transactionData = batch.get(handledCount);
 
-                TransactionData transactionData = transactionEntry.getKey();
-                Transaction transaction = Transaction.fromData(repository, transactionData);
+                        // Quick exit?
+                        if (isStopping) {
+                            return;
+                        }
 
-                // Only validate signature if we haven't already done so
-                Boolean isSigValid = transactionEntry.getValue();
-                if (!Boolean.TRUE.equals(isSigValid)) {
-                    if (!transaction.isSignatureValid()) {
-                        String signature58 = Base58.encode(transactionData.getSignature());
+                        boolean isSignatureValid;
+                        try {
+                            Transaction transaction = Transaction.fromData(repository, transactionData);
+                            isSignatureValid = transaction.isSignatureValid();
+                        } catch (RuntimeException e) {
+                            // Malformed transaction data mustn't stop this stage
+                            LOGGER.debug(() -> String.format("Unable to validate signature of %s transaction %s: %s",
+                                    transactionData.getType(), Base58.encode(transactionData.getSignature()), e.getMessage()));
+                            isSignatureValid = false;
+                        }
 
-                        LOGGER.trace("Ignoring {} transaction {} with invalid signature", transactionData.getType().name(), signature58);
-                        removeIncomingTransaction(transactionData.getSignature());
+                        if (!isSignatureValid) {
+                            String signature58 = Base58.encode(transactionData.getSignature());
+
+                            LOGGER.trace("Ignoring {} transaction {} with invalid signature", transactionData.getType(), signature58);
+                            removeIncomingTransaction(transactionData.getSignature());
 
-                        // Also add to invalidIncomingTransactions map
-                        Long now = NTP.getTime();
-                        if (now != null) {
-                            Long expiry = now + INVALID_TRANSACTION_RECHECK_INTERVAL;
-                            LOGGER.trace("Adding stale invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
-                            // Add to invalidUnconfirmedTransactions so that we don't keep requesting it
-                            invalidUnconfirmedTransactions.put(signature58, expiry);
+                            // Also add to invalidIncomingTransactions map
+                            Long now = NTP.getTime();
+                            if (now != null) {
+                                Long expiry = now + INVALID_TRANSACTION_RECHECK_INTERVAL;
+                                LOGGER.trace("Adding stale invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
+                                // Add to invalidUnconfirmedTransactions so that we don't keep requesting it
+                                invalidUnconfirmedTransactions.put(signature58, expiry);
+                            }
+
+                            continue;
                         }
 
-                        continue;
-                    }
-                    else {
-                        // Count the number that were validated in this round, for logging purposes
-                        validatedCount++;
+                        // Signature valid - pass on to import stage
+                        this.importQueue.add(transactionData);
                     }
+                } catch (DataException e) {
+                    LOGGER.error("Repository issue while validating incoming transaction signatures", e);
 
-                    // Add mark signature as valid if transaction still exists in import queue
-                    incomingTransactions.computeIfPresent(transactionData, (k, v) -> Boolean.TRUE);
-                } else {
-                    LOGGER.trace(() -> String.format("Transaction %s known to have valid signature", Base58.encode(transactionData.getSignature())));
+                    // Drop rest of batch from pipeline, so transactions can be requested again later.
+                    // Transactions already passed on to import stage stay in the map until imported.
+                    for (TransactionData transactionData : batch.subList(handledCount, batch.size()))
+                        removeIncomingTransaction(transactionData.getSignature());
                 }
 
-                // Signature valid - add to shortlist
-                sigValidTransactions.add(transaction);
+                batch.clear();
             }
+        } catch (InterruptedException e) {
+            // Fall through to exit thread
+        }
+    }
 
-            if (unvalidatedCount > 0) {
-                LOGGER.debug("Finished validating signatures in incoming transactions queue (valid this round: {}, total pending import: {})...", validatedCount, sigValidTransactions.size());
-            }
+    /** Import stage - imports batch of transactions with valid signatures, while holding blockchain lock. */
+    private void processImportQueue() {
+        // Top up pending batch with newly validated transactions
+        this.importQueue.drainTo(this.pendingImport, IMPORT_BATCH_SIZE - this.pendingImport.size());
 
-            if (sigValidTransactions.isEmpty()) {
-                // Don't bother locking if there are no new transactions to process
-                return;
-            }
+        if (this.pendingImport.isEmpty()) {
+            // Nothing to do?
+            return;
+        }
 
-            if (Synchronizer.getInstance().isSyncRequested() || Synchronizer.getInstance().isSynchronizing()) {
-                // Prioritize syncing, and don't attempt to lock
-                // Signature validity is retained in the incomingTransactions map, to avoid the above work being wasted
+        if (Synchronizer.getInstance().isSyncRequested() || Synchronizer.getInstance().isSynchronizing()) {
+            // Prioritize syncing, and don't attempt to lock
+            // Transactions are retained in pendingImport, to avoid signature validation work being wasted
+            return;
+        }
+
+        try {
+            ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
+            if (!blockchainLock.tryLock(2, TimeUnit.SECONDS)) {
+                // Transactions are retained in pendingImport, to avoid signature validation work being wasted
+                LOGGER.debug("Too busy to process incoming transactions queue");
                 return;
             }
+        } catch (InterruptedException e) {
+            LOGGER.debug("Interrupted when trying to acquire blockchain lock");
+            return;
+        }
+
+        LOGGER.debug("Processing incoming transactions queue (size {})...", this.pendingImport.size());
 
-            try {
-                ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
-                if (!blockchainLock.tryLock(2, TimeUnit.SECONDS)) {
-                    // Signature validity is retained in the incomingTransactions map, to avoid the above work being wasted
-                    LOGGER.debug("Too busy to process incoming transactions queue");
+        // Import transactions with valid signatures
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            while (!this.pendingImport.isEmpty()) {
+                if (isStopping) {
                     return;
                 }
-            } catch (InterruptedException e) {
-                LOGGER.debug("Interrupted when trying to acquire blockchain lock");
-                return;
-            }
 
-            LOGGER.debug("Processing incoming transactions queue (size {})...", sigValidTransactions.size());
+                if (Synchronizer.getInstance().isSyncRequestPending()) {
+                    LOGGER.debug("Breaking out of transaction processing with {} remaining, because a sync request is pending", this.pendingImport.size());
+                    return;
+                }
 
-            // Import transactions with valid signatures
-            try {
-                for (int i = 0; i < sigValidTransactions.size(); ++i) {
-                    if (isStopping) {
-                        return;
-                    }
+                // Import in smaller chunks so we can still react to sync requests in a timely manner
+                List<TransactionData> chunk = new ArrayList<>(this.pendingImport.subList(0, Math.min(IMPORT_CHUNK_SIZE, this.pendingImport.size())));
 
-                    if (Synchronizer.getInstance().isSyncRequestPending()) {
-                        LOGGER.debug("Breaking out of transaction processing with {} remaining, because a sync request is pending", sigValidTransactions.size() - i);
-                        return;
-                    }
+                List<Transaction> transactions = new ArrayList<>(chunk.size());
+                for (TransactionData transactionData : chunk)
+                    transactions.add(Transaction.fromData(repository, transactionData));
 
-                    Transaction transaction = sigValidTransactions.get(i);
-                    TransactionData transactionData = transaction.getTransactionData();
+                List<Transaction.ValidationResult> validationResults = Transaction.importAsUnconfirmed(repository, transactions);
 
-                    Transaction.ValidationResult validationResult = transaction.importAsUnconfirmed();
+                for (int i = 0; i < chunk.size(); ++i) {
+                    TransactionData transactionData = chunk.get(i);
+                    handleImportResult(transactionData, validationResults.get(i));
 
-                    switch (validationResult) {
-                        case TRANSACTION_ALREADY_EXISTS: {
-                            LOGGER.trace(() -> String.format("Ignoring existing transaction %s", Base58.encode(transactionData.getSignature())));
-                            break;
-                        }
+                    // Transaction has been processed, even if only to reject it
+                    removeIncomingTransaction(transactionData.getSignature());
+                }
 
-                        case NO_BLOCKCHAIN_LOCK: {
-                            // Is this even possible considering we acquired blockchain lock above?
-                            LOGGER.trace(() -> String.format("Couldn't lock blockchain to import unconfirmed transaction %s", Base58.encode(transactionData.getSignature())));
-                            break;
-                        }
+                this.pendingImport.subList(0, chunk.size()).clear();
+            }
+        } catch (DataException e) {
+            LOGGER.error("Repository issue while processing incoming transactions", e);
+        } finally {
+            LOGGER.debug("Finished processing incoming transactions queue");
+            ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
+            blockchainLock.unlock();
+        }
+    }
 
-                        case OK: {
-                            LOGGER.debug(() -> String.format("Imported %s transaction %s", transactionData.getType().name(), Base58.encode(transactionData.getSignature())));
-                            break;
-                        }
+    private void handleImportResult(TransactionData transactionData, Transaction.ValidationResult validationResult) {
+        switch (validationResult) {
+            case TRANSACTION_ALREADY_EXISTS: {
+                LOGGER.trace(() -> String.format("Ignoring existing transaction %s", Base58.encode(transactionData.getSignature())));
+                break;
+            }
 
-                        // All other invalid cases:
-                        default: {
-                            final String signature58 = Base58.encode(transactionData.getSignature());
-                            LOGGER.trace(() -> String.format("Ignoring invalid (%s) %s transaction %s", validationResult.name(), transactionData.getType().name(), signature58));
+            case NO_BLOCKCHAIN_LOCK: {
+                // Is this even possible considering we acquired blockchain lock above?
+                LOGGER.trace(() -> String.format("Couldn't lock blockchain to import unconfirmed transaction %s", Base58.encode(transactionData.getSignature())));
+                break;
+            }
 
-                            Long now = NTP.getTime();
-                            if (now != null && now - transactionData.getTimestamp() > INVALID_TRANSACTION_STALE_TIMEOUT) {
-                                Long expiryLength = INVALID_TRANSACTION_RECHECK_INTERVAL;
+            case OK: {
+                LOGGER.debug(() -> String.format("Imported %s transaction %s", transactionData.getType().name(), Base58.encode(transactionData.getSignature())));
+                break;
+            }
 
-                                if (validationResult == Transaction.ValidationResult.TIMESTAMP_TOO_OLD) {
-                                    // Use shorter recheck interval for expired transactions
-                                    expiryLength = EXPIRED_TRANSACTION_RECHECK_INTERVAL;
-                                }
+            // All other invalid cases:
+            default: {
+                final String signature58 = Base58.encode(transactionData.getSignature());
+                LOGGER.trace(() -> String.format("Ignoring invalid (%s) %s transaction %s", validationResult.name(), transactionData.getType().name(), signature58));
 
-                                Long expiry = now + expiryLength;
-                                LOGGER.trace("Adding stale invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
-                                // Invalid, unconfirmed transaction has become stale - add to invalidUnconfirmedTransactions so that we don't keep requesting it
-                                invalidUnconfirmedTransactions.put(signature58, expiry);
-                            }
-                        }
+                Long now = NTP.getTime();
+                if (now != null && now - transactionData.getTimestamp() > INVALID_TRANSACTION_STALE_TIMEOUT) {
+                    Long expiryLength = INVALID_TRANSACTION_RECHECK_INTERVAL;
+
+                    if (validationResult == Transaction.ValidationResult.TIMESTAMP_TOO_OLD) {
+                        // Use shorter recheck interval for expired transactions
+                        expiryLength = EXPIRED_TRANSACTION_RECHECK_INTERVAL;
                     }
 
-                    // Transaction has been processed, even if only to reject it
-                    removeIncomingTransaction(transactionData.getSignature());
+                    Long expiry = now + expiryLength;
+                    LOGGER.trace("Adding stale invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
+                    // Invalid, unconfirmed transaction has become stale - add to invalidUnconfirmedTransactions so that we don't keep requesting it
+                    invalidUnconfirmedTransactions.put(signature58, expiry);
                 }
-            } finally {
-                LOGGER.debug("Finished processing incoming transactions queue");
-                ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
-                blockchainLock.unlock();
             }
-        } catch (DataException e) {
-            LOGGER.error("Repository issue while processing incoming transactions", e);
         }
     }
 
@@ -263,13 +326,19 @@ public class TransactionImporter extends Thread {
         TransactionMessage transactionMessage = (TransactionMessage) message;
         TransactionData transactionData = transactionMessage.getTransactionData();
 
-        if (this.incomingTransactions.size() < MAX_INCOMING_TRANSACTIONS) {
-            synchronized (this.incomingTransactions) {
-                if (!incomingTransactionQueueContains(transactionData.getSignature())) {
-                    this.incomingTransactions.put(transactionData, Boolean.FALSE);
-                }
-            }
+        if (this.incomingTransactions.size() >= MAX_INCOMING_TRANSACTIONS) {
+            LOGGER.trace(() -> String.format("Dropping transaction %s from peer %s as import pipeline is full", Base58.encode(transactionData.getSignature()), peer));
+            return;
         }
+
+        // Already somewhere in the pipeline?
+        ByteArray signature = ByteArray.wrap(transactionData.getSignature());
+        if (this.incomingTransactions.putIfAbsent(signature, transactionData) != null)
+            return;
+
+        if (!this.signatureValidationQueue.offer(transactionData))
+            // Queue full, so drop, but allow it to be requested again later
+            this.incomingTransactions.remove(signature);
     }
 
     public void onNetworkGetTransactionMessage(Peer peer, Message message) {
@@ -314,6 +383,13 @@ public class TransactionImporter extends Thread {
         TransactionSignaturesMessage transactionSignaturesMessage = (TransactionSignaturesMessage) message;
         List<byte[]> signatures = transactionSignaturesMessage.getSignatures();
 
+        if (this.isBackPressured()) {
+            // Import pipeline is busy, so don't request any more transactions for now.
+            // Peer will re-announce, or we'll fetch them later via GetUnconfirmedTransactions.
+            LOGGER.trace(() -> String.format("Ignoring %d transaction signatures from peer %s as import pipeline is busy", signatures.size(), peer));
+            return;
+        }
+
         try (final Repository repository = RepositoryManager.getRepository()) {
             for (byte[] signature : signatures) {
                 String signature58 = Base58.encode(signature);
@@ -303,7 +303,7 @@ public class ArbitraryDataFileListManager {
         getArbitraryDataFileListMessage.setId(id);
 
         // Broadcast request
-        Network.getInstance().broadcast(peer -> getArbitraryDataFileListMessage);
+        Network.getInstance().broadcast(getArbitraryDataFileListMessage);
 
         // Poll to see if data has arrived
         final long singleWait = 100;
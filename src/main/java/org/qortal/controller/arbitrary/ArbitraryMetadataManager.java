@@ -159,7 +159,7 @@ public class ArbitraryMetadataManager {
         getArbitraryMetadataMessage.setId(id);
 
         // Broadcast request
-        Network.getInstance().broadcast(peer -> getArbitraryMetadataMessage);
+        Network.getInstance().broadcast(getArbitraryMetadataMessage);
 
         // Poll to see if data has arrived
         final long singleWait = 100;
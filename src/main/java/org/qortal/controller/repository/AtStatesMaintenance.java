@@ -0,0 +1,106 @@
+package org.qortal.controller.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.qortal.controller.Controller;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+
+/**
+ * Support shared by {@link AtStatesTrimmer} and {@link AtStatesPruner}.
+ * <p>
+ * Both work through AT states in bounded batches, each a short transaction, with progress recorded
+ * in the repository so they resume where they left off after a restart. The latest AT states cache
+ * is refreshed incrementally before each batch, instead of being rebuilt from scratch.
+ * <p>
+ * Both also back off while the blockchain lock is contended, so they don't hold up block processing.
+ */
+public class AtStatesMaintenance {
+
+	/** Maximum multiple of usual interval to back off for, while blockchain lock is contended. */
+	/* package */ static final int MAX_BACKOFF_FACTOR = 16;
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class TaskStats {
+		/** Height that task will resume from */
+		public int progressHeight;
+		/** Number of blocks between progress height and highest height the task is allowed to process */
+		public int backlog;
+		public AtomicLong rows = new AtomicLong();
+		public AtomicLong batches = new AtomicLong();
+		/** Batches deferred because blockchain lock was contended */
+		public AtomicLong throttledBatches = new AtomicLong();
+		/** Time spent executing batches (µs) */
+		public AtomicLong batchMicros = new AtomicLong();
+		/** Rows processed per second of batch execution time */
+		public double rowsPerSecond;
+
+		public TaskStats() {
+		}
+	}
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatsSnapshot {
+		public TaskStats trim = new TaskStats();
+		public TaskStats prune = new TaskStats();
+		/** Incremental refreshes of latest AT states cache */
+		public AtomicLong latestAtStatesRefreshes = new AtomicLong();
+		/** Full rebuilds of latest AT states cache, e.g. after orphaning */
+		public AtomicLong latestAtStatesRebuilds = new AtomicLong();
+
+		public StatsSnapshot() {
+		}
+	}
+
+	private static final StatsSnapshot stats = new StatsSnapshot();
+
+	private AtStatesMaintenance() {
+	}
+
+	public static StatsSnapshot getStatsSnapshot() {
+		updateRowsPerSecond(stats.trim);
+		updateRowsPerSecond(stats.prune);
+
+		return stats;
+	}
+
+	/* package */ static TaskStats getTrimStats() {
+		return stats.trim;
+	}
+
+	/* package */ static TaskStats getPruneStats() {
+		return stats.prune;
+	}
+
+	/** Returns whether blockchain lock is held, or waited for, e.g. by synchronizer or block minter. */
+	/* package */ static boolean isBlockchainLockContended() {
+		ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
+		return blockchainLock.isLocked() || blockchainLock.hasQueuedThreads();
+	}
+
+	/** Brings latest AT states cache up to date, as blocks might have been processed or orphaned since last batch. */
+	/* package */ static void refreshLatestAtStates(Repository repository) throws DataException {
+		int refreshedCount = repository.getATRepository().refreshLatestAtStates();
+
+		if (refreshedCount < 0)
+			stats.latestAtStatesRebuilds.incrementAndGet();
+		else
+			stats.latestAtStatesRefreshes.incrementAndGet();
+	}
+
+	/* package */ static void recordBatch(TaskStats taskStats, int rowCount, long nanos) {
+		taskStats.rows.addAndGet(rowCount);
+		taskStats.batches.incrementAndGet();
+		taskStats.batchMicros.addAndGet(nanos / 1000L);
+	}
+
+	private static void updateRowsPerSecond(TaskStats taskStats) {
+		long batchMicros = taskStats.batchMicros.get();
+		taskStats.rowsPerSecond = batchMicros > 0 ? taskStats.rows.get() * 1_000_000.0 / batchMicros : 0.0;
+	}
+
+}
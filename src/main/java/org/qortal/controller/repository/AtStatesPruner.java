@@ -32,16 +32,20 @@ public class AtStatesPruner implements Runnable {
 			}
 		}
 
+		AtStatesMaintenance.TaskStats stats = AtStatesMaintenance.getPruneStats();
+
 		try (final Repository repository = RepositoryManager.getRepository()) {
 			int pruneStartHeight = repository.getATRepository().getAtPruneHeight();
 
 			repository.discardChanges();
-			repository.getATRepository().rebuildLatestAtStates();
+			AtStatesMaintenance.refreshLatestAtStates(repository);
+
+			int backoffFactor = 1;
 
 			while (!Controller.isStopping()) {
 				repository.discardChanges();
 
-				Thread.sleep(Settings.getInstance().getAtStatesPruneInterval());
+				Thread.sleep(Settings.getInstance().getAtStatesPruneInterval() * backoffFactor);
 
 				BlockData chainTip = Controller.getInstance().getChainTip();
 				if (chainTip == null || NTP.getTime() == null)
@@ -51,6 +55,16 @@ public class AtStatesPruner implements Runnable {
 				if (Synchronizer.getInstance().isSynchronizing())
 					continue;
 
+				// Back off while blocks are being processed, increasingly so if this persists
+				if (AtStatesMaintenance.isBlockchainLockContended()) {
+					stats.throttledBatches.incrementAndGet();
+					backoffFactor = Math.min(backoffFactor * 2, AtStatesMaintenance.MAX_BACKOFF_FACTOR);
+					continue;
+				}
+				backoffFactor = 1;
+
+				AtStatesMaintenance.refreshLatestAtStates(repository);
+
 				// Prune AT states for all blocks up until our latest minus pruneBlockLimit
 				final int ourLatestHeight = chainTip.getHeight();
 				int upperPrunableHeight = ourLatestHeight - Settings.getInstance().getPruneBlockLimit();
@@ -62,6 +76,9 @@ public class AtStatesPruner implements Runnable {
 					// TODO: validate that the actual archived data exists before pruning it?
 				}
 
+				stats.progressHeight = pruneStartHeight;
+				stats.backlog = Math.max(0, upperPrunableHeight - pruneStartHeight);
+
 				int upperBatchHeight = pruneStartHeight + Settings.getInstance().getAtStatesPruneBatchSize();
 				int upperPruneHeight = Math.min(upperBatchHeight, upperPrunableHeight);
 
@@ -70,11 +87,14 @@ public class AtStatesPruner implements Runnable {
 
 				LOGGER.debug(String.format("Pruning AT states between blocks %d and %d...", pruneStartHeight, upperPruneHeight));
 
-				int numAtStatesPruned = repository.getATRepository().pruneAtStates(pruneStartHeight, upperPruneHeight);
+				final long before = System.nanoTime();
+				int numAtStatesPruned = repository.getATRepository().pruneAtStates(
+						pruneStartHeight, upperPruneHeight, Settings.getInstance().getAtStatesPruneLimit());
 				repository.saveChanges();
 				int numAtStateDataRowsTrimmed = repository.getATRepository().trimAtStates(
 						pruneStartHeight, upperPruneHeight, Settings.getInstance().getAtStatesTrimLimit());
 				repository.saveChanges();
+				AtStatesMaintenance.recordBatch(stats, numAtStatesPruned + numAtStateDataRowsTrimmed, System.nanoTime() - before);
 
 				if (numAtStatesPruned > 0 || numAtStateDataRowsTrimmed > 0) {
 					final int finalPruneStartHeight = pruneStartHeight;
@@ -86,7 +106,6 @@ public class AtStatesPruner implements Runnable {
 					if (upperPrunableHeight > upperBatchHeight) {
 						pruneStartHeight = upperBatchHeight;
 						repository.getATRepository().setAtPruneHeight(pruneStartHeight);
-						repository.getATRepository().rebuildLatestAtStates();
 						repository.saveChanges();
 
 						final int finalPruneStartHeight = pruneStartHeight;
@@ -19,16 +19,20 @@ public class AtStatesTrimmer implements Runnable {
 	public void run() {
 		Thread.currentThread().setName("AT States trimmer");
 
+		AtStatesMaintenance.TaskStats stats = AtStatesMaintenance.getTrimStats();
+
 		try (final Repository repository = RepositoryManager.getRepository()) {
 			int trimStartHeight = repository.getATRepository().getAtTrimHeight();
 
 			repository.discardChanges();
-			repository.getATRepository().rebuildLatestAtStates();
+			AtStatesMaintenance.refreshLatestAtStates(repository);
+
+			int backoffFactor = 1;
 
 			while (!Controller.isStopping()) {
 				repository.discardChanges();
 
-				Thread.sleep(Settings.getInstance().getAtStatesTrimInterval());
+				Thread.sleep(Settings.getInstance().getAtStatesTrimInterval() * backoffFactor);
 
 				BlockData chainTip = Controller.getInstance().getChainTip();
 				if (chainTip == null || NTP.getTime() == null)
@@ -38,6 +42,16 @@ public class AtStatesTrimmer implements Runnable {
 				if (Synchronizer.getInstance().isSynchronizing())
 					continue;
 
+				// Back off while blocks are being processed, increasingly so if this persists
+				if (AtStatesMaintenance.isBlockchainLockContended()) {
+					stats.throttledBatches.incrementAndGet();
+					backoffFactor = Math.min(backoffFactor * 2, AtStatesMaintenance.MAX_BACKOFF_FACTOR);
+					continue;
+				}
+				backoffFactor = 1;
+
+				AtStatesMaintenance.refreshLatestAtStates(repository);
+
 				long currentTrimmableTimestamp = NTP.getTime() - Settings.getInstance().getAtStatesMaxLifetime();
 				// We want to keep AT states near the tip of our copy of blockchain so we can process/orphan nearby blocks
 				long chainTrimmableTimestamp = chainTip.getTimestamp() - Settings.getInstance().getAtStatesMaxLifetime();
@@ -45,14 +59,19 @@ public class AtStatesTrimmer implements Runnable {
 				long upperTrimmableTimestamp = Math.min(currentTrimmableTimestamp, chainTrimmableTimestamp);
 				int upperTrimmableHeight = repository.getBlockRepository().getHeightFromTimestamp(upperTrimmableTimestamp);
 
+				stats.progressHeight = trimStartHeight;
+				stats.backlog = Math.max(0, upperTrimmableHeight - trimStartHeight);
+
 				int upperBatchHeight = trimStartHeight + Settings.getInstance().getAtStatesTrimBatchSize();
 				int upperTrimHeight = Math.min(upperBatchHeight, upperTrimmableHeight);
 
 				if (trimStartHeight >= upperTrimHeight)
 					continue;
 
+				final long before = System.nanoTime();
 				int numAtStatesTrimmed = repository.getATRepository().trimAtStates(trimStartHeight, upperTrimHeight, Settings.getInstance().getAtStatesTrimLimit());
 				repository.saveChanges();
+				AtStatesMaintenance.recordBatch(stats, numAtStatesTrimmed, System.nanoTime() - before);
 
 				if (numAtStatesTrimmed > 0) {
 					final int finalTrimStartHeight = trimStartHeight;
@@ -64,7 +83,6 @@ public class AtStatesTrimmer implements Runnable {
 					if (upperTrimmableHeight > upperBatchHeight) {
 						trimStartHeight = upperBatchHeight;
 						repository.getATRepository().setAtTrimHeight(trimStartHeight);
-						repository.getATRepository().rebuildLatestAtStates();
 						repository.saveChanges();
 
 						final int finalTrimStartHeight = trimStartHeight;
@@ -0,0 +1,42 @@
+package org.qortal.controller.repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.crosschain.CompletedTrades;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+
+/**
+ * Builds asset and cross-chain trade candles from existing trades, once only, e.g. after repository upgrade.
+ * <p>
+ * After that, trade candles are kept up to date as blocks are processed and orphaned.
+ */
+public class TradeCandlesBuilder {
+
+	private static final Logger LOGGER = LogManager.getLogger(TradeCandlesBuilder.class);
+
+	private TradeCandlesBuilder() {
+	}
+
+	public static void buildIfNeeded() {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			if (repository.getAssetRepository().getTradeCandlesBuilt())
+				return;
+
+			LOGGER.info("Building trade candles from existing trades...");
+
+			repository.getAssetRepository().rebuildTradeCandles();
+			int crossChainTradeCount = CompletedTrades.rebuild(repository);
+
+			repository.getAssetRepository().setTradeCandlesBuilt(true);
+			repository.saveChanges();
+
+			LOGGER.info(String.format("Built trade candles, including %d completed cross-chain trade%s",
+					crossChainTradeCount, (crossChainTradeCount != 1 ? "s" : "")));
+		} catch (DataException e) {
+			LOGGER.warn(String.format("Repository issue trying to build trade candles: %s", e.getMessage()));
+		}
+	}
+
+}
@@ -452,7 +452,7 @@ public class TradeBot implements Listener {
 			LOGGER.debug("Broadcasting {} new trade presences", safeTradePresences.size());
 
 			TradePresencesMessage tradePresencesMessage = new TradePresencesMessage(safeTradePresences);
-			Network.getInstance().broadcast(peer -> tradePresencesMessage);
+			Network.getInstance().broadcast(tradePresencesMessage);
 
 			return;
 		}
@@ -474,7 +474,7 @@ public class TradeBot implements Listener {
 		);
 
 		GetTradePresencesMessage getTradePresencesMessage = new GetTradePresencesMessage(safeTradePresences);
-		Network.getInstance().broadcast(peer -> getTradePresencesMessage);
+		Network.getInstance().broadcast(getTradePresencesMessage);
 	}
 
 	// Network message processing
@@ -0,0 +1,145 @@
+package org.qortal.crosschain;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.ciyam.at.MachineState;
+import org.qortal.data.at.ATData;
+import org.qortal.data.at.ATStateData;
+import org.qortal.data.crosschain.CrossChainTradeData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.utils.ByteArray;
+import org.qortal.utils.Pair;
+
+/**
+ * Keeps repository's completed cross-chain trades, and so trade candles, in step with ACCT ATs as blocks are processed and orphaned.
+ * <p>
+ * A cross-chain trade is completed when its ACCT AT finishes in REDEEMED mode.
+ * As with API's completed trades, the trade's timestamp is that of the block where the AT finished.
+ */
+public class CompletedTrades {
+
+	private static final Logger LOGGER = LogManager.getLogger(CompletedTrades.class);
+
+	/** Offset of number of data pages in AT state's header: version, reserved, number of code pages, then number of data pages, all shorts */
+	private static final int DATA_PAGES_OFFSET = 3 * Short.BYTES;
+
+	private CompletedTrades() {
+	}
+
+	/**
+	 * Records trade if AT has just finished as a redeemed cross-chain trade.
+	 * <p>
+	 * Called after AT has been updated using AT state from block being processed.
+	 * <p>
+	 * Anything can deploy an AT with ACCT code, so AT state is checked before decoding
+	 * and failure to decode trade data is logged rather than allowed to stop block from being processed.
+	 *
+	 * @param wasFinished whether AT was finished before update
+	 */
+	public static void processAtState(Repository repository, ATData atData, boolean wasFinished, ATStateData atStateData, long blockTimestamp) throws DataException {
+		if (wasFinished || !atData.getIsFinished() || atData.getHadFatalError())
+			return;
+
+		ACCT acct = SupportedBlockchain.getAcctByCodeHash(atData.getCodeHash());
+		if (acct == null)
+			return;
+
+		if (getMode(acct, atStateData) != AcctMode.REDEEMED)
+			return;
+
+		CrossChainTradeData crossChainTradeData;
+		try {
+			crossChainTradeData = acct.populateTradeData(repository, atStateData);
+		} catch (RuntimeException e) {
+			LOGGER.warn(String.format("Unable to decode completed trade for AT %s: %s", atData.getATAddress(), e.getMessage()));
+			return;
+		}
+
+		repository.getCrossChainRepository().saveCompletedTrade(atData.getATAddress(), crossChainTradeData.foreignBlockchain,
+				crossChainTradeData.qortAmount, crossChainTradeData.expectedForeignAmount, blockTimestamp);
+	}
+
+	/**
+	 * Removes any trade completed by AT.
+	 * <p>
+	 * Called before AT is reverted to previous AT state, when orphaning block.
+	 * Finished ATs no longer run, so if AT has an AT state in block being orphaned, that block is where it finished.
+	 */
+	public static void orphanAtState(Repository repository, ATData atData) throws DataException {
+		if (!atData.getIsFinished())
+			return;
+
+		if (SupportedBlockchain.getAcctByCodeHash(atData.getCodeHash()) == null)
+			return;
+
+		repository.getCrossChainRepository().deleteCompletedTrade(atData.getATAddress());
+	}
+
+	/** Returns ACCT mode from AT state's data segment, or null if data segment is too short to contain mode. */
+	private static AcctMode getMode(ACCT acct, ATStateData atStateData) {
+		byte[] stateData = atStateData.getStateData();
+		int modeByteOffset = acct.getModeByteOffset();
+
+		if (stateData == null || stateData.length < MachineState.HEADER_LENGTH || modeByteOffset < MachineState.HEADER_LENGTH)
+			return null;
+
+		// AT state also contains stacks and flags after data segment, so check against data segment's length, not AT state's
+		ByteBuffer stateByteBuffer = ByteBuffer.wrap(stateData);
+		int numDataPages = stateByteBuffer.getShort(DATA_PAGES_OFFSET);
+		int dataSegmentEnd = MachineState.HEADER_LENGTH + numDataPages * MachineState.VALUE_SIZE;
+
+		if (modeByteOffset + Long.BYTES > Math.min(dataSegmentEnd, stateData.length))
+			return null;
+
+		long modeValue = stateByteBuffer.getLong(modeByteOffset);
+		return AcctMode.valueOf((int) (modeValue & 0xffL));
+	}
+
+	/** Rebuilds completed trades, and trade candles, from final AT states, returning number of completed trades. */
+	public static int rebuild(Repository repository) throws DataException {
+		repository.getCrossChainRepository().deleteAllCompletedTrades();
+
+		List<Pair<ACCT, ATStateData>> redeemedAtStates = new ArrayList<>();
+
+		for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : SupportedBlockchain.getAcctMap().entrySet()) {
+			byte[] codeHash = acctInfo.getKey().value;
+			ACCT acct = acctInfo.getValue().get();
+
+			List<ATStateData> atStates = repository.getATRepository().getMatchingFinalATStates(codeHash,
+					Boolean.TRUE, acct.getModeByteOffset(), (long) AcctMode.REDEEMED.value, null,
+					null, null, null);
+
+			for (ATStateData atState : atStates)
+				redeemedAtStates.add(new Pair<>(acct, atState));
+		}
+
+		// Trades need to be merged into candles in order, with trades in same block ordered by AT address, like repository
+		redeemedAtStates.sort(Comparator.comparing((Pair<ACCT, ATStateData> redeemedAtState) -> redeemedAtState.getB().getHeight())
+				.thenComparing(redeemedAtState -> redeemedAtState.getB().getATAddress()));
+
+		for (Pair<ACCT, ATStateData> redeemedAtState : redeemedAtStates) {
+			ATStateData atState = redeemedAtState.getB();
+			CrossChainTradeData crossChainTradeData = redeemedAtState.getA().populateTradeData(repository, atState);
+
+			// We also need block timestamp for use as trade timestamp
+			long timestamp = repository.getBlockRepository().getTimestampFromHeight(atState.getHeight());
+			if (timestamp == 0)
+				// Try the archive
+				timestamp = repository.getBlockArchiveRepository().getTimestampFromHeight(atState.getHeight());
+
+			repository.getCrossChainRepository().saveCompletedTrade(atState.getATAddress(), crossChainTradeData.foreignBlockchain,
+					crossChainTradeData.qortAmount, crossChainTradeData.expectedForeignAmount, timestamp);
+		}
+
+		return redeemedAtStates.size();
+	}
+
+}
@@ -0,0 +1,147 @@
+package org.qortal.crypto;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies batches of Ed25519 signatures, spreading the work across a bounded fork/join pool.
+ * <p>
+ * Batches smaller than {@link #MIN_PARALLEL_BATCH_SIZE} are verified on the calling thread,
+ * as the cost of handing work to the pool would outweigh any gain.
+ * <p>
+ * Verification of a batch stops early as soon as any invalid signature is found.
+ */
+public class SignatureBatchVerifier {
+
+	/** Batches smaller than this are verified inline, on the caller's thread. */
+	public static final int MIN_PARALLEL_BATCH_SIZE = 64;
+
+	/** Number of signatures each fork/join leaf task verifies before it stops splitting. */
+	private static final int LEAF_SIZE = 32;
+
+	private static SignatureBatchVerifier instance;
+
+	private final ForkJoinPool pool;
+	private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+	/** Single signature to verify. */
+	public static class Entry {
+		private final byte[] publicKey;
+		private final byte[] signature;
+		private final byte[] message;
+
+		public Entry(byte[] publicKey, byte[] signature, byte[] message) {
+			this.publicKey = publicKey;
+			this.signature = signature;
+			this.message = message;
+		}
+
+		public byte[] getPublicKey() {
+			return this.publicKey;
+		}
+
+		public byte[] getSignature() {
+			return this.signature;
+		}
+
+		public byte[] getMessage() {
+			return this.message;
+		}
+
+		public boolean verify() {
+			return Crypto.verify(this.publicKey, this.signature, this.message);
+		}
+	}
+
+	private static class VerifyTask extends RecursiveTask<Boolean> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Entry> entries;
+		private final int fromIndex;
+		private final int toIndex;
+		private final AtomicBoolean failed;
+
+		VerifyTask(List<Entry> entries, int fromIndex, int toIndex, AtomicBoolean failed) {
+			this.entries = entries;
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+			this.failed = failed;
+		}
+
+		@Override
+		protected Boolean compute() {
+			if (this.toIndex - this.fromIndex <= LEAF_SIZE) {
+				for (int i = this.fromIndex; i < this.toIndex; ++i) {
+					// Another task found a bad signature so no point continuing
+					if (this.failed.get())
+						return false;
+
+					if (!this.entries.get(i).verify()) {
+						this.failed.set(true);
+						return false;
+					}
+				}
+
+				return true;
+			}
+
+			int midIndex = (this.fromIndex + this.toIndex) >>> 1;
+			VerifyTask left = new VerifyTask(this.entries, this.fromIndex, midIndex, this.failed);
+			VerifyTask right = new VerifyTask(this.entries, midIndex, this.toIndex, this.failed);
+
+			left.fork();
+			boolean rightResult = right.compute();
+			boolean leftResult = left.join();
+
+			return leftResult && rightResult;
+		}
+	}
+
+	public SignatureBatchVerifier(int parallelism) {
+		this.pool = new ForkJoinPool(Math.max(1, parallelism), this::newWorkerThread, null, false);
+	}
+
+	public static synchronized SignatureBatchVerifier getInstance() {
+		if (instance == null)
+			// Leave one core free for networking, etc.
+			instance = new SignatureBatchVerifier(Runtime.getRuntime().availableProcessors() - 1);
+
+		return instance;
+	}
+
+	private ForkJoinWorkerThread newWorkerThread(ForkJoinPool pool) {
+		ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName("Signature-Verifier-" + this.threadNumber.getAndIncrement());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Returns whether <b>all</b> signatures in <tt>entries</tt> are valid.
+	 * <p>
+	 * Returns <tt>true</tt> for an empty batch.
+	 */
+	public boolean verifyAll(List<Entry> entries) {
+		if (entries.isEmpty())
+			return true;
+
+		if (entries.size() < MIN_PARALLEL_BATCH_SIZE || this.pool.getParallelism() == 1) {
+			for (Entry entry : entries)
+				if (!entry.verify())
+					return false;
+
+			return true;
+		}
+
+		return this.pool.invoke(new VerifyTask(entries, 0, entries.size(), new AtomicBoolean(false)));
+	}
+
+	public void shutdown() {
+		this.pool.shutdownNow();
+	}
+
+}
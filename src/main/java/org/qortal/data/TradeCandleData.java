@@ -0,0 +1,147 @@
+package org.qortal.data;
+
+import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toMap;
+
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+// All properties to be converted to JSON via JAXB
+@XmlAccessorType(XmlAccessType.FIELD)
+public class TradeCandleData {
+
+	public enum Interval {
+		MINUTE(1, 60 * 1000L), HOUR(2, 60 * 60 * 1000L), DAY(3, 24 * 60 * 60 * 1000L);
+
+		public final int value;
+		public final long millis;
+
+		private static final Map<Integer, Interval> map = stream(Interval.values()).collect(toMap(interval -> interval.value, interval -> interval));
+
+		Interval(int value, long millis) {
+			this.value = value;
+			this.millis = millis;
+		}
+
+		public static Interval valueOf(int value) {
+			return map.get(value);
+		}
+
+		/** Returns start of candle period containing <tt>timestamp</tt>. */
+		public long getStart(long timestamp) {
+			return timestamp - Math.floorMod(timestamp, this.millis);
+		}
+	}
+
+	// Properties
+
+	@Schema(description = "start of candle period")
+	private long timestamp;
+
+	@Schema(description = "price of first trade in period")
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long open;
+
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long high;
+
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long low;
+
+	@Schema(description = "price of last trade in period")
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long close;
+
+	@Schema(description = "total amount traded, in units being priced")
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long volume;
+
+	@Schema(description = "total amount traded, in units of price")
+	@XmlJavaTypeAdapter(value = org.qortal.api.AmountTypeAdapter.class)
+	private long otherVolume;
+
+	private int tradeCount;
+
+	// Used to merge candles - not for API
+	@Schema(hidden = true)
+	@XmlTransient
+	private long firstTradeTimestamp;
+
+	@Schema(hidden = true)
+	@XmlTransient
+	private long lastTradeTimestamp;
+
+	// Constructors
+
+	// necessary for JAXB serialization
+	protected TradeCandleData() {
+	}
+
+	public TradeCandleData(long timestamp, long open, long high, long low, long close, long volume, long otherVolume,
+			int tradeCount, long firstTradeTimestamp, long lastTradeTimestamp) {
+		this.timestamp = timestamp;
+		this.open = open;
+		this.high = high;
+		this.low = low;
+		this.close = close;
+		this.volume = volume;
+		this.otherVolume = otherVolume;
+		this.tradeCount = tradeCount;
+		this.firstTradeTimestamp = firstTradeTimestamp;
+		this.lastTradeTimestamp = lastTradeTimestamp;
+	}
+
+	/** Constructs candle for single trade, starting at trade's timestamp. */
+	public TradeCandleData(long tradeTimestamp, long price, long volume, long otherVolume) {
+		this(tradeTimestamp, price, price, price, price, volume, otherVolume, 1, tradeTimestamp, tradeTimestamp);
+	}
+
+	// Getters/setters
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public long getOpen() {
+		return this.open;
+	}
+
+	public long getHigh() {
+		return this.high;
+	}
+
+	public long getLow() {
+		return this.low;
+	}
+
+	public long getClose() {
+		return this.close;
+	}
+
+	public long getVolume() {
+		return this.volume;
+	}
+
+	public long getOtherVolume() {
+		return this.otherVolume;
+	}
+
+	public int getTradeCount() {
+		return this.tradeCount;
+	}
+
+	public long getFirstTradeTimestamp() {
+		return this.firstTradeTimestamp;
+	}
+
+	public long getLastTradeTimestamp() {
+		return this.lastTradeTimestamp;
+	}
+
+}
@@ -74,8 +74,8 @@ public class OnlineAccountData {
 
 	@Override
 	public int hashCode() {
-		// Pretty lazy implementation
-		return (int) this.timestamp;
+		// Signature is effectively random so spreads entries with the same timestamp across hash buckets
+		return Arrays.hashCode(this.signature) ^ Long.hashCode(this.timestamp);
 	}
 
 }
@@ -0,0 +1,129 @@
+package org.qortal.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.qortal.crypto.Crypto;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.Message.MessageException;
+import org.qortal.utils.ByteArray;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Fans out broadcast messages to peers' send queues.
+ * <p>
+ * Peer-independent messages, i.e. the same message instance sent to more than one peer,
+ * are serialized once and their bytes shared by all peers, see {@link Message#preSerialize()}.
+ * <p>
+ * Messages are queued to all peers without waking the channel selector,
+ * which is then woken once, so that all peers' writes are handled by the same select.
+ * <p>
+ * Identical peer-independent broadcasts within {@link #DEDUPLICATION_WINDOW} are skipped,
+ * e.g. the same chain tip announced by both block minter and synchronizer.
+ * <p>
+ * Not thread-safe: {@link Network} calls this from a single broadcast thread.
+ */
+class Broadcaster {
+
+    private static final Logger LOGGER = LogManager.getLogger(Broadcaster.class);
+
+    /** Identical peer-independent broadcasts within this period are skipped (ms) */
+    static final long DEDUPLICATION_WINDOW = 1000L;
+
+    /** Hash of recently broadcast serialized messages, with timestamp of broadcast */
+    private final Map<ByteArray, Long> recentBroadcasts = new HashMap<>();
+
+    /**
+     * Broadcasts same message to all <tt>targetPeers</tt>.
+     * <p>
+     * Skipped if identical message was broadcast within {@link #DEDUPLICATION_WINDOW}.
+     */
+    void broadcast(List<Peer> targetPeers, Message message) {
+        if (targetPeers.isEmpty()) {
+            return;
+        }
+
+        try {
+            message.preSerialize();
+        } catch (MessageException e) {
+            LOGGER.warn("Failed to serialize {} message for broadcast: {}", message.getType().name(), e.getMessage());
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        this.recentBroadcasts.values().removeIf(timestamp -> timestamp < now - DEDUPLICATION_WINDOW);
+
+        try {
+            ByteArray messageHash = ByteArray.wrap(Crypto.digest(message.toBytes()));
+            if (this.recentBroadcasts.putIfAbsent(messageHash, now) != null) {
+                LOGGER.trace("Skipping duplicate {} broadcast", message.getType().name());
+                return;
+            }
+        } catch (MessageException e) {
+            // Already serialized above, so not expected
+            return;
+        }
+
+        this.fanOut(targetPeers, peer -> message);
+    }
+
+    /**
+     * Broadcasts message built by <tt>peerMessageBuilder</tt> to each of <tt>targetPeers</tt>.
+     * <p>
+     * If builder returns the same message instance for more than one peer, that message is only serialized once.
+     * Peers for which builder returns null are skipped.
+     */
+    void broadcast(List<Peer> targetPeers, Function<Peer, Message> peerMessageBuilder) {
+        Set<Message> seenMessages = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        this.fanOut(targetPeers, peer -> {
+            Message message = peerMessageBuilder.apply(peer);
+
+            if (message != null && !seenMessages.add(message) && !message.isPreSerialized()) {
+                // Second peer for same message, so share serialized bytes from now on
+                try {
+                    message.preSerialize();
+                } catch (MessageException e) {
+                    // Peer's network thread will report this when trying to send
+                }
+            }
+
+            return message;
+        });
+    }
+
+    private void fanOut(List<Peer> targetPeers, Function<Peer, Message> peerMessageBuilder) {
+        final long before = System.nanoTime();
+        int queuedCount = 0;
+
+        for (Peer peer : targetPeers) {
+            Message message = peerMessageBuilder.apply(peer);
+
+            if (message == null) {
+                continue;
+            }
+
+            if (!peer.queueMessage(message, Peer.RESPONSE_TIMEOUT, false)) {
+                peer.disconnect("failed to broadcast message");
+                continue;
+            }
+
+            ++queuedCount;
+        }
+
+        if (queuedCount > 0) {
+            Network.getInstance().wakeupChannelSelector();
+        }
+
+        final int finalQueuedCount = queuedCount;
+        LOGGER.trace(() -> String.format("Queued broadcast to %d of %d peers in %dus",
+                finalQueuedCount, targetPeers.size(), (System.nanoTime() - before) / 1000));
+    }
+
+}
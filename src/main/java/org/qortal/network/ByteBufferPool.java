@@ -0,0 +1,213 @@
+package org.qortal.network;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct {@link ByteBuffer}s, used for reading from, and writing to, peer socket channels.
+ * <p>
+ * Buffers are grouped into power-of-two size classes, from {@link #MIN_BUFFER_SIZE} up to the size class
+ * that can hold <tt>maxBufferSize</tt> bytes. Requests larger than that are served with unpooled heap buffers.
+ * <p>
+ * Released buffers are reused most-recently-released first, so rarely needed buffers sit at the tail
+ * of each size class and are discarded once they've been idle for {@link #IDLE_TIMEOUT}.
+ * Eviction is performed opportunistically during {@link #release(ByteBuffer)}, so no extra thread is needed.
+ * <p>
+ * Direct buffers avoid the JDK copying heap buffers into temporary direct buffers on every socket read/write.
+ */
+public class ByteBufferPool {
+
+    /** Smallest size class, in bytes */
+    public static final int MIN_BUFFER_SIZE = 4 * 1024;
+    /** How long a released buffer can be unused before it's discarded (ms) */
+    public static final long IDLE_TIMEOUT = 60 * 1000L;
+    /** Maximum total bytes held in pool, across all size classes, while idle */
+    private static final long MAX_POOLED_BYTES = 64 * 1024 * 1024L;
+
+    private static ByteBufferPool instance;
+
+    private static class PooledBuffer {
+        final ByteBuffer buffer;
+        final long releasedWhen;
+
+        PooledBuffer(ByteBuffer buffer, long releasedWhen) {
+            this.buffer = buffer;
+            this.releasedWhen = releasedWhen;
+        }
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class StatsSnapshot {
+        public long acquiredCount;
+        public long reusedCount;
+        public long allocatedCount;
+        public long allocatedBytes;
+        public long evictedCount;
+        public long unpooledCount;
+        public long pooledBuffers;
+        public long pooledBytes;
+
+        public StatsSnapshot() {
+        }
+    }
+
+    private final int maxSizeClass;
+    private final Deque<PooledBuffer>[] sizeClasses;
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+    private final AtomicLong allocatedCount = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong unpooledCount = new AtomicLong();
+
+    private volatile long nextEvictionCheck = 0L;
+
+    @SuppressWarnings("unchecked")
+    public ByteBufferPool(int maxBufferSize) {
+        this.maxSizeClass = sizeClassIndex(Math.max(MIN_BUFFER_SIZE, maxBufferSize));
+
+        this.sizeClasses = new Deque[this.maxSizeClass + 1];
+        for (int i = 0; i < this.sizeClasses.length; ++i)
+            this.sizeClasses[i] = new ConcurrentLinkedDeque<>();
+    }
+
+    public static synchronized ByteBufferPool getInstance() {
+        if (instance == null)
+            instance = new ByteBufferPool(Network.getInstance().getMaxMessageSize());
+
+        return instance;
+    }
+
+    /** Returns size class index for buffer of at least <tt>capacity</tt> bytes. Index 0 is {@link #MIN_BUFFER_SIZE}. */
+    private static int sizeClassIndex(int capacity) {
+        if (capacity <= MIN_BUFFER_SIZE)
+            return 0;
+
+        int bits = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return bits - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+
+    private static int sizeClassCapacity(int index) {
+        return MIN_BUFFER_SIZE << index;
+    }
+
+    /**
+     * Returns cleared buffer with capacity of at least <tt>minCapacity</tt>.
+     * <p>
+     * Buffer should be passed to {@link #release(ByteBuffer)} once no longer needed.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        this.acquiredCount.incrementAndGet();
+
+        int index = sizeClassIndex(minCapacity);
+        if (index > this.maxSizeClass) {
+            // Too big to pool
+            this.unpooledCount.incrementAndGet();
+            return ByteBuffer.allocate(minCapacity);
+        }
+
+        PooledBuffer pooledBuffer = this.sizeClasses[index].pollFirst();
+        if (pooledBuffer != null) {
+            this.pooledBytes.addAndGet(-pooledBuffer.buffer.capacity());
+            this.reusedCount.incrementAndGet();
+            return pooledBuffer.buffer;
+        }
+
+        int capacity = sizeClassCapacity(index);
+        this.allocatedCount.incrementAndGet();
+        this.allocatedBytes.addAndGet(capacity);
+
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Returns buffer with capacity of at least <tt>minCapacity</tt>, containing <tt>buffer</tt>'s contents.
+     * <p>
+     * <tt>buffer</tt> is expected to be in "write" mode, i.e. data from 0 to position.
+     * The returned buffer is also in "write" mode. If a new buffer was needed, <tt>buffer</tt> is released.
+     */
+    public ByteBuffer grow(ByteBuffer buffer, int minCapacity) {
+        if (buffer.capacity() >= minCapacity)
+            return buffer;
+
+        ByteBuffer newBuffer = this.acquire(minCapacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+
+        this.release(buffer);
+
+        return newBuffer;
+    }
+
+    /**
+     * Returns buffer to pool for reuse.
+     * <p>
+     * Caller must not use <tt>buffer</tt> after this call. Unpooled buffers are simply dropped.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null)
+            return;
+
+        final long now = System.currentTimeMillis();
+
+        int capacity = buffer.capacity();
+        int index = sizeClassIndex(capacity);
+        if (buffer.isDirect() && index <= this.maxSizeClass && sizeClassCapacity(index) == capacity
+                && this.pooledBytes.get() + capacity <= MAX_POOLED_BYTES) {
+            buffer.clear();
+            this.pooledBytes.addAndGet(capacity);
+            this.sizeClasses[index].offerFirst(new PooledBuffer(buffer, now));
+        }
+
+        if (now >= this.nextEvictionCheck) {
+            this.nextEvictionCheck = now + IDLE_TIMEOUT / 2;
+            this.evictIdle(now);
+        }
+    }
+
+    /** Discards buffers that have been in the pool, unused, for longer than {@link #IDLE_TIMEOUT}. */
+    public void evictIdle(long now) {
+        final long cutoff = now - IDLE_TIMEOUT;
+
+        for (Deque<PooledBuffer> sizeClass : this.sizeClasses) {
+            // Least-recently released buffers are at the tail
+            Iterator<PooledBuffer> iterator = sizeClass.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledBuffer pooledBuffer = iterator.next();
+                if (pooledBuffer.releasedWhen > cutoff)
+                    break;
+
+                // Only count buffers we actually removed, as they might have been acquired by another thread
+                if (sizeClass.removeLastOccurrence(pooledBuffer)) {
+                    this.pooledBytes.addAndGet(-pooledBuffer.buffer.capacity());
+                    this.evictedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public StatsSnapshot getStatsSnapshot() {
+        StatsSnapshot snapshot = new StatsSnapshot();
+
+        snapshot.acquiredCount = this.acquiredCount.get();
+        snapshot.reusedCount = this.reusedCount.get();
+        snapshot.allocatedCount = this.allocatedCount.get();
+        snapshot.allocatedBytes = this.allocatedBytes.get();
+        snapshot.evictedCount = this.evictedCount.get();
+        snapshot.unpooledCount = this.unpooledCount.get();
+        snapshot.pooledBytes = this.pooledBytes.get();
+
+        for (Deque<PooledBuffer> sizeClass : this.sizeClasses)
+            snapshot.pooledBuffers += sizeClass.size();
+
+        return snapshot;
+    }
+
+}
@@ -101,21 +101,8 @@ public class Network {
 
     private final List<PeerData> allKnownPeers = new ArrayList<>();
 
-    /**
-     * Maintain two lists for each subset of peers:
-     * - A synchronizedList, to be modified when peers are added/removed
-     * - An immutable List, which is rebuilt automatically to mirror the synchronized list, and is then served to consumers
-     * This allows for thread safety without having to synchronize every time a thread requests a peer list
-     */
-    private final List<Peer> connectedPeers = Collections.synchronizedList(new ArrayList<>());
-    private List<Peer> immutableConnectedPeers = Collections.emptyList(); // always rebuilt from mutable, synced list above
-
-    private final List<Peer> handshakedPeers = Collections.synchronizedList(new ArrayList<>());
-    private List<Peer> immutableHandshakedPeers = Collections.emptyList(); // always rebuilt from mutable, synced list above
-
-    private final List<Peer> outboundHandshakedPeers = Collections.synchronizedList(new ArrayList<>());
-    private List<Peer> immutableOutboundHandshakedPeers = Collections.emptyList(); // always rebuilt from mutable, synced list above
-
+    /** Connected, handshaked and outbound-handshaked peers, with lookups by channel, node ID and public key */
+    private final PeerRegistry peerRegistry = new PeerRegistry();
 
     private final List<PeerAddress> selfPeers = new ArrayList<>();
 
@@ -127,7 +114,9 @@ public class Network {
     // volatile because value is updated inside any one of the EPC threads
     private volatile long nextConnectTaskTimestamp = 0L; // ms - try first connect once NTP syncs
 
-    private final ExecutorService broadcastExecutor = Executors.newCachedThreadPool();
+    /** Single thread, so broadcasts are queued to peers in the order they were requested */
+    private final ExecutorService broadcastExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("Network-Broadcast"));
+    private final Broadcaster broadcaster = new Broadcaster();
     // volatile because value is updated inside any one of the EPC threads
     private volatile long nextBroadcastTimestamp = 0L; // ms - try first broadcast once NTP syncs
 
@@ -254,20 +243,16 @@ public class Network {
     }
 
     public List<Peer> getImmutableConnectedPeers() {
-        return this.immutableConnectedPeers;
+        return this.peerRegistry.getConnectedPeers();
     }
 
     public void addConnectedPeer(Peer peer) {
-        this.connectedPeers.add(peer); // thread safe thanks to synchronized list
-        this.immutableConnectedPeers = List.copyOf(this.connectedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
+        this.peerRegistry.addConnectedPeer(peer);
     }
 
     public void removeConnectedPeer(Peer peer) {
-        // Firstly remove from handshaked peers
-        this.removeHandshakedPeer(peer);
-
-        this.connectedPeers.remove(peer); // thread safe thanks to synchronized list
-        this.immutableConnectedPeers = List.copyOf(this.connectedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
+        // Also removes from handshaked peers
+        this.peerRegistry.removeConnectedPeer(peer);
     }
 
     public List<PeerAddress> getSelfPeers() {
@@ -354,60 +339,35 @@ public class Network {
      * Returns list of connected peers that have completed handshaking.
      */
     public List<Peer> getImmutableHandshakedPeers() {
-        return this.immutableHandshakedPeers;
+        return this.peerRegistry.getHandshakedPeers();
     }
 
-    public void addHandshakedPeer(Peer peer) {
-        this.handshakedPeers.add(peer); // thread safe thanks to synchronized list
-        this.immutableHandshakedPeers = List.copyOf(this.handshakedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
-
-        // Also add to outbound handshaked peers cache
-        if (peer.isOutbound()) {
-            this.addOutboundHandshakedPeer(peer);
-        }
+    /**
+     * Adds peer to handshaked peers, and outbound handshaked peers if applicable.
+     *
+     * @return <tt>peer</tt> if added, or existing handshaked peer with the same public key
+     */
+    public Peer addHandshakedPeer(Peer peer) {
+        return this.peerRegistry.addHandshakedPeer(peer);
     }
 
     public void removeHandshakedPeer(Peer peer) {
-        this.handshakedPeers.remove(peer); // thread safe thanks to synchronized list
-        this.immutableHandshakedPeers = List.copyOf(this.handshakedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
-
-        // Also remove from outbound handshaked peers cache
-        if (peer.isOutbound()) {
-            this.removeOutboundHandshakedPeer(peer);
-        }
+        // Also removes from outbound handshaked peers
+        this.peerRegistry.removeHandshakedPeer(peer);
     }
 
     /**
      * Returns list of peers we connected to that have completed handshaking.
      */
     public List<Peer> getImmutableOutboundHandshakedPeers() {
-        return this.immutableOutboundHandshakedPeers;
-    }
-
-    public void addOutboundHandshakedPeer(Peer peer) {
-        if (!peer.isOutbound()) {
-            return;
-        }
-        this.outboundHandshakedPeers.add(peer); // thread safe thanks to synchronized list
-        this.immutableOutboundHandshakedPeers = List.copyOf(this.outboundHandshakedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
-    }
-
-    public void removeOutboundHandshakedPeer(Peer peer) {
-        if (!peer.isOutbound()) {
-            return;
-        }
-        this.outboundHandshakedPeers.remove(peer); // thread safe thanks to synchronized list
-        this.immutableOutboundHandshakedPeers = List.copyOf(this.outboundHandshakedPeers); // also thread safe thanks to synchronized collection's toArray() being fed to List.of(array)
+        return this.peerRegistry.getOutboundHandshakedPeers();
     }
 
     /**
-     * Returns first peer that has completed handshaking and has matching public key.
+     * Returns peer that has completed handshaking and has matching public key.
      */
     public Peer getHandshakedPeerWithPublicKey(byte[] publicKey) {
-        return this.getImmutableConnectedPeers().stream()
-                .filter(peer -> peer.getHandshakeStatus() == Handshake.COMPLETED
-                        && Arrays.equals(peer.getPeersPublicKey(), publicKey))
-                .findFirst().orElse(null);
+        return this.peerRegistry.getHandshakedPeerByPublicKey(publicKey);
     }
 
     // Peer list filters
@@ -578,6 +538,11 @@ public class Network {
                         acceptConnection((ServerSocketChannel) selectionKey.channel());
                     }
 
+                    // Channel can be both readable and writable
+                    if (selectionKey.isValid() && selectionKey.isWritable()) {
+                        connectionWrite((SocketChannel) selectionKey.channel());
+                    }
+
                     LOGGER.trace("Thread {} processed channel: {}",
                             Thread.currentThread().getId(), selectionKey.channel());
                 } catch (CancelledKeyException e) {
@@ -605,6 +570,21 @@ public class Network {
                     peer.disconnect("I/O error");
                 }
             }
+
+            private void connectionWrite(SocketChannel socketChannel) {
+                Peer peer = getPeerFromChannel(socketChannel);
+                if (peer == null) {
+                    return;
+                }
+
+                try {
+                    peer.writeChannel();
+                } catch (IOException e) {
+                    LOGGER.trace("[{}] Network thread {} encountered I/O error while writing: {}", peer.getPeerConnectionId(),
+                            Thread.currentThread().getId(), e.getMessage(), e);
+                    peer.disconnect("I/O error");
+                }
+            }
         }
 
         private Task maybeProduceChannelTask(boolean canBlock) throws InterruptedException {
@@ -798,13 +778,7 @@ public class Network {
     }
 
     private Peer getPeerFromChannel(SocketChannel socketChannel) {
-        for (Peer peer : this.getImmutableConnectedPeers()) {
-            if (peer.getSocketChannel() == socketChannel) {
-                return peer;
-            }
-        }
-
-        return null;
+        return this.peerRegistry.getConnectedPeerByChannel(socketChannel);
     }
 
     private void checkLongestConnection(Long now) {
@@ -1015,8 +989,8 @@ public class Network {
         LOGGER.debug("[{}] Handshake completed with peer {} on {}", peer.getPeerConnectionId(), peer,
                 peer.getPeersVersionString());
 
-        // Are we already connected to this peer?
-        Peer existingPeer = getHandshakedPeerWithPublicKey(peer.getPeersPublicKey());
+        // Add to handshaked peers cache, unless we're already connected to this peer
+        Peer existingPeer = this.addHandshakedPeer(peer);
         // NOTE: actual object reference compare, not Peer.equals()
         if (existingPeer != peer) {
             LOGGER.info("[{}] We already have a connection with peer {} - discarding",
@@ -1025,9 +999,6 @@ public class Network {
             return;
         }
 
-        // Add to handshaked peers cache
-        this.addHandshakedPeer(peer);
-
         // Make a note that we've successfully completed handshake (and when)
         peer.getPeerData().setLastConnected(NTP.getTime());
 
@@ -1139,6 +1110,10 @@ public class Network {
     }
 
     public Message buildHeightMessage(Peer peer, BlockData blockData) {
+        return this.buildHeightMessage(blockData);
+    }
+
+    public Message buildHeightMessage(BlockData blockData) {
         // HEIGHT_V2 contains way more useful info
         return new HeightV2Message(blockData.getHeight(), blockData.getSignature(),
                 blockData.getTimestamp(), blockData.getMinterPublicKey());
@@ -1460,47 +1435,31 @@ public class Network {
         }
     }
 
+    /**
+     * Broadcasts message built by <tt>peerMessageBuilder</tt> to each handshaked peer.
+     * <p>
+     * Prefer {@link #broadcast(Message)} if all peers are sent the same message.
+     */
     public void broadcast(Function<Peer, Message> peerMessageBuilder) {
-        class Broadcaster implements Runnable {
-            private final Random random = new Random();
-
-            private List<Peer> targetPeers;
-            private Function<Peer, Message> peerMessageBuilder;
-
-            Broadcaster(List<Peer> targetPeers, Function<Peer, Message> peerMessageBuilder) {
-                this.targetPeers = targetPeers;
-                this.peerMessageBuilder = peerMessageBuilder;
-            }
-
-            @Override
-            public void run() {
-                Thread.currentThread().setName("Network Broadcast");
+        List<Peer> targetPeers = this.getImmutableHandshakedPeers();
 
-                for (Peer peer : targetPeers) {
-                    // Very short sleep to reduce strain, improve multi-threading and catch interrupts
-                    try {
-                        Thread.sleep(random.nextInt(20) + 20L);
-                    } catch (InterruptedException e) {
-                        break;
-                    }
-
-                    Message message = peerMessageBuilder.apply(peer);
-
-                    if (message == null) {
-                        continue;
-                    }
-
-                    if (!peer.sendMessage(message)) {
-                        peer.disconnect("failed to broadcast message");
-                    }
-                }
-
-                Thread.currentThread().setName("Network Broadcast (dormant)");
-            }
+        try {
+            broadcastExecutor.execute(() -> this.broadcaster.broadcast(targetPeers, peerMessageBuilder));
+        } catch (RejectedExecutionException e) {
+            // Can't execute - probably because we're shutting down, so ignore
         }
+    }
+
+    /**
+     * Broadcasts same message to all handshaked peers.
+     * <p>
+     * Message is serialized once, and skipped if identical to one broadcast very recently.
+     */
+    public void broadcast(Message message) {
+        List<Peer> targetPeers = this.getImmutableHandshakedPeers();
 
         try {
-            broadcastExecutor.execute(new Broadcaster(this.getImmutableHandshakedPeers(), peerMessageBuilder));
+            broadcastExecutor.execute(() -> this.broadcaster.broadcast(targetPeers, message));
         } catch (RejectedExecutionException e) {
             // Can't execute - probably because we're shutting down, so ignore
         }
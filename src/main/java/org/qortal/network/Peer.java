@@ -21,6 +21,7 @@ import org.qortal.utils.NTP;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
@@ -30,6 +31,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -45,7 +47,12 @@ public class Peer {
     /**
      * Maximum time to wait for a message reply to arrive from peer. (ms)
      */
-    private static final int RESPONSE_TIMEOUT = 3000; // ms
+    static final int RESPONSE_TIMEOUT = 3000; // ms
+
+    /**
+     * Initial size of read buffer, acquired from {@link ByteBufferPool}. Grown on demand, up to max message size.
+     */
+    private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
 
     /**
      * Maximum time to wait for a peer to respond with blocks (ms)
@@ -72,6 +79,17 @@ public class Peer {
     private final Object byteBufferLock = new Object();
     private ByteBuffer byteBuffer;
 
+    private SelectionKey selectionKey;
+    /** Messages waiting to be written to socket channel, drained when channel is writable */
+    private final PeerSendQueue sendQueue = new PeerSendQueue();
+    /** Held while writing to socket channel, so messages aren't interleaved on-the-wire */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** Serialized message currently being written, from {@link ByteBufferPool}, or null */
+    private ByteBuffer outputBuffer;
+    /** Guards changes to selection key's interest in OP_WRITE */
+    private final Object writeInterestLock = new Object();
+    private boolean isWriteInterested = false;
+
     private Map<Integer, BlockingQueue<Message>> replyQueues;
     private LinkedBlockingQueue<Message> pendingMessages;
 
@@ -400,8 +418,8 @@ public class Peer {
         this.connectionTimestamp = NTP.getTime();
         this.socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
         this.socketChannel.configureBlocking(false);
-        this.socketChannel.register(channelSelector, SelectionKey.OP_READ);
-        this.byteBuffer = null; // Defer allocation to when we need it, to save memory. Sorry GC!
+        this.selectionKey = this.socketChannel.register(channelSelector, SelectionKey.OP_READ);
+        this.byteBuffer = null; // Defer acquiring from pool until we need it, to save memory
         this.replyQueues = Collections.synchronizedMap(new HashMap<Integer, BlockingQueue<Message>>());
         this.pendingMessages = new LinkedBlockingQueue<>();
 
@@ -457,9 +475,9 @@ public class Peer {
                     return;
                 }
 
-                // Do we need to allocate byteBuffer?
+                // Do we need to acquire byteBuffer?
                 if (this.byteBuffer == null) {
-                    this.byteBuffer = ByteBuffer.allocate(Network.getInstance().getMaxMessageSize());
+                    this.byteBuffer = ByteBufferPool.getInstance().acquire(INITIAL_READ_BUFFER_SIZE);
                 }
 
                 final int priorPosition = this.byteBuffer.position();
@@ -505,18 +523,27 @@ public class Peer {
                         // No complete message in buffer, no more bytes to read from socket
                         // even though there was room to read bytes
 
-                        /* DISABLED
-                        // If byteBuffer is empty then we can deallocate it, to save memory, albeit costing GC
-                        if (this.byteBuffer.remaining() == this.byteBuffer.capacity()) {
+                        // If byteBuffer is empty then we can return it to pool, to save memory
+                        if (this.byteBuffer.position() == 0) {
+                            ByteBufferPool.getInstance().release(this.byteBuffer);
                             this.byteBuffer = null;
                         }
-                        */
 
                         return;
                     }
 
                     if (message == null) {
                         // No complete message in buffer, but maybe more bytes to read from socket
+
+                        // If buffer is full then grow it, up to max message size, so we can read the rest of the message
+                        if (!this.byteBuffer.hasRemaining()) {
+                            final int maxMessageSize = Network.getInstance().getMaxMessageSize();
+                            if (this.byteBuffer.capacity() < maxMessageSize) {
+                                int newCapacity = (int) Math.min((long) this.byteBuffer.capacity() * 2, maxMessageSize);
+                                this.byteBuffer = ByteBufferPool.getInstance().grow(this.byteBuffer, newCapacity);
+                            }
+                        }
+
                         break;
                     }
 
@@ -584,75 +611,152 @@ public class Peer {
     }
 
     /**
-     * Attempt to send Message to peer, using default RESPONSE_TIMEOUT.
+     * Attempt to queue Message for sending to peer, using default RESPONSE_TIMEOUT.
      *
      * @param message message to be sent
-     * @return <code>true</code> if message successfully sent; <code>false</code> otherwise
+     * @return <code>true</code> if message successfully queued; <code>false</code> otherwise
      */
     public boolean sendMessage(Message message) {
         return this.sendMessageWithTimeout(message, RESPONSE_TIMEOUT);
     }
 
     /**
-     * Attempt to send Message to peer, using custom timeout.
+     * Attempt to queue Message for sending to peer, using custom timeout.
+     * <p>
+     * Message is written to the socket channel asynchronously, by a network thread,
+     * when the channel is writable. If message isn't sent within <tt>timeout</tt> then it is discarded.
      *
      * @param message message to be sent
-     * @return <code>true</code> if message successfully sent; <code>false</code> otherwise
+     * @return <code>true</code> if message successfully queued; <code>false</code> otherwise
      */
     public boolean sendMessageWithTimeout(Message message, int timeout) {
-        if (!this.socketChannel.isOpen()) {
+        return this.queueMessage(message, timeout, true);
+    }
+
+    /**
+     * Attempt to queue Message for sending to peer.
+     * <p>
+     * Broadcasts pass <tt>wakeupSelector</tt> as false, then wake the channel selector once after queuing
+     * to all peers, so that all peers' writes are picked up by the same select.
+     *
+     * @param wakeupSelector whether to wake channel selector so OP_WRITE interest takes effect immediately
+     * @return <code>true</code> if message successfully queued; <code>false</code> otherwise
+     */
+    boolean queueMessage(Message message, int timeout, boolean wakeupSelector) {
+        if (!this.socketChannel.isOpen() || this.isStopping) {
             return false;
         }
 
-        try {
-            // Send message
-            LOGGER.trace("[{}] Sending {} message with ID {} to peer {}", this.peerConnectionId,
+        if (!this.sendQueue.offer(message, System.currentTimeMillis() + timeout)) {
+            LOGGER.debug("[{}] Send queue full, dropping {} message with ID {} to peer {}", this.peerConnectionId,
                     message.getType().name(), message.getId(), this);
+            return false;
+        }
 
-            ByteBuffer outputBuffer = ByteBuffer.wrap(message.toBytes());
+        LOGGER.trace("[{}] Queued {} message with ID {} to peer {}", this.peerConnectionId,
+                message.getType().name(), message.getId(), this);
 
-            synchronized (this.socketChannel) {
-                final long sendStart = System.currentTimeMillis();
-                long totalBytes = 0;
+        return this.requestWrite(wakeupSelector);
+    }
 
-                while (outputBuffer.hasRemaining()) {
-                    int bytesWritten = this.socketChannel.write(outputBuffer);
-                    totalBytes += bytesWritten;
+    /**
+     * Registers interest in OP_WRITE, so that a network thread will call {@link #writeChannel()}.
+     *
+     * @param wakeupSelector whether to wake channel selector, as interest change only takes effect on next select
+     * @return false if channel's selection key is no longer valid
+     */
+    private boolean requestWrite(boolean wakeupSelector) {
+        synchronized (this.writeInterestLock) {
+            if (this.isWriteInterested) {
+                return true;
+            }
+
+            try {
+                this.selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (CancelledKeyException e) {
+                return false;
+            }
+
+            this.isWriteInterested = true;
+        }
 
-                    LOGGER.trace("[{}] Sent {} bytes of {} message with ID {} to peer {} ({} total)", this.peerConnectionId,
-                            bytesWritten, message.getType().name(), message.getId(), this, totalBytes);
+        if (wakeupSelector) {
+            Network.getInstance().wakeupChannelSelector();
+        }
+
+        return true;
+    }
+
+    /**
+     * Write queued messages to socket channel, until queue is empty or channel can't accept more bytes.
+     * <p>
+     * Called by a network thread when channel is writable. Never blocks: if another thread is already writing
+     * then this call simply returns.
+     *
+     * @throws IOException if unable to write to channel
+     */
+    protected void writeChannel() throws IOException {
+        if (!this.writeLock.tryLock()) {
+            return;
+        }
 
-                    if (bytesWritten == 0) {
-                        // Underlying socket's internal buffer probably full,
-                        // so wait a short while for bytes to actually be transmitted over the wire
+        try {
+            while (true) {
+                if (!this.socketChannel.isOpen()) {
+                    return;
+                }
 
-                        /*
-                         * NOSONAR squid:S2276 - we don't want to use this.socketChannel.wait()
-                         * as this releases the lock held by synchronized() above
-                         * and would allow another thread to send another message,
-                         * potentially interleaving them on-the-wire, causing checksum failures
-                         * and connection loss.
-                         */
-                        Thread.sleep(1L); //NOSONAR squid:S2276
+                if (this.outputBuffer == null) {
+                    Message message = this.sendQueue.poll(System.currentTimeMillis());
 
-                        if (System.currentTimeMillis() - sendStart > timeout) {
-                            // We've taken too long to send this message
-                            return false;
+                    if (message == null) {
+                        synchronized (this.writeInterestLock) {
+                            // Re-check under lock, in case a message was queued after we polled
+                            if (!this.sendQueue.isEmpty()) {
+                                continue;
+                            }
+
+                            this.selectionKey.interestOps(SelectionKey.OP_READ);
+                            this.isWriteInterested = false;
                         }
+
+                        return;
                     }
+
+                    try {
+                        this.outputBuffer = message.toPooledBuffer(ByteBufferPool.getInstance());
+                    } catch (MessageException e) {
+                        LOGGER.warn("[{}] Failed to send {} message with ID {} to peer {}: {}", this.peerConnectionId,
+                                message.getType().name(), message.getId(), this, e.getMessage());
+                        continue;
+                    }
+
+                    LOGGER.trace("[{}] Sending {} message with ID {} to peer {}", this.peerConnectionId,
+                            message.getType().name(), message.getId(), this);
                 }
+
+                int bytesWritten = this.socketChannel.write(this.outputBuffer);
+
+                LOGGER.trace("[{}] Sent {} bytes to peer {} ({} remaining)", this.peerConnectionId,
+                        bytesWritten, this, this.outputBuffer.remaining());
+
+                if (this.outputBuffer.hasRemaining()) {
+                    // Underlying socket's internal buffer full, so wait for channel to be writable again
+                    return;
+                }
+
+                ByteBufferPool.getInstance().release(this.outputBuffer);
+                this.outputBuffer = null;
             }
-        } catch (MessageException e) {
-            LOGGER.warn("[{}] Failed to send {} message with ID {} to peer {}: {}", this.peerConnectionId,
-                    message.getType().name(), message.getId(), this, e.getMessage());
-            return false;
-        } catch (IOException | InterruptedException e) {
-            // Send failure
-            return false;
+        } catch (CancelledKeyException e) {
+            // Channel closed while we were writing
+        } finally {
+            this.writeLock.unlock();
         }
+    }
 
-        // Sent OK
-        return true;
+    public PeerSendQueue getSendQueue() {
+        return this.sendQueue;
     }
 
     /**
@@ -766,6 +870,13 @@ public class Peer {
         isStopping = true;
 
         if (this.socketChannel.isOpen()) {
+            // Best-effort attempt to send any queued messages, e.g. last reply before disconnect
+            try {
+                this.writeChannel();
+            } catch (IOException e) {
+                // Not important as we're closing anyway
+            }
+
             try {
                 this.socketChannel.shutdownOutput();
                 this.socketChannel.close();
@@ -773,6 +884,22 @@ public class Peer {
                 LOGGER.debug("[{}] IOException while trying to close peer {}", this.peerConnectionId, this);
             }
         }
+
+        // Return read buffer to pool
+        synchronized (this.byteBufferLock) {
+            ByteBufferPool.getInstance().release(this.byteBuffer);
+            this.byteBuffer = null;
+        }
+
+        // Discard unsent messages and return write buffer to pool
+        this.sendQueue.clear();
+        this.writeLock.lock();
+        try {
+            ByteBufferPool.getInstance().release(this.outputBuffer);
+            this.outputBuffer = null;
+        } finally {
+            this.writeLock.unlock();
+        }
     }
 
 
@@ -0,0 +1,153 @@
+package org.qortal.network;
+
+import org.qortal.utils.ByteArray;
+
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of connected peers, with O(1) lookups by socket channel and public key.
+ * <p>
+ * Connected, handshaked and outbound-handshaked peers are each kept in a {@link PeerSet},
+ * which serves an immutable snapshot to consumers. Snapshots are only rebuilt when requested
+ * after a change, so bursts of connections/disconnections cost one rebuild rather than one per change.
+ * <p>
+ * Lookup maps are concurrent so readers, e.g. network threads looking up a peer for a readable channel,
+ * never block.
+ */
+public class PeerRegistry {
+
+    /**
+     * Insertion-ordered set of peers with lazily rebuilt, immutable snapshot.
+     * <p>
+     * Mutations and snapshot rebuilds are synchronized, but serving an up-to-date snapshot isn't.
+     */
+    private static class PeerSet {
+        private final Set<Peer> peers = new LinkedHashSet<>();
+        /** Immutable copy of <tt>peers</tt>, or null if <tt>peers</tt> has changed since last copy */
+        private volatile List<Peer> snapshot = Collections.emptyList();
+
+        public synchronized boolean add(Peer peer) {
+            if (!this.peers.add(peer))
+                return false;
+
+            this.snapshot = null;
+            return true;
+        }
+
+        public synchronized boolean remove(Peer peer) {
+            if (!this.peers.remove(peer))
+                return false;
+
+            this.snapshot = null;
+            return true;
+        }
+
+        public List<Peer> getSnapshot() {
+            List<Peer> snapshot = this.snapshot;
+            if (snapshot != null)
+                return snapshot;
+
+            synchronized (this) {
+                if (this.snapshot == null)
+                    this.snapshot = List.copyOf(this.peers);
+
+                return this.snapshot;
+            }
+        }
+    }
+
+    private final PeerSet connectedPeers = new PeerSet();
+    private final PeerSet handshakedPeers = new PeerSet();
+    private final PeerSet outboundHandshakedPeers = new PeerSet();
+
+    private final Map<SocketChannel, Peer> connectedPeersByChannel = new ConcurrentHashMap<>();
+    private final Map<ByteArray, Peer> handshakedPeersByPublicKey = new ConcurrentHashMap<>();
+
+    // Connected peers
+
+    public List<Peer> getConnectedPeers() {
+        return this.connectedPeers.getSnapshot();
+    }
+
+    public void addConnectedPeer(Peer peer) {
+        this.connectedPeers.add(peer);
+
+        SocketChannel socketChannel = peer.getSocketChannel();
+        if (socketChannel != null)
+            this.connectedPeersByChannel.put(socketChannel, peer);
+    }
+
+    /** Removes peer from all peer sets and indexes. */
+    public void removeConnectedPeer(Peer peer) {
+        // Firstly remove from handshaked peers
+        this.removeHandshakedPeer(peer);
+
+        SocketChannel socketChannel = peer.getSocketChannel();
+        if (socketChannel != null)
+            this.connectedPeersByChannel.remove(socketChannel, peer);
+
+        this.connectedPeers.remove(peer);
+    }
+
+    public Peer getConnectedPeerByChannel(SocketChannel socketChannel) {
+        return this.connectedPeersByChannel.get(socketChannel);
+    }
+
+    // Handshaked peers
+
+    public List<Peer> getHandshakedPeers() {
+        return this.handshakedPeers.getSnapshot();
+    }
+
+    public List<Peer> getOutboundHandshakedPeers() {
+        return this.outboundHandshakedPeers.getSnapshot();
+    }
+
+    /**
+     * Adds peer to handshaked peers, unless another handshaked peer with the same public key already exists.
+     *
+     * @return <tt>peer</tt> if added, or existing handshaked peer with same public key
+     */
+    public Peer addHandshakedPeer(Peer peer) {
+        byte[] publicKey = peer.getPeersPublicKey();
+
+        if (publicKey != null) {
+            Peer existingPeer = this.handshakedPeersByPublicKey.putIfAbsent(ByteArray.wrap(publicKey), peer);
+            // NOTE: actual object reference compare, not Peer.equals()
+            if (existingPeer != null && existingPeer != peer)
+                return existingPeer;
+        }
+
+        this.handshakedPeers.add(peer);
+
+        if (peer.isOutbound())
+            this.outboundHandshakedPeers.add(peer);
+
+        return peer;
+    }
+
+    public void removeHandshakedPeer(Peer peer) {
+        byte[] publicKey = peer.getPeersPublicKey();
+        if (publicKey != null)
+            this.handshakedPeersByPublicKey.remove(ByteArray.wrap(publicKey), peer);
+
+        this.handshakedPeers.remove(peer);
+
+        if (peer.isOutbound())
+            this.outboundHandshakedPeers.remove(peer);
+    }
+
+    public Peer getHandshakedPeerByPublicKey(byte[] publicKey) {
+        if (publicKey == null)
+            return null;
+
+        return this.handshakedPeersByPublicKey.get(ByteArray.wrap(publicKey));
+    }
+
+}
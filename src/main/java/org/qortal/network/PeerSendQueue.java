@@ -0,0 +1,238 @@
+package org.qortal.network;
+
+import org.qortal.network.message.Message;
+import org.qortal.network.message.Message.MessageException;
+import org.qortal.network.message.Message.MessageType;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Bounded, prioritized queue of messages waiting to be written to a peer's socket channel.
+ * <p>
+ * Messages are taken in priority order: {@link Priority#HIGH} (handshaking, chain tip/consensus, blocks),
+ * then {@link Priority#NORMAL} (transactions, online accounts, peer lists), then {@link Priority#LOW} (arbitrary data).
+ * Messages of the same priority are taken in the order they were queued.
+ * <p>
+ * Unsolicited <tt>HEIGHT_V2</tt> messages are coalesced: only the most recent one is kept,
+ * as older chain tip info is superseded anyway.
+ * <p>
+ * Each priority has its own limits, on number of messages and on their total serialized size,
+ * as some messages, e.g. arbitrary data, can be several MB each.
+ * Once either limit is reached, further messages of that priority are rejected.
+ * Messages not taken before their deadline are discarded.
+ */
+public class PeerSendQueue {
+
+    public enum Priority {
+        HIGH(256, 32 * 1024 * 1024),
+        NORMAL(512, 16 * 1024 * 1024),
+        LOW(64, 16 * 1024 * 1024);
+
+        /** Maximum number of queued messages with this priority */
+        public final int maxQueued;
+        /** Maximum total serialized size of queued messages with this priority, at least maximum message size */
+        public final long maxQueuedBytes;
+
+        Priority(int maxQueued, long maxQueuedBytes) {
+            this.maxQueued = maxQueued;
+            this.maxQueuedBytes = maxQueuedBytes;
+        }
+    }
+
+    private static final Set<MessageType> NORMAL_PRIORITY_TYPES = EnumSet.of(
+            MessageType.PEERS_V2, MessageType.GET_PEERS,
+            MessageType.TRANSACTION, MessageType.GET_TRANSACTION,
+            MessageType.TRANSACTION_SIGNATURES, MessageType.GET_UNCONFIRMED_TRANSACTIONS,
+            MessageType.ONLINE_ACCOUNTS, MessageType.GET_ONLINE_ACCOUNTS,
+            MessageType.ONLINE_ACCOUNTS_V2, MessageType.GET_ONLINE_ACCOUNTS_V2,
+            MessageType.TRADE_PRESENCES, MessageType.GET_TRADE_PRESENCES);
+
+    private static final Set<MessageType> LOW_PRIORITY_TYPES = EnumSet.of(
+            MessageType.ARBITRARY_DATA, MessageType.GET_ARBITRARY_DATA,
+            MessageType.ARBITRARY_DATA_FILE, MessageType.GET_ARBITRARY_DATA_FILE,
+            MessageType.ARBITRARY_DATA_FILE_LIST, MessageType.GET_ARBITRARY_DATA_FILE_LIST,
+            MessageType.ARBITRARY_SIGNATURES,
+            MessageType.ARBITRARY_METADATA, MessageType.GET_ARBITRARY_METADATA);
+
+    private static class QueuedMessage {
+        final Message message;
+        final int length;
+        final long deadline;
+
+        QueuedMessage(Message message, int length, long deadline) {
+            this.message = message;
+            this.length = length;
+            this.deadline = deadline;
+        }
+    }
+
+    private final Deque<QueuedMessage>[] queues;
+    /** Total serialized size of messages in each queue */
+    private final long[] queuedBytes = new long[Priority.values().length];
+    /** Most recent unsolicited HEIGHT_V2 message, sent after HIGH priority messages */
+    private QueuedMessage pendingHeightMessage = null;
+
+    private long droppedCount = 0;
+    private long coalescedCount = 0;
+    private long expiredCount = 0;
+
+    @SuppressWarnings("unchecked")
+    public PeerSendQueue() {
+        this.queues = new Deque[Priority.values().length];
+        for (int i = 0; i < this.queues.length; ++i)
+            this.queues[i] = new ArrayDeque<>();
+    }
+
+    public static Priority getPriority(MessageType messageType) {
+        if (LOW_PRIORITY_TYPES.contains(messageType))
+            return Priority.LOW;
+
+        if (NORMAL_PRIORITY_TYPES.contains(messageType))
+            return Priority.NORMAL;
+
+        return Priority.HIGH;
+    }
+
+    /**
+     * Queues message for sending.
+     *
+     * @param deadline timestamp (ms) after which message is discarded if not yet taken
+     * @return true if queued (or coalesced), false if too many messages, or bytes, with same priority already queued
+     */
+    public boolean offer(Message message, long deadline) {
+        // Replies to HEIGHT_V2 requests have an ID, so can't be coalesced
+        if (message.getType() == MessageType.HEIGHT_V2 && !message.hasId())
+            return this.offerHeightMessage(new QueuedMessage(message, 0, deadline));
+
+        // Serialize outside lock, as message could be large. Sending then reuses serialized bytes.
+        int length;
+        try {
+            length = message.getSerializedLength();
+        } catch (MessageException e) {
+            // Sending will fail too, and report it
+            length = 0;
+        }
+
+        return this.offer(new QueuedMessage(message, length, deadline), getPriority(message.getType()));
+    }
+
+    private synchronized boolean offerHeightMessage(QueuedMessage queuedMessage) {
+        if (this.pendingHeightMessage != null)
+            ++this.coalescedCount;
+
+        this.pendingHeightMessage = queuedMessage;
+        return true;
+    }
+
+    private synchronized boolean offer(QueuedMessage queuedMessage, Priority priority) {
+        Deque<QueuedMessage> queue = this.queues[priority.ordinal()];
+
+        if (queue.size() >= priority.maxQueued || this.queuedBytes[priority.ordinal()] + queuedMessage.length > priority.maxQueuedBytes) {
+            ++this.droppedCount;
+            return false;
+        }
+
+        queue.addLast(queuedMessage);
+        this.queuedBytes[priority.ordinal()] += queuedMessage.length;
+        return true;
+    }
+
+    /**
+     * Returns next message to send, discarding any that have passed their deadline, or null if none.
+     */
+    public synchronized Message poll(long now) {
+        QueuedMessage queuedMessage;
+
+        while ((queuedMessage = this.pollNext()) != null) {
+            if (now <= queuedMessage.deadline)
+                return queuedMessage.message;
+
+            ++this.expiredCount;
+        }
+
+        return null;
+    }
+
+    private QueuedMessage pollNext() {
+        QueuedMessage queuedMessage = this.queues[Priority.HIGH.ordinal()].pollFirst();
+        if (queuedMessage != null) {
+            this.queuedBytes[Priority.HIGH.ordinal()] -= queuedMessage.length;
+            return queuedMessage;
+        }
+
+        if (this.pendingHeightMessage != null) {
+            queuedMessage = this.pendingHeightMessage;
+            this.pendingHeightMessage = null;
+            return queuedMessage;
+        }
+
+        for (int i = Priority.HIGH.ordinal() + 1; i < this.queues.length; ++i) {
+            queuedMessage = this.queues[i].pollFirst();
+            if (queuedMessage != null) {
+                this.queuedBytes[i] -= queuedMessage.length;
+                return queuedMessage;
+            }
+        }
+
+        return null;
+    }
+
+    public synchronized boolean isEmpty() {
+        if (this.pendingHeightMessage != null)
+            return false;
+
+        for (Deque<QueuedMessage> queue : this.queues)
+            if (!queue.isEmpty())
+                return false;
+
+        return true;
+    }
+
+    public synchronized int size() {
+        int size = this.pendingHeightMessage != null ? 1 : 0;
+
+        for (Deque<QueuedMessage> queue : this.queues)
+            size += queue.size();
+
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (Deque<QueuedMessage> queue : this.queues)
+            queue.clear();
+
+        Arrays.fill(this.queuedBytes, 0L);
+
+        this.pendingHeightMessage = null;
+    }
+
+    /** Total serialized size of queued messages, excluding any pending HEIGHT_V2 message */
+    public synchronized long getQueuedBytes() {
+        long queuedBytes = 0;
+
+        for (long bytes : this.queuedBytes)
+            queuedBytes += bytes;
+
+        return queuedBytes;
+    }
+
+    /** Number of messages rejected because queue for their priority was full */
+    public synchronized long getDroppedCount() {
+        return this.droppedCount;
+    }
+
+    /** Number of HEIGHT_V2 messages replaced by a newer one before being sent */
+    public synchronized long getCoalescedCount() {
+        return this.coalescedCount;
+    }
+
+    /** Number of messages discarded because their deadline passed before being sent */
+    public synchronized long getExpiredCount() {
+        return this.expiredCount;
+    }
+
+}
@@ -48,8 +48,8 @@ public class ArbitraryMetadataMessage extends Message {
 		if (byteBuffer.remaining() != dataLength)
 			return null;
 
-		byte[] data = new byte[dataLength];
-		byteBuffer.get(data);
+		// Pass view of payload, rather than copy, as file content is written out during construction
+		ByteBuffer data = byteBuffer.slice();
 
 		try {
 			ArbitraryDataFile arbitraryMetadataFile = new ArbitraryDataFile(data, signature);
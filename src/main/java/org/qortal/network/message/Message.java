@@ -3,17 +3,17 @@ package org.qortal.network.message;
 import java.util.Map;
 
 import org.qortal.crypto.Crypto;
+import org.qortal.network.ByteBufferPool;
 import org.qortal.network.Network;
 import org.qortal.transform.TransformationException;
 
-import com.google.common.primitives.Ints;
-
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toMap;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
@@ -24,9 +24,13 @@ public abstract class Message {
 	// MAGIC(4) + TYPE(4) + HAS-ID(1) + ID?(4) + DATA-SIZE(4) + CHECKSUM?(4) + DATA?(*)
 	private static final int MAGIC_LENGTH = 4;
 	private static final int CHECKSUM_LENGTH = 4;
+	/** Offset of ID, if present, in serialized message */
+	private static final int ID_OFFSET = MAGIC_LENGTH + 4 + 1;
 
 	private static final int MAX_DATA_SIZE = 10 * 1024 * 1024; // 10MB
 
+	private static final MethodType FROM_BYTE_BUFFER_TYPE = MethodType.methodType(Message.class, int.class, ByteBuffer.class);
+
 	@SuppressWarnings("serial")
 	public static class MessageException extends Exception {
 		public MessageException() {
@@ -102,7 +106,8 @@ public abstract class Message {
 		GET_ARBITRARY_METADATA(151);
 
 		public final int value;
-		public final Method fromByteBufferMethod;
+		/** Handle to subclass's static <tt>fromByteBuffer(int, ByteBuffer)</tt> method, adapted to return <tt>Message</tt>, or null */
+		private final MethodHandle fromByteBufferHandle;
 
 		private static final Map<Integer, MessageType> map = stream(MessageType.values())
 				.collect(toMap(messageType -> messageType.value, messageType -> messageType));
@@ -117,16 +122,19 @@ public abstract class Message {
 
 			String className = String.join("", classNameParts);
 
-			Method method;
+			MethodHandle methodHandle;
 			try {
 				Class<?> subclass = Class.forName(String.join("", Message.class.getPackage().getName(), ".", className, "Message"));
 
-				method = subclass.getDeclaredMethod("fromByteBuffer", int.class, ByteBuffer.class);
-			} catch (ClassNotFoundException | NoSuchMethodException | SecurityException e) {
-				method = null;
+				Method method = subclass.getDeclaredMethod("fromByteBuffer", int.class, ByteBuffer.class);
+
+				// Resolve once, here, so decoding avoids reflective access checks and argument boxing
+				methodHandle = MethodHandles.lookup().unreflect(method).asType(FROM_BYTE_BUFFER_TYPE);
+			} catch (ClassNotFoundException | NoSuchMethodException | SecurityException | IllegalAccessException e) {
+				methodHandle = null;
 			}
 
-			this.fromByteBufferMethod = method;
+			this.fromByteBufferHandle = methodHandle;
 		}
 
 		public static MessageType valueOf(int value) {
@@ -134,15 +142,16 @@ public abstract class Message {
 		}
 
 		public Message fromByteBuffer(int id, ByteBuffer byteBuffer) throws MessageException {
-			if (this.fromByteBufferMethod == null)
+			if (this.fromByteBufferHandle == null)
 				throw new MessageException("Unsupported message type [" + value + "] during conversion from bytes");
 
 			try {
-				return (Message) this.fromByteBufferMethod.invoke(null, id, byteBuffer);
-			} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-				if (e.getCause() instanceof BufferUnderflowException)
-					throw new MessageException("Byte data too short for " + name() + " message");
-
+				return (Message) this.fromByteBufferHandle.invokeExact(id, byteBuffer);
+			} catch (BufferUnderflowException e) {
+				throw new MessageException("Byte data too short for " + name() + " message");
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
 				throw new MessageException("Internal error with " + name() + " message during conversion from bytes");
 			}
 		}
@@ -151,6 +160,9 @@ public abstract class Message {
 	private int id;
 	private MessageType type;
 
+	/** Serialized form, shared by all peers this message is broadcast to, or null if not pre-serialized */
+	private volatile byte[] serializedBytes = null;
+
 	protected Message(int id, MessageType type) {
 		this.id = id;
 		this.type = type;
@@ -185,13 +197,12 @@ public abstract class Message {
 	 */
 	public static Message fromByteBuffer(ByteBuffer readOnlyBuffer) throws MessageException {
 		try {
-			// Read only enough bytes to cover Message "magic" preamble
-			byte[] messageMagic = new byte[MAGIC_LENGTH];
-			readOnlyBuffer.get(messageMagic);
-
-			if (!Arrays.equals(messageMagic, Network.getInstance().getMessageMagic()))
-				// Didn't receive correct Message "magic"
-				throw new MessageException("Received incorrect message 'magic'");
+			// Read only enough bytes to cover Message "magic" preamble, comparing in place
+			byte[] expectedMagic = Network.getInstance().getMessageMagic();
+			for (int i = 0; i < MAGIC_LENGTH; ++i)
+				if (readOnlyBuffer.get() != expectedMagic[i])
+					// Didn't receive correct Message "magic"
+					throw new MessageException("Received incorrect message 'magic'");
 
 			// Find supporting object
 			int typeValue = readOnlyBuffer.getInt();
@@ -257,40 +268,156 @@ public abstract class Message {
 	}
 
 	public byte[] toBytes() throws MessageException {
-		try {
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		byte[] serializedBytes = this.getSerializedBytes();
+		if (serializedBytes != null) {
+			byte[] bytes = serializedBytes.clone();
+			if (this.hasId())
+				ByteBuffer.wrap(bytes).putInt(ID_OFFSET, this.id);
 
-			// Magic
-			bytes.write(Network.getInstance().getMessageMagic());
+			return bytes;
+		}
 
-			bytes.write(Ints.toByteArray(this.type.value));
+		byte[] data = this.getCheckedData();
 
-			if (this.hasId()) {
-				bytes.write(1);
+		ByteBuffer byteBuffer = ByteBuffer.allocate(getMessageLength(data.length));
+		this.writeTo(byteBuffer, data);
 
-				bytes.write(Ints.toByteArray(this.id));
-			} else {
-				bytes.write(0);
-			}
+		return byteBuffer.array();
+	}
 
-			byte[] data = this.toData();
-			if (data == null)
-				throw new MessageException("Missing data payload");
+	/**
+	 * Serializes message into buffer from <tt>bufferPool</tt>.
+	 * <p>
+	 * Returned buffer is flipped, ready for reading/writing to channel,
+	 * and should be returned to <tt>bufferPool</tt> once no longer needed.
+	 * <p>
+	 * If message was {@link #preSerialize()}d then its shared bytes are simply copied, with ID patched in.
+	 * 
+	 * @param bufferPool
+	 * @return buffer containing serialized message
+	 * @throws MessageException
+	 */
+	public ByteBuffer toPooledBuffer(ByteBufferPool bufferPool) throws MessageException {
+		byte[] serializedBytes = this.getSerializedBytes();
+		if (serializedBytes != null) {
+			ByteBuffer byteBuffer = bufferPool.acquire(serializedBytes.length);
+			byteBuffer.put(serializedBytes);
+			if (this.hasId())
+				byteBuffer.putInt(ID_OFFSET, this.id);
+			byteBuffer.flip();
+
+			return byteBuffer;
+		}
 
-			bytes.write(Ints.toByteArray(data.length));
+		byte[] data = this.getCheckedData();
 
-			if (data.length > 0) {
-				bytes.write(generateChecksum(data));
-				bytes.write(data);
-			}
+		ByteBuffer byteBuffer = bufferPool.acquire(getMessageLength(data.length));
+		this.writeTo(byteBuffer, data);
+		byteBuffer.flip();
+
+		return byteBuffer;
+	}
+
+	/**
+	 * Serializes message once, so that sending it to many peers only copies bytes.
+	 * <p>
+	 * Used when broadcasting the same message to multiple peers: otherwise each peer's
+	 * network thread would call {@link #toData()} and generate the checksum all over again.
+	 * <p>
+	 * Message contents must not change after this call, apart from ID, which is patched in when sending.
+	 * 
+	 * @throws MessageException
+	 */
+	public void preSerialize() throws MessageException {
+		if (this.serializedBytes != null)
+			return;
+
+		byte[] data = this.getCheckedData();
 
-			if (bytes.size() > MAX_DATA_SIZE)
-				throw new MessageException(String.format("About to send message with length %d larger than allowed %d", bytes.size(), MAX_DATA_SIZE));
+		ByteBuffer byteBuffer = ByteBuffer.allocate(getMessageLength(data.length));
+		this.writeTo(byteBuffer, data);
+
+		this.serializedBytes = byteBuffer.array();
+	}
 
-			return bytes.toByteArray();
+	public boolean isPreSerialized() {
+		return this.serializedBytes != null;
+	}
+
+	/**
+	 * Returns length of serialized message, {@link #preSerialize()}ing it if necessary
+	 * so that the work isn't repeated when message is sent.
+	 * 
+	 * @throws MessageException
+	 */
+	public int getSerializedLength() throws MessageException {
+		this.preSerialize();
+
+		byte[] serializedBytes = this.getSerializedBytes();
+		if (serializedBytes != null)
+			return serializedBytes.length;
+
+		// ID presence has changed since pre-serialization
+		return getMessageLength(this.getCheckedData().length);
+	}
+
+	/** Returns pre-serialized bytes, or null if not pre-serialized or ID presence has since changed. Caller must patch in ID. */
+	private byte[] getSerializedBytes() {
+		byte[] serializedBytes = this.serializedBytes;
+		if (serializedBytes == null)
+			return null;
+
+		// HAS-ID flag changes message length, so serialize from scratch
+		boolean serializedHasId = serializedBytes[ID_OFFSET - 1] != 0;
+		if (serializedHasId != this.hasId())
+			return null;
+
+		return serializedBytes;
+	}
+
+	private byte[] getCheckedData() throws MessageException {
+		byte[] data;
+		try {
+			data = this.toData();
 		} catch (IOException | TransformationException e) {
 			throw new MessageException("Failed to serialize message", e);
 		}
+
+		if (data == null)
+			throw new MessageException("Missing data payload");
+
+		int messageLength = getMessageLength(data.length);
+		if (messageLength > MAX_DATA_SIZE)
+			throw new MessageException(String.format("About to send message with length %d larger than allowed %d", messageLength, MAX_DATA_SIZE));
+
+		return data;
+	}
+
+	private int getMessageLength(int dataLength) {
+		// MAGIC(4) + TYPE(4) + HAS-ID(1) + ID?(4) + DATA-SIZE(4) + CHECKSUM?(4) + DATA?(*)
+		return MAGIC_LENGTH + 4 + 1 + (this.hasId() ? 4 : 0) + 4 + (dataLength > 0 ? CHECKSUM_LENGTH + dataLength : 0);
+	}
+
+	private void writeTo(ByteBuffer byteBuffer, byte[] data) {
+		// Magic
+		byteBuffer.put(Network.getInstance().getMessageMagic());
+
+		byteBuffer.putInt(this.type.value);
+
+		if (this.hasId()) {
+			byteBuffer.put((byte) 1);
+
+			byteBuffer.putInt(this.id);
+		} else {
+			byteBuffer.put((byte) 0);
+		}
+
+		byteBuffer.putInt(data.length);
+
+		if (data.length > 0) {
+			byteBuffer.put(generateChecksum(data));
+			byteBuffer.put(data);
+		}
 	}
 
 	protected abstract byte[] toData() throws IOException, TransformationException;
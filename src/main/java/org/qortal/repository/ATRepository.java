@@ -25,6 +25,13 @@ public interface ATRepository {
 	/** Returns list of executable ATs, empty if none found */
 	public List<ATData> getAllExecutableATs() throws DataException;
 
+	/**
+	 * Returns list of executable ATs, empty if none found, excluding ATs that will remain asleep at <tt>currentBlockHeight</tt>.
+	 * <p>
+	 * <tt>currentBlockHeight</tt> is blockchain height as seen by executing ATs, i.e. before new block is added.
+	 */
+	public List<ATData> getAllExecutableATs(int currentBlockHeight) throws DataException;
+
 	/** Returns list of ATs with matching code hash, optionally executable only. */
 	public List<ATData> getATsByFunctionality(byte[] codeHash, Boolean isExecutable, Integer limit, Integer offset, Boolean reverse) throws DataException;
 
@@ -64,6 +71,13 @@ public interface ATRepository {
 	 */
 	public ATStateData getLatestATState(String atAddress) throws DataException;
 
+	/**
+	 * Returns latest ATStateData for each of passed ATs, in no particular order.
+	 * <p>
+	 * ATs without any AT state data are omitted.
+	 */
+	public List<ATStateData> getLatestATStates(List<String> atAddresses) throws DataException;
+
 	/**
 	 * Returns final ATStateData for ATs matching codeHash (required)
 	 * and specific data segment value (optional).
@@ -121,6 +135,17 @@ public interface ATRepository {
 	 */
 	public void rebuildLatestAtStates() throws DataException;
 
+	/** Brings latest AT states cache up to date with blockchain, incrementally if possible.
+	 * <p>
+	 * Only ATs with new states since the last refresh, as recorded in a journal, are updated.
+	 * If blocks have been orphaned since, the whole cache is rebuilt instead.
+	 * <p>
+	 * NOTE: performs implicit <tt>repository.saveChanges()</tt>.
+	 *
+	 * @return number of refreshed ATs, or -1 if cache was rebuilt
+	 */
+	public int refreshLatestAtStates() throws DataException;
+
 
 	/** Returns height of first trimmable AT state. */
 	public int getAtTrimHeight() throws DataException;
@@ -147,6 +172,9 @@ public interface ATRepository {
 	/** Prunes full AT state data between passed heights. Returns number of pruned rows. */
 	public int pruneAtStates(int minHeight, int maxHeight) throws DataException;
 
+	/** Prunes up to <tt>limit</tt> AT states between passed heights. Returns number of pruned rows. */
+	public int pruneAtStates(int minHeight, int maxHeight, int limit) throws DataException;
+
 
 	/** Checks for the presence of the ATStatesHeightIndex in repository */
 	public boolean hasAtStatesHeightIndex() throws DataException;
@@ -139,6 +139,17 @@ public interface AccountRepository {
 	/** Modifies a batch of account asset balances, treating AccountBalanceData.balance as <tt>deltaBalance</tt>. */
 	public void modifyAssetBalances(List<AccountBalanceData> accountBalanceDeltas) throws DataException;
 
+	/**
+	 * Starts buffering balance changes from <tt>modifyAssetBalance</tt>/<tt>modifyAssetBalances</tt>,
+	 * accumulating deltas in memory to be written in one batch by {@link #flushBalanceChanges()}.
+	 * <p>
+	 * Any other access to balances writes buffered deltas first, so buffering isn't visible to callers.
+	 */
+	public void bufferBalanceChanges() throws DataException;
+
+	/** Writes any buffered balance changes to repository and stops buffering. */
+	public void flushBalanceChanges() throws DataException;
+
 	/** Batch update of account asset balances. */
 	public void setAssetBalances(List<AccountBalanceData> accountBalances) throws DataException;
 
@@ -2,6 +2,7 @@ package org.qortal.repository;
 
 import java.util.List;
 
+import org.qortal.data.TradeCandleData;
 import org.qortal.data.asset.AssetData;
 import org.qortal.data.asset.OrderData;
 import org.qortal.data.asset.RecentTradeData;
@@ -88,4 +89,30 @@ public interface AssetRepository {
 
 	public void delete(TradeData tradeData) throws DataException;
 
+	// Trade candles
+
+	/**
+	 * Returns OHLCV candles for trades between assetId and otherAssetId, in either direction,
+	 * starting between minimumTimestamp and maximumTimestamp inclusive, if given.
+	 * <p>
+	 * Like order prices, candle prices are amount of lower-ID asset per unit of higher-ID asset,
+	 * so volume is in higher-ID asset and other volume is in lower-ID asset.
+	 */
+	public List<TradeCandleData> getTradeCandles(long assetId, long otherAssetId, TradeCandleData.Interval interval,
+			Long minimumTimestamp, Long maximumTimestamp, Integer limit, Integer offset, Boolean reverse) throws DataException;
+
+	/** Merges trade, whose initiating order has haveAssetId and wantAssetId, into trade candles. */
+	public void addTradeToCandles(long haveAssetId, long wantAssetId, TradeData tradeData) throws DataException;
+
+	/** Recalculates trade candles affected by orphaned trade, which should already be deleted. */
+	public void removeTradeFromCandles(long haveAssetId, long wantAssetId, TradeData tradeData) throws DataException;
+
+	/** Rebuilds all asset trade candles from trades. */
+	public void rebuildTradeCandles() throws DataException;
+
+	/** Returns whether asset and cross-chain trade candles have been built from existing trades, e.g. after repository upgrade. */
+	public boolean getTradeCandlesBuilt() throws DataException;
+
+	public void setTradeCandlesBuilt(boolean tradeCandlesBuilt) throws DataException;
+
 }
@@ -1,8 +1,9 @@
 package org.qortal.repository;
 
-import com.google.common.primitives.Ints;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.block.BlockArchiveData;
 import org.qortal.data.block.BlockData;
@@ -10,23 +11,415 @@ import org.qortal.data.transaction.TransactionData;
 import org.qortal.settings.Settings;
 import org.qortal.transform.TransformationException;
 import org.qortal.transform.block.BlockTransformer;
+import org.qortal.utils.DaemonThreadFactory;
 import org.qortal.utils.Triple;
 
 import static org.qortal.transform.Transformer.INT_LENGTH;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads blocks from archive files.
+ * <p>
+ * Archive files are indexed by height range, so finding the file for a height is a {@link TreeMap} lookup.
+ * Each file is memory-mapped, and its block offset table parsed, the first time a block is read from it.
+ * After that, reading a block needs no system calls, and {@link #fetchSerializedBlockBufferForHeight(int)}
+ * can return a view of the mapped file without copying.
+ * <p>
+ * Windows won't delete a file while it's mapped, and Java can't safely unmap one,
+ * so there only the headers are kept in memory and blocks are read from file as needed.
+ * This lets the archive directory be deleted or replaced, e.g. when importing a bootstrap.
+ * <p>
+ * Compressed (version 2) files are also supported. Only the chunk holding the requested block is decompressed,
+ * and recently used chunks are kept in an LRU cache.
+ * <p>
+ * Long ranges of blocks can be passed to a consumer, in height order, using
+ * {@link #streamSerializedBlocks(int, int, SerializedBlockConsumer)} or {@link #streamBlocks(int, int, BlockConsumer)}.
+ * Pages ahead of the consumer are faulted in on a separate thread, so the consumer rarely waits for disk.
+ */
 public class BlockArchiveReader {
 
     private static BlockArchiveReader instance;
-    private Map<String, Triple<Integer, Integer, Integer>> fileListCache;
+
+    /** Archive files, keyed by start height. Replaced, rather than modified, when invalidated. */
+    private volatile NavigableMap<Integer, ArchiveFile> fileIndex;
 
     private static final Logger LOGGER = LogManager.getLogger(BlockArchiveReader.class);
 
+    // Fixed length header: version, start height, end height, block count, variable length header length
+    private static final int FIXED_HEADER_LENGTH = 5 * INT_LENGTH;
+
+    /** How far ahead of consumer to fault in pages when streaming blocks (bytes) */
+    private static final int READ_AHEAD_LENGTH = 8 * 1024 * 1024;
+    private static final int PAGE_SIZE = 4096;
+
+    /** Whether archive files can be memory-mapped and still be deleted */
+    private static final boolean MEMORY_MAP_FILES = !System.getProperty("os.name").toLowerCase().contains("win");
+
+    /** Maximum number of decompressed version-2 chunks to keep in memory */
+    private static final int CHUNK_CACHE_SIZE = 64;
+
+    private final ChunkCache chunkCache = new ChunkCache(CHUNK_CACHE_SIZE);
+
+    private final ExecutorService readAheadExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("BlockArchive-ReadAhead"));
+
+    public interface SerializedBlockConsumer {
+        /**
+         * Called with each block's serialized bytes, in height order.
+         *
+         * @param serializedBlock read-only view of block's bytes, which can be retained
+         * @return true to continue, false to stop streaming
+         */
+        boolean accept(int height, ByteBuffer serializedBlock) throws DataException;
+    }
+
+    public interface BlockConsumer {
+        /**
+         * Called with each deserialized block, in height order. Block data already has its height set.
+         *
+         * @return true to continue, false to stop streaming
+         */
+        boolean accept(Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo) throws DataException;
+    }
+
+    /** Decompressed version-2 chunks, least recently used first. */
+    static class ChunkCache {
+        private final Map<ChunkKey, ByteBuffer> chunks;
+
+        @SuppressWarnings("serial")
+        ChunkCache(int maxChunks) {
+            this.chunks = Collections.synchronizedMap(new LinkedHashMap<>(maxChunks + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ChunkKey, ByteBuffer> eldest) {
+                    return this.size() > maxChunks;
+                }
+            });
+        }
+
+        ByteBuffer get(ArchiveFile archiveFile, int chunkIndex) {
+            return this.chunks.get(new ChunkKey(archiveFile, chunkIndex));
+        }
+
+        void put(ArchiveFile archiveFile, int chunkIndex, ByteBuffer chunk) {
+            this.chunks.put(new ChunkKey(archiveFile, chunkIndex), chunk);
+        }
+
+        void clear() {
+            this.chunks.clear();
+        }
+    }
+
+    private static class ChunkKey {
+        final ArchiveFile archiveFile;
+        final int chunkIndex;
+
+        ChunkKey(ArchiveFile archiveFile, int chunkIndex) {
+            this.archiveFile = archiveFile;
+            this.chunkIndex = chunkIndex;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ChunkKey))
+                return false;
+
+            ChunkKey otherKey = (ChunkKey) other;
+            return this.archiveFile == otherKey.archiveFile && this.chunkIndex == otherKey.chunkIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.archiveFile) * 31 + this.chunkIndex;
+        }
+    }
+
+    /**
+     * Archive file, mapped into memory on first use.
+     * <p>
+     * Version 1 files hold each block's serialized bytes as-is.
+     * Version 2 files group blocks into independently compressed chunks, see {@link BlockArchiveWriter}.
+     */
+    static class ArchiveFile {
+        final Path path;
+        final int startHeight;
+        final int endHeight;
+        private final ChunkCache chunkCache;
+        /** Whether to memory-map file, or read blocks from file as needed, so file isn't held open */
+        private final boolean memoryMapped;
+
+        /**
+         * Whole file if memory-mapped, otherwise just its headers. Read-only.
+         * Never modified after loading, so duplicates can be used concurrently.
+         */
+        private ByteBuffer fileBuffer;
+        private int version;
+        /**
+         * Version 1: offset, within file, of each block's entry in data segment.
+         * Version 2: offset of each block's entry within its uncompressed chunk.
+         */
+        private int[] blockOffsets;
+
+        // Version 2 chunk index
+        private int[] chunkFirstBlockIndexes;
+        /** Offset, within file, of each compressed chunk */
+        private int[] chunkOffsets;
+        private int[] chunkCompressedLengths;
+        private int[] chunkUncompressedLengths;
+
+        ArchiveFile(Path path, int startHeight, int endHeight, ChunkCache chunkCache, boolean memoryMapped) {
+            this.path = path;
+            this.startHeight = startHeight;
+            this.endHeight = endHeight;
+            this.chunkCache = chunkCache;
+            this.memoryMapped = memoryMapped;
+        }
+
+        String getFilename() {
+            return this.path.getFileName().toString();
+        }
+
+        /** Maps file, or reads its headers, and parses its header, if not already done. */
+        synchronized boolean open() throws IOException {
+            if (this.fileBuffer != null)
+                return true;
+
+            ByteBuffer buffer;
+            try (FileChannel fileChannel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+                if (this.memoryMapped) {
+                    // Mapping remains valid after channel is closed
+                    buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+                } else {
+                    // Fixed length header, then enough to include variable length header
+                    final int variableHeaderLength = readFully(fileChannel, 0, FIXED_HEADER_LENGTH).getInt(4 * INT_LENGTH);
+                    if (variableHeaderLength < 0 || FIXED_HEADER_LENGTH + variableHeaderLength > fileChannel.size()) {
+                        LOGGER.info("Error: archive file {} is truncated", this.getFilename());
+                        return false;
+                    }
+
+                    buffer = readFully(fileChannel, 0, FIXED_HEADER_LENGTH + variableHeaderLength).asReadOnlyBuffer();
+                }
+            } catch (EOFException e) {
+                LOGGER.info("Error: archive file {} is truncated", this.getFilename());
+                return false;
+            }
+
+            try {
+                // Get info about this file (the "fixed length header")
+                final int fileVersion = buffer.getInt(0);
+                final int fileStartHeight = buffer.getInt(INT_LENGTH);
+                final int fileEndHeight = buffer.getInt(2 * INT_LENGTH);
+                final int blockCount = buffer.getInt(3 * INT_LENGTH);
+                final int variableHeaderLength = buffer.getInt(4 * INT_LENGTH);
+
+                if (fileStartHeight != this.startHeight || fileEndHeight != this.endHeight) {
+                    LOGGER.info("Error: file {} contains range {}-{}", this.getFilename(), fileStartHeight, fileEndHeight);
+                    return false;
+                }
+
+                // Data segment starts after variable length header and data segment length
+                final int dataSegmentStartIndex = FIXED_HEADER_LENGTH + variableHeaderLength + INT_LENGTH;
+
+                switch (fileVersion) {
+                    case 1: {
+                        // Variable length header holds index of each block within data segment
+                        int[] offsets = new int[variableHeaderLength / INT_LENGTH];
+                        for (int i = 0; i < offsets.length; ++i)
+                            offsets[i] = dataSegmentStartIndex + buffer.getInt(FIXED_HEADER_LENGTH + i * INT_LENGTH);
+
+                        this.blockOffsets = offsets;
+                        break;
+                    }
+
+                    case 2: {
+                        ByteBuffer header = buffer.duplicate();
+                        header.position(FIXED_HEADER_LENGTH);
+
+                        final int compressionType = header.getInt();
+                        if (compressionType != BlockArchiveWriter.COMPRESSION_LZ4) {
+                            LOGGER.info("Error: unknown compression type in file {}: {}", this.getFilename(), compressionType);
+                            return false;
+                        }
+
+                        final int chunkCount = header.getInt();
+                        this.chunkFirstBlockIndexes = new int[chunkCount];
+                        this.chunkOffsets = new int[chunkCount];
+                        this.chunkCompressedLengths = new int[chunkCount];
+                        this.chunkUncompressedLengths = new int[chunkCount];
+
+                        for (int i = 0; i < chunkCount; ++i) {
+                            this.chunkFirstBlockIndexes[i] = header.getInt();
+                            this.chunkOffsets[i] = dataSegmentStartIndex + header.getInt();
+                            this.chunkCompressedLengths[i] = header.getInt();
+                            this.chunkUncompressedLengths[i] = header.getInt();
+                        }
+
+                        int[] offsets = new int[blockCount];
+                        for (int i = 0; i < offsets.length; ++i)
+                            offsets[i] = header.getInt();
+
+                        this.blockOffsets = offsets;
+                        break;
+                    }
+
+                    default:
+                        // Make sure the version is one we recognize
+                        LOGGER.info("Error: unknown version in file {}: {}", this.getFilename(), fileVersion);
+                        return false;
+                }
+
+                this.version = fileVersion;
+                this.fileBuffer = buffer;
+                return true;
+            } catch (IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException e) {
+                LOGGER.info("Error: archive file {} is truncated", this.getFilename());
+                return false;
+            }
+        }
+
+        /** Returns read-only view of serialized block at height, or null if not present. */
+        ByteBuffer getBlockBuffer(int height) throws IOException {
+            if (!this.open())
+                return null;
+
+            final int blockIndex = height - this.startHeight;
+            if (blockIndex < 0 || blockIndex >= this.blockOffsets.length) {
+                LOGGER.info("Error: requested height {} but the range of file {} is {}-{}",
+                        height, this.getFilename(), this.startHeight, this.endHeight);
+                return null;
+            }
+
+            int blockOffset = this.blockOffsets[blockIndex];
+            ByteBuffer buffer;
+
+            try {
+                if (this.version != 1) {
+                    buffer = this.getChunk(this.getChunkIndex(blockIndex)).duplicate();
+                } else if (this.memoryMapped) {
+                    buffer = this.fileBuffer.duplicate();
+                } else {
+                    buffer = this.readBlockEntry(blockOffset);
+                    blockOffset = 0;
+                }
+
+                buffer.position(blockOffset);
+
+                // Read the block metadata
+                int blockHeight = buffer.getInt();
+                int blockLength = buffer.getInt();
+
+                // Ensure the block height matches the one requested
+                if (blockHeight != height) {
+                    LOGGER.info("Error: height {} does not match requested: {}", blockHeight, height);
+                    return null;
+                }
+
+                buffer.limit(buffer.position() + blockLength);
+            } catch (IllegalArgumentException | BufferUnderflowException | EOFException e) {
+                LOGGER.info("Unable to read block {} from archive file {}: truncated", height, this.getFilename());
+                return null;
+            }
+
+            return buffer.slice().asReadOnlyBuffer();
+        }
+
+        /** Reads version 1 block entry, i.e. height, length and serialized block, from file. */
+        private ByteBuffer readBlockEntry(int offset) throws IOException {
+            try (FileChannel fileChannel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+                final int blockLength = readFully(fileChannel, offset, 2 * INT_LENGTH).getInt(INT_LENGTH);
+                if (blockLength < 0 || offset + 2L * INT_LENGTH + blockLength > fileChannel.size())
+                    throw new EOFException();
+
+                return readFully(fileChannel, offset, 2 * INT_LENGTH + blockLength);
+            }
+        }
+
+        private int getChunkIndex(int blockIndex) {
+            int chunkIndex = Arrays.binarySearch(this.chunkFirstBlockIndexes, blockIndex);
+
+            // If not the first block in a chunk, then it's in the chunk before the insertion point
+            return chunkIndex >= 0 ? chunkIndex : -chunkIndex - 2;
+        }
+
+        /** Returns decompressed chunk, from cache if possible. */
+        private ByteBuffer getChunk(int chunkIndex) throws IOException {
+            ByteBuffer chunk = this.chunkCache.get(this, chunkIndex);
+            if (chunk != null)
+                return chunk;
+
+            byte[] compressedBytes;
+            if (this.memoryMapped) {
+                compressedBytes = new byte[this.chunkCompressedLengths[chunkIndex]];
+                ByteBuffer compressedBuffer = this.fileBuffer.duplicate();
+                compressedBuffer.position(this.chunkOffsets[chunkIndex]);
+                compressedBuffer.get(compressedBytes);
+            } else {
+                try (FileChannel fileChannel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+                    compressedBytes = readFully(fileChannel, this.chunkOffsets[chunkIndex], this.chunkCompressedLengths[chunkIndex]).array();
+                }
+            }
+
+            byte[] chunkBytes = new byte[this.chunkUncompressedLengths[chunkIndex]];
+            try (InputStream inputStream = new BlockLZ4CompressorInputStream(new ByteArrayInputStream(compressedBytes))) {
+                if (IOUtils.readFully(inputStream, chunkBytes) != chunkBytes.length)
+                    throw new IOException(String.format("Chunk %d of archive file %s is truncated", chunkIndex, this.getFilename()));
+            }
+
+            // Read-only, as chunk is shared by all callers
+            chunk = ByteBuffer.wrap(chunkBytes).asReadOnlyBuffer();
+            this.chunkCache.put(this, chunkIndex, chunk);
+            return chunk;
+        }
+
+        /** Returns offset, within file, of data holding block's entry. File must already be open. */
+        int getFileOffset(int height) {
+            final int blockIndex = height - this.startHeight;
+            if (this.version == 1)
+                return this.blockOffsets[blockIndex];
+
+            return this.chunkOffsets[this.getChunkIndex(blockIndex)];
+        }
+
+        /** Faults in pages covering <tt>length</tt> bytes from <tt>offset</tt>, so later reads don't wait for disk. */
+        void readAhead(int offset, int length) {
+            // Nothing to fault in if blocks are read from file as needed
+            if (!this.memoryMapped)
+                return;
+
+            final ByteBuffer buffer;
+            synchronized (this) {
+                buffer = this.fileBuffer;
+            }
+            if (buffer == null)
+                return;
+
+            final int endOffset = Math.min(buffer.capacity(), offset + length);
+            for (int position = offset; position < endOffset; position += PAGE_SIZE)
+                buffer.get(position);
+        }
+    }
+
+    /** Returns <tt>length</tt> bytes read from <tt>fileChannel</tt>, starting at <tt>offset</tt>, with buffer's position at zero. */
+    private static ByteBuffer readFully(FileChannel fileChannel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining())
+            if (fileChannel.read(buffer, offset + buffer.position()) < 0)
+                throw new EOFException();
+
+        buffer.flip();
+        return buffer;
+    }
+
     public BlockArchiveReader() {
 
     }
@@ -39,11 +432,20 @@ public class BlockArchiveReader {
         return instance;
     }
 
-    private void fetchFileList() {
+    private NavigableMap<Integer, ArchiveFile> fetchFileList() {
+        return this.fetchFileList(null);
+    }
+
+    /**
+     * Scans archive directory for archive files.
+     *
+     * @param previousIndex if not null, files already in this index are reused, keeping any mapping and parsed headers
+     */
+    private NavigableMap<Integer, ArchiveFile> fetchFileList(NavigableMap<Integer, ArchiveFile> previousIndex) {
         Path archivePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive").toAbsolutePath();
         File archiveDirFile = archivePath.toFile();
         String[] files = archiveDirFile.list();
-        Map<String, Triple<Integer, Integer, Integer>> map = new HashMap<>();
+        NavigableMap<Integer, ArchiveFile> index = new TreeMap<>();
 
         if (files != null) {
             for (String file : files) {
@@ -57,26 +459,39 @@ public class BlockArchiveReader {
                 }
                 // Remove the extension and split into two parts
                 String[] parts = filename.substring(0, filename.lastIndexOf('.')).split("-");
-                Integer startHeight = Integer.parseInt(parts[0]);
-                Integer endHeight = Integer.parseInt(parts[1]);
-                Integer range = endHeight - startHeight;
-                map.put(filename, new Triple(startHeight, endHeight, range));
+                try {
+                    int startHeight = Integer.parseInt(parts[0]);
+                    int endHeight = Integer.parseInt(parts[1]);
+
+                    ArchiveFile previousFile = previousIndex != null ? previousIndex.get(startHeight) : null;
+                    if (previousFile != null && previousFile.endHeight == endHeight && previousFile.getFilename().equals(filename))
+                        index.put(startHeight, previousFile);
+                    else
+                        index.put(startHeight, new ArchiveFile(archivePath.resolve(filename), startHeight, endHeight, this.chunkCache, MEMORY_MAP_FILES));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    // Not a usable file
+                }
             }
         }
-        this.fileListCache = Map.copyOf(map);
+
+        this.fileIndex = Collections.unmodifiableNavigableMap(index);
+        return this.fileIndex;
     }
 
-    public Triple<BlockData, List<TransactionData>, List<ATStateData>> fetchBlockAtHeight(int height) {
-        if (this.fileListCache == null) {
-            this.fetchFileList();
-        }
+    private NavigableMap<Integer, ArchiveFile> getFileIndex() {
+        NavigableMap<Integer, ArchiveFile> index = this.fileIndex;
+        if (index == null)
+            index = this.fetchFileList();
+
+        return index;
+    }
 
-        byte[] serializedBytes = this.fetchSerializedBlockBytesForHeight(height);
-        if (serializedBytes == null) {
+    public Triple<BlockData, List<TransactionData>, List<ATStateData>> fetchBlockAtHeight(int height) {
+        ByteBuffer byteBuffer = this.fetchSerializedBlockBufferForHeight(height);
+        if (byteBuffer == null) {
             return null;
         }
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(serializedBytes);
         Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo = null;
         try {
             blockInfo = BlockTransformer.fromByteBuffer(byteBuffer);
@@ -94,10 +509,6 @@ public class BlockArchiveReader {
     public Triple<BlockData, List<TransactionData>, List<ATStateData>> fetchBlockWithSignature(
             byte[] signature, Repository repository) {
 
-        if (this.fileListCache == null) {
-            this.fetchFileList();
-        }
-
         Integer height = this.fetchHeightForSignature(signature, repository);
         if (height != null) {
             return this.fetchBlockAtHeight(height);
@@ -110,16 +521,96 @@ public class BlockArchiveReader {
 
         List<Triple<BlockData, List<TransactionData>, List<ATStateData>>> blockInfoList = new ArrayList<>();
 
-        for (int height = startHeight; height <= endHeight; height++) {
-            Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo = this.fetchBlockAtHeight(height);
-            if (blockInfo == null) {
-                return blockInfoList;
-            }
-            blockInfoList.add(blockInfo);
+        try {
+            this.streamBlocks(startHeight, endHeight, blockInfoList::add);
+        } catch (DataException e) {
+            // Return the blocks we were able to read, as before
         }
+
         return blockInfoList;
     }
 
+    /**
+     * Passes serialized blocks from <tt>startHeight</tt> to <tt>endHeight</tt> inclusive to <tt>consumer</tt>, in order.
+     * <p>
+     * Blocks are not deserialized. Streaming stops early at the first block missing from the archive,
+     * or if <tt>consumer</tt> returns false.
+     *
+     * @return number of blocks passed to consumer
+     * @throws DataException if thrown by consumer
+     */
+    public int streamSerializedBlocks(int startHeight, int endHeight, SerializedBlockConsumer consumer) throws DataException {
+        int height = startHeight;
+        int count = 0;
+
+        while (height <= endHeight) {
+            ArchiveFile archiveFile = this.getFileForHeight(height);
+            if (archiveFile == null)
+                break;
+
+            final int fileEndHeight = Math.min(endHeight, archiveFile.endHeight);
+            try {
+                if (!archiveFile.open())
+                    break;
+            } catch (IOException e) {
+                LOGGER.info("Unable to read block {} from archive: {}", height, e.getMessage());
+                break;
+            }
+            int readAheadOffset = archiveFile.getFileOffset(height);
+
+            for (; height <= fileEndHeight; ++height) {
+                // Keep pages ahead of consumer loaded
+                final int fileOffset = archiveFile.getFileOffset(height);
+                if (fileOffset >= readAheadOffset) {
+                    final int offset = readAheadOffset;
+                    this.readAheadExecutor.execute(() -> archiveFile.readAhead(offset, READ_AHEAD_LENGTH));
+                    readAheadOffset += READ_AHEAD_LENGTH;
+                }
+
+                ByteBuffer serializedBlock;
+                try {
+                    serializedBlock = archiveFile.getBlockBuffer(height);
+                } catch (IOException e) {
+                    LOGGER.info("Unable to read block {} from archive: {}", height, e.getMessage());
+                    return count;
+                }
+                if (serializedBlock == null)
+                    return count;
+
+                ++count;
+                if (!consumer.accept(height, serializedBlock))
+                    return count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Passes deserialized blocks from <tt>startHeight</tt> to <tt>endHeight</tt> inclusive to <tt>consumer</tt>, in order.
+     * <p>
+     * Only one block is held in memory at a time, unless retained by the consumer.
+     *
+     * @return number of blocks passed to consumer
+     * @throws DataException if a block can't be deserialized, or if thrown by consumer
+     */
+    public int streamBlocks(int startHeight, int endHeight, BlockConsumer consumer) throws DataException {
+        return this.streamSerializedBlocks(startHeight, endHeight, (height, serializedBlock) -> {
+            Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo;
+            try {
+                blockInfo = BlockTransformer.fromByteBuffer(serializedBlock);
+            } catch (TransformationException e) {
+                throw new DataException(String.format("Unable to deserialize archived block at height %d", height), e);
+            }
+
+            // Block height is stored outside of the main serialized bytes, so it
+            // won't be set automatically.
+            blockInfo.getA().setHeight(height);
+
+            return consumer.accept(blockInfo);
+        });
+    }
+
     public Integer fetchHeightForSignature(byte[] signature, Repository repository) {
         // Lookup the height for the requested signature
         try {
@@ -144,144 +635,94 @@ public class BlockArchiveReader {
         }
     }
 
-    private String getFilenameForHeight(int height) {
-        if (this.fileListCache == null) {
-            this.fetchFileList();
-        }
-
-        Iterator it = this.fileListCache.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pair = (Map.Entry) it.next();
-            if (pair == null && pair.getKey() == null && pair.getValue() == null) {
-                continue;
-            }
-            Triple<Integer, Integer, Integer> heightInfo = (Triple<Integer, Integer, Integer>) pair.getValue();
-            Integer startHeight = heightInfo.getA();
-            Integer endHeight = heightInfo.getB();
-
-            if (height >= startHeight && height <= endHeight) {
-                // Found the correct file
-                String filename = (String) pair.getKey();
-                return filename;
-            }
-        }
+    private ArchiveFile getFileForHeight(int height) {
+        Map.Entry<Integer, ArchiveFile> entry = this.getFileIndex().floorEntry(height);
+        if (entry == null || height > entry.getValue().endHeight)
+            return null;
 
-        return null;
+        return entry.getValue();
     }
 
     public byte[] fetchSerializedBlockBytesForSignature(byte[] signature, boolean includeHeightPrefix, Repository repository) {
-        if (this.fileListCache == null) {
-            this.fetchFileList();
-        }
-
         Integer height = this.fetchHeightForSignature(signature, repository);
         if (height != null) {
-            byte[] blockBytes = this.fetchSerializedBlockBytesForHeight(height);
-            if (blockBytes == null) {
+            ByteBuffer blockBuffer = this.fetchSerializedBlockBufferForHeight(height);
+            if (blockBuffer == null) {
                 return null;
             }
 
             // When responding to a peer with a BLOCK message, we must prefix the byte array with the block height
             // This mimics the toData() method in BlockMessage and CachedBlockMessage
+            ByteBuffer bytes = ByteBuffer.allocate((includeHeightPrefix ? INT_LENGTH : 0) + blockBuffer.remaining());
             if (includeHeightPrefix) {
-                ByteArrayOutputStream bytes = new ByteArrayOutputStream(blockBytes.length + INT_LENGTH);
-                try {
-                    bytes.write(Ints.toByteArray(height));
-                    bytes.write(blockBytes);
-                    return bytes.toByteArray();
-
-                } catch (IOException e) {
-                    return null;
-                }
+                bytes.putInt(height);
             }
-            return blockBytes;
+            bytes.put(blockBuffer);
+
+            return bytes.array();
         }
         return null;
     }
 
     public byte[] fetchSerializedBlockBytesForHeight(int height) {
-        String filename = this.getFilenameForHeight(height);
-        if (filename == null) {
-            // We don't have this block in the archive
-            // Invalidate the file list cache in case it is out of date
-            this.invalidateFileListCache();
+        ByteBuffer blockBuffer = this.fetchSerializedBlockBufferForHeight(height);
+        if (blockBuffer == null) {
             return null;
         }
 
-        Path filePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive", filename).toAbsolutePath();
-        RandomAccessFile file = null;
-        try {
-            file = new RandomAccessFile(filePath.toString(), "r");
-            // Get info about this file (the "fixed length header")
-            final int version = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int startHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int endHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            file.readInt(); // Block count (unused) // Do not remove or comment out, as it is moving the file pointer
-            final int variableHeaderLength = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int fixedHeaderLength = (int)file.getFilePointer();
-            // End of fixed length header
-
-            // Make sure the version is one we recognize
-            if (version != 1) {
-                LOGGER.info("Error: unknown version in file {}: {}", filename, version);
-                return null;
-            }
+        byte[] blockBytes = new byte[blockBuffer.remaining()];
+        blockBuffer.get(blockBytes);
+        return blockBytes;
+    }
 
-            // Verify that the block is within the reported range
-            if (height < startHeight || height > endHeight) {
-                LOGGER.info("Error: requested height {} but the range of file {} is {}-{}",
-                        height, filename, startHeight, endHeight);
+    /**
+     * Returns read-only view of block's serialized bytes, directly from the memory-mapped archive file where possible.
+     * <p>
+     * Nothing is copied, so the returned buffer can be written to a channel as-is.
+     *
+     * @return buffer with position at start of block and limit at end, or null if block isn't archived
+     */
+    public ByteBuffer fetchSerializedBlockBufferForHeight(int height) {
+        ArchiveFile archiveFile = this.getFileForHeight(height);
+        if (archiveFile == null) {
+            // We don't have this block in the archive, unless it's in a file written since file list was cached
+            if (!this.isBeyondFileIndex(height))
                 return null;
-            }
-
-            // Seek to the location of the block index in the variable length header
-            final int locationOfBlockIndexInVariableHeaderSegment = (height - startHeight) * INT_LENGTH;
-            file.seek(fixedHeaderLength + locationOfBlockIndexInVariableHeaderSegment);
-
-            // Read the value to obtain the index of this block in the data segment
-            int locationOfBlockInDataSegment = file.readInt();
 
-            // Now seek to the block data itself
-            int dataSegmentStartIndex = fixedHeaderLength + variableHeaderLength + INT_LENGTH; // Confirmed correct
-            file.seek(dataSegmentStartIndex + locationOfBlockInDataSegment);
+            // Rescan file list, but keep already indexed files, and so their mappings and cached chunks
+            this.fetchFileList(this.fileIndex);
 
-            // Read the block metadata
-            int blockHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            int blockLength = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-
-            // Ensure the block height matches the one requested
-            if (blockHeight != height) {
-                LOGGER.info("Error: height {} does not match requested: {}", blockHeight, height);
+            archiveFile = this.getFileForHeight(height);
+            if (archiveFile == null)
                 return null;
-            }
-
-            // Now retrieve the block's serialized bytes
-            byte[] blockBytes = new byte[blockLength];
-            file.read(blockBytes);
-
-            return blockBytes;
+        }
 
-        } catch (FileNotFoundException e) {
-            LOGGER.info("File {} not found: {}", filename, e.getMessage());
+        try {
+            return archiveFile.getBlockBuffer(height);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            LOGGER.info("File {} not found: {}", archiveFile.getFilename(), e.getMessage());
+            // File list must be out of date
+            this.invalidateFileListCache();
             return null;
         } catch (IOException e) {
             LOGGER.info("Unable to read block {} from archive: {}", height, e.getMessage());
             return null;
         }
-        finally {
-            // Close the file
-            if (file != null) {
-                try {
-                    file.close();
-                } catch (IOException e) {
-                    // Failed to close, but no need to handle this
-                }
-            }
-        }
+    }
+
+    /** Returns whether <tt>height</tt> is after highest height in cached file list, or file list isn't cached. */
+    private boolean isBeyondFileIndex(int height) {
+        NavigableMap<Integer, ArchiveFile> index = this.fileIndex;
+        if (index == null || index.isEmpty())
+            return true;
+
+        return height > index.lastEntry().getValue().endHeight;
     }
 
     public void invalidateFileListCache() {
-        this.fileListCache = null;
+        // Mappings of files no longer indexed are released once garbage collected
+        this.fileIndex = null;
+        this.chunkCache.clear();
     }
 
 }
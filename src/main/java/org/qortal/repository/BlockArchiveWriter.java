@@ -1,6 +1,7 @@
 package org.qortal.repository;
 
 import com.google.common.primitives.Ints;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.block.Block;
@@ -13,12 +14,30 @@ import org.qortal.transform.TransformationException;
 import org.qortal.transform.block.BlockTransformer;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes blocks to archive files.
+ * <p>
+ * All versions start with a fixed length header: version, start height, end height, block count
+ * and variable length header length. Then follows the variable length header, data segment length and data segment.
+ * <p>
+ * Version 1: variable length header holds each block's offset within the data segment.
+ * Data segment holds, for each block: height, length and serialized block bytes.
+ * <p>
+ * Version 2: data segment is split into chunks of roughly {@link #CHUNK_SIZE_TARGET} bytes, each compressed separately,
+ * so a block can be read by decompressing only its chunk. Variable length header holds: compression type,
+ * chunk count, then for each chunk: first block index, offset within data segment, compressed length
+ * and uncompressed length. Then each block's offset within its uncompressed chunk.
+ */
 public class BlockArchiveWriter {
 
     public enum BlockArchiveWriteResult {
@@ -32,12 +51,18 @@ public class BlockArchiveWriter {
 
     public static final long DEFAULT_FILE_SIZE_TARGET = 100 * 1024 * 1024; // 100MiB
 
+    /** Version 2 chunk compression: LZ4 block format */
+    public static final int COMPRESSION_LZ4 = 1;
+    /** Uncompressed size of version 2 chunks (bytes). Larger compresses better, but makes random reads slower. */
+    private static final int CHUNK_SIZE_TARGET = 256 * 1024;
+
     private int startHeight;
     private final int endHeight;
     private final Repository repository;
 
     private long fileSizeTarget = DEFAULT_FILE_SIZE_TARGET;
     private boolean shouldEnforceFileSizeTarget = true;
+    private int version = Settings.getInstance().getArchiveVersion();
 
     private int writtenCount;
     private int lastWrittenHeight;
@@ -147,27 +172,26 @@ public class BlockArchiveWriter {
 
         // We have enough blocks to create a new file
         int endHeight = startHeight + i - 1;
-        int version = 1;
         String filePath = String.format("%s/%d-%d.dat", archivePath.toString(), startHeight, endHeight);
-        FileOutputStream fileOutputStream = new FileOutputStream(filePath);
-        // Write version number
-        fileOutputStream.write(Ints.toByteArray(version));
-        // Write start height
-        fileOutputStream.write(Ints.toByteArray(startHeight));
-        // Write end height
-        fileOutputStream.write(Ints.toByteArray(endHeight));
-        // Write total count
-        fileOutputStream.write(Ints.toByteArray(i));
-        // Write dynamic header (block indexes) segment length
-        fileOutputStream.write(Ints.toByteArray(headerBytes.size()));
-        // Write dynamic header (block indexes) data
-        headerBytes.writeTo(fileOutputStream);
-        // Write data segment (block data) length
-        fileOutputStream.write(Ints.toByteArray(bytes.size()));
-        // Write data
-        bytes.writeTo(fileOutputStream);
-        // Close the file
-        fileOutputStream.close();
+
+        if (this.version == 1) {
+            FileOutputStream fileOutputStream = new FileOutputStream(filePath);
+            // Write fixed length header
+            writeFixedHeader(fileOutputStream, this.version, startHeight, endHeight, i, headerBytes.size());
+            // Write dynamic header (block indexes) data
+            headerBytes.writeTo(fileOutputStream);
+            // Write data segment (block data) length
+            fileOutputStream.write(Ints.toByteArray(bytes.size()));
+            // Write data
+            bytes.writeTo(fileOutputStream);
+            // Close the file
+            fileOutputStream.close();
+        } else {
+            int[] blockIndexes = new int[i];
+            ByteBuffer.wrap(headerBytes.toByteArray()).asIntBuffer().get(blockIndexes);
+
+            writeFile(Paths.get(filePath), this.version, startHeight, endHeight, blockIndexes, bytes.toByteArray());
+        }
 
         // Invalidate cache so that the rest of the app picks up the new file
         BlockArchiveReader.getInstance().invalidateFileListCache();
@@ -178,6 +202,152 @@ public class BlockArchiveWriter {
         return BlockArchiveWriteResult.OK;
     }
 
+    private static void writeFixedHeader(OutputStream outputStream, int version, int startHeight, int endHeight,
+            int blockCount, int variableHeaderLength) throws IOException {
+        // Write version number
+        outputStream.write(Ints.toByteArray(version));
+        // Write start height
+        outputStream.write(Ints.toByteArray(startHeight));
+        // Write end height
+        outputStream.write(Ints.toByteArray(endHeight));
+        // Write total count
+        outputStream.write(Ints.toByteArray(blockCount));
+        // Write dynamic header segment length
+        outputStream.write(Ints.toByteArray(variableHeaderLength));
+    }
+
+    /**
+     * Writes archive file in given version.
+     *
+     * @param blockIndexes offset of each block's entry within <tt>data</tt>
+     * @param data version 1 data segment, i.e. height, length and serialized bytes of each block
+     */
+    private static void writeFile(Path filePath, int version, int startHeight, int endHeight, int[] blockIndexes, byte[] data) throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream dataBytes = new ByteArrayOutputStream();
+
+        switch (version) {
+            case 1:
+                for (int blockIndex : blockIndexes)
+                    headerBytes.write(Ints.toByteArray(blockIndex));
+
+                dataBytes.write(data);
+                break;
+
+            case 2: {
+                ByteArrayOutputStream chunkIndexBytes = new ByteArrayOutputStream();
+                ByteArrayOutputStream blockOffsetBytes = new ByteArrayOutputStream();
+                int chunkCount = 0;
+
+                for (int firstBlock = 0; firstBlock < blockIndexes.length; ) {
+                    final int chunkStart = blockIndexes[firstBlock];
+
+                    // Add blocks to chunk until it reaches target size
+                    int nextBlock = firstBlock;
+                    do {
+                        blockOffsetBytes.write(Ints.toByteArray(blockIndexes[nextBlock] - chunkStart));
+                        ++nextBlock;
+                    } while (nextBlock < blockIndexes.length && blockIndexes[nextBlock] - chunkStart < CHUNK_SIZE_TARGET);
+
+                    final int chunkEnd = nextBlock < blockIndexes.length ? blockIndexes[nextBlock] : data.length;
+
+                    ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
+                    try (BlockLZ4CompressorOutputStream compressorOutputStream = new BlockLZ4CompressorOutputStream(compressedBytes)) {
+                        compressorOutputStream.write(data, chunkStart, chunkEnd - chunkStart);
+                    }
+
+                    chunkIndexBytes.write(Ints.toByteArray(firstBlock));
+                    chunkIndexBytes.write(Ints.toByteArray(dataBytes.size()));
+                    chunkIndexBytes.write(Ints.toByteArray(compressedBytes.size()));
+                    chunkIndexBytes.write(Ints.toByteArray(chunkEnd - chunkStart));
+                    compressedBytes.writeTo(dataBytes);
+
+                    ++chunkCount;
+                    firstBlock = nextBlock;
+                }
+
+                headerBytes.write(Ints.toByteArray(COMPRESSION_LZ4));
+                headerBytes.write(Ints.toByteArray(chunkCount));
+                chunkIndexBytes.writeTo(headerBytes);
+                blockOffsetBytes.writeTo(headerBytes);
+                break;
+            }
+
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported archive version %d", version));
+        }
+
+        try (FileOutputStream fileOutputStream = new FileOutputStream(filePath.toFile())) {
+            writeFixedHeader(fileOutputStream, version, startHeight, endHeight, blockIndexes.length, headerBytes.size());
+            headerBytes.writeTo(fileOutputStream);
+            fileOutputStream.write(Ints.toByteArray(dataBytes.size()));
+            dataBytes.writeTo(fileOutputStream);
+        }
+    }
+
+    /**
+     * Rewrites archive file in given version, if not already in that version.
+     * <p>
+     * The new file is written alongside the original, checked block by block,
+     * and only then moved over the original. Files are read onto the heap, not memory-mapped,
+     * so they can be replaced on all platforms. The node should not be running.
+     *
+     * @return true if file was rewritten, false if already in requested version
+     * @throws IOException if file couldn't be read or rewritten, in which case the original is left intact
+     */
+    public static boolean migrateFile(Path filePath, int version) throws IOException {
+        final int fileVersion;
+        final int startHeight;
+        final int endHeight;
+        try (DataInputStream inputStream = new DataInputStream(Files.newInputStream(filePath))) {
+            fileVersion = inputStream.readInt();
+            startHeight = inputStream.readInt();
+            endHeight = inputStream.readInt();
+        }
+
+        if (fileVersion == version)
+            return false;
+
+        BlockArchiveReader.ChunkCache chunkCache = new BlockArchiveReader.ChunkCache(2);
+        BlockArchiveReader.ArchiveFile archiveFile = new BlockArchiveReader.ArchiveFile(filePath, startHeight, endHeight, chunkCache, false);
+
+        // Rebuild version 1 data segment from original file
+        int[] blockIndexes = new int[endHeight - startHeight + 1];
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int height = startHeight; height <= endHeight; ++height) {
+            ByteBuffer blockBuffer = archiveFile.getBlockBuffer(height);
+            if (blockBuffer == null)
+                throw new IOException(String.format("Unable to read block %d from %s", height, filePath));
+
+            byte[] blockBytes = new byte[blockBuffer.remaining()];
+            blockBuffer.get(blockBytes);
+
+            blockIndexes[height - startHeight] = data.size();
+            data.write(Ints.toByteArray(height));
+            data.write(Ints.toByteArray(blockBytes.length));
+            data.write(blockBytes);
+        }
+
+        Path tempPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        try {
+            writeFile(tempPath, version, startHeight, endHeight, blockIndexes, data.toByteArray());
+
+            // Check every block in new file matches original
+            BlockArchiveReader.ArchiveFile newArchiveFile = new BlockArchiveReader.ArchiveFile(tempPath, startHeight, endHeight, chunkCache, false);
+            for (int height = startHeight; height <= endHeight; ++height) {
+                ByteBuffer newBlockBuffer = newArchiveFile.getBlockBuffer(height);
+                if (newBlockBuffer == null || !newBlockBuffer.equals(archiveFile.getBlockBuffer(height)))
+                    throw new IOException(String.format("Block %d mismatch after rewriting %s", height, filePath));
+            }
+
+            Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+
+        return true;
+    }
+
     public int getWrittenCount() {
         return this.writtenCount;
     }
@@ -194,6 +364,10 @@ public class BlockArchiveWriter {
         this.fileSizeTarget = fileSizeTarget;
     }
 
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     // For testing, to avoid having to pre-calculate file sizes
     public void setShouldEnforceFileSizeTarget(boolean shouldEnforceFileSizeTarget) {
         this.shouldEnforceFileSizeTarget = shouldEnforceFileSizeTarget;
@@ -4,6 +4,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.qortal.block.BlockChain;
+import org.qortal.block.ChainValidator;
 import org.qortal.controller.Controller;
 import org.qortal.crypto.Crypto;
 import org.qortal.data.account.MintingAccountData;
@@ -14,6 +15,7 @@ import org.qortal.network.Network;
 import org.qortal.repository.hsqldb.HSQLDBImportExport;
 import org.qortal.repository.hsqldb.HSQLDBRepositoryFactory;
 import org.qortal.settings.Settings;
+import org.qortal.transform.block.BlockTransformer;
 import org.qortal.utils.NTP;
 import org.qortal.utils.SevenZ;
 
@@ -25,6 +27,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.*;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeoutException;
@@ -170,6 +173,13 @@ public class Bootstrap {
         try {
             BlockChain.validate();
 
+            // Also verify signatures of recent blocks, in parallel
+            // If pruned, subtract an extra 10 to allow room for error, as BlockChain.validate() does
+            boolean isPruned = Settings.getInstance().isTopOnly() || Settings.getInstance().isArchiveEnabled();
+            int blocksToValidate = isPruned ? Settings.getInstance().getPruneBlockLimit() - 10 : 1440;
+            int chainHeight = repository.getBlockRepository().getBlockchainHeight();
+            ChainValidator.getInstance().validate(chainHeight - blocksToValidate + 1, chainHeight);
+
             LOGGER.info("Blockchain is valid");
 
             return true;
@@ -202,6 +212,53 @@ public class Bootstrap {
         }
     }
 
+    /**
+     * validateArchive
+     * Checks that block archive is complete and that each archived block references the one before it.
+     * Blocks are streamed from the archive without being deserialized, so this runs at disk speed.
+     * @return true if valid, false if not
+     * @throws DataException
+     */
+    public boolean validateArchive(Repository repository) throws DataException {
+        final int archiveHeight = repository.getBlockArchiveRepository().getBlockArchiveHeight();
+        if (archiveHeight <= 2) {
+            // Nothing archived
+            return true;
+        }
+
+        LOGGER.info("Validating block archive...");
+
+        // Archive starts at height 2, and block archive height is the next height to be archived
+        final int startHeight = 2;
+        final int endHeight = archiveHeight - 1;
+        final byte[][] previousSignature = new byte[1][];
+
+        int blockCount = BlockArchiveReader.getInstance().streamSerializedBlocks(startHeight, endHeight, (height, serializedBlock) -> {
+            if (previousSignature[0] != null && !Arrays.equals(previousSignature[0], BlockTransformer.getReferenceFromByteBuffer(serializedBlock))) {
+                LOGGER.info("Archived block {} doesn't reference previous block", height);
+                return false;
+            }
+
+            previousSignature[0] = BlockTransformer.getSignatureFromByteBuffer(serializedBlock);
+            return true;
+        });
+
+        if (blockCount != endHeight - startHeight + 1) {
+            LOGGER.info("Block archive is incomplete: found {} blocks, expected {}", blockCount, endHeight - startHeight + 1);
+            return false;
+        }
+
+        // First unarchived block, if we have it, should follow on from archive
+        BlockData nextBlockData = repository.getBlockRepository().fromHeight(archiveHeight);
+        if (nextBlockData != null && !Arrays.equals(previousSignature[0], nextBlockData.getReference())) {
+            LOGGER.info("Block {} doesn't reference last archived block", archiveHeight);
+            return false;
+        }
+
+        LOGGER.info("Block archive is valid");
+        return true;
+    }
+
     public String create() throws DataException, InterruptedException, IOException {
 
         // Make sure we have a repository instance
@@ -341,6 +398,16 @@ public class Bootstrap {
             this.downloadToPath(path);
             this.importFromPath(path);
 
+            if (Settings.getInstance().isArchiveEnabled()) {
+                this.updateStatus("Validating block archive...");
+
+                try (final Repository repository = RepositoryManager.getRepository()) {
+                    if (!this.validateArchive(repository)) {
+                        throw new DataException("Bootstrap block archive is invalid");
+                    }
+                }
+            }
+
         } catch (InterruptedException | DataException | IOException e) {
             throw new DataException("Unable to import bootstrap", e);
         }
@@ -456,6 +523,9 @@ public class Bootstrap {
             Path output = path.toAbsolutePath().getParent().toAbsolutePath();
             Path inputPath = Paths.get(output.toString(), "bootstrap");
             Path outputPath = Paths.get(Settings.getInstance().getRepositoryPath());
+
+            // Stop using existing archive files before they're deleted
+            BlockArchiveReader.getInstance().invalidateFileListCache();
             FileUtils.deleteDirectory(outputPath.toFile());
 
             this.updateStatus("Extracting bootstrap...");
@@ -469,6 +539,9 @@ public class Bootstrap {
             this.updateStatus("Moving files to output directory...");
             Files.move(inputPath, outputPath);
 
+            // Archive files have been replaced, so any mapped or indexed files are now stale
+            BlockArchiveReader.getInstance().invalidateFileListCache();
+
             this.updateStatus("Starting repository from bootstrap...");
         }
         finally {
@@ -2,6 +2,7 @@ package org.qortal.repository;
 
 import java.util.List;
 
+import org.qortal.data.TradeCandleData;
 import org.qortal.data.crosschain.TradeBotData;
 
 public interface CrossChainRepository {
@@ -18,4 +19,24 @@ public interface CrossChainRepository {
 	/** Delete trade-bot states using passed private key. */
 	public int delete(byte[] tradePrivateKey) throws DataException;
 
+	// Completed trades
+
+	/** Saves cross-chain trade completed by AT, i.e. redeemed, merging it into trade candles. */
+	public void saveCompletedTrade(String atAddress, String foreignBlockchain, long qortAmount, long foreignAmount, long timestamp) throws DataException;
+
+	/** Deletes cross-chain trade completed by AT, if any, recalculating affected trade candles. */
+	public void deleteCompletedTrade(String atAddress) throws DataException;
+
+	/** Deletes all completed cross-chain trades, and trade candles, e.g. before rebuilding them. */
+	public void deleteAllCompletedTrades() throws DataException;
+
+	/**
+	 * Returns OHLCV candles for completed trades with foreignBlockchain,
+	 * starting between minimumTimestamp and maximumTimestamp inclusive, if given.
+	 * <p>
+	 * Candle prices are QORT per unit of foreign coin, so volume is in foreign coin and other volume is in QORT.
+	 */
+	public List<TradeCandleData> getTradeCandles(String foreignBlockchain, TradeCandleData.Interval interval,
+			Long minimumTimestamp, Long maximumTimestamp, Integer limit, Integer offset, Boolean reverse) throws DataException;
+
 }
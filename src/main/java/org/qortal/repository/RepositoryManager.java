@@ -48,6 +48,17 @@ public abstract class RepositoryManager {
 		return repositoryFactory.tryRepository();
 	}
 
+	/**
+	 * Returns repository that can only be used for reads, e.g. by API, which won't compete
+	 * with consensus-critical work for repository connections.
+	 */
+	public static Repository getReadOnlyRepository() throws DataException {
+		if (repositoryFactory == null)
+			throw new DataException("No repository available");
+
+		return repositoryFactory.getReadOnlyRepository();
+	}
+
 	public static void closeRepositoryFactory() throws DataException {
 		repositoryFactory.close();
 		repositoryFactory = null;
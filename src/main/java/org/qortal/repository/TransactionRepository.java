@@ -311,6 +311,17 @@ public interface TransactionRepository {
 
 	public void save(TransactionData transactionData) throws DataException;
 
+	/**
+	 * Save batch of new transactions and add them to unconfirmed transactions pile.
+	 * <p>
+	 * Equivalent to calling {@link #save(TransactionData)} then {@link #unconfirmTransaction(TransactionData)}
+	 * for each transaction, but rows common to all transaction types are written using batched statements.
+	 * 
+	 * @param transactions
+	 * @throws DataException
+	 */
+	public void saveUnconfirmed(List<TransactionData> transactions) throws DataException;
+
 	public void delete(TransactionData transactionData) throws DataException;
 
 }
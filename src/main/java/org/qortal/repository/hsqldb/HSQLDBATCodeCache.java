@@ -0,0 +1,85 @@
+package org.qortal.repository.hsqldb;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.qortal.crypto.Crypto;
+import org.qortal.utils.ByteArray;
+
+/**
+ * Cache of AT code segments, keyed by code hash, shared by all repository sessions.
+ * <p>
+ * Many executable ATs, e.g. cross-chain trade ATs, share the same code, so there's no need
+ * to read every AT's code from the repository for every block.
+ * <p>
+ * Code is only cached if it matches its hash. Cached code must not be modified,
+ * which is fine for AT execution as CIYAM AT only uses a read-only view of code.
+ */
+public class HSQLDBATCodeCache {
+
+	/** Maximum number of distinct code segments to cache */
+	private static final int MAX_SIZE = 256;
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatsSnapshot {
+		public AtomicLong hits = new AtomicLong();
+		public AtomicLong misses = new AtomicLong();
+		/** Total code bytes served from cache instead of repository */
+		public AtomicLong bytesSaved = new AtomicLong();
+
+		public StatsSnapshot() {
+		}
+	}
+
+	private static final StatsSnapshot stats = new StatsSnapshot();
+
+	// Access-ordered so eldest entry is least-recently used
+	private static final Map<ByteArray, byte[]> codeByHash = new LinkedHashMap<>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ByteArray, byte[]> eldest) {
+			return this.size() > MAX_SIZE;
+		}
+	};
+
+	private HSQLDBATCodeCache() {
+	}
+
+	public static StatsSnapshot getStatsSnapshot() {
+		return stats;
+	}
+
+	/** Returns cached code for <tt>codeHash</tt>, or null if not cached. */
+	public static byte[] get(byte[] codeHash) {
+		byte[] codeBytes;
+		synchronized (codeByHash) {
+			codeBytes = codeByHash.get(ByteArray.wrap(codeHash));
+		}
+
+		if (codeBytes == null) {
+			stats.misses.incrementAndGet();
+			return null;
+		}
+
+		stats.hits.incrementAndGet();
+		stats.bytesSaved.addAndGet(codeBytes.length);
+		return codeBytes;
+	}
+
+	/** Caches <tt>codeBytes</tt>, but only if they match <tt>codeHash</tt>. */
+	public static void put(byte[] codeHash, byte[] codeBytes) {
+		if (codeHash == null || codeBytes == null || !Arrays.equals(codeHash, Crypto.digest(codeBytes)))
+			return;
+
+		synchronized (codeByHash) {
+			codeByHash.put(ByteArray.copyOf(codeHash), codeBytes);
+		}
+	}
+
+}
@@ -3,14 +3,15 @@ package org.qortal.repository.hsqldb;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.qortal.controller.Controller;
 import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
+import org.qortal.data.block.BlockData;
 import org.qortal.repository.ATRepository;
 import org.qortal.repository.DataException;
 import org.qortal.utils.ByteArray;
@@ -98,16 +99,38 @@ public class HSQLDBATRepository implements ATRepository {
 
 	@Override
 	public List<ATData> getAllExecutableATs() throws DataException {
-		String sql = "SELECT AT_address, creator, created_when, version, asset_id, code_bytes, code_hash, "
+		return this.getExecutableATs(null);
+	}
+
+	@Override
+	public List<ATData> getAllExecutableATs(int currentBlockHeight) throws DataException {
+		return this.getExecutableATs(currentBlockHeight);
+	}
+
+	private List<ATData> getExecutableATs(Integer currentBlockHeight) throws DataException {
+		StringBuilder sql = new StringBuilder(512);
+		List<Object> bindParams = new ArrayList<>();
+
+		// Code is fetched separately, via cache, as many ATs share the same code
+		sql.append("SELECT AT_address, creator, created_when, version, asset_id, code_hash, "
 				+ "is_sleeping, sleep_until_height, had_fatal_error, "
 				+ "is_frozen, frozen_balance, sleep_until_message_timestamp "
 				+ "FROM ATs "
-				+ "WHERE is_finished = false "
-				+ "ORDER BY created_when ASC";
+				+ "WHERE is_finished = false ");
+
+		if (currentBlockHeight != null) {
+			// Skip ATs that will still be sleeping until a later height, as they won't execute.
+			// Frozen ATs are always executed, and sleep-until-message ATs might be woken by a message.
+			sql.append("AND (is_sleeping = false OR sleep_until_height IS NULL OR sleep_until_height <= ? "
+					+ "OR is_frozen = true OR sleep_until_message_timestamp IS NOT NULL) ");
+			bindParams.add(currentBlockHeight);
+		}
+
+		sql.append("ORDER BY created_when ASC");
 
 		List<ATData> executableATs = new ArrayList<>();
 
-		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), bindParams.toArray())) {
 			if (resultSet == null)
 				return executableATs;
 
@@ -119,25 +142,26 @@ public class HSQLDBATRepository implements ATRepository {
 				long created = resultSet.getLong(3);
 				int version = resultSet.getInt(4);
 				long assetId = resultSet.getLong(5);
-				byte[] codeBytes = resultSet.getBytes(6); // Actually BLOB
-				byte[] codeHash = resultSet.getBytes(7);
-				boolean isSleeping = resultSet.getBoolean(8);
+				byte[] codeHash = resultSet.getBytes(6);
+				boolean isSleeping = resultSet.getBoolean(7);
 
-				Integer sleepUntilHeight = resultSet.getInt(9);
+				Integer sleepUntilHeight = resultSet.getInt(8);
 				if (sleepUntilHeight == 0 && resultSet.wasNull())
 					sleepUntilHeight = null;
 
-				boolean hadFatalError = resultSet.getBoolean(10);
-				boolean isFrozen = resultSet.getBoolean(11);
+				boolean hadFatalError = resultSet.getBoolean(9);
+				boolean isFrozen = resultSet.getBoolean(10);
 
-				Long frozenBalance = resultSet.getLong(12);
+				Long frozenBalance = resultSet.getLong(11);
 				if (frozenBalance == 0 && resultSet.wasNull())
 					frozenBalance = null;
 
-				Long sleepUntilMessageTimestamp = resultSet.getLong(13);
+				Long sleepUntilMessageTimestamp = resultSet.getLong(12);
 				if (sleepUntilMessageTimestamp == 0 && resultSet.wasNull())
 					sleepUntilMessageTimestamp = null;
 
+				byte[] codeBytes = this.getCodeBytes(atAddress, codeHash);
+
 				ATData atData = new ATData(atAddress, creatorPublicKey, created, version, assetId, codeBytes, codeHash,
 						isSleeping, sleepUntilHeight, isFinished, hadFatalError, isFrozen, frozenBalance,
 						sleepUntilMessageTimestamp);
@@ -151,6 +175,28 @@ public class HSQLDBATRepository implements ATRepository {
 		}
 	}
 
+	/** Returns AT's code, from cache if possible. */
+	private byte[] getCodeBytes(String atAddress, byte[] codeHash) throws DataException {
+		byte[] codeBytes = HSQLDBATCodeCache.get(codeHash);
+		if (codeBytes != null)
+			return codeBytes;
+
+		String sql = "SELECT code_bytes FROM ATs WHERE AT_address = ?";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, atAddress)) {
+			if (resultSet == null)
+				return null;
+
+			codeBytes = resultSet.getBytes(1); // Actually BLOB
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch AT code from repository", e);
+		}
+
+		HSQLDBATCodeCache.put(codeHash, codeBytes);
+
+		return codeBytes;
+	}
+
 	@Override
 	public List<ATData> getATsByFunctionality(byte[] codeHash, Boolean isExecutable, Integer limit, Integer offset, Boolean reverse) throws DataException {
 		StringBuilder sql = new StringBuilder(512);
@@ -401,6 +447,61 @@ public class HSQLDBATRepository implements ATRepository {
 		}
 	}
 
+	@Override
+	public List<ATStateData> getLatestATStates(List<String> atAddresses) throws DataException {
+		List<ATStateData> atStates = new ArrayList<>();
+		if (atAddresses.isEmpty())
+			return atStates;
+
+		StringBuilder sql = new StringBuilder(1024);
+		sql.append("SELECT AT_address, height, state_data, state_hash, fees, is_initial, LatestATStates.sleep_until_message_timestamp "
+				+ "FROM (VALUES ");
+
+		final int atAddressesSize = atAddresses.size();
+		for (int ai = 0; ai < atAddressesSize; ++ai) {
+			if (ai != 0)
+				sql.append(", ");
+
+			sql.append("(CAST(? AS QortalAddress))");
+		}
+
+		sql.append(") AS ATAddresses (AT_address) "
+				+ "CROSS JOIN LATERAL("
+					+ "SELECT height, state_data, state_hash, fees, is_initial, sleep_until_message_timestamp "
+					+ "FROM ATStates "
+					+ "JOIN ATStatesData USING (AT_address, height) "
+					+ "WHERE ATStates.AT_address = ATAddresses.AT_address "
+					// Order by AT_address and height to use compound primary key as index
+					// Both must be the same direction (DESC) also
+					+ "ORDER BY ATStates.AT_address DESC, ATStates.height DESC "
+					+ "LIMIT 1 "
+				+ ") AS LatestATStates");
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), atAddresses.toArray())) {
+			if (resultSet == null)
+				return atStates;
+
+			do {
+				String atAddress = resultSet.getString(1);
+				int height = resultSet.getInt(2);
+				byte[] stateData = resultSet.getBytes(3); // Actually BLOB
+				byte[] stateHash = resultSet.getBytes(4);
+				long fees = resultSet.getLong(5);
+				boolean isInitial = resultSet.getBoolean(6);
+
+				Long sleepUntilMessageTimestamp = resultSet.getLong(7);
+				if (sleepUntilMessageTimestamp == 0 && resultSet.wasNull())
+					sleepUntilMessageTimestamp = null;
+
+				atStates.add(new ATStateData(atAddress, height, stateData, stateHash, fees, isInitial, sleepUntilMessageTimestamp));
+			} while (resultSet.next());
+
+			return atStates;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch latest AT states from repository", e);
+		}
+	}
+
 	@Override
 	public List<ATStateData> getMatchingFinalATStates(byte[] codeHash, Boolean isFinished,
 			Integer dataByteOffset, Long expectedValue, Integer minimumFinalHeight,
@@ -610,6 +711,10 @@ public class HSQLDBATRepository implements ATRepository {
 		synchronized (this.repository.latestATStatesLock) {
 			LOGGER.trace("Rebuilding latest AT states...");
 
+			BlockData lastBlockData = this.repository.getBlockRepository().getLastBlock();
+			int journalHeight = lastBlockData != null ? lastBlockData.getHeight() : 0;
+			byte[] journalSignature = lastBlockData != null ? lastBlockData.getSignature() : null;
+
 			// Rebuild cache of latest AT states that we can't trim
 			String deleteSql = "DELETE FROM LatestATStates";
 			try {
@@ -619,25 +724,107 @@ public class HSQLDBATRepository implements ATRepository {
 				throw new DataException("Unable to delete temporary latest AT states cache from repository", e);
 			}
 
+			// Only include AT states up to journal height, so cache stays valid as long as block at journal height does
 			String insertSql = "INSERT INTO LatestATStates ("
 					+ "SELECT AT_address, height FROM ATs "
 					+ "CROSS JOIN LATERAL("
 					+ "SELECT height FROM ATStates "
 					+ "WHERE ATStates.AT_address = ATs.AT_address "
+					+ "AND height <= ? "
 					+ "ORDER BY AT_address DESC, height DESC LIMIT 1"
 					+ ") "
 					+ ")";
 			try {
-				this.repository.executeCheckedUpdate(insertSql);
+				this.repository.executeCheckedUpdate(insertSql, journalHeight);
 			} catch (SQLException e) {
 				repository.examineException(e);
 				throw new DataException("Unable to populate temporary latest AT states cache in repository", e);
 			}
+
+			this.setLatestAtStatesJournal(journalHeight, journalSignature);
 			this.repository.saveChanges();
 			LOGGER.trace("Rebuilt latest AT states");
 		}
 	}
 
+	@Override
+	public int refreshLatestAtStates() throws DataException {
+		synchronized (this.repository.latestATStatesLock) {
+			// Journal is read first, so that it's consistent with any concurrent refresh that has just committed
+			int journalHeight;
+			byte[] journalSignature;
+
+			String journalSql = "SELECT height, block_signature FROM LatestATStatesJournal";
+			try (ResultSet resultSet = this.repository.checkedExecute(journalSql)) {
+				if (resultSet == null)
+					throw new DataException("Missing latest AT states journal in repository");
+
+				journalHeight = resultSet.getInt(1);
+				journalSignature = resultSet.getBytes(2);
+			} catch (SQLException e) {
+				throw new DataException("Unable to fetch latest AT states journal from repository", e);
+			}
+
+			BlockData lastBlockData = this.repository.getBlockRepository().getLastBlock();
+			if (lastBlockData == null)
+				return 0;
+
+			final int lastHeight = lastBlockData.getHeight();
+
+			if (lastHeight == journalHeight && Arrays.equals(lastBlockData.getSignature(), journalSignature))
+				// Already up to date
+				return 0;
+
+			// If block at journal height has changed, e.g. due to orphaning, we don't know which cache entries are stale
+			BlockData journalBlockData = journalSignature != null && journalHeight <= lastHeight
+					? this.repository.getBlockRepository().fromHeight(journalHeight)
+					: null;
+
+			if (journalBlockData == null || !Arrays.equals(journalBlockData.getSignature(), journalSignature)) {
+				LOGGER.debug(() -> String.format("Latest AT states journal at height %d no longer matches blockchain - rebuilding", journalHeight));
+				this.rebuildLatestAtStates();
+				return -1;
+			}
+
+			// Only ATs with new states since journal height need refreshing
+			String deleteSql = "DELETE FROM LatestATStates "
+					+ "WHERE AT_address IN (SELECT AT_address FROM ATStates WHERE height BETWEEN ? AND ?)";
+			String insertSql = "INSERT INTO LatestATStates ("
+					+ "SELECT AT_address, MAX(height) FROM ATStates "
+					+ "WHERE height BETWEEN ? AND ? "
+					+ "GROUP BY AT_address"
+					+ ")";
+
+			int refreshedCount;
+			try {
+				this.repository.executeCheckedUpdate(deleteSql, journalHeight + 1, lastHeight);
+				refreshedCount = this.repository.executeCheckedUpdate(insertSql, journalHeight + 1, lastHeight);
+			} catch (SQLException e) {
+				repository.examineException(e);
+				throw new DataException("Unable to refresh latest AT states cache in repository", e);
+			}
+
+			this.setLatestAtStatesJournal(lastHeight, lastBlockData.getSignature());
+			this.repository.saveChanges();
+
+			LOGGER.trace(() -> String.format("Refreshed %d latest AT state%s between blocks %d and %d",
+					refreshedCount, (refreshedCount != 1 ? "s" : ""), journalHeight + 1, lastHeight));
+
+			return refreshedCount;
+		}
+	}
+
+	private void setLatestAtStatesJournal(int height, byte[] blockSignature) throws DataException {
+		String updateSql = "UPDATE LatestATStatesJournal SET height = ?, block_signature = ?";
+
+		try {
+			this.repository.executeCheckedUpdate(updateSql, height, blockSignature);
+		} catch (SQLException e) {
+			repository.examineException(e);
+			throw new DataException("Unable to update latest AT states journal in repository", e);
+		}
+	}
+
 
 	@Override
 	public int getAtTrimHeight() throws DataException {
@@ -737,63 +924,35 @@ public class HSQLDBATRepository implements ATRepository {
 
 	@Override
 	public int pruneAtStates(int minHeight, int maxHeight) throws DataException {
+		return this.pruneAtStates(minHeight, maxHeight, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int pruneAtStates(int minHeight, int maxHeight, int limit) throws DataException {
 		// latestATStatesLock is to prevent concurrent updates on LatestATStates
 		// that could result in one process using a partial or empty dataset
 		// because it was in the process of being rebuilt by another thread
 		synchronized (this.repository.latestATStatesLock) {
 
-			int deletedCount = 0;
-
-			for (int height = minHeight; height <= maxHeight; height++) {
-
-				// Give up if we're stopping
-				if (Controller.isStopping()) {
-					return deletedCount;
-				}
-
-				// Get latest AT states for this height
-				List<String> atAddresses = new ArrayList<>();
-				String updateSql = "SELECT AT_address FROM LatestATStates WHERE height = ?";
-				try (ResultSet resultSet = this.repository.checkedExecute(updateSql, height)) {
-					if (resultSet != null) {
-						do {
-							String atAddress = resultSet.getString(1);
-							atAddresses.add(atAddress);
-
-						} while (resultSet.next());
-					}
-				} catch (SQLException e) {
-					throw new DataException("Unable to fetch latest AT states from repository", e);
-				}
-
-				List<ATStateData> atStates = this.getBlockATStatesAtHeight(height);
-				for (ATStateData atState : atStates) {
-					//LOGGER.info("Found atState {} at height {}", atState.getATAddress(), atState.getHeight());
-
-					// Give up if we're stopping
-					if (Controller.isStopping()) {
-						return deletedCount;
-					}
-
-					if (atAddresses.contains(atState.getATAddress())) {
-						// We don't want to delete this AT state because it is still active
-						LOGGER.trace("Skipping atState {} at height {}", atState.getATAddress(), atState.getHeight());
-						continue;
-					}
-
-					// Safe to delete everything else for this height
-					try {
-						this.repository.delete("ATStates", "AT_address = ? AND height = ?",
-								atState.getATAddress(), atState.getHeight());
-						deletedCount++;
-					} catch (SQLException e) {
-						throw new DataException("Unable to delete AT state data from repository", e);
-					}
-				}
-			}
-			this.repository.saveChanges();
+			// Limit deletes so each call is a short transaction, rather than one per height range
+			String sql = "DELETE FROM ATStates "
+					+ "WHERE height BETWEEN ? AND ? "
+					+ "AND NOT EXISTS("
+					+ "SELECT TRUE FROM LatestATStates "
+					+ "WHERE LatestATStates.AT_address = ATStates.AT_address "
+					+ "AND LatestATStates.height = ATStates.height"
+					+ ") "
+					+ "LIMIT ?";
+
+			try {
+				int deletedCount = this.repository.executeCheckedUpdate(sql, minHeight, maxHeight, limit);
+				this.repository.saveChanges();
+				return deletedCount;
 
-			return deletedCount;
+			} catch (SQLException e) {
+				repository.examineException(e);
+				throw new DataException("Unable to prune AT states in repository", e);
+			}
 		}
 	}
 
@@ -5,7 +5,9 @@ import static org.qortal.utils.Amounts.prettyAmount;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.qortal.asset.Asset;
@@ -22,6 +24,30 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	protected HSQLDBRepository repository;
 
+	/**
+	 * Balance deltas for one account and asset, accumulated so that writing them has the same end result as applying each in turn.
+	 * <p>
+	 * A reduction via {@link #modifyAssetBalance(String, long, long)} only updates an existing balance,
+	 * whereas an increase, or any delta via {@link #modifyAssetBalances(List)}, also creates a missing balance, and account.
+	 * So if the balance doesn't exist yet, reductions before the first creating delta have no effect.
+	 */
+	private static class BufferedBalanceChange {
+		/** Sum of all deltas, applied to an existing balance */
+		long delta;
+		/** Whether any delta creates missing balance */
+		boolean createsBalance;
+		/** Sum of deltas from first creating delta onwards, i.e. new balance if balance didn't exist */
+		long createdBalance;
+	}
+
+	/** Buffered balance deltas, by asset ID then address, or null if not buffering. See {@link #bufferBalanceChanges()} */
+	private Map<Long, Map<String, BufferedBalanceChange>> balanceBuffer = null;
+
+	/** Reward-share index generation when this session's transaction began. See {@link HSQLDBRewardShareIndex} */
+	private long rewardShareGeneration = HSQLDBRewardShareIndex.getGeneration();
+	/** Whether this session's transaction has modified reward-shares, so shared index doesn't apply */
+	private boolean haveRewardSharesChanged = false;
+
 	public HSQLDBAccountRepository(HSQLDBRepository repository) {
 		this.repository = repository;
 	}
@@ -300,6 +326,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public void delete(String address) throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		// NOTE: Account balances are deleted automatically by the database thanks to "ON DELETE CASCADE" in AccountBalances' FOREIGN KEY
 		// definition.
 		try {
@@ -311,6 +339,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public void tidy() throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		try {
 			this.repository.delete("AccountBalances", "balance = 0");
 		} catch (SQLException e) {
@@ -322,6 +352,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public AccountBalanceData getBalance(String address, long assetId) throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		String sql = "SELECT balance FROM AccountBalances WHERE account = ? AND asset_id = ? LIMIT 1";
 
 		try (ResultSet resultSet = this.repository.checkedExecute(sql, address, assetId)) {
@@ -338,6 +370,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public List<AccountBalanceData> getAssetBalances(long assetId, Boolean excludeZero) throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		StringBuilder sql = new StringBuilder(1024);
 
 		sql.append("SELECT account, balance FROM AccountBalances WHERE asset_id = ?");
@@ -366,6 +400,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 	@Override
 	public List<AccountBalanceData> getAssetBalances(List<String> addresses, List<Long> assetIds, BalanceOrdering balanceOrdering, Boolean excludeZero,
 			Integer limit, Integer offset, Boolean reverse) throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		StringBuilder sql = new StringBuilder(1024);
 
 		sql.append("SELECT account, asset_id, balance, asset_name FROM ");
@@ -474,6 +510,11 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		if (deltaBalance == 0)
 			return;
 
+		if (this.balanceBuffer != null) {
+			this.bufferBalanceChange(address, assetId, deltaBalance, deltaBalance > 0);
+			return;
+		}
+
 		// If deltaBalance is negative then we assume AccountBalances & parent Accounts rows exist
 		if (deltaBalance < 0) {
 			// Perform actual balance change
@@ -508,6 +549,18 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		if (accountBalanceDeltas == null || accountBalanceDeltas.isEmpty())
 			return;
 
+		if (this.balanceBuffer != null) {
+			for (AccountBalanceData accountBalanceDelta : accountBalanceDeltas)
+				if (accountBalanceDelta.getBalance() != 0L)
+					this.bufferBalanceChange(accountBalanceDelta.getAddress(), accountBalanceDelta.getAssetId(), accountBalanceDelta.getBalance(), true);
+
+			return;
+		}
+
+		this.writeAssetBalanceDeltas(accountBalanceDeltas);
+	}
+
+	private void writeAssetBalanceDeltas(List<AccountBalanceData> accountBalanceDeltas) throws DataException {
 		// Map balance changes into SQL bind params, filtering out no-op changes
 		List<Object[]> modifyBalanceParams = accountBalanceDeltas.stream()
 				.filter(accountBalance -> accountBalance.getBalance() != 0L)
@@ -532,9 +585,100 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		}
 	}
 
+	@Override
+	public void bufferBalanceChanges() {
+		if (this.balanceBuffer == null)
+			this.balanceBuffer = new HashMap<>();
+	}
+
+	@Override
+	public void flushBalanceChanges() throws DataException {
+		this.writeBufferedBalanceChanges();
+		this.balanceBuffer = null;
+	}
+
+	private void bufferBalanceChange(String address, long assetId, long deltaBalance, boolean createsBalance) {
+		// Mutable cell so accumulating deltas doesn't box
+		BufferedBalanceChange balanceChange = this.balanceBuffer.computeIfAbsent(assetId, id -> new HashMap<>())
+				.computeIfAbsent(address, addr -> new BufferedBalanceChange());
+
+		balanceChange.delta += deltaBalance;
+
+		if (createsBalance)
+			balanceChange.createsBalance = true;
+
+		if (balanceChange.createsBalance)
+			balanceChange.createdBalance += deltaBalance;
+	}
+
+	/**
+	 * Writes buffered balance deltas to repository, in one batch, but carries on buffering.
+	 * <p>
+	 * Called before anything else reads, or writes, account balances, so buffering is invisible to callers.
+	 */
+	/* package */ void writeBufferedBalanceChanges() throws DataException {
+		if (this.balanceBuffer == null || this.balanceBuffer.isEmpty())
+			return;
+
+		List<Object[]> reduceBalanceParams = new ArrayList<>();
+		List<Object[]> modifyBalanceParams = new ArrayList<>();
+
+		for (Map.Entry<Long, Map<String, BufferedBalanceChange>> assetEntry : this.balanceBuffer.entrySet())
+			for (Map.Entry<String, BufferedBalanceChange> accountEntry : assetEntry.getValue().entrySet()) {
+				String address = accountEntry.getKey();
+				long assetId = assetEntry.getKey();
+				BufferedBalanceChange balanceChange = accountEntry.getValue();
+
+				if (balanceChange.createsBalance)
+					// Zero deltas still create balance and account, as they would have unbuffered
+					modifyBalanceParams.add(new Object[] { address, assetId, balanceChange.createdBalance, balanceChange.delta });
+				else
+					reduceBalanceParams.add(new Object[] { balanceChange.delta, address, assetId });
+			}
+
+		this.balanceBuffer.clear();
+
+		// Only reductions, so we assume AccountBalances & parent Accounts rows exist, as with modifyAssetBalance()
+		String reduceSql = "UPDATE AccountBalances set balance = balance + ? WHERE account = ? AND asset_id = ?";
+		try {
+			this.repository.executeCheckedBatchUpdate(reduceSql, reduceBalanceParams);
+		} catch (SQLException e) {
+			throw new DataException("Unable to reduce account balances in repository", e);
+		}
+
+		// Before we modify balances, ensure parent accounts exist
+		String ensureSql = "INSERT IGNORE INTO Accounts (account) VALUES (?)"; // MySQL syntax
+		try {
+			this.repository.executeCheckedBatchUpdate(ensureSql, modifyBalanceParams.stream().map(objects -> new Object[] { objects[0] }).collect(Collectors.toList()));
+		} catch (SQLException e) {
+			throw new DataException("Unable to ensure minimal accounts in repository", e);
+		}
+
+		// Perform actual balance changes
+		String sql = "INSERT INTO AccountBalances (account, asset_id, balance) VALUES (?, ?, ?) " +
+			"ON DUPLICATE KEY UPDATE balance = balance + ?";
+		try {
+			this.repository.executeCheckedBatchUpdate(sql, modifyBalanceParams);
+		} catch (SQLException e) {
+			throw new DataException("Unable to modify account balances in repository", e);
+		}
+	}
+
+	/** Drops buffered balance deltas, e.g. after rollback to savepoint, but carries on buffering. */
+	/* package */ void discardBufferedBalanceChanges() {
+		if (this.balanceBuffer != null)
+			this.balanceBuffer.clear();
+	}
+
+	/** Drops buffered balance deltas and stops buffering, e.g. after rollback. */
+	/* package */ void stopBufferingBalanceChanges() {
+		this.balanceBuffer = null;
+	}
 
 	@Override
 	public void setAssetBalances(List<AccountBalanceData> accountBalances) throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		// Nothing to do?
 		if (accountBalances == null || accountBalances.isEmpty())
 			return;
@@ -587,6 +731,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public void save(AccountBalanceData accountBalanceData) throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		HSQLDBSaver saveHelper = new HSQLDBSaver("AccountBalances");
 
 		saveHelper.bind("account", accountBalanceData.getAddress()).bind("asset_id", accountBalanceData.getAssetId())
@@ -601,6 +747,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public void delete(String address, long assetId) throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		try {
 			this.repository.delete("AccountBalances", "account = ? AND asset_id = ?", address, assetId);
 		} catch (SQLException e) {
@@ -612,6 +760,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public RewardShareData getRewardShare(byte[] minterPublicKey, String recipient) throws DataException {
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getRewardShare(minterPublicKey, recipient);
+
 		String sql = "SELECT minter, reward_share_public_key, share_percent FROM RewardShares WHERE minter_public_key = ? AND recipient = ?";
 
 		try (ResultSet resultSet = this.repository.checkedExecute(sql, minterPublicKey, recipient)) {
@@ -630,6 +782,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public RewardShareData getRewardShare(byte[] rewardSharePublicKey) throws DataException {
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getRewardShare(rewardSharePublicKey);
+
 		String sql = "SELECT minter_public_key, minter, recipient, share_percent FROM RewardShares WHERE reward_share_public_key = ?";
 
 		try (ResultSet resultSet = this.repository.checkedExecute(sql, rewardSharePublicKey)) {
@@ -649,6 +805,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public List<byte[]> getRewardSharePublicKeys() throws DataException {
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getRewardSharePublicKeys();
+
 		String sql = "SELECT reward_share_public_key FROM RewardShares ORDER BY reward_share_public_key";
 
 		List<byte[]> rewardSharePublicKeys = new ArrayList<>();
@@ -670,6 +830,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public boolean isRewardSharePublicKey(byte[] publicKey) throws DataException {
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getIndex(publicKey) != null;
+
 		try {
 			return this.repository.exists("RewardShares", "reward_share_public_key = ?", publicKey);
 		} catch (SQLException e) {
@@ -679,6 +843,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public int countRewardShares(byte[] minterPublicKey) throws DataException {
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getRewardSharesByMinter(minterPublicKey).size();
+
 		String sql = "SELECT COUNT(*) FROM RewardShares WHERE minter_public_key = ?";
 
 		try (ResultSet resultSet = this.repository.checkedExecute(sql, minterPublicKey)) {
@@ -804,6 +972,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public Integer getRewardShareIndex(byte[] rewardSharePublicKey) throws DataException {
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getIndex(rewardSharePublicKey);
+
 		if (!this.rewardShareExists(rewardSharePublicKey))
 			return null;
 
@@ -818,6 +990,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public RewardShareData getRewardShareByIndex(int index) throws DataException {
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getRewardShareByIndex(index);
+
 		String sql = "SELECT minter_public_key, minter, recipient, share_percent, reward_share_public_key FROM RewardShares "
 				+ "ORDER BY reward_share_public_key ASC "
 				+ "OFFSET ? LIMIT 1";
@@ -850,6 +1026,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		if (indexes.length == 0)
 			return rewardShares;
 
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getRewardSharesByIndexes(indexes);
+
 		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
 			if (resultSet == null)
 				return null;
@@ -885,6 +1065,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public boolean rewardShareExists(byte[] rewardSharePublicKey) throws DataException {
+		HSQLDBRewardShareIndex rewardShareIndex = this.getSharedRewardShareIndex();
+		if (rewardShareIndex != null)
+			return rewardShareIndex.getIndex(rewardSharePublicKey) != null;
+
 		try {
 			return this.repository.exists("RewardShares", "reward_share_public_key = ?", rewardSharePublicKey);
 		} catch (SQLException e) {
@@ -900,6 +1084,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 			.bind("recipient", rewardShareData.getRecipient()).bind("reward_share_public_key", rewardShareData.getRewardSharePublicKey())
 			.bind("share_percent", rewardShareData.getSharePercent());
 
+		this.haveRewardSharesChanged = true;
+
 		try {
 			saveHelper.execute(this.repository);
 		} catch (SQLException e) {
@@ -909,6 +1095,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public void delete(byte[] minterPublickey, String recipient) throws DataException {
+		this.haveRewardSharesChanged = true;
+
 		try {
 			this.repository.delete("RewardShares", "minter_public_key = ? and recipient = ?", minterPublickey, recipient);
 		} catch (SQLException e) {
@@ -916,6 +1104,50 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		}
 	}
 
+	/* package */ boolean haveRewardSharesChanged() {
+		return this.haveRewardSharesChanged;
+	}
+
+	/** Called when this session's transaction has ended, so next transaction can use current reward-share index. */
+	/* package */ void resetRewardShareGeneration() {
+		this.haveRewardSharesChanged = false;
+		this.rewardShareGeneration = HSQLDBRewardShareIndex.getGeneration();
+	}
+
+	/** Returns shared reward-share index, if valid for this session, or null if SQL should be used instead. */
+	private HSQLDBRewardShareIndex getSharedRewardShareIndex() throws DataException {
+		if (this.haveRewardSharesChanged)
+			return null;
+
+		return HSQLDBRewardShareIndex.get(this.rewardShareGeneration, this::fetchOrderedRewardShares);
+	}
+
+	private List<RewardShareData> fetchOrderedRewardShares() throws DataException {
+		String sql = "SELECT minter_public_key, minter, recipient, share_percent, reward_share_public_key FROM RewardShares "
+				+ "ORDER BY reward_share_public_key ASC";
+
+		List<RewardShareData> rewardShares = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			if (resultSet == null)
+				return rewardShares;
+
+			do {
+				byte[] minterPublicKey = resultSet.getBytes(1);
+				String minter = resultSet.getString(2);
+				String recipient = resultSet.getString(3);
+				int sharePercent = resultSet.getInt(4);
+				byte[] rewardSharePublicKey = resultSet.getBytes(5);
+
+				rewardShares.add(new RewardShareData(minterPublicKey, minter, recipient, rewardSharePublicKey, sharePercent));
+			} while (resultSet.next());
+
+			return rewardShares;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch reward-shares from repository", e);
+		}
+	}
+
 	// Minting accounts used by BlockMinter
 
 	@Override
@@ -985,6 +1217,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public List<EligibleQoraHolderData> getEligibleLegacyQoraHolders(Integer blockHeight) throws DataException {
+		this.writeBufferedBalanceChanges();
+
 		StringBuilder sql = new StringBuilder(1024);
 		List<Object> bindParams = new ArrayList<>();
 
@@ -2,23 +2,47 @@ package org.qortal.repository.hsqldb;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+import org.qortal.data.TradeCandleData;
 import org.qortal.data.asset.AssetData;
 import org.qortal.data.asset.OrderData;
 import org.qortal.data.asset.RecentTradeData;
 import org.qortal.data.asset.TradeData;
 import org.qortal.repository.AssetRepository;
 import org.qortal.repository.DataException;
+import org.qortal.settings.Settings;
+import org.qortal.utils.Amounts;
+import org.qortal.utils.ByteArray;
 
 public class HSQLDBAssetRepository implements AssetRepository {
 
+	/** Trade order for trade candles: trades with same timestamp are ordered by order IDs, so processing order doesn't matter */
+	private static final String TRADE_ORDER_SQL = "traded_when, initiating_order_id, target_order_id";
+
 	protected HSQLDBRepository repository;
 
+	/** Order book generation when this session's transaction began. See {@link HSQLDBOrderBook} */
+	private long orderBookGeneration = HSQLDBOrderBook.getGeneration();
+	/** Latest version of orders saved by this session's transaction, or null if deleted, to overlay on shared order book */
+	private Map<ByteArray, OrderData> changedOrders = new HashMap<>();
+	/** Copies of <tt>changedOrders</tt> at each repository savepoint */
+	private final Deque<Map<ByteArray, OrderData>> changedOrdersSavepoints = new ArrayDeque<>();
+
+	/** Trade candles, keyed by higher asset ID then lower asset ID */
+	private final HSQLDBTradeCandles tradeCandles;
+
 	public HSQLDBAssetRepository(HSQLDBRepository repository) {
 		this.repository = repository;
+		this.tradeCandles = new HSQLDBTradeCandles(repository, "AssetTradeCandles", "asset_id", "other_asset_id");
 	}
 
 	// Assets
@@ -200,6 +224,9 @@ public class HSQLDBAssetRepository implements AssetRepository {
 
 	@Override
 	public void delete(long assetId) throws DataException {
+		// Buffered balance changes may refer to asset
+		this.repository.writeBufferedBalanceChanges();
+
 		try {
 			this.repository.delete("Assets", "asset_id = ?", assetId);
 
@@ -258,6 +285,22 @@ public class HSQLDBAssetRepository implements AssetRepository {
 		if (wantAssetData == null)
 			return orders;
 
+		HSQLDBOrderBook orderBook = this.getSharedOrderBook();
+		if (orderBook != null) {
+			List<OrderData> bookOrders = orderBook.getOpenOrders(haveAssetId, wantAssetId, this.changedOrders, haveAssetData.getName(), wantAssetData.getName());
+
+			Comparator<OrderData> comparator = Comparator.comparingLong(OrderData::getPrice)
+					.thenComparingLong(OrderData::getTimestamp);
+			if (reverse != null && reverse)
+				comparator = comparator.reversed();
+
+			bookOrders.sort(comparator);
+
+			// Otherwise use SQL so orders with same price and timestamp are in same order as SQL would return them
+			if (!HSQLDBOrderBook.hasPriorityTies(bookOrders))
+				return limitOffset(bookOrders, limit, offset);
+		}
+
 		StringBuilder sql = new StringBuilder(512);
 		sql.append("SELECT creator, asset_order_id, amount, fulfilled, price, ordered_when FROM AssetOrders "
 				+ "WHERE have_asset_id = ? AND want_asset_id = ? AND NOT is_closed AND NOT is_fulfilled ");
@@ -299,6 +342,31 @@ public class HSQLDBAssetRepository implements AssetRepository {
 
 	@Override
 	public List<OrderData> getOpenOrdersForTrading(long haveAssetId, long wantAssetId, Long minimumPrice) throws DataException {
+		HSQLDBOrderBook orderBook = this.getSharedOrderBook();
+		if (orderBook != null) {
+			// Already in best price first order
+			List<OrderData> bookOrders = orderBook.getOpenOrders(haveAssetId, wantAssetId, this.changedOrders, null, null);
+
+			if (minimumPrice == null) {
+				// Legacy pricing scheme
+				bookOrders.sort(Comparator.comparingLong(OrderData::getPrice)
+						.thenComparingLong(OrderData::getTimestamp));
+			} else {
+				// NOTE: haveAssetId and wantAssetId are for TARGET orders, so different from Order.process() caller
+				int endIndex = 0;
+				while (endIndex < bookOrders.size() && (haveAssetId < wantAssetId
+						? bookOrders.get(endIndex).getPrice() >= minimumPrice
+						: bookOrders.get(endIndex).getPrice() <= minimumPrice))
+					++endIndex;
+
+				bookOrders = new ArrayList<>(bookOrders.subList(0, endIndex));
+			}
+
+			// Matching must be identical to SQL, so only SQL can order orders with same price and timestamp
+			if (!HSQLDBOrderBook.hasPriorityTies(bookOrders))
+				return bookOrders;
+		}
+
 		List<Object> bindParams = new ArrayList<>(3);
 
 		StringBuilder sql = new StringBuilder(512);
@@ -366,6 +434,24 @@ public class HSQLDBAssetRepository implements AssetRepository {
 		if (wantAssetData == null)
 			return orders;
 
+		HSQLDBOrderBook orderBook = this.getSharedOrderBook();
+		if (orderBook != null) {
+			// Total unfulfilled amount and latest timestamp, by price
+			TreeMap<Long, long[]> aggregatesByPrice = new TreeMap<>();
+			for (OrderData orderData : orderBook.getOpenOrders(haveAssetId, wantAssetId, this.changedOrders, null, null)) {
+				long[] aggregate = aggregatesByPrice.computeIfAbsent(orderData.getPrice(), k -> new long[2]);
+				aggregate[0] += orderData.getAmount() - orderData.getFulfilled();
+				aggregate[1] = Math.max(aggregate[1], orderData.getTimestamp());
+			}
+
+			Map<Long, long[]> orderedAggregates = reverse != null && reverse ? aggregatesByPrice.descendingMap() : aggregatesByPrice;
+			for (Map.Entry<Long, long[]> entry : orderedAggregates.entrySet())
+				orders.add(new OrderData(null, null, haveAssetId, wantAssetId, entry.getValue()[0], 0L,
+						entry.getKey(), entry.getValue()[1], false, false, haveAssetData.getName(), wantAssetData.getName()));
+
+			return limitOffset(orders, limit, offset);
+		}
+
 		StringBuilder sql = new StringBuilder(512);
 		sql.append("SELECT price, SUM(amount - fulfilled), MAX(ordered_when) FROM AssetOrders "
 				+ "WHERE have_asset_id = ? AND want_asset_id = ? AND NOT is_closed AND NOT is_fulfilled "
@@ -515,6 +601,9 @@ public class HSQLDBAssetRepository implements AssetRepository {
 
 	@Override
 	public void save(OrderData orderData) throws DataException {
+		// Copy, as callers go on to modify orderData
+		this.changedOrders.put(ByteArray.copyOf(orderData.getOrderId()), HSQLDBOrderBook.copyOf(orderData, null, null));
+
 		HSQLDBSaver saveHelper = new HSQLDBSaver("AssetOrders");
 
 		saveHelper.bind("asset_order_id", orderData.getOrderId()).bind("creator", orderData.getCreatorPublicKey())
@@ -532,6 +621,8 @@ public class HSQLDBAssetRepository implements AssetRepository {
 
 	@Override
 	public void delete(byte[] orderId) throws DataException {
+		this.changedOrders.put(ByteArray.copyOf(orderId), null);
+
 		try {
 			this.repository.delete("AssetOrders", "asset_order_id = ?", orderId);
 		} catch (SQLException e) {
@@ -539,6 +630,75 @@ public class HSQLDBAssetRepository implements AssetRepository {
 		}
 	}
 
+	/* package */ boolean haveOrdersChanged() {
+		return !this.changedOrders.isEmpty();
+	}
+
+	/** Called after commit that modified orders, successful or not, so shared order book can be updated. */
+	/* package */ void endOrderBookCommit(boolean isCommitted) {
+		HSQLDBOrderBook.endCommit(this.orderBookGeneration, this.changedOrders, isCommitted);
+	}
+
+	/** Called when this session's transaction has ended, so next transaction can use current order book. */
+	/* package */ void resetOrderBookGeneration() {
+		this.changedOrders = new HashMap<>();
+		this.changedOrdersSavepoints.clear();
+		this.orderBookGeneration = HSQLDBOrderBook.getGeneration();
+	}
+
+	/* package */ void setOrderBookSavepoint() {
+		this.changedOrdersSavepoints.push(new HashMap<>(this.changedOrders));
+	}
+
+	/* package */ void rollbackOrderBookToSavepoint() {
+		this.changedOrders = this.changedOrdersSavepoints.pop();
+	}
+
+	/** Returns shared order book, if valid for this session, or null if SQL should be used instead. */
+	private HSQLDBOrderBook getSharedOrderBook() throws DataException {
+		if (!Settings.getInstance().isOrderBookEnabled())
+			return null;
+
+		return HSQLDBOrderBook.get(this.orderBookGeneration, this::fetchAllOpenOrders);
+	}
+
+	private List<OrderData> fetchAllOpenOrders() throws DataException {
+		String sql = "SELECT asset_order_id, creator, have_asset_id, want_asset_id, amount, fulfilled, price, ordered_when "
+				+ "FROM AssetOrders WHERE NOT is_closed AND NOT is_fulfilled";
+
+		List<OrderData> orders = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			if (resultSet == null)
+				return orders;
+
+			do {
+				byte[] orderId = resultSet.getBytes(1);
+				byte[] creatorPublicKey = resultSet.getBytes(2);
+				long haveAssetId = resultSet.getLong(3);
+				long wantAssetId = resultSet.getLong(4);
+				long amount = resultSet.getLong(5);
+				long fulfilled = resultSet.getLong(6);
+				long price = resultSet.getLong(7);
+				long timestamp = resultSet.getLong(8);
+
+				orders.add(new OrderData(orderId, creatorPublicKey, haveAssetId, wantAssetId, amount, fulfilled,
+						price, timestamp, false, false));
+			} while (resultSet.next());
+
+			return orders;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch open asset orders from repository", e);
+		}
+	}
+
+	private static <T> List<T> limitOffset(List<T> list, Integer limit, Integer offset) {
+		int fromIndex = offset != null ? Math.min(Math.max(offset, 0), list.size()) : 0;
+		int toIndex = limit != null && limit > 0 ? Math.min(fromIndex + limit, list.size()) : list.size();
+
+		return new ArrayList<>(list.subList(fromIndex, toIndex));
+	}
+
 	// Trades
 
 	@Override
@@ -754,4 +914,146 @@ public class HSQLDBAssetRepository implements AssetRepository {
 		}
 	}
 
+	// Trade candles
+
+	@Override
+	public List<TradeCandleData> getTradeCandles(long assetId, long otherAssetId, TradeCandleData.Interval interval,
+			Long minimumTimestamp, Long maximumTimestamp, Integer limit, Integer offset, Boolean reverse) throws DataException {
+		return this.tradeCandles.getCandles(candleKey(assetId, otherAssetId), interval, minimumTimestamp, maximumTimestamp, limit, offset, reverse);
+	}
+
+	@Override
+	public void addTradeToCandles(long haveAssetId, long wantAssetId, TradeData tradeData) throws DataException {
+		TradeCandleData tradeCandle = toTradeCandle(haveAssetId, wantAssetId, tradeData.getTargetAmount(),
+				tradeData.getInitiatorAmount(), tradeData.getTimestamp());
+		if (tradeCandle == null)
+			return;
+
+		this.tradeCandles.addTrade(candleKey(haveAssetId, wantAssetId), tradeCandle,
+				minuteStart -> this.getMinuteTradeCandles(haveAssetId, wantAssetId, minuteStart));
+	}
+
+	@Override
+	public void removeTradeFromCandles(long haveAssetId, long wantAssetId, TradeData tradeData) throws DataException {
+		final long minuteStart = TradeCandleData.Interval.MINUTE.getStart(tradeData.getTimestamp());
+
+		// Remaining trades in same minute as orphaned trade
+		List<TradeCandleData> minuteTrades = this.getMinuteTradeCandles(haveAssetId, wantAssetId, minuteStart);
+
+		this.tradeCandles.recalculate(candleKey(haveAssetId, wantAssetId), tradeData.getTimestamp(), minuteTrades);
+	}
+
+	@Override
+	public void rebuildTradeCandles() throws DataException {
+		this.tradeCandles.deleteAll();
+
+		String sql = "SELECT have_asset_id, want_asset_id, target_amount, initiator_amount, traded_when "
+				+ "FROM AssetTrades JOIN AssetOrders ON asset_order_id = initiating_order_id "
+				+ "ORDER BY " + TRADE_ORDER_SQL;
+
+		List<long[]> assetPairs = new ArrayList<>();
+		List<TradeCandleData> tradeCandles = new ArrayList<>();
+
+		// Collect all trades first, as merging them into candles needs further queries
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			if (resultSet != null)
+				do {
+					long haveAssetId = resultSet.getLong(1);
+					long wantAssetId = resultSet.getLong(2);
+
+					TradeCandleData tradeCandle = toTradeCandle(haveAssetId, wantAssetId,
+							resultSet.getLong(3), resultSet.getLong(4), resultSet.getLong(5));
+
+					if (tradeCandle != null) {
+						assetPairs.add(new long[] { haveAssetId, wantAssetId });
+						tradeCandles.add(tradeCandle);
+					}
+				} while (resultSet.next());
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch asset trades from repository", e);
+		}
+
+		for (int i = 0; i < tradeCandles.size(); ++i) {
+			long haveAssetId = assetPairs.get(i)[0];
+			long wantAssetId = assetPairs.get(i)[1];
+
+			this.tradeCandles.addTrade(candleKey(haveAssetId, wantAssetId), tradeCandles.get(i),
+					minuteStart -> this.getMinuteTradeCandles(haveAssetId, wantAssetId, minuteStart));
+		}
+	}
+
+	/** Returns trades, in either direction, in minute starting at <tt>minuteStart</tt>, as single-trade candles, in trade order. */
+	private List<TradeCandleData> getMinuteTradeCandles(long haveAssetId, long wantAssetId, long minuteStart) throws DataException {
+		String sql = "SELECT have_asset_id, want_asset_id, target_amount, initiator_amount, traded_when "
+				+ "FROM AssetTrades JOIN AssetOrders ON asset_order_id = initiating_order_id "
+				+ "WHERE traded_when BETWEEN ? AND ? "
+				+ "AND ((have_asset_id = ? AND want_asset_id = ?) OR (have_asset_id = ? AND want_asset_id = ?)) "
+				+ "ORDER BY " + TRADE_ORDER_SQL;
+
+		List<TradeCandleData> minuteTrades = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, minuteStart, minuteStart + TradeCandleData.Interval.MINUTE.millis - 1,
+				haveAssetId, wantAssetId, wantAssetId, haveAssetId)) {
+			if (resultSet != null)
+				do {
+					TradeCandleData tradeCandle = toTradeCandle(resultSet.getLong(1), resultSet.getLong(2),
+							resultSet.getLong(3), resultSet.getLong(4), resultSet.getLong(5));
+
+					if (tradeCandle != null)
+						minuteTrades.add(tradeCandle);
+				} while (resultSet.next());
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch asset trades from repository", e);
+		}
+
+		return minuteTrades;
+	}
+
+	@Override
+	public boolean getTradeCandlesBuilt() throws DataException {
+		String sql = "SELECT trade_candles_built FROM DatabaseInfo";
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
+			if (resultSet == null)
+				return false;
+
+			return resultSet.getBoolean(1);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch trade candles status from repository", e);
+		}
+	}
+
+	@Override
+	public void setTradeCandlesBuilt(boolean tradeCandlesBuilt) throws DataException {
+		// trimHeightsLock is to prevent concurrent update on DatabaseInfo
+		// that could result in "transaction rollback: serialization failure"
+		synchronized (this.repository.trimHeightsLock) {
+			String updateSql = "UPDATE DatabaseInfo SET trade_candles_built = ?";
+
+			try {
+				this.repository.executeCheckedUpdate(updateSql, tradeCandlesBuilt);
+			} catch (SQLException e) {
+				this.repository.examineException(e);
+				throw new DataException("Unable to set trade candles status in repository", e);
+			}
+		}
+	}
+
+	/** Returns trade candles key for asset pair, i.e. higher asset ID then lower asset ID. */
+	private static Object[] candleKey(long assetId, long otherAssetId) {
+		return new Object[] { Math.max(assetId, otherAssetId), Math.min(assetId, otherAssetId) };
+	}
+
+	/** Returns trade as single-trade candle, priced in lower-ID asset per unit of higher-ID asset, or null if nothing traded. */
+	private static TradeCandleData toTradeCandle(long haveAssetId, long wantAssetId, long targetAmount, long initiatorAmount, long timestamp) {
+		// Note: initiatorAmount is in initiating order's have-asset, targetAmount is in its want-asset
+		long amount = haveAssetId > wantAssetId ? initiatorAmount : targetAmount;
+		long otherAmount = haveAssetId > wantAssetId ? targetAmount : initiatorAmount;
+
+		if (amount <= 0)
+			return null;
+
+		return new TradeCandleData(timestamp, Amounts.scaledDivide(otherAmount, amount), amount, otherAmount);
+	}
+
 }
@@ -0,0 +1,199 @@
+package org.qortal.repository.hsqldb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Tracks repository connections handed out by an {@link HSQLDBConnectionPool}.
+ * <p>
+ * Records how long callers waited to acquire a connection, which threads currently hold connections
+ * and warns, once per connection, about connections held for longer than <tt>longHeldThreshold</tt>,
+ * including holding thread's current stack trace, as these are possibly leaked.
+ */
+public class HSQLDBConnectionMonitor {
+
+	private static final Logger LOGGER = LogManager.getLogger(HSQLDBConnectionMonitor.class);
+
+	/** Number of recent acquire latencies used for percentiles */
+	private static final int LATENCY_SAMPLE_COUNT = 1024;
+	/** Minimum interval between scans for long-held connections during acquisition. (ms) */
+	private static final long LONG_HELD_CHECK_INTERVAL = 10 * 1000L;
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class ConnectionHolder {
+		public String threadName;
+		/** How long connection has been held. (ms) */
+		public long heldFor;
+
+		protected ConnectionHolder() {
+			/* For JAXB */
+		}
+
+		private ConnectionHolder(String threadName, long heldFor) {
+			this.threadName = threadName;
+			this.heldFor = heldFor;
+		}
+	}
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatsSnapshot {
+		public int poolSize;
+		public int maxPoolSize;
+		public int activeConnections;
+		public int idleConnections;
+
+		public long acquisitions;
+		public long slowAcquisitions;
+		public long poolGrowths;
+		public long longHeldWarnings;
+
+		/** Acquire latency percentiles over recent acquisitions. (µs) */
+		public long acquireLatencyP50;
+		public long acquireLatencyP90;
+		public long acquireLatencyP99;
+		public long acquireLatencyMax;
+
+		/** Current holders, longest-held first */
+		public List<ConnectionHolder> holders;
+
+		public StatsSnapshot() {
+		}
+	}
+
+	private static class Holder {
+		final Thread thread;
+		final long acquiredTimestamp;
+		volatile boolean wasWarned = false;
+
+		Holder(Thread thread, long acquiredTimestamp) {
+			this.thread = thread;
+			this.acquiredTimestamp = acquiredTimestamp;
+		}
+	}
+
+	private final long longHeldThreshold;
+
+	private final Map<HSQLDBStatementCache, Holder> holders = new ConcurrentHashMap<>();
+
+	private final long[] latencySamples = new long[LATENCY_SAMPLE_COUNT];
+	private int latencySampleCount = 0;
+	private int nextLatencySampleIndex = 0;
+
+	private final AtomicLong acquisitions = new AtomicLong();
+	private final AtomicLong slowAcquisitions = new AtomicLong();
+	private final AtomicLong poolGrowths = new AtomicLong();
+	private final AtomicLong longHeldWarnings = new AtomicLong();
+	private volatile long nextLongHeldCheck = 0L;
+
+	public HSQLDBConnectionMonitor(long longHeldThreshold) {
+		this.longHeldThreshold = longHeldThreshold;
+	}
+
+	/** Records that <tt>statementCache</tt>'s connection was acquired by current thread, after waiting <tt>latency</tt> ns. */
+	public void acquired(HSQLDBStatementCache statementCache, long latency, boolean wasSlow) {
+		final long now = System.currentTimeMillis();
+
+		this.holders.put(statementCache, new Holder(Thread.currentThread(), now));
+		this.acquisitions.incrementAndGet();
+
+		if (wasSlow)
+			this.slowAcquisitions.incrementAndGet();
+
+		synchronized (this.latencySamples) {
+			this.latencySamples[this.nextLatencySampleIndex] = latency;
+			this.nextLatencySampleIndex = (this.nextLatencySampleIndex + 1) % LATENCY_SAMPLE_COUNT;
+			this.latencySampleCount = Math.min(this.latencySampleCount + 1, LATENCY_SAMPLE_COUNT);
+		}
+
+		if (now >= this.nextLongHeldCheck) {
+			this.nextLongHeldCheck = now + LONG_HELD_CHECK_INTERVAL;
+			this.checkLongHeld(now);
+		}
+	}
+
+	public void released(HSQLDBStatementCache statementCache) {
+		this.holders.remove(statementCache);
+	}
+
+	public void poolGrown() {
+		this.poolGrowths.incrementAndGet();
+	}
+
+	/** Warns about connections held longer than threshold, once per connection. */
+	public void checkLongHeld(long now) {
+		for (Holder holder : this.holders.values()) {
+			final long heldFor = now - holder.acquiredTimestamp;
+
+			if (heldFor < this.longHeldThreshold || holder.wasWarned)
+				continue;
+
+			holder.wasWarned = true;
+			this.longHeldWarnings.incrementAndGet();
+
+			// Where the holder is now is more useful than where it acquired connection, and free to capture until needed
+			Exception stack = new Exception("Repository connection held by " + holder.thread.getName());
+			stack.setStackTrace(holder.thread.getStackTrace());
+
+			LOGGER.warn(String.format("Repository connection held by thread %s for %dms (threshold: %dms) - possible leak",
+					holder.thread.getName(), heldFor, this.longHeldThreshold), stack);
+		}
+	}
+
+	public StatsSnapshot getStatsSnapshot(int poolSize, int maxPoolSize, int idleConnections) {
+		final long now = System.currentTimeMillis();
+
+		StatsSnapshot snapshot = new StatsSnapshot();
+		snapshot.poolSize = poolSize;
+		snapshot.maxPoolSize = maxPoolSize;
+		snapshot.idleConnections = idleConnections;
+
+		snapshot.acquisitions = this.acquisitions.get();
+		snapshot.slowAcquisitions = this.slowAcquisitions.get();
+		snapshot.poolGrowths = this.poolGrowths.get();
+
+		long[] sortedSamples;
+		synchronized (this.latencySamples) {
+			sortedSamples = Arrays.copyOf(this.latencySamples, this.latencySampleCount);
+		}
+		Arrays.sort(sortedSamples);
+
+		snapshot.acquireLatencyP50 = percentile(sortedSamples, 50) / 1000L;
+		snapshot.acquireLatencyP90 = percentile(sortedSamples, 90) / 1000L;
+		snapshot.acquireLatencyP99 = percentile(sortedSamples, 99) / 1000L;
+		snapshot.acquireLatencyMax = sortedSamples.length > 0 ? sortedSamples[sortedSamples.length - 1] / 1000L : 0L;
+
+		this.checkLongHeld(now);
+		snapshot.longHeldWarnings = this.longHeldWarnings.get();
+
+		List<ConnectionHolder> connectionHolders = new ArrayList<>();
+		for (Holder holder : this.holders.values())
+			connectionHolders.add(new ConnectionHolder(holder.thread.getName(), now - holder.acquiredTimestamp));
+
+		connectionHolders.sort(Comparator.comparingLong((ConnectionHolder connectionHolder) -> connectionHolder.heldFor).reversed());
+
+		snapshot.activeConnections = connectionHolders.size();
+		snapshot.holders = connectionHolders;
+
+		return snapshot;
+	}
+
+	private static long percentile(long[] sortedSamples, int percentile) {
+		if (sortedSamples.length == 0)
+			return 0L;
+
+		int index = (int) Math.ceil(percentile / 100.0 * sortedSamples.length) - 1;
+		return sortedSamples[Math.max(0, Math.min(index, sortedSamples.length - 1))];
+	}
+
+}
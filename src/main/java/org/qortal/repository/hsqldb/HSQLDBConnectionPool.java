@@ -0,0 +1,222 @@
+package org.qortal.repository.hsqldb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hsqldb.jdbc.HSQLDBPool;
+
+/**
+ * Pool of repository connections, each kept open between repository sessions along with its prepared statements.
+ * <p>
+ * {@link HSQLDBRepositoryFactory} uses one pool for general use and a separate, smaller pool of <tt>READ ONLY</tt>
+ * connections for read-only sessions, so that bursts of API reads can't starve consensus-critical work.
+ */
+/* package */ class HSQLDBConnectionPool {
+
+	private static final Logger LOGGER = LogManager.getLogger(HSQLDBConnectionPool.class);
+
+	/** Log getConnection() calls that take longer than this. (ms) */
+	private static final long SLOW_CONNECTION_THRESHOLD = 1000L;
+	/** How long to wait for a connection to be released before trying pool again. (ms) */
+	private static final long CONNECTION_WAIT_INTERVAL = 100L;
+	/** Grow pool, if allowed, when getConnection() has waited this long for exhausted pool. (ms) */
+	private static final long POOL_GROWTH_THRESHOLD = 250L;
+	/** Give up waiting for a connection after this long, much like JDBCPool's default timeout. (ms) */
+	private static final long CONNECTION_TIMEOUT = 30_000L;
+
+	private final String name;
+	private final boolean isReadOnly;
+	private final int statementCacheSize;
+	private final HSQLDBPool connectionPool;
+	private final HSQLDBConnectionMonitor connectionMonitor;
+
+	/** Open connections, with their prepared statements, released by closed repositories. Most-recently released first. */
+	private final Deque<HSQLDBStatementCache> idleConnections = new ArrayDeque<>();
+	private boolean isClosed = false;
+
+	/* package */ HSQLDBConnectionPool(String name, String connectionUrl, int poolSize, int maxPoolSize, boolean isReadOnly,
+			int statementCacheSize, long longHeldThreshold) {
+		this.name = name;
+		this.isReadOnly = isReadOnly;
+		this.statementCacheSize = statementCacheSize;
+		this.connectionMonitor = new HSQLDBConnectionMonitor(longHeldThreshold);
+
+		this.connectionPool = new HSQLDBPool(poolSize, maxPoolSize);
+		this.connectionPool.setUrl(connectionUrl);
+
+		Properties properties = new Properties();
+		properties.setProperty("close_result", "true"); // Auto-close old ResultSet if Statement creates new ResultSet
+		this.connectionPool.setProperties(properties);
+	}
+
+	public boolean isReadOnly() {
+		return this.isReadOnly;
+	}
+
+	/** Returns plain pooled connection, not kept open between sessions, e.g. for database updates. */
+	/* package */ Connection getUnmanagedConnection() throws SQLException {
+		return this.connectionPool.getConnection();
+	}
+
+	/**
+	 * Returns connection, waiting for one to become available if necessary.
+	 *
+	 * @throws SQLException if no connection became available within {@link #CONNECTION_TIMEOUT}
+	 */
+	/* package */ HSQLDBStatementCache getConnection() throws SQLException {
+		final long before = System.nanoTime();
+		final long deadline = before + CONNECTION_TIMEOUT * 1_000_000L;
+		long nextGrowthCheck = before + POOL_GROWTH_THRESHOLD * 1_000_000L;
+
+		HSQLDBStatementCache statementCache;
+		while ((statementCache = this.pollConnection()) == null) {
+			final long now = System.nanoTime();
+			if (now >= deadline) {
+				// Most likely connections are being leaked, so include any long-held ones in log
+				this.connectionMonitor.checkLongHeld(System.currentTimeMillis());
+				throw new SQLException(String.format("Timed out waiting for repository connection from %s pool", this.name));
+			}
+
+			if (now >= nextGrowthCheck) {
+				// Pool exhausted for a while - maybe a leak, so check while we're here
+				this.connectionMonitor.checkLongHeld(System.currentTimeMillis());
+				this.maybeGrowPool();
+				nextGrowthCheck = now + POOL_GROWTH_THRESHOLD * 1_000_000L;
+			}
+
+			// Wait for a repository to release its connection, or for pool to have spare
+			synchronized (this.idleConnections) {
+				if (!this.idleConnections.isEmpty())
+					continue;
+
+				try {
+					this.idleConnections.wait(CONNECTION_WAIT_INTERVAL);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for repository connection", e);
+				}
+			}
+		}
+
+		final long latency = System.nanoTime() - before;
+		final long delay = latency / 1_000_000L;
+		final boolean wasSlow = delay > SLOW_CONNECTION_THRESHOLD;
+
+		this.connectionMonitor.acquired(statementCache, latency, wasSlow);
+
+		if (wasSlow)
+			// This could be an indication of excessive repository use, or insufficient pool size
+			LOGGER.warn(() -> String.format("Fetching repository connection from %s pool took %dms (threshold: %dms)", this.name, delay, SLOW_CONNECTION_THRESHOLD));
+
+		return statementCache;
+	}
+
+	/** Returns connection, or null if none available right now. */
+	/* package */ HSQLDBStatementCache tryConnection() throws SQLException {
+		final long before = System.nanoTime();
+
+		HSQLDBStatementCache statementCache = this.pollConnection();
+		if (statementCache == null)
+			return null;
+
+		this.connectionMonitor.acquired(statementCache, System.nanoTime() - before, false);
+		return statementCache;
+	}
+
+	/**
+	 * Takes back connection from closing repository, keeping it open for reuse.
+	 * <p>
+	 * Any transaction still in progress, e.g. from reads, is rolled back first.
+	 */
+	/* package */ void releaseConnection(HSQLDBStatementCache statementCache) throws SQLException {
+		this.connectionMonitor.released(statementCache);
+
+		Connection connection = statementCache.getConnection();
+
+		if (!connection.isClosed())
+			connection.rollback();
+
+		synchronized (this.idleConnections) {
+			if (!this.isClosed && !connection.isClosed()) {
+				this.idleConnections.addFirst(statementCache);
+				this.idleConnections.notify();
+				return;
+			}
+		}
+
+		// Pool has been closed, or connection is unusable
+		statementCache.close();
+	}
+
+	/* package */ HSQLDBConnectionMonitor.StatsSnapshot getStatsSnapshot() {
+		final int idleConnectionCount;
+		synchronized (this.idleConnections) {
+			idleConnectionCount = this.idleConnections.size();
+		}
+
+		return this.connectionMonitor.getStatsSnapshot(this.connectionPool.getPoolSize(), this.connectionPool.getMaxPoolSize(), idleConnectionCount);
+	}
+
+	/** Closes idle connections, along with their prepared statements, then all other connections immediately. */
+	/* package */ void close() throws SQLException {
+		synchronized (this.idleConnections) {
+			this.isClosed = true;
+
+			HSQLDBStatementCache statementCache;
+			while ((statementCache = this.idleConnections.pollFirst()) != null)
+				statementCache.close();
+
+			this.idleConnections.notifyAll();
+		}
+
+		this.connectionPool.close(0);
+	}
+
+	private HSQLDBStatementCache pollConnection() throws SQLException {
+		// Prefer already-open connection, as it will have prepared statements
+		synchronized (this.idleConnections) {
+			if (this.isClosed)
+				throw new SQLException("Repository connection pool closed");
+
+			HSQLDBStatementCache statementCache = this.idleConnections.pollFirst();
+			if (statementCache != null)
+				return statementCache;
+		}
+
+		Connection connection = this.connectionPool.tryConnection();
+		if (connection == null)
+			return null;
+
+		this.setupConnection(connection);
+		return new HSQLDBStatementCache(connection, this.statementCacheSize);
+	}
+
+	private void maybeGrowPool() {
+		final int oldPoolSize = this.connectionPool.getPoolSize();
+		if (oldPoolSize >= this.connectionPool.getMaxPoolSize())
+			return;
+
+		final int newPoolSize = this.connectionPool.grow(Math.max(1, oldPoolSize / 10));
+		if (newPoolSize == oldPoolSize)
+			return;
+
+		this.connectionMonitor.poolGrown();
+		LOGGER.info(() -> String.format("Repository %s connection pool exhausted - grown from %d to %d connections (max: %d)",
+				this.name, oldPoolSize, newPoolSize, this.connectionPool.getMaxPoolSize()));
+	}
+
+	private void setupConnection(Connection connection) throws SQLException {
+		// Set transaction level
+		connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+		connection.setAutoCommit(false);
+
+		// HSQLDB rejects any writes from read-only sessions
+		connection.setReadOnly(this.isReadOnly);
+	}
+
+}
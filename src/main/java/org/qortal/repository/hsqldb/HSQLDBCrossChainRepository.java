@@ -6,16 +6,25 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.qortal.data.TradeCandleData;
 import org.qortal.data.crosschain.TradeBotData;
 import org.qortal.repository.CrossChainRepository;
 import org.qortal.repository.DataException;
+import org.qortal.utils.Amounts;
 
 public class HSQLDBCrossChainRepository implements CrossChainRepository {
 
+	/** Trade order for trade candles: trades with same timestamp are ordered by AT address, so processing order doesn't matter */
+	private static final String TRADE_ORDER_SQL = "traded_when, AT_address";
+
 	protected HSQLDBRepository repository;
 
+	/** Trade candles, keyed by foreign blockchain */
+	private final HSQLDBTradeCandles tradeCandles;
+
 	public HSQLDBCrossChainRepository(HSQLDBRepository repository) {
 		this.repository = repository;
+		this.tradeCandles = new HSQLDBTradeCandles(repository, "CrossChainTradeCandles", "foreign_blockchain");
 	}
 
 	@Override
@@ -199,4 +208,104 @@ public class HSQLDBCrossChainRepository implements CrossChainRepository {
 		}
 	}
 
+	// Completed trades
+
+	@Override
+	public void saveCompletedTrade(String atAddress, String foreignBlockchain, long qortAmount, long foreignAmount, long timestamp) throws DataException {
+		HSQLDBSaver saveHelper = new HSQLDBSaver("CrossChainTrades");
+
+		saveHelper.bind("AT_address", atAddress).bind("foreign_blockchain", foreignBlockchain)
+				.bind("qort_amount", qortAmount).bind("foreign_amount", foreignAmount)
+				.bind("traded_when", timestamp);
+
+		try {
+			saveHelper.execute(this.repository);
+		} catch (SQLException e) {
+			throw new DataException("Unable to save completed cross-chain trade into repository", e);
+		}
+
+		TradeCandleData tradeCandle = toTradeCandle(qortAmount, foreignAmount, timestamp);
+		if (tradeCandle != null)
+			this.tradeCandles.addTrade(new Object[] { foreignBlockchain }, tradeCandle,
+					minuteStart -> this.getMinuteTradeCandles(foreignBlockchain, minuteStart));
+	}
+
+	@Override
+	public void deleteCompletedTrade(String atAddress) throws DataException {
+		String sql = "SELECT foreign_blockchain, traded_when FROM CrossChainTrades WHERE AT_address = ?";
+
+		String foreignBlockchain;
+		long timestamp;
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, atAddress)) {
+			if (resultSet == null)
+				return;
+
+			foreignBlockchain = resultSet.getString(1);
+			timestamp = resultSet.getLong(2);
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch completed cross-chain trade from repository", e);
+		}
+
+		try {
+			this.repository.delete("CrossChainTrades", "AT_address = ?", atAddress);
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete completed cross-chain trade from repository", e);
+		}
+
+		// Remaining trades in same minute as deleted trade
+		List<TradeCandleData> minuteTrades = this.getMinuteTradeCandles(foreignBlockchain, TradeCandleData.Interval.MINUTE.getStart(timestamp));
+
+		this.tradeCandles.recalculate(new Object[] { foreignBlockchain }, timestamp, minuteTrades);
+	}
+
+	@Override
+	public void deleteAllCompletedTrades() throws DataException {
+		try {
+			this.repository.delete("CrossChainTrades");
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete completed cross-chain trades from repository", e);
+		}
+
+		this.tradeCandles.deleteAll();
+	}
+
+	@Override
+	public List<TradeCandleData> getTradeCandles(String foreignBlockchain, TradeCandleData.Interval interval,
+			Long minimumTimestamp, Long maximumTimestamp, Integer limit, Integer offset, Boolean reverse) throws DataException {
+		return this.tradeCandles.getCandles(new Object[] { foreignBlockchain }, interval, minimumTimestamp, maximumTimestamp, limit, offset, reverse);
+	}
+
+	/** Returns completed trades in minute starting at <tt>minuteStart</tt>, as single-trade candles, in trade order. */
+	private List<TradeCandleData> getMinuteTradeCandles(String foreignBlockchain, long minuteStart) throws DataException {
+		String sql = "SELECT qort_amount, foreign_amount, traded_when FROM CrossChainTrades "
+				+ "WHERE foreign_blockchain = ? AND traded_when BETWEEN ? AND ? "
+				+ "ORDER BY " + TRADE_ORDER_SQL;
+
+		List<TradeCandleData> minuteTrades = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql, foreignBlockchain,
+				minuteStart, minuteStart + TradeCandleData.Interval.MINUTE.millis - 1)) {
+			if (resultSet != null)
+				do {
+					TradeCandleData tradeCandle = toTradeCandle(resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3));
+
+					if (tradeCandle != null)
+						minuteTrades.add(tradeCandle);
+				} while (resultSet.next());
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch completed cross-chain trades from repository", e);
+		}
+
+		return minuteTrades;
+	}
+
+	/** Returns trade as single-trade candle, priced in QORT per unit of foreign coin, or null if no foreign amount. */
+	private static TradeCandleData toTradeCandle(long qortAmount, long foreignAmount, long timestamp) {
+		if (foreignAmount <= 0)
+			return null;
+
+		return new TradeCandleData(timestamp, Amounts.scaledDivide(qortAmount, foreignAmount), foreignAmount, qortAmount);
+	}
+
 }
\ No newline at end of file
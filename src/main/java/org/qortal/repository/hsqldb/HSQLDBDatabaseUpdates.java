@@ -964,6 +964,42 @@ public class HSQLDBDatabaseUpdates {
 					stmt.execute("DROP TABLE ArbitraryPeers");
 					break;
 
+				case 42:
+					// Journal for incremental maintenance of latest AT state cache, so we don't need to rebuild it after restarts.
+					// Records the block height, and signature, that the cache was last brought up to date with.
+					// A different signature at that height means blocks were orphaned since, so the cache needs rebuilding.
+					stmt.execute("CREATE TABLE LatestATStatesJournal (height INT NOT NULL, block_signature BlockSignature)");
+					stmt.execute("INSERT INTO LatestATStatesJournal VALUES (0, NULL)");
+					// For refreshing latest AT state cache entries by AT address
+					stmt.execute("CREATE INDEX LatestATStatesATIndex ON LatestATStates (AT_address)");
+					break;
+
+				case 43: {
+					// Precomputed OHLCV trade candles, so charts don't need to fetch every trade.
+					// candle_interval is TradeCandleData.Interval value. Prices are in terms of other asset / QORT per unit of asset / foreign coin.
+					// first/last_traded_when are needed to merge candles, e.g. when adding trades or recalculating after orphaning.
+					final String candleColumns = "candle_interval TINYINT NOT NULL, candle_start EpochMillis NOT NULL, "
+							+ "open_price QortalAmount NOT NULL, high_price QortalAmount NOT NULL, low_price QortalAmount NOT NULL, "
+							+ "close_price QortalAmount NOT NULL, volume QortalAmount NOT NULL, other_volume QortalAmount NOT NULL, "
+							+ "trade_count INT NOT NULL, first_traded_when EpochMillis NOT NULL, last_traded_when EpochMillis NOT NULL";
+					// Asset trade candles, by asset pair: asset_id is higher asset ID, other_asset_id is lower asset ID, like order prices
+					stmt.execute("CREATE TABLE AssetTradeCandles (asset_id AssetID NOT NULL, other_asset_id AssetID NOT NULL, " + candleColumns + ", "
+							+ "PRIMARY KEY (asset_id, other_asset_id, candle_interval, candle_start))");
+					// For recalculating asset trade candles after orphaning trades
+					stmt.execute("CREATE INDEX AssetTradeTimestampIndex ON AssetTrades (traded_when)");
+					// Completed cross-chain trades, i.e. redeemed ACCT ATs, as otherwise only derivable from final AT states
+					stmt.execute("CREATE TABLE CrossChainTrades (AT_address QortalAddress, foreign_blockchain VARCHAR(40) NOT NULL, "
+							+ "qort_amount QortalAmount NOT NULL, foreign_amount QortalAmount NOT NULL, traded_when EpochMillis NOT NULL, "
+							+ "PRIMARY KEY (AT_address))");
+					stmt.execute("CREATE INDEX CrossChainTradesBlockchainIndex ON CrossChainTrades (foreign_blockchain, traded_when)");
+					// Cross-chain trade candles, by foreign blockchain
+					stmt.execute("CREATE TABLE CrossChainTradeCandles (foreign_blockchain VARCHAR(40) NOT NULL, " + candleColumns + ", "
+							+ "PRIMARY KEY (foreign_blockchain, candle_interval, candle_start))");
+					// Candles are built from existing trades at next start-up
+					stmt.execute("ALTER TABLE DatabaseInfo ADD trade_candles_built BOOLEAN NOT NULL DEFAULT FALSE");
+					break;
+				}
+
 				default:
 					// nothing to do
 					return false;
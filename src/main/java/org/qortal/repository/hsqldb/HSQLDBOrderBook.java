@@ -0,0 +1,309 @@
+package org.qortal.repository.hsqldb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.qortal.data.asset.OrderData;
+import org.qortal.repository.DataException;
+import org.qortal.utils.ByteArray;
+import org.qortal.utils.Pair;
+
+/**
+ * In-memory book of all open asset orders, by have-asset/want-asset pair, each in price-time priority order.
+ * <p>
+ * Open orders are fetched for every asset order processed, and by API order-book calls,
+ * but only change when asset orders are processed, orphaned, cancelled or reopened.
+ * <p>
+ * As with {@link HSQLDBRewardShareIndex}, each book is built from a repository session and tagged with a <i>generation</i>.
+ * The global generation is bumped both before and after any commit that modifies orders,
+ * so a session can only use the book if no order changes have been committed since its transaction began.
+ * Otherwise callers fall back to SQL.
+ * <p>
+ * Sessions keep track of their own uncommitted order changes, which are overlaid on the book they use.
+ * Once committed, these changes are applied to a copy of the book, which becomes the current book,
+ * so the book doesn't need rebuilding from the repository after every block.
+ * <p>
+ * Orders at the same price are in timestamp order. SQL leaves the order of orders with the same price and timestamp
+ * to however HSQLDB happens to return rows, and matching must stay identical for consensus,
+ * so callers fall back to SQL when such ties are involved. See {@link #hasPriorityTies(List)}.
+ * <p>
+ * Books are immutable, and only return copies of orders, so can be shared by all repository sessions.
+ */
+public class HSQLDBOrderBook {
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatsSnapshot {
+		/** Lookups answered by book */
+		public AtomicLong hits = new AtomicLong();
+		/** Lookups that fell back to SQL, e.g. book out of date for session */
+		public AtomicLong misses = new AtomicLong();
+		/** Lookups answered by book, but then by SQL, because orders had same price and timestamp */
+		public AtomicLong tieFallbacks = new AtomicLong();
+		/** Books built from repository */
+		public AtomicLong rebuilds = new AtomicLong();
+		/** Books updated using committed changes, instead of rebuilding */
+		public AtomicLong updates = new AtomicLong();
+		public AtomicLong invalidations = new AtomicLong();
+		/** Number of open orders in current book, or -1 if no current book */
+		public int orderCount;
+		/** Number of asset pairs with open orders in current book, or -1 if no current book */
+		public int pairCount;
+		public long generation;
+
+		public StatsSnapshot() {
+		}
+	}
+
+	private static final StatsSnapshot stats = new StatsSnapshot();
+
+	private static final AtomicLong globalGeneration = new AtomicLong();
+	/** Number of commits that modify orders currently in progress. Guarded by class lock. */
+	private static int commitsInProgress = 0;
+	private static volatile HSQLDBOrderBook currentBook = null;
+
+	private final long generation;
+	/** Open orders, keyed by have-asset/want-asset pair, in price-time priority order */
+	private final Map<Pair<Long, Long>, List<OrderData>> ordersByAssetPair;
+	private final Map<ByteArray, OrderData> ordersById;
+
+	private HSQLDBOrderBook(long generation, Map<Pair<Long, Long>, List<OrderData>> ordersByAssetPair) {
+		this.generation = generation;
+		this.ordersByAssetPair = ordersByAssetPair;
+
+		this.ordersById = new HashMap<>();
+		for (List<OrderData> orders : ordersByAssetPair.values())
+			for (OrderData orderData : orders)
+				this.ordersById.put(ByteArray.wrap(orderData.getOrderId()), orderData);
+	}
+
+	private HSQLDBOrderBook(long generation, List<OrderData> openOrders) {
+		this(generation, groupByAssetPair(openOrders));
+	}
+
+	private static Map<Pair<Long, Long>, List<OrderData>> groupByAssetPair(List<OrderData> openOrders) {
+		Map<Pair<Long, Long>, List<OrderData>> ordersByAssetPair = new HashMap<>();
+
+		for (OrderData orderData : openOrders)
+			ordersByAssetPair.computeIfAbsent(assetPair(orderData), k -> new ArrayList<>()).add(copyOf(orderData, null, null));
+
+		for (Map.Entry<Pair<Long, Long>, List<OrderData>> entry : ordersByAssetPair.entrySet()) {
+			List<OrderData> orders = entry.getValue();
+			orders.sort(priorityComparator(entry.getKey().getA(), entry.getKey().getB()));
+			entry.setValue(Collections.unmodifiableList(orders));
+		}
+
+		return ordersByAssetPair;
+	}
+
+	// Generations / lifecycle
+
+	/** Returns current global generation, for sessions to record when their transaction begins. */
+	public static long getGeneration() {
+		return globalGeneration.get();
+	}
+
+	/** Discards current book and bumps generation, e.g. when repository is (re)opened. */
+	public static synchronized void invalidate() {
+		globalGeneration.incrementAndGet();
+		currentBook = null;
+		stats.invalidations.incrementAndGet();
+	}
+
+	/** Called before commit that modifies orders, so other sessions don't use book until commit has finished. */
+	/* package */ static synchronized void beginCommit() {
+		++commitsInProgress;
+		globalGeneration.incrementAndGet();
+	}
+
+	/**
+	 * Called after commit that modifies orders, whether successful or not.
+	 * <p>
+	 * If <tt>changedOrders</tt> were committed, and were made on top of the current book with no other commits since,
+	 * then they're applied to the current book. Otherwise the book is discarded, to be rebuilt when next needed.
+	 *
+	 * @param sessionGeneration generation when committing session's transaction began
+	 * @param changedOrders latest version of each order changed by session, or null if order was deleted
+	 */
+	/* package */ static synchronized void endCommit(long sessionGeneration, Map<ByteArray, OrderData> changedOrders, boolean isCommitted) {
+		--commitsInProgress;
+		final long newGeneration = globalGeneration.incrementAndGet();
+
+		HSQLDBOrderBook book = currentBook;
+
+		// Our beginCommit() and endCommit() should be the only generation bumps since session's transaction began
+		if (isCommitted && book != null && book.generation == sessionGeneration
+				&& newGeneration == sessionGeneration + 2 && commitsInProgress == 0) {
+			currentBook = book.withChanges(newGeneration, changedOrders);
+			stats.updates.incrementAndGet();
+			return;
+		}
+
+		currentBook = null;
+		stats.invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Returns book valid for session whose transaction began at <tt>sessionGeneration</tt>,
+	 * or null if session should use SQL instead.
+	 * <p>
+	 * The returned book is only built, using <tt>loader</tt>, when there is no current book.
+	 */
+	/* package */ static HSQLDBOrderBook get(long sessionGeneration, OpenOrdersLoader loader) throws DataException {
+		HSQLDBOrderBook book;
+		synchronized (HSQLDBOrderBook.class) {
+			if (commitsInProgress > 0 || sessionGeneration != globalGeneration.get()) {
+				stats.misses.incrementAndGet();
+				return null;
+			}
+
+			book = currentBook;
+		}
+
+		if (book != null && book.generation == sessionGeneration) {
+			stats.hits.incrementAndGet();
+			return book;
+		}
+
+		// Build from session's view of repository, which is the same as everyone else's at this generation
+		book = new HSQLDBOrderBook(sessionGeneration, loader.load());
+		stats.rebuilds.incrementAndGet();
+
+		// Only share book if no order commits have started since session's transaction began
+		synchronized (HSQLDBOrderBook.class) {
+			if (commitsInProgress == 0 && sessionGeneration == globalGeneration.get())
+				currentBook = book;
+		}
+
+		return book;
+	}
+
+	/* package */ interface OpenOrdersLoader {
+		/** Returns all open orders, in any order */
+		List<OrderData> load() throws DataException;
+	}
+
+	public static StatsSnapshot getStatsSnapshot() {
+		HSQLDBOrderBook book = currentBook;
+
+		stats.orderCount = book != null ? book.ordersById.size() : -1;
+		stats.pairCount = book != null ? book.ordersByAssetPair.size() : -1;
+		stats.generation = globalGeneration.get();
+
+		return stats;
+	}
+
+	// Lookups
+
+	/**
+	 * Returns copies of open orders for have-asset/want-asset pair, in price-time priority order,
+	 * including session's uncommitted <tt>changedOrders</tt>.
+	 * <p>
+	 * Priority order is best price first, i.e. highest price when have-asset ID is lower than want-asset ID,
+	 * otherwise lowest price, then earliest timestamp. Orders with same price and timestamp are in no particular order.
+	 * <p>
+	 * Returned orders are only given asset names if passed.
+	 */
+	public List<OrderData> getOpenOrders(long haveAssetId, long wantAssetId, Map<ByteArray, OrderData> changedOrders,
+			String haveAssetName, String wantAssetName) {
+		List<OrderData> bookOrders = this.ordersByAssetPair.getOrDefault(new Pair<>(haveAssetId, wantAssetId), Collections.emptyList());
+		List<OrderData> orders = new ArrayList<>(bookOrders.size());
+
+		for (OrderData orderData : bookOrders)
+			if (!changedOrders.containsKey(ByteArray.wrap(orderData.getOrderId())))
+				orders.add(copyOf(orderData, haveAssetName, wantAssetName));
+
+		boolean haveChangedOrders = false;
+		for (OrderData orderData : changedOrders.values())
+			if (orderData != null && isOpen(orderData)
+					&& orderData.getHaveAssetId() == haveAssetId && orderData.getWantAssetId() == wantAssetId) {
+				orders.add(copyOf(orderData, haveAssetName, wantAssetName));
+				haveChangedOrders = true;
+			}
+
+		if (haveChangedOrders)
+			orders.sort(priorityComparator(haveAssetId, wantAssetId));
+
+		return orders;
+	}
+
+	/** Returns new book, with <tt>changedOrders</tt> applied to this book. */
+	private HSQLDBOrderBook withChanges(long newGeneration, Map<ByteArray, OrderData> changedOrders) {
+		Map<Pair<Long, Long>, List<OrderData>> newOrdersByAssetPair = new HashMap<>(this.ordersByAssetPair);
+
+		// Asset pairs affected by changes, including those of deleted orders
+		List<Pair<Long, Long>> changedAssetPairs = new ArrayList<>();
+		for (Map.Entry<ByteArray, OrderData> entry : changedOrders.entrySet()) {
+			OrderData orderData = entry.getValue() != null ? entry.getValue() : this.ordersById.get(entry.getKey());
+			if (orderData == null)
+				// Order was deleted, but wasn't open anyway
+				continue;
+
+			Pair<Long, Long> assetPair = assetPair(orderData);
+			if (!changedAssetPairs.contains(assetPair))
+				changedAssetPairs.add(assetPair);
+		}
+
+		for (Pair<Long, Long> assetPair : changedAssetPairs) {
+			List<OrderData> orders = this.getOpenOrders(assetPair.getA(), assetPair.getB(), changedOrders, null, null);
+
+			if (orders.isEmpty())
+				newOrdersByAssetPair.remove(assetPair);
+			else
+				newOrdersByAssetPair.put(assetPair, Collections.unmodifiableList(orders));
+		}
+
+		return new HSQLDBOrderBook(newGeneration, newOrdersByAssetPair);
+	}
+
+	// Utilities
+
+	/* package */ static Comparator<OrderData> priorityComparator(long haveAssetId, long wantAssetId) {
+		Comparator<OrderData> priceComparator = Comparator.comparingLong(OrderData::getPrice);
+		if (haveAssetId < wantAssetId)
+			priceComparator = priceComparator.reversed();
+
+		return priceComparator.thenComparingLong(OrderData::getTimestamp);
+	}
+
+	/**
+	 * Returns whether any adjacent <tt>orders</tt>, sorted by price then timestamp, have the same price and timestamp.
+	 * <p>
+	 * If so, caller should use SQL instead, as book can't reproduce the order SQL returns such ties in.
+	 */
+	/* package */ static boolean hasPriorityTies(List<OrderData> orders) {
+		for (int i = 1; i < orders.size(); ++i) {
+			OrderData previousOrderData = orders.get(i - 1);
+			OrderData orderData = orders.get(i);
+
+			if (orderData.getPrice() == previousOrderData.getPrice() && orderData.getTimestamp() == previousOrderData.getTimestamp()) {
+				stats.tieFallbacks.incrementAndGet();
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/* package */ static boolean isOpen(OrderData orderData) {
+		return !orderData.getIsClosed() && !orderData.getIsFulfilled();
+	}
+
+	/* package */ static OrderData copyOf(OrderData orderData, String haveAssetName, String wantAssetName) {
+		return new OrderData(orderData.getOrderId(), orderData.getCreatorPublicKey(), orderData.getHaveAssetId(), orderData.getWantAssetId(),
+				orderData.getAmount(), orderData.getFulfilled(), orderData.getPrice(), orderData.getTimestamp(),
+				orderData.getIsClosed(), orderData.getIsFulfilled(), haveAssetName, wantAssetName);
+	}
+
+	private static Pair<Long, Long> assetPair(OrderData orderData) {
+		return new Pair<>(orderData.getHaveAssetId(), orderData.getWantAssetId());
+	}
+
+}
@@ -40,21 +40,22 @@ public class HSQLDBRepository implements Repository {
 	// "serialization failure"
 	private static final Integer DEADLOCK_ERROR_CODE = Integer.valueOf(-4861);
 
+	protected final HSQLDBConnectionPool connectionPool;
+	protected HSQLDBStatementCache statementCache;
 	protected Connection connection;
 	protected final Deque<Savepoint> savepoints = new ArrayDeque<>(3);
 	protected boolean debugState = false;
 	protected Long slowQueryThreshold = null;
 	protected List<String> sqlStatements;
 	protected long sessionId;
-	protected final Map<String, PreparedStatement> preparedStatementCache = new HashMap<>();
 	// We want the same object corresponding to the actual DB
 	protected final Object trimHeightsLock = RepositoryManager.getRepositoryFactory();
 	protected final Object latestATStatesLock = RepositoryManager.getRepositoryFactory();
 
 	private final ATRepository atRepository = new HSQLDBATRepository(this);
-	private final AccountRepository accountRepository = new HSQLDBAccountRepository(this);
+	private final HSQLDBAccountRepository accountRepository = new HSQLDBAccountRepository(this);
 	private final ArbitraryRepository arbitraryRepository = new HSQLDBArbitraryRepository(this);
-	private final AssetRepository assetRepository = new HSQLDBAssetRepository(this);
+	private final HSQLDBAssetRepository assetRepository = new HSQLDBAssetRepository(this);
 	private final BlockRepository blockRepository = new HSQLDBBlockRepository(this);
 	private final BlockArchiveRepository blockArchiveRepository = new HSQLDBBlockArchiveRepository(this);
 	private final ChatRepository chatRepository = new HSQLDBChatRepository(this);
@@ -69,8 +70,10 @@ public class HSQLDBRepository implements Repository {
 	// Constructors
 
 	// NB: no visibility modifier so only callable from within same package
-	/* package */ HSQLDBRepository(Connection connection) throws DataException {
-		this.connection = connection;
+	/* package */ HSQLDBRepository(HSQLDBConnectionPool connectionPool, HSQLDBStatementCache statementCache) throws DataException {
+		this.connectionPool = connectionPool;
+		this.statementCache = statementCache;
+		this.connection = statementCache.getConnection();
 
 		this.slowQueryThreshold = Settings.getInstance().getSlowQueryThreshold();
 		if (this.slowQueryThreshold != null)
@@ -185,8 +188,30 @@ public class HSQLDBRepository implements Repository {
 	public void saveChanges() throws DataException {
 		long beforeQuery = this.slowQueryThreshold == null ? 0 : System.currentTimeMillis();
 
+		// Other sessions mustn't use shared reward-share index while our changes are being committed
+		final boolean haveRewardSharesChanged = this.accountRepository.haveRewardSharesChanged();
+		if (haveRewardSharesChanged)
+			HSQLDBRewardShareIndex.invalidate();
+
+		// Likewise for shared order book
+		final boolean haveOrdersChanged = this.assetRepository.haveOrdersChanged();
+		if (haveOrdersChanged)
+			HSQLDBOrderBook.beginCommit();
+
+		boolean isCommitted = false;
+
 		try {
+			// Buffered balance changes need to be in repository before commit
+			this.accountRepository.writeBufferedBalanceChanges();
+
 			this.connection.commit();
+			isCommitted = true;
+
+			// Any index built during commit is now out of date
+			if (haveRewardSharesChanged)
+				HSQLDBRewardShareIndex.invalidate();
+
+			this.accountRepository.resetRewardShareGeneration();
 
 			if (this.slowQueryThreshold != null) {
 				long queryTime = System.currentTimeMillis() - beforeQuery;
@@ -200,6 +225,13 @@ public class HSQLDBRepository implements Repository {
 		} catch (SQLException e) {
 			throw new DataException("commit error", e);
 		} finally {
+			// Shared order book needs to know outcome of commit either way
+			if (haveOrdersChanged)
+				this.assetRepository.endOrderBookCommit(isCommitted);
+
+			if (isCommitted)
+				this.assetRepository.resetOrderBookGeneration();
+
 			this.savepoints.clear();
 
 			// Before clearing statements so we can log what led to assertion error
@@ -212,8 +244,13 @@ public class HSQLDBRepository implements Repository {
 
 	@Override
 	public void discardChanges() throws DataException {
+		this.accountRepository.stopBufferingBalanceChanges();
+
 		try {
 			this.connection.rollback();
+
+			this.accountRepository.resetRewardShareGeneration();
+			this.assetRepository.resetOrderBookGeneration();
 		} catch (SQLException e) {
 			throw new DataException("rollback error", e);
 		} finally {
@@ -229,6 +266,9 @@ public class HSQLDBRepository implements Repository {
 
 	@Override
 	public void setSavepoint() throws DataException {
+		// Buffered balance changes need to be in repository before savepoint
+		this.accountRepository.writeBufferedBalanceChanges();
+
 		try {
 			if (this.sqlStatements != null)
 				// We don't know savepoint's ID yet
@@ -236,6 +276,7 @@ public class HSQLDBRepository implements Repository {
 
 			Savepoint savepoint = this.connection.setSavepoint();
 			this.savepoints.push(savepoint);
+			this.assetRepository.setOrderBookSavepoint();
 
 			// Update query log with savepoint ID
 			if (this.sqlStatements != null)
@@ -257,6 +298,11 @@ public class HSQLDBRepository implements Repository {
 				this.sqlStatements.add("ROLLBACK TO SAVEPOINT [" + savepoint.getSavepointId() + "]");
 
 			this.connection.rollback(savepoint);
+
+			// Any buffered balance changes were made since savepoint
+			this.accountRepository.discardBufferedBalanceChanges();
+			// Likewise any order changes
+			this.assetRepository.rollbackOrderBookToSavepoint();
 		} catch (SQLException e) {
 			throw new DataException("savepoint rollback error", e);
 		}
@@ -276,15 +322,17 @@ public class HSQLDBRepository implements Repository {
 			assertEmptyTransaction("connection close");
 
 			// Assume we are not going to be GC'd for a while
-			this.preparedStatementCache.clear();
+			this.accountRepository.stopBufferingBalanceChanges();
 			this.sqlStatements = null;
 			this.savepoints.clear();
 
-			// If a checkpoint has been requested, we could perform that now
-			this.maybeCheckpoint();
+			// If a checkpoint has been requested, we could perform that now, unless we're read-only
+			if (!this.connectionPool.isReadOnly())
+				this.maybeCheckpoint();
 
-			// Give connection back to the pool
-			this.connection.close();
+			// Give connection, with its prepared statements, back to pool for reuse
+			this.connectionPool.releaseConnection(this.statementCache);
+			this.statementCache = null;
 			this.connection = null;
 		} catch (SQLException e) {
 			throw new DataException("Error while closing repository", e);
@@ -557,6 +605,11 @@ public class HSQLDBRepository implements Repository {
 
 	// SQL statements, etc.
 
+	/** Writes any buffered balance changes, e.g. before accessing AccountBalances from outside account repository. */
+	/* package */ void writeBufferedBalanceChanges() throws DataException {
+		this.accountRepository.writeBufferedBalanceChanges();
+	}
+
 	/**
 	 * Returns prepared statement using passed SQL, logging query if necessary.
 	 */
@@ -577,23 +630,12 @@ public class HSQLDBRepository implements Repository {
 		 * prepared statement that can be reused for subsequent
 		 * calls to HSQLDB.prepareStatement(sql).
 		 * 
+		 * The cache belongs to the pooled connection, not this repository session,
+		 * so statements survive across sessions using the same connection.
+		 * 
 		 * See org.hsqldb.StatementManager for more details.
 		 */
-		PreparedStatement preparedStatement = this.preparedStatementCache.get(sql);
-		if (preparedStatement == null || preparedStatement.isClosed()) {
-			if (preparedStatement != null)
-				// This shouldn't occur, so log, but recompile
-				LOGGER.debug(() -> String.format("Recompiling closed PreparedStatement: %s", sql));
-
-			preparedStatement =  this.connection.prepareStatement(sql);
-			this.preparedStatementCache.put(sql, preparedStatement);
-		} else {
-			// Clean up ready for reuse
-			preparedStatement.clearBatch();
-			preparedStatement.clearParameters();
-		}
-
-		return preparedStatement;
+		return this.statementCache.prepareStatement(sql);
 	}
 
 	/**
@@ -4,13 +4,9 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Properties;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.hsqldb.HsqlException;
 import org.hsqldb.error.ErrorCode;
-import org.hsqldb.jdbc.HSQLDBPool;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryFactory;
@@ -18,13 +14,9 @@ import org.qortal.settings.Settings;
 
 public class HSQLDBRepositoryFactory implements RepositoryFactory {
 
-	private static final Logger LOGGER = LogManager.getLogger(HSQLDBRepositoryFactory.class);
-
-	/** Log getConnection() calls that take longer than this. (ms) */
-	private static final long SLOW_CONNECTION_THRESHOLD = 1000L;
-
 	private String connectionUrl;
-	private HSQLDBPool connectionPool;
+	private HSQLDBConnectionPool connectionPool;
+	private HSQLDBConnectionPool readOnlyConnectionPool;
 	private final boolean wasPristine;
 
 	/**
@@ -57,19 +49,28 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 			HSQLDBRepository.attemptRecovery(connectionUrl, "backup");
 		}
 
-		this.connectionPool = new HSQLDBPool(Settings.getInstance().getRepositoryConnectionPoolSize());
-		this.connectionPool.setUrl(this.connectionUrl);
+		Settings settings = Settings.getInstance();
 
-		Properties properties = new Properties();
-		properties.setProperty("close_result", "true"); // Auto-close old ResultSet if Statement creates new ResultSet
-		this.connectionPool.setProperties(properties);
+		// Pool can only grow if max size is set
+		final int poolSize = settings.getRepositoryConnectionPoolSize();
+		Integer maxPoolSize = settings.getRepositoryConnectionPoolMaxSize();
+		this.connectionPool = new HSQLDBConnectionPool("main", this.connectionUrl, poolSize, maxPoolSize != null ? maxPoolSize : poolSize, false,
+				settings.getRepositoryStatementCacheSize(), settings.getRepositoryLongHeldConnectionThreshold());
+
+		final int readOnlyPoolSize = settings.getRepositoryReadOnlyConnectionPoolSize();
+		this.readOnlyConnectionPool = new HSQLDBConnectionPool("read-only", this.connectionUrl, readOnlyPoolSize, readOnlyPoolSize, true,
+				settings.getRepositoryStatementCacheSize(), settings.getRepositoryLongHeldConnectionThreshold());
 
 		// Perform DB updates?
-		try (final Connection connection = this.connectionPool.getConnection()) {
+		try (final Connection connection = this.connectionPool.getUnmanagedConnection()) {
 			this.wasPristine = HSQLDBDatabaseUpdates.updateDatabase(connection);
 		} catch (SQLException e) {
 			throw new DataException("Repository initialization error", e);
 		}
+
+		// Any previously built reward-share index or order book could be from a different repository
+		HSQLDBRewardShareIndex.invalidate();
+		HSQLDBOrderBook.invalidate();
 	}
 
 	@Override
@@ -84,59 +85,49 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 
 	@Override
 	public Repository getRepository() throws DataException {
-		try {
-			return new HSQLDBRepository(this.getConnection());
-		} catch (SQLException e) {
-			throw new DataException("Repository instantiation error", e);
-		}
+		return this.getRepository(this.connectionPool);
 	}
 
 	@Override
 	public Repository tryRepository() throws DataException {
 		try {
-			Connection connection = this.tryConnection();
-			if (connection == null)
+			HSQLDBStatementCache statementCache = this.connectionPool.tryConnection();
+			if (statementCache == null)
 				return null;
 
-			return new HSQLDBRepository(connection);
+			return new HSQLDBRepository(this.connectionPool, statementCache);
 		} catch (SQLException e) {
 			throw new DataException("Repository instantiation error", e);
 		}
 	}
 
-	private Connection getConnection() throws SQLException {
-		final long before = System.currentTimeMillis();
-		Connection connection = this.connectionPool.getConnection();
-		final long delay = System.currentTimeMillis() - before;
-
-		if (delay > SLOW_CONNECTION_THRESHOLD)
-			// This could be an indication of excessive repository use, or insufficient pool size
-			LOGGER.warn(() -> String.format("Fetching repository connection from pool took %dms (threshold: %dms)", delay, SLOW_CONNECTION_THRESHOLD));
-
-		setupConnection(connection);
-		return connection;
+	@Override
+	public Repository getReadOnlyRepository() throws DataException {
+		return this.getRepository(this.readOnlyConnectionPool);
 	}
 
-	private Connection tryConnection() throws SQLException {
-		Connection connection = this.connectionPool.tryConnection();
-		if (connection == null)
-			return null;
+	private Repository getRepository(HSQLDBConnectionPool pool) throws DataException {
+		try {
+			return new HSQLDBRepository(pool, pool.getConnection());
+		} catch (SQLException e) {
+			throw new DataException("Repository instantiation error", e);
+		}
+	}
 
-		setupConnection(connection);
-		return connection;
+	public HSQLDBConnectionMonitor.StatsSnapshot getConnectionStatsSnapshot() {
+		return this.connectionPool.getStatsSnapshot();
 	}
 
-	private void setupConnection(Connection connection) throws SQLException {
-		// Set transaction level
-		connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
-		connection.setAutoCommit(false);
+	public HSQLDBConnectionMonitor.StatsSnapshot getReadOnlyConnectionStatsSnapshot() {
+		return this.readOnlyConnectionPool.getStatsSnapshot();
 	}
 
 	@Override
 	public void close() throws DataException {
 		try {
 			// Close all existing connections immediately
-			this.connectionPool.close(0);
+			this.readOnlyConnectionPool.close();
+			this.connectionPool.close();
 
 			// Now that all connections are closed, create a dedicated connection to shut down repository
 			try (Connection connection = DriverManager.getConnection(this.connectionUrl);
@@ -0,0 +1,192 @@
+package org.qortal.repository.hsqldb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.qortal.data.account.RewardShareData;
+import org.qortal.repository.DataException;
+import org.qortal.utils.ByteArray;
+
+/**
+ * In-memory index of all reward-shares, in reward-share public key order, as used to encode online accounts in blocks.
+ * <p>
+ * Reward-shares are looked up for every block validated and every online account imported,
+ * but only change when REWARD_SHARE transactions are processed or orphaned.
+ * <p>
+ * Each index is built from a repository session and tagged with a <i>generation</i>.
+ * The global generation is bumped both before and after any commit that modifies reward-shares,
+ * so a session can only use the index if nothing has changed reward-shares since its transaction began.
+ * Otherwise, or if the session itself has modified reward-shares, callers fall back to SQL.
+ * <p>
+ * Indexes are immutable, so can be shared by all repository sessions.
+ */
+public class HSQLDBRewardShareIndex {
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatsSnapshot {
+		/** Lookups answered by index */
+		public AtomicLong hits = new AtomicLong();
+		/** Lookups that fell back to SQL, e.g. index out of date for session */
+		public AtomicLong misses = new AtomicLong();
+		public AtomicLong rebuilds = new AtomicLong();
+		public AtomicLong invalidations = new AtomicLong();
+		/** Number of reward-shares in current index, or -1 if no current index */
+		public int size;
+		public long generation;
+
+		public StatsSnapshot() {
+		}
+	}
+
+	private static final StatsSnapshot stats = new StatsSnapshot();
+
+	private static final AtomicLong globalGeneration = new AtomicLong();
+	private static volatile HSQLDBRewardShareIndex currentIndex = null;
+
+	private final long generation;
+	/** Reward-shares ordered by reward-share public key, so array index is reward-share index */
+	private final RewardShareData[] rewardShares;
+	private final Map<ByteArray, Integer> indexesByPublicKey;
+	private final Map<ByteArray, List<RewardShareData>> rewardSharesByMinter;
+
+	private HSQLDBRewardShareIndex(long generation, List<RewardShareData> orderedRewardShares) {
+		this.generation = generation;
+		this.rewardShares = orderedRewardShares.toArray(new RewardShareData[0]);
+
+		this.indexesByPublicKey = new HashMap<>(this.rewardShares.length * 2);
+		this.rewardSharesByMinter = new HashMap<>();
+
+		for (int i = 0; i < this.rewardShares.length; ++i) {
+			RewardShareData rewardShareData = this.rewardShares[i];
+
+			this.indexesByPublicKey.put(ByteArray.wrap(rewardShareData.getRewardSharePublicKey()), i);
+			this.rewardSharesByMinter.computeIfAbsent(ByteArray.wrap(rewardShareData.getMinterPublicKey()), k -> new ArrayList<>(1)).add(rewardShareData);
+		}
+	}
+
+	// Generations / lifecycle
+
+	/** Returns current global generation, for sessions to record when their transaction begins. */
+	public static long getGeneration() {
+		return globalGeneration.get();
+	}
+
+	/** Discards current index and bumps generation, e.g. either side of commit that modifies reward-shares. */
+	public static synchronized void invalidate() {
+		globalGeneration.incrementAndGet();
+		currentIndex = null;
+		stats.invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Returns index valid for session whose transaction began at <tt>sessionGeneration</tt>,
+	 * or null if session should use SQL instead.
+	 * <p>
+	 * The returned index is only built, using <tt>loader</tt>, when there is no current index.
+	 */
+	/* package */ static HSQLDBRewardShareIndex get(long sessionGeneration, RewardShareLoader loader) throws DataException {
+		if (sessionGeneration != globalGeneration.get()) {
+			stats.misses.incrementAndGet();
+			return null;
+		}
+
+		HSQLDBRewardShareIndex index = currentIndex;
+		if (index != null && index.generation == sessionGeneration) {
+			stats.hits.incrementAndGet();
+			return index;
+		}
+
+		// Build from session's view of repository, which is the same as everyone else's at this generation
+		index = new HSQLDBRewardShareIndex(sessionGeneration, loader.load());
+		stats.rebuilds.incrementAndGet();
+
+		// Only share index if no reward-share commits have started since session's transaction began
+		synchronized (HSQLDBRewardShareIndex.class) {
+			if (sessionGeneration == globalGeneration.get())
+				currentIndex = index;
+		}
+
+		return index;
+	}
+
+	/* package */ interface RewardShareLoader {
+		/** Returns all reward-shares, ordered by reward-share public key */
+		List<RewardShareData> load() throws DataException;
+	}
+
+	public static StatsSnapshot getStatsSnapshot() {
+		HSQLDBRewardShareIndex index = currentIndex;
+
+		stats.size = index != null ? index.rewardShares.length : -1;
+		stats.generation = globalGeneration.get();
+
+		return stats;
+	}
+
+	// Lookups
+
+	public int size() {
+		return this.rewardShares.length;
+	}
+
+	public RewardShareData getRewardShare(byte[] rewardSharePublicKey) {
+		Integer index = this.getIndex(rewardSharePublicKey);
+		return index != null ? this.rewardShares[index] : null;
+	}
+
+	public RewardShareData getRewardShare(byte[] minterPublicKey, String recipient) {
+		for (RewardShareData rewardShareData : this.getRewardSharesByMinter(minterPublicKey))
+			if (rewardShareData.getRecipient().equals(recipient))
+				return rewardShareData;
+
+		return null;
+	}
+
+	public List<RewardShareData> getRewardSharesByMinter(byte[] minterPublicKey) {
+		return this.rewardSharesByMinter.getOrDefault(ByteArray.wrap(minterPublicKey), Collections.emptyList());
+	}
+
+	public Integer getIndex(byte[] rewardSharePublicKey) {
+		return this.indexesByPublicKey.get(ByteArray.wrap(rewardSharePublicKey));
+	}
+
+	/** Returns reward-share at <tt>index</tt>, or null if out of bounds. */
+	public RewardShareData getRewardShareByIndex(int index) {
+		if (index < 0 || index >= this.rewardShares.length)
+			return null;
+
+		return this.rewardShares[index];
+	}
+
+	/** Returns reward-shares at <tt>indexes</tt>, or null if any index is out of bounds. */
+	public List<RewardShareData> getRewardSharesByIndexes(int[] indexes) {
+		List<RewardShareData> rewardShares = new ArrayList<>(indexes.length);
+
+		for (int index : indexes) {
+			RewardShareData rewardShareData = this.getRewardShareByIndex(index);
+			if (rewardShareData == null)
+				return null;
+
+			rewardShares.add(rewardShareData);
+		}
+
+		return rewardShares;
+	}
+
+	public List<byte[]> getRewardSharePublicKeys() {
+		List<byte[]> rewardSharePublicKeys = new ArrayList<>(this.rewardShares.length);
+
+		for (RewardShareData rewardShareData : this.rewardShares)
+			rewardSharePublicKeys.add(rewardShareData.getRewardSharePublicKey());
+
+		return rewardSharePublicKeys;
+	}
+
+}
@@ -17,6 +17,9 @@ import java.util.TimeZone;
  * {@code SaveHelper helper = new SaveHelper("TableName"); }<br>
  * {@code helper.bind("column_name", someColumnValue).bind("column2", columnValue2); }<br>
  * {@code helper.execute(repository); }<br>
+ * <p>
+ * Multiple rows can be saved using one batched statement by calling {@link #addBatch()} after binding each row,
+ * binding the same columns in the same order, then calling {@link #executeBatch(HSQLDBRepository)}.
  *
  */
 public class HSQLDBSaver {
@@ -27,6 +30,7 @@ public class HSQLDBSaver {
 
 	private List<String> columns = new ArrayList<>();
 	private List<Object> objects = new ArrayList<>();
+	private List<List<Object>> batchedObjects = new ArrayList<>();
 
 	/**
 	 * Construct a SaveHelper, using SQL Connection and table name.
@@ -45,11 +49,30 @@ public class HSQLDBSaver {
 	 * @return the same SaveHelper object
 	 */
 	public HSQLDBSaver bind(String column, Object value) {
-		columns.add(column);
+		// Columns are only collected for first row of a batch
+		if (batchedObjects.isEmpty())
+			columns.add(column);
+		else if (objects.size() >= columns.size() || !column.equals(columns.get(objects.size())))
+			throw new IllegalStateException("Batched rows must bind the same columns in the same order");
+
 		objects.add(value);
 		return this;
 	}
 
+	/**
+	 * Add currently bound values as a row to be saved when executeBatch() is called.
+	 * 
+	 * @return the same SaveHelper object
+	 */
+	public HSQLDBSaver addBatch() {
+		if (objects.size() != columns.size())
+			throw new IllegalStateException("Batched rows must bind the same columns in the same order");
+
+		batchedObjects.add(objects);
+		objects = new ArrayList<>();
+		return this;
+	}
+
 	/**
 	 * Build PreparedStatement using bound column-value pairs then execute it.
 	 * 
@@ -64,7 +87,7 @@ public class HSQLDBSaver {
 		synchronized (HSQLDBRepository.CHECKPOINT_LOCK) {
 			try {
 				PreparedStatement preparedStatement = repository.prepareStatement(sql);
-				this.bindValues(preparedStatement);
+				this.bindValues(preparedStatement, this.objects);
 
 				return preparedStatement.execute();
 			} catch (SQLException e) {
@@ -73,6 +96,38 @@ public class HSQLDBSaver {
 		}
 	}
 
+	/**
+	 * Build PreparedStatement using bound column-value pairs, then execute it for each batched row.
+	 * 
+	 * @param repository
+	 *
+	 * @return number of batched rows
+	 * @throws SQLException
+	 */
+	public int executeBatch(HSQLDBRepository repository) throws SQLException {
+		// Nothing to do?
+		if (this.batchedObjects.isEmpty())
+			return 0;
+
+		String sql = this.formatInsertWithPlaceholders();
+
+		synchronized (HSQLDBRepository.CHECKPOINT_LOCK) {
+			try {
+				PreparedStatement preparedStatement = repository.prepareStatement(sql);
+
+				for (List<Object> rowObjects : this.batchedObjects) {
+					this.bindValues(preparedStatement, rowObjects);
+					preparedStatement.addBatch();
+				}
+
+				preparedStatement.executeBatch();
+				return this.batchedObjects.size();
+			} catch (SQLException e) {
+				throw repository.examineException(e);
+			}
+		}
+	}
+
 	/**
 	 * Format table and column names into an INSERT INTO ... SQL statement.
 	 * <p>
@@ -131,24 +186,25 @@ public class HSQLDBSaver {
 	 * Requires that mySQL SQL syntax support is enabled during connection.
 	 * 
 	 * @param preparedStatement
+	 * @param objects
 	 * @throws SQLException
 	 */
-	private void bindValues(PreparedStatement preparedStatement) throws SQLException {
-		for (int i = 0; i < this.objects.size(); ++i) {
-			Object object = this.objects.get(i);
+	private void bindValues(PreparedStatement preparedStatement, List<Object> objects) throws SQLException {
+		for (int i = 0; i < objects.size(); ++i) {
+			Object object = objects.get(i);
 
 			if (object instanceof BigDecimal) {
 				// Special treatment for BigDecimals so that they retain their "scale",
 				// which would otherwise be assumed as 0.
 				preparedStatement.setBigDecimal(i + 1, (BigDecimal) object);
-				preparedStatement.setBigDecimal(i + this.objects.size() + 1, (BigDecimal) object);
+				preparedStatement.setBigDecimal(i + objects.size() + 1, (BigDecimal) object);
 			} else if (object instanceof Timestamp) {
 				// Special treatment for Timestamps so that they are stored as UTC
 				preparedStatement.setTimestamp(i + 1, (Timestamp) object, utcCalendar);
-				preparedStatement.setTimestamp(i + this.objects.size() + 1, (Timestamp) object, utcCalendar);
+				preparedStatement.setTimestamp(i + objects.size() + 1, (Timestamp) object, utcCalendar);
 			} else {
 				preparedStatement.setObject(i + 1, object);
-				preparedStatement.setObject(i + this.objects.size() + 1, object);
+				preparedStatement.setObject(i + objects.size() + 1, object);
 			}
 		}
 
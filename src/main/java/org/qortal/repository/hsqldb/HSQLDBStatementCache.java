@@ -0,0 +1,131 @@
+package org.qortal.repository.hsqldb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pooled HSQLDB connection, together with its prepared statements.
+ * <p>
+ * HSQLDB resets a pooled session when its logical connection is closed, discarding compiled statements,
+ * so {@link HSQLDBRepositoryFactory} keeps connections open between repository sessions instead.
+ * Statements prepared by one repository session can then be reused by the next.
+ * <p>
+ * Up to <tt>maxSize</tt> statements are kept, with least-recently used statements being closed when exceeded.
+ * <p>
+ * Not thread-safe: only used by one repository session at a time.
+ */
+public class HSQLDBStatementCache {
+
+	private static final Logger LOGGER = LogManager.getLogger(HSQLDBStatementCache.class);
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatsSnapshot {
+		public AtomicLong hits = new AtomicLong();
+		public AtomicLong misses = new AtomicLong();
+		public AtomicLong evictions = new AtomicLong();
+		/** Total time spent preparing statements (ns) */
+		public AtomicLong prepareNanos = new AtomicLong();
+		/** Number of connections opened, each with its own statements */
+		public AtomicLong connectionsOpened = new AtomicLong();
+
+		public StatsSnapshot() {
+		}
+	}
+
+	/** Statistics across all connections */
+	private static final StatsSnapshot stats = new StatsSnapshot();
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> preparedStatements;
+
+	public HSQLDBStatementCache(Connection connection, int maxSize) {
+		this.connection = connection;
+
+		// Access-ordered so eldest entry is least-recently used
+		this.preparedStatements = new LinkedHashMap<>(Math.min(maxSize, 256), 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (this.size() <= maxSize)
+					return false;
+
+				stats.evictions.incrementAndGet();
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+		};
+
+		stats.connectionsOpened.incrementAndGet();
+	}
+
+	public static StatsSnapshot getStatsSnapshot() {
+		return stats;
+	}
+
+	public Connection getConnection() {
+		return this.connection;
+	}
+
+	public int size() {
+		return this.preparedStatements.size();
+	}
+
+	/**
+	 * Returns prepared statement for <tt>sql</tt>, ready for reuse, preparing it if necessary.
+	 */
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		PreparedStatement preparedStatement = this.preparedStatements.get(sql);
+
+		if (preparedStatement != null && !preparedStatement.isClosed()) {
+			stats.hits.incrementAndGet();
+
+			// Clean up ready for reuse
+			preparedStatement.clearBatch();
+			preparedStatement.clearParameters();
+			return preparedStatement;
+		}
+
+		if (preparedStatement != null)
+			// This shouldn't occur, so log, but recompile
+			LOGGER.debug(() -> String.format("Recompiling closed PreparedStatement: %s", sql));
+
+		stats.misses.incrementAndGet();
+
+		final long before = System.nanoTime();
+		preparedStatement = this.connection.prepareStatement(sql);
+		stats.prepareNanos.addAndGet(System.nanoTime() - before);
+
+		this.preparedStatements.put(sql, preparedStatement);
+		return preparedStatement;
+	}
+
+	/** Closes all cached statements and the underlying connection. */
+	public void close() throws SQLException {
+		for (PreparedStatement preparedStatement : this.preparedStatements.values())
+			closeQuietly(preparedStatement);
+
+		this.preparedStatements.clear();
+
+		this.connection.close();
+	}
+
+	private static void closeQuietly(PreparedStatement preparedStatement) {
+		try {
+			preparedStatement.close();
+		} catch (SQLException e) {
+			LOGGER.debug("Unable to close evicted PreparedStatement", e);
+		}
+	}
+
+}
@@ -0,0 +1,226 @@
+package org.qortal.repository.hsqldb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.qortal.data.TradeCandleData;
+import org.qortal.data.TradeCandleData.Interval;
+import org.qortal.repository.DataException;
+
+/**
+ * OHLCV trade candles, for each {@link Interval}, stored in a repository table and keyed by market, e.g. asset pair.
+ * <p>
+ * Trades are merged into existing candles as they're processed.
+ * Orphaned trades can't be unmerged, so instead the affected minute candle is recalculated from remaining trades,
+ * then the hour candle from its minute candles, then the day candle from its hour candles.
+ * <p>
+ * Where trades have the same timestamp, market's trade order decides which opens and which closes.
+ * Processing order might differ, so a trade tying with its minute candle's first or last trade
+ * causes minute candle to be recalculated from market's trades, instead of being merged.
+ */
+/* package */ class HSQLDBTradeCandles {
+
+	/** Fetches market's trades in minute starting at <tt>minuteStart</tt>, as single-trade candles, in trade order. */
+	@FunctionalInterface
+	/* package */ interface MinuteTradesFetcher {
+		List<TradeCandleData> fetch(long minuteStart) throws DataException;
+	}
+
+	private static final String CANDLE_COLUMNS = "candle_start, open_price, high_price, low_price, close_price, "
+			+ "volume, other_volume, trade_count, first_traded_when, last_traded_when";
+
+	private final HSQLDBRepository repository;
+	private final String tableName;
+	private final String[] keyColumns;
+	private final String keyWhereClause;
+
+	/**
+	 * @param tableName table with market key columns, plus <tt>candle_interval</tt> and {@link #CANDLE_COLUMNS}
+	 * @param keyColumns columns identifying market
+	 */
+	/* package */ HSQLDBTradeCandles(HSQLDBRepository repository, String tableName, String... keyColumns) {
+		this.repository = repository;
+		this.tableName = tableName;
+		this.keyColumns = keyColumns;
+		this.keyWhereClause = Arrays.stream(keyColumns).map(column -> column + " = ?").collect(Collectors.joining(" AND "));
+	}
+
+	/** Returns candles for market, with start timestamps between <tt>minimumTimestamp</tt> and <tt>maximumTimestamp</tt> inclusive, if given. */
+	/* package */ List<TradeCandleData> getCandles(Object[] key, Interval interval, Long minimumTimestamp, Long maximumTimestamp,
+			Integer limit, Integer offset, Boolean reverse) throws DataException {
+		List<Object> bindParams = new ArrayList<>(Arrays.asList(key));
+
+		StringBuilder sql = new StringBuilder(512);
+		sql.append("SELECT ").append(CANDLE_COLUMNS).append(" FROM ").append(this.tableName)
+				.append(" WHERE ").append(this.keyWhereClause).append(" AND candle_interval = ?");
+		bindParams.add(interval.value);
+
+		if (minimumTimestamp != null) {
+			sql.append(" AND candle_start >= ?");
+			bindParams.add(minimumTimestamp);
+		}
+
+		if (maximumTimestamp != null) {
+			sql.append(" AND candle_start <= ?");
+			bindParams.add(maximumTimestamp);
+		}
+
+		sql.append(" ORDER BY candle_start");
+		if (reverse != null && reverse)
+			sql.append(" DESC");
+
+		HSQLDBRepository.limitOffsetSql(sql, limit, offset);
+
+		List<TradeCandleData> candles = new ArrayList<>();
+
+		try (ResultSet resultSet = this.repository.checkedExecute(sql.toString(), bindParams.toArray())) {
+			if (resultSet == null)
+				return candles;
+
+			do {
+				long timestamp = resultSet.getLong(1);
+				long open = resultSet.getLong(2);
+				long high = resultSet.getLong(3);
+				long low = resultSet.getLong(4);
+				long close = resultSet.getLong(5);
+				long volume = resultSet.getLong(6);
+				long otherVolume = resultSet.getLong(7);
+				int tradeCount = resultSet.getInt(8);
+				long firstTradeTimestamp = resultSet.getLong(9);
+				long lastTradeTimestamp = resultSet.getLong(10);
+
+				candles.add(new TradeCandleData(timestamp, open, high, low, close, volume, otherVolume,
+						tradeCount, firstTradeTimestamp, lastTradeTimestamp));
+			} while (resultSet.next());
+
+			return candles;
+		} catch (SQLException e) {
+			throw new DataException("Unable to fetch trade candles from repository", e);
+		}
+	}
+
+	/**
+	 * Merges trade, which should already be saved, into market's candles, for all intervals.
+	 *
+	 * @param minuteTradesFetcher used instead if trade has same timestamp as its minute candle's first or last trade
+	 */
+	/* package */ void addTrade(Object[] key, TradeCandleData tradeCandle, MinuteTradesFetcher minuteTradesFetcher) throws DataException {
+		final long timestamp = tradeCandle.getFirstTradeTimestamp();
+
+		for (Interval interval : Interval.values()) {
+			long start = interval.getStart(timestamp);
+
+			List<TradeCandleData> candles = new ArrayList<>(this.getCandles(key, interval, start, start, null, null, null));
+
+			// Minute candles are merged first, so nothing has been saved yet
+			if (interval == Interval.MINUTE && !candles.isEmpty()
+					&& (timestamp == candles.get(0).getFirstTradeTimestamp() || timestamp == candles.get(0).getLastTradeTimestamp())) {
+				this.recalculate(key, timestamp, minuteTradesFetcher.fetch(start));
+				return;
+			}
+
+			candles.add(tradeCandle);
+
+			this.save(key, interval, merge(start, candles));
+		}
+	}
+
+	/**
+	 * Recalculates market's candles, for all intervals, containing <tt>timestamp</tt>, e.g. after trade at that timestamp is orphaned.
+	 *
+	 * @param minuteTrades remaining trades in minute containing <tt>timestamp</tt>, as single-trade candles, in trade order
+	 */
+	/* package */ void recalculate(Object[] key, long timestamp, List<TradeCandleData> minuteTrades) throws DataException {
+		List<TradeCandleData> components = minuteTrades;
+		Interval componentInterval = null;
+
+		for (Interval interval : Interval.values()) {
+			long start = interval.getStart(timestamp);
+
+			// Each interval's candle is made up of previous interval's candles
+			if (componentInterval != null)
+				components = this.getCandles(key, componentInterval, start, start + interval.millis - 1, null, null, null);
+
+			if (components.isEmpty())
+				this.delete(key, interval, start);
+			else
+				this.save(key, interval, merge(start, components));
+
+			componentInterval = interval;
+		}
+	}
+
+	/** Deletes all candles, for all markets. */
+	/* package */ void deleteAll() throws DataException {
+		try {
+			this.repository.delete(this.tableName);
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete trade candles from repository", e);
+		}
+	}
+
+	private void save(Object[] key, Interval interval, TradeCandleData candle) throws DataException {
+		HSQLDBSaver saveHelper = new HSQLDBSaver(this.tableName);
+
+		for (int i = 0; i < this.keyColumns.length; ++i)
+			saveHelper.bind(this.keyColumns[i], key[i]);
+
+		saveHelper.bind("candle_interval", interval.value).bind("candle_start", candle.getTimestamp())
+				.bind("open_price", candle.getOpen()).bind("high_price", candle.getHigh())
+				.bind("low_price", candle.getLow()).bind("close_price", candle.getClose())
+				.bind("volume", candle.getVolume()).bind("other_volume", candle.getOtherVolume())
+				.bind("trade_count", candle.getTradeCount()).bind("first_traded_when", candle.getFirstTradeTimestamp())
+				.bind("last_traded_when", candle.getLastTradeTimestamp());
+
+		try {
+			saveHelper.execute(this.repository);
+		} catch (SQLException e) {
+			throw new DataException("Unable to save trade candle into repository", e);
+		}
+	}
+
+	private void delete(Object[] key, Interval interval, long start) throws DataException {
+		List<Object> bindParams = new ArrayList<>(Arrays.asList(key));
+		bindParams.add(interval.value);
+		bindParams.add(start);
+
+		try {
+			this.repository.delete(this.tableName, this.keyWhereClause + " AND candle_interval = ? AND candle_start = ?", bindParams.toArray());
+		} catch (SQLException e) {
+			throw new DataException("Unable to delete trade candle from repository", e);
+		}
+	}
+
+	/** Returns candle starting at <tt>start</tt>, combining <tt>candles</tt>, which must not be empty, in merge order. */
+	/* package */ static TradeCandleData merge(long start, List<TradeCandleData> candles) {
+		TradeCandleData first = null;
+		TradeCandleData last = null;
+		long high = Long.MIN_VALUE;
+		long low = Long.MAX_VALUE;
+		long volume = 0;
+		long otherVolume = 0;
+		int tradeCount = 0;
+
+		for (TradeCandleData candle : candles) {
+			if (first == null || candle.getFirstTradeTimestamp() < first.getFirstTradeTimestamp())
+				first = candle;
+
+			if (last == null || candle.getLastTradeTimestamp() >= last.getLastTradeTimestamp())
+				last = candle;
+
+			high = Math.max(high, candle.getHigh());
+			low = Math.min(low, candle.getLow());
+			volume += candle.getVolume();
+			otherVolume += candle.getOtherVolume();
+			tradeCount += candle.getTradeCount();
+		}
+
+		return new TradeCandleData(start, first.getOpen(), high, low, last.getClose(), volume, otherVolume,
+				tradeCount, first.getFirstTradeTimestamp(), last.getLastTradeTimestamp());
+	}
+
+}
@@ -1420,7 +1420,50 @@ public class HSQLDBTransactionRepository implements TransactionRepository {
 			throw new DataException("Unable to save transaction into repository", e);
 		}
 
-		// Now call transaction-type-specific save() method
+		this.saveTypeSpecific(transactionData);
+	}
+
+	@Override
+	public void saveUnconfirmed(List<TransactionData> transactions) throws DataException {
+		// Nothing to do?
+		if (transactions == null || transactions.isEmpty())
+			return;
+
+		HSQLDBSaver transactionsSaver = new HSQLDBSaver("Transactions");
+		HSQLDBSaver unconfirmedSaver = new HSQLDBSaver("UnconfirmedTransactions");
+
+		for (TransactionData transactionData : transactions) {
+			// Do not include "block_height" or "approval_height" as they are modified a different way
+			transactionsSaver.bind("signature", transactionData.getSignature()).bind("reference", transactionData.getReference())
+				.bind("type", transactionData.getType().value)
+				.bind("creator", transactionData.getCreatorPublicKey()).bind("created_when", transactionData.getTimestamp())
+				.bind("fee", transactionData.getFee()).bind("tx_group_id", transactionData.getTxGroupId())
+				.bind("approval_status", transactionData.getApprovalStatus().value)
+				.addBatch();
+
+			unconfirmedSaver.bind("signature", transactionData.getSignature()).bind("created_when", transactionData.getTimestamp())
+				.addBatch();
+		}
+
+		try {
+			transactionsSaver.executeBatch(this.repository);
+		} catch (SQLException e) {
+			throw new DataException("Unable to save transactions into repository", e);
+		}
+
+		// Type-specific rows reference Transactions rows so are saved afterwards
+		for (TransactionData transactionData : transactions)
+			this.saveTypeSpecific(transactionData);
+
+		try {
+			unconfirmedSaver.executeBatch(this.repository);
+		} catch (SQLException e) {
+			throw new DataException("Unable to add transactions to unconfirmed transactions repository", e);
+		}
+	}
+
+	private void saveTypeSpecific(TransactionData transactionData) throws DataException {
+		// Call transaction-type-specific save() method
 		TransactionType type = transactionData.getType();
 		HSQLDBTransactionRepository txRepository = repositoryByTxType[type.value];
 		if (txRepository == null)
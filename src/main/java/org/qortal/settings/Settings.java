@@ -127,6 +127,14 @@ public class Settings {
 	/* How many blocks to cache locally. Defaulted to 10, which covers a typical Synchronizer request + a few spare */
 	private int blockCacheSize = 10;
 
+	/** Number of threads used to execute ATs during block minting/validation. 1 disables parallel AT execution. */
+	private int atExecutionPoolSize = 4;
+
+	/** Whether to match asset orders, and serve open orders, using in-memory order book instead of SQL. */
+	private boolean orderBookEnabled = true;
+	/** Whether to collate balance changes while processing/orphaning a block, writing them in one batch. */
+	private boolean balanceBufferingEnabled = true;
+
 	/** How long to keep old, full, AT state data (ms). */
 	private long atStatesMaxLifetime = 5 * 24 * 60 * 60 * 1000L; // milliseconds
 	/** How often to attempt AT state trimming (ms). */
@@ -155,6 +163,8 @@ public class Settings {
 	/** Block height range to scan for prunable AT states.<br>
 	 * This has a significant effect on execution time. */
 	private int atStatesPruneBatchSize = 25; // blocks
+	/** Max number of AT states to prune in one go. */
+	private int atStatesPruneLimit = 4000; // records
 
 	/** How often to attempt block pruning (ms). */
 	private long blockPruneInterval = 3219L; // milliseconds
@@ -167,6 +177,11 @@ public class Settings {
 	private boolean archiveEnabled = true;
 	/** How often to attempt archiving (ms). */
 	private long archiveInterval = 7171L; // milliseconds
+	/**
+	 * Format of newly written archive files: 1 = uncompressed, 2 = compressed chunks.
+	 * Version 2 files, e.g. from a bootstrap, can't be read by older core versions.
+	 */
+	private int archiveVersion = 1;
 
 
 	/** Whether to automatically bootstrap instead of syncing from genesis */
@@ -193,8 +208,14 @@ public class Settings {
 	private int maxNetworkThreadPoolSize = 32;
 	/** Maximum number of threads for network proof-of-work compute, used during handshaking. */
 	private int networkPoWComputePoolSize = 2;
+	/** Number of threads used to validate signatures of incoming unconfirmed transactions. */
+	private int transactionSignatureValidationPoolSize = 4;
 	/** Maximum number of retry attempts if a peer fails to respond with the requested data */
 	private int maxRetries = 2;
+	/** Maximum number of block requests outstanding at once while catching up with peers. 1 disables pipelined sync. */
+	private int syncBlockRequestWindow = 16;
+	/** Maximum number of peers, including sync peer, to fetch blocks from at once while catching up */
+	private int maxSyncBlockPeers = 4;
 
 	/** Minimum peer version number required in order to sync with them */
 	private String minPeerVersion = "3.1.0";
@@ -233,6 +254,14 @@ public class Settings {
 	private String repositoryPath = "db";
 	/** Repository connection pool size. Needs to be a bit bigger than maxNetworkThreadPoolSize */
 	private int repositoryConnectionPoolSize = 100;
+	/** Maximum number of prepared statements kept per repository connection, least-recently used being discarded first. */
+	private int repositoryStatementCacheSize = 500;
+	/** Size of separate pool of read-only repository connections, used by API reads. */
+	private int repositoryReadOnlyConnectionPoolSize = 20;
+	/** If set, repository connection pool grows, as needed, up to this size. */
+	private Integer repositoryConnectionPoolMaxSize = null;
+	/** Warn, with holder's stack trace, about repository connections held longer than this. */
+	private long repositoryLongHeldConnectionThreshold = 5 * 60 * 1000L; // 5 minutes (ms) default
 	private List<String> fixedNetwork;
 
 	// Export/import
@@ -654,8 +683,20 @@ public class Settings {
 		return this.networkPoWComputePoolSize;
 	}
 
+	public int getTransactionSignatureValidationPoolSize() {
+		return this.transactionSignatureValidationPoolSize;
+	}
+
 	public int getMaxRetries() { return this.maxRetries; }
 
+	public int getSyncBlockRequestWindow() {
+		return this.syncBlockRequestWindow;
+	}
+
+	public int getMaxSyncBlockPeers() {
+		return this.maxSyncBlockPeers;
+	}
+
 	public String getMinPeerVersion() { return this.minPeerVersion; }
 
 	public boolean getAllowConnectionsWithOlderPeerVersions() { return this.allowConnectionsWithOlderPeerVersions; }
@@ -696,6 +737,22 @@ public class Settings {
 		return this.repositoryConnectionPoolSize;
 	}
 
+	public int getRepositoryStatementCacheSize() {
+		return this.repositoryStatementCacheSize;
+	}
+
+	public int getRepositoryReadOnlyConnectionPoolSize() {
+		return this.repositoryReadOnlyConnectionPoolSize;
+	}
+
+	public Integer getRepositoryConnectionPoolMaxSize() {
+		return this.repositoryConnectionPoolMaxSize;
+	}
+
+	public long getRepositoryLongHeldConnectionThreshold() {
+		return this.repositoryLongHeldConnectionThreshold;
+	}
+
 	public String getExportPath() {
 		return this.exportPath;
 	}
@@ -772,6 +829,18 @@ public class Settings {
 		return fixedNetwork;
 	}
 
+	public int getAtExecutionPoolSize() {
+		return this.atExecutionPoolSize;
+	}
+
+	public boolean isOrderBookEnabled() {
+		return this.orderBookEnabled;
+	}
+
+	public boolean isBalanceBufferingEnabled() {
+		return this.balanceBufferingEnabled;
+	}
+
 	public long getAtStatesMaxLifetime() {
 		return this.atStatesMaxLifetime;
 	}
@@ -812,6 +881,10 @@ public class Settings {
 		return this.atStatesPruneBatchSize;
 	}
 
+	public int getAtStatesPruneLimit() {
+		return this.atStatesPruneLimit;
+	}
+
 	public long getBlockPruneInterval() {
 		return this.blockPruneInterval;
 	}
@@ -836,6 +909,10 @@ public class Settings {
 		return this.archiveInterval;
 	}
 
+	public int getArchiveVersion() {
+		return this.archiveVersion;
+	}
+
 
 	public boolean getBootstrap() {
 		return this.bootstrap;
@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -607,6 +608,11 @@ public abstract class Transaction {
 	}
 
 	private int countUnconfirmedByCreator(PublicKeyAccount creator) throws DataException {
+		// Batch import maintains counts in memory
+		Integer cachedCount = UnconfirmedTransactionsCache.countUnconfirmedByCreator(this.repository, creator.getPublicKey());
+		if (cachedCount != null)
+			return cachedCount;
+
 		List<TransactionData> unconfirmedTransactions = repository.getTransactionRepository().getUnconfirmedTransactions();
 
 		// We exclude CHAT transactions as they never get included into blocks and
@@ -863,12 +869,114 @@ public abstract class Transaction {
 		}
 	}
 
+	/**
+	 * Import batch of transactions into our repository as new, unconfirmed transactions.
+	 * <p>
+	 * @implSpec <i>blocks</i> to obtain blockchain lock
+	 * <p>
+	 * All transactions must use the same <tt>repository</tt> handle.
+	 * Transactions are validated against a shared {@link UnconfirmedTransactionsCache},
+	 * then valid transactions are saved using batched statements and committed together.
+	 * <p>
+	 * If saving the batch fails, e.g. due to a conflicting write, then changes are rolled back
+	 * and valid transactions are imported one at a time using {@link #importAsUnconfirmed()}.
+	 * As {@link #onImportAsUnconfirmed()} changes are rolled back too, it is called again for each transaction.
+	 * <p>
+	 * Calls {@link Controller#onNewTransaction(TransactionData)} for each imported transaction.
+	 * 
+	 * @return validation results, in same order as <tt>transactions</tt>
+	 * @throws DataException
+	 */
+	public static List<ValidationResult> importAsUnconfirmed(Repository repository, List<Transaction> transactions) throws DataException {
+		List<ValidationResult> validationResults = new ArrayList<>(transactions.size());
+		if (transactions.isEmpty())
+			return validationResults;
+
+		List<Transaction> validTransactions = new ArrayList<>();
+
+		// Attempt to acquire blockchain lock
+		ReentrantLock blockchainLock = Controller.getInstance().getBlockchainLock();
+		blockchainLock.lock();
+
+		try {
+			try (final UnconfirmedTransactionsCache unconfirmedCache = new UnconfirmedTransactionsCache(repository)) {
+				for (Transaction transaction : transactions) {
+					ValidationResult validationResult = transaction.validateForImport(unconfirmedCache);
+					validationResults.add(validationResult);
+
+					if (validationResult != ValidationResult.OK)
+						continue;
+
+					unconfirmedCache.add(transaction.transactionData);
+					validTransactions.add(transaction);
+				}
+			}
+
+			if (validTransactions.isEmpty())
+				return validationResults;
+
+			// See importAsUnconfirmed() for why we discard changes here
+			repository.discardChanges();
+			repository.setSavepoint();
+
+			try {
+				List<TransactionData> validTransactionsData = validTransactions.stream().map(Transaction::getTransactionData).collect(Collectors.toList());
+				repository.getTransactionRepository().saveUnconfirmed(validTransactionsData);
+
+				for (Transaction transaction : validTransactions)
+					transaction.onImportAsUnconfirmed();
+
+				repository.saveChanges();
+			} catch (DataException e) {
+				LOGGER.debug(() -> String.format("Batch import of %d transactions failed, importing individually: %s", validTransactions.size(), e.getMessage()));
+				repository.rollbackToSavepoint();
+				repository.discardChanges();
+
+				// Slow path: import individually, with results replacing batch validation results
+				for (int i = 0; i < transactions.size(); ++i)
+					if (validationResults.get(i) == ValidationResult.OK)
+						validationResults.set(i, transactions.get(i).importAsUnconfirmed());
+
+				return validationResults;
+			}
+		} finally {
+			// See importAsUnconfirmed() for why we discard changes here
+			repository.discardChanges();
+
+			blockchainLock.unlock();
+		}
+
+		// Notify controller of new transactions
+		for (Transaction transaction : validTransactions)
+			Controller.getInstance().onNewTransaction(transaction.transactionData);
+
+		return validationResults;
+	}
+
+	/** Validation part of importing as unconfirmed, using <tt>unconfirmedCache</tt> for existence checks. */
+	private ValidationResult validateForImport(UnconfirmedTransactionsCache unconfirmedCache) throws DataException {
+		// Check transaction doesn't already exist, or isn't a duplicate from earlier in batch
+		if (unconfirmedCache.contains(transactionData.getSignature())
+				|| repository.getTransactionRepository().exists(transactionData.getSignature()))
+			return ValidationResult.TRANSACTION_ALREADY_EXISTS;
+
+		// Fix up approval status
+		this.setInitialApprovalStatus();
+
+		this.preProcess();
+
+		return this.isValidUnconfirmed();
+	}
+
 	/**
 	 * Callback for when a transaction is imported as unconfirmed.
 	 * <p>
 	 * Called after transaction is added to repository, but before commit.
 	 * <p>
 	 * Blockchain lock is being held during this time.
+	 * <p>
+	 * If a batch import fails, repository changes are rolled back and this is called again,
+	 * so any changes outside the repository must be safe to repeat.
 	 */
 	protected void onImportAsUnconfirmed() throws DataException {
 		/* To be optionally overridden */
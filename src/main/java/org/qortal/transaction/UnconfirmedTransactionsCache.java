@@ -0,0 +1,126 @@
+package org.qortal.transaction;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.transaction.Transaction.TransactionType;
+import org.qortal.utils.ByteArray;
+
+/**
+ * Unconfirmed transactions caching
+ * <p>
+ * When importing a single transaction as unconfirmed, validation fetches the whole unconfirmed
+ * transactions pile to count how many transactions the creator already has pending.
+ * <p>
+ * When importing a batch of transactions, repeating that for every transaction is expensive,
+ * and transactions earlier in the batch, that are valid but not yet saved, also need counting.
+ * <p>
+ * So we fetch the unconfirmed pile once, maintain per-creator counts and the signatures
+ * of accepted transactions, and update them as each transaction in the batch is accepted
+ * via {@link #add(TransactionData)}.
+ * <p>
+ * If {@link Transaction#isValidUnconfirmed()} is called outside of caching then counts
+ * are calculated directly from the repository.
+ * <p>
+ * <tt>UnconfirmedTransactionsCache</tt> implements <tt>AutoCloseable</tt> for (typical) use in a try-with-resources block.
+ *
+ * @see Transaction#importAsUnconfirmed(Repository, List)
+ */
+public class UnconfirmedTransactionsCache implements AutoCloseable {
+
+	private static final Map<Repository, UnconfirmedCache> CACHE = new HashMap<>();
+
+	private static class UnconfirmedCache {
+		private final Map<ByteArray, Integer> countsByCreator = new HashMap<>();
+		private final Set<ByteArray> signatures = new HashSet<>();
+
+		public synchronized void add(TransactionData transactionData) {
+			this.signatures.add(ByteArray.wrap(transactionData.getSignature()));
+
+			// We exclude CHAT transactions as they never get included into blocks and
+			// have spam/DoS prevention by requiring proof of work
+			if (transactionData.getType() != TransactionType.CHAT)
+				this.countsByCreator.merge(ByteArray.wrap(transactionData.getCreatorPublicKey()), 1, Integer::sum);
+		}
+
+		public synchronized int countByCreator(byte[] creatorPublicKey) {
+			return this.countsByCreator.getOrDefault(ByteArray.wrap(creatorPublicKey), 0);
+		}
+
+		public synchronized boolean contains(byte[] signature) {
+			return this.signatures.contains(ByteArray.wrap(signature));
+		}
+	}
+
+	private final Repository repository;
+	private final UnconfirmedCache unconfirmedCache;
+
+	/**
+	 * Constructs a new unconfirmed transactions cache, unique to passed <tt>repository</tt> handle,
+	 * populated from repository's current unconfirmed transactions.
+	 *
+	 * @param repository
+	 * @throws DataException
+	 * @throws IllegalStateException if a cache already exists for <tt>repository</tt>
+	 */
+	public UnconfirmedTransactionsCache(Repository repository) throws DataException {
+		this.unconfirmedCache = new UnconfirmedCache();
+
+		for (TransactionData transactionData : repository.getTransactionRepository().getUnconfirmedTransactions())
+			this.unconfirmedCache.add(transactionData);
+
+		synchronized (CACHE) {
+			if (CACHE.putIfAbsent(repository, this.unconfirmedCache) != null)
+				throw new IllegalStateException("Unconfirmed transactions cache entry already exists");
+		}
+
+		this.repository = repository;
+	}
+
+	/** Records transaction as accepted, so it's included in later counts and duplicate checks. */
+	public void add(TransactionData transactionData) {
+		this.unconfirmedCache.add(transactionData);
+	}
+
+	/** Returns whether transaction with <tt>signature</tt> is unconfirmed, or already accepted in this batch. */
+	public boolean contains(byte[] signature) {
+		return this.unconfirmedCache.contains(signature);
+	}
+
+	@Override
+	public void close() {
+		synchronized (CACHE) {
+			CACHE.remove(this.repository);
+		}
+	}
+
+	/**
+	 * Returns number of unconfirmed, non-CHAT transactions by creator, or <tt>null</tt>
+	 * if cache is not in effect for passed <tt>repository</tt> handle.
+	 * <p>
+	 * Typically called by {@link Transaction#isValidUnconfirmed()}.
+	 *
+	 * @param repository
+	 * @param creatorPublicKey
+	 * @return count, or null if not caching
+	 */
+	/*package*/ static Integer countUnconfirmedByCreator(Repository repository, byte[] creatorPublicKey) {
+		UnconfirmedCache unconfirmedCache;
+
+		synchronized (CACHE) {
+			unconfirmedCache = CACHE.get(repository);
+		}
+
+		if (unconfirmedCache == null)
+			return null;
+
+		return unconfirmedCache.countByCreator(creatorPublicKey);
+	}
+
+}
@@ -22,6 +22,7 @@ import org.qortal.utils.Base58;
 import org.qortal.utils.Serialization;
 import org.qortal.utils.Triple;
 
+import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 
@@ -233,6 +234,39 @@ public class BlockTransformer extends Transformer {
 		return new Triple<>(blockData, transactions, atStates);
 	}
 
+	/**
+	 * Extract block signature from serialized block, without deserializing the rest of the block.
+	 * <p>
+	 * Buffer's position is not changed.
+	 */
+	public static byte[] getSignatureFromByteBuffer(ByteBuffer byteBuffer) {
+		ByteBuffer signaturesBuffer = byteBuffer.duplicate();
+		signaturesBuffer.position(byteBuffer.position() + VERSION_LENGTH + TIMESTAMP_LENGTH + BLOCK_REFERENCE_LENGTH + MINTER_PUBLIC_KEY_LENGTH);
+
+		byte[] transactionsSignature = new byte[TRANSACTIONS_SIGNATURE_LENGTH];
+		signaturesBuffer.get(transactionsSignature);
+
+		byte[] minterSignature = new byte[MINTER_SIGNATURE_LENGTH];
+		signaturesBuffer.get(minterSignature);
+
+		// Block signature is minter signature followed by transactions signature, as in BlockData
+		return Bytes.concat(minterSignature, transactionsSignature);
+	}
+
+	/**
+	 * Extract reference (parent block's signature) from serialized block, without deserializing the rest of the block.
+	 * <p>
+	 * Buffer's position is not changed.
+	 */
+	public static byte[] getReferenceFromByteBuffer(ByteBuffer byteBuffer) {
+		ByteBuffer referenceBuffer = byteBuffer.duplicate();
+		referenceBuffer.position(byteBuffer.position() + VERSION_LENGTH + TIMESTAMP_LENGTH);
+
+		byte[] reference = new byte[BLOCK_REFERENCE_LENGTH];
+		referenceBuffer.get(reference);
+		return reference;
+	}
+
 	public static int getDataLength(Block block) throws TransformationException {
 		BlockData blockData = block.getBlockData();
 		int blockLength = BASE_LENGTH;
@@ -2,13 +2,10 @@ package org.qortal.utils;
 
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.block.BlockData;
-import org.qortal.data.transaction.TransactionData;
 import org.qortal.repository.BlockArchiveReader;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 
-import java.util.List;
-
 public class BlockArchiveUtils {
 
     /**
@@ -32,46 +29,47 @@ public class BlockArchiveUtils {
     public static void importFromArchive(int startHeight, int endHeight, Repository repository) throws DataException {
         repository.discardChanges();
         final int requestedRange = endHeight+1-startHeight;
+        final int[] expectedHeight = { startHeight };
 
-        List<Triple<BlockData, List<TransactionData>, List<ATStateData>>> blockInfoList =
-                BlockArchiveReader.getInstance().fetchBlocksFromRange(startHeight, endHeight);
+        // Blocks are streamed from the archive and saved one at a time, rather than all being held in memory
+        int importedCount;
+        try {
+            importedCount = BlockArchiveReader.getInstance().streamBlocks(startHeight, endHeight, blockInfo -> {
+                BlockData blockData = blockInfo.getA();
 
-        // Ensure that we have received all of the requested blocks
-        if (blockInfoList == null || blockInfoList.isEmpty()) {
-            throw new IllegalStateException("No blocks found when importing from archive");
-        }
-        if (blockInfoList.size() != requestedRange) {
-            throw new IllegalStateException("Non matching block count when importing from archive");
-        }
-        Triple<BlockData, List<TransactionData>, List<ATStateData>> firstBlock = blockInfoList.get(0);
-        if (firstBlock == null || firstBlock.getA().getHeight() != startHeight) {
-            throw new IllegalStateException("Non matching first block when importing from archive");
-        }
-        if (blockInfoList.size() > 0) {
-            Triple<BlockData, List<TransactionData>, List<ATStateData>> lastBlock =
-                    blockInfoList.get(blockInfoList.size() - 1);
-            if (lastBlock == null || lastBlock.getA().getHeight() != endHeight) {
-                throw new IllegalStateException("Non matching last block when importing from archive");
-            }
-        }
+                // Ensure that we receive the requested blocks, in order
+                if (blockData.getHeight() != expectedHeight[0]) {
+                    throw new IllegalStateException("Non matching block height when importing from archive");
+                }
+                expectedHeight[0]++;
 
-        // Everything seems okay, so go ahead with the import
-        for (Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo : blockInfoList) {
-            try {
                 // Save block
-                repository.getBlockRepository().save(blockInfo.getA());
+                repository.getBlockRepository().save(blockData);
 
                 // Save AT state data hashes
                 for (ATStateData atStateData : blockInfo.getC()) {
-                    atStateData.setHeight(blockInfo.getA().getHeight());
+                    atStateData.setHeight(blockData.getHeight());
                     repository.getATRepository().save(atStateData);
                 }
 
-            } catch (DataException e) {
-                repository.discardChanges();
-                throw new IllegalStateException("Unable to import blocks from archive");
-            }
+                return true;
+            });
+
+        } catch (DataException | IllegalStateException e) {
+            repository.discardChanges();
+            throw new IllegalStateException("Unable to import blocks from archive");
+        }
+
+        // Ensure that we have received all of the requested blocks
+        if (importedCount == 0) {
+            repository.discardChanges();
+            throw new IllegalStateException("No blocks found when importing from archive");
+        }
+        if (importedCount != requestedRange) {
+            repository.discardChanges();
+            throw new IllegalStateException("Non matching block count when importing from archive");
         }
+
         repository.saveChanges();
     }
 
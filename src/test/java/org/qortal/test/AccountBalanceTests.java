@@ -2,6 +2,7 @@ package org.qortal.test;
 
 import static org.junit.Assert.*;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -9,21 +10,31 @@ import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.qortal.account.Account;
 import org.qortal.account.PublicKeyAccount;
 import org.qortal.asset.Asset;
+import org.qortal.block.Block;
 import org.qortal.data.account.AccountBalanceData;
 import org.qortal.data.account.AccountData;
+import org.qortal.data.transaction.PaymentTransactionData;
+import org.qortal.data.transaction.TransferAssetTransactionData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
 import org.qortal.repository.AccountRepository.BalanceOrdering;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.AssetUtils;
 import org.qortal.test.common.BlockUtils;
 import org.qortal.test.common.Common;
 import org.qortal.test.common.TestAccount;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.test.common.transaction.TestTransaction;
+import org.qortal.utils.Amounts;
 
 public class AccountBalanceTests extends Common {
 
@@ -81,6 +92,194 @@ public class AccountBalanceTests extends Common {
 		}
 	}
 
+	/** Tests that buffered balance changes are visible to reads and respect savepoints/rollbacks. */
+	@Test
+	public void testBufferedBalanceChanges() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			TestAccount alice = Common.getTestAccount(repository, "alice");
+			final long initialBalance = alice.getConfirmedBalance(Asset.QORT);
+
+			repository.getAccountRepository().bufferBalanceChanges();
+
+			alice.modifyAssetBalance(Asset.QORT, 100L);
+			alice.modifyAssetBalance(Asset.QORT, 23L);
+
+			// Reads should include buffered changes
+			assertEquals(initialBalance + 123L, alice.getConfirmedBalance(Asset.QORT));
+
+			// Changes after savepoint should be undone by rollback, even if still buffered
+			repository.setSavepoint();
+			alice.modifyAssetBalance(Asset.QORT, 1000L);
+			repository.rollbackToSavepoint();
+
+			repository.getAccountRepository().flushBalanceChanges();
+			assertEquals(initialBalance + 123L, alice.getConfirmedBalance(Asset.QORT));
+
+			// No longer buffering
+			alice.modifyAssetBalance(Asset.QORT, -23L);
+			assertEquals(initialBalance + 100L, alice.getConfirmedBalance(Asset.QORT));
+
+			repository.discardChanges();
+			assertEquals(initialBalance, alice.getConfirmedBalance(Asset.QORT));
+		}
+	}
+
+	/** Tests that buffered balance changes to missing balances have same outcome as individual writes. */
+	@Test
+	public void testBufferedMissingBalanceChanges() throws DataException {
+		// Reduction before balance exists has no effect; increase then equal reduction leaves zero balance
+		final long[][] deltaSequences = new long[][] { { -5L }, { -5L, 10L, -3L }, { 7L, -7L }, { 10L, -4L, -6L, 2L } };
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			for (long[] deltas : deltaSequences) {
+				List<AccountBalanceData> outcomes = new ArrayList<>();
+
+				for (boolean isBuffered : new boolean[] { false, true }) {
+					byte[] publicKey = new byte[32];
+					new Random().nextBytes(publicKey);
+					Account account = new PublicKeyAccount(repository, publicKey);
+
+					if (isBuffered)
+						repository.getAccountRepository().bufferBalanceChanges();
+
+					for (long delta : deltas)
+						account.modifyAssetBalance(Asset.QORT, delta);
+
+					if (isBuffered)
+						repository.getAccountRepository().flushBalanceChanges();
+
+					outcomes.add(repository.getAccountRepository().getBalance(account.getAddress(), Asset.QORT));
+					assertEquals(outcomes.get(outcomes.size() - 1) != null, repository.getAccountRepository().accountExists(account.getAddress()));
+
+					repository.discardChanges();
+				}
+
+				String description = Arrays.toString(deltas);
+				assertEquals(description, outcomes.get(0) == null, outcomes.get(1) == null);
+				if (outcomes.get(0) != null)
+					assertEquals(description, outcomes.get(0).getBalance(), outcomes.get(1).getBalance());
+			}
+		}
+	}
+
+	/** Compares balances, and accounts, after processing then orphaning a block with several transactions, with and without buffering. */
+	@Test
+	public void testBufferedBlockMatchesUnbuffered() throws DataException, IllegalAccessException, SQLException {
+		List<String> expectedProcessedTables = null;
+		List<String> expectedOrphanedTables = null;
+
+		for (boolean isBuffered : new boolean[] { false, true }) {
+			// Start afresh each time
+			Common.useDefaultSettings();
+			FieldUtils.writeField(Settings.getInstance(), "balanceBufferingEnabled", isBuffered, true);
+
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				TestAccount alice = Common.getTestAccount(repository, "alice");
+				TestAccount bob = Common.getTestAccount(repository, "bob");
+				TestAccount chloe = Common.getTestAccount(repository, "chloe");
+				TestAccount dilbert = Common.getTestAccount(repository, "dilbert");
+
+				// Same new accounts each time
+				byte[] publicKey = new byte[32];
+				Arrays.fill(publicKey, (byte) 0x11);
+				String newAddress1 = new PublicKeyAccount(repository, publicKey).getAddress();
+				Arrays.fill(publicKey, (byte) 0x22);
+				String newAddress2 = new PublicKeyAccount(repository, publicKey).getAddress();
+
+				final long amount = 12L * Amounts.MULTIPLIER;
+
+				// Several balance changes per account, including new accounts, in one block
+				TransactionUtils.signAndImportValid(repository, new PaymentTransactionData(TestTransaction.generateBase(bob), newAddress1, amount), bob);
+				TransactionUtils.signAndImportValid(repository, new PaymentTransactionData(TestTransaction.generateBase(chloe), newAddress1, amount), chloe);
+				TransactionUtils.signAndImportValid(repository, new PaymentTransactionData(TestTransaction.generateBase(dilbert), alice.getAddress(), amount), dilbert);
+				TransactionUtils.signAndImportValid(repository, new TransferAssetTransactionData(TestTransaction.generateBase(alice), newAddress2, amount, AssetUtils.goldAssetId), alice);
+
+				Block block = BlockUtils.mintBlock(repository);
+				assertEquals(4, block.getTransactions().size());
+
+				List<String> processedTables = describeBalanceTables(repository);
+
+				BlockUtils.orphanLastBlock(repository);
+
+				List<String> orphanedTables = describeBalanceTables(repository);
+
+				if (!isBuffered) {
+					expectedProcessedTables = processedTables;
+					expectedOrphanedTables = orphanedTables;
+					continue;
+				}
+
+				assertEquals("Balances/accounts after processing block differ when buffered", expectedProcessedTables, processedTables);
+				assertEquals("Balances/accounts after orphaning block differ when buffered", expectedOrphanedTables, orphanedTables);
+			}
+		}
+	}
+
+	/** Returns AccountBalances and Accounts rows, ignoring last-references as they depend on transaction timestamps. */
+	private static List<String> describeBalanceTables(Repository repository) throws SQLException {
+		HSQLDBRepository hsqldb = (HSQLDBRepository) repository;
+		List<String> rows = new ArrayList<>();
+
+		try (ResultSet resultSet = hsqldb.checkedExecute("SELECT account, asset_id, balance FROM AccountBalances ORDER BY account, asset_id")) {
+			if (resultSet != null)
+				do {
+					rows.add(String.format("AccountBalances: %s, asset %d: %d", resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3)));
+				} while (resultSet.next());
+		}
+
+		try (ResultSet resultSet = hsqldb.checkedExecute("SELECT account FROM Accounts ORDER BY account")) {
+			if (resultSet != null)
+				do {
+					rows.add(String.format("Accounts: %s", resultSet.getString(1)));
+				} while (resultSet.next());
+		}
+
+		return rows;
+	}
+
+	/** Compares individual balance writes against buffered, batched writes, as used by block processing, for thousands of recipients. */
+	@Test
+	public void testBufferedBalanceChangesSpeed() throws DataException {
+		final int recipientCount = 5000;
+		// Each recipient has a few balance changes, e.g. reward and fees
+		final int changesPerRecipient = 3;
+		Random random = new Random();
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<Account> accounts = new ArrayList<>();
+			for (int ai = 0; ai < recipientCount; ++ai) {
+				byte[] publicKey = new byte[32];
+				random.nextBytes(publicKey);
+
+				accounts.add(new PublicKeyAccount(repository, publicKey));
+			}
+
+			for (boolean isBuffered : new boolean[] { false, true }) {
+				final long startTime = System.currentTimeMillis();
+
+				if (isBuffered)
+					repository.getAccountRepository().bufferBalanceChanges();
+
+				for (int c = 0; c < changesPerRecipient; ++c)
+					for (Account account : accounts)
+						account.modifyAssetBalance(Asset.QORT, 1_00000000L);
+
+				if (isBuffered)
+					repository.getAccountRepository().flushBalanceChanges();
+
+				final long duration = System.currentTimeMillis() - startTime;
+				System.out.println(String.format("%s: %d balance changes for %d recipients in %d ms",
+						(isBuffered ? "Buffered" : "Individual"), recipientCount * changesPerRecipient, recipientCount, duration));
+
+				// Check balances
+				for (Account account : accounts)
+					assertEquals(changesPerRecipient * 1_00000000L, account.getConfirmedBalance(Asset.QORT));
+
+				repository.discardChanges();
+			}
+		}
+	}
+
 	/** Tests SQL query speed for account balance fetches. */
 	@Test
 	public void testRepositorySpeed() throws DataException, SQLException {
@@ -20,17 +20,20 @@ import org.qortal.test.common.Common;
 import org.qortal.transaction.DeployAtTransaction;
 import org.qortal.transaction.Transaction;
 import org.qortal.transform.TransformationException;
+import org.qortal.transform.block.BlockTransformer;
 import org.qortal.utils.BlockArchiveUtils;
 import org.qortal.utils.NTP;
 import org.qortal.utils.Triple;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -150,7 +153,130 @@ public class BlockArchiveTests extends Common {
 			// Test some values in the archive
 			assertEquals(1, block900ArchiveData.getOnlineAccountsCount());
 
+			// Memory-mapped view should match copied bytes
+			ByteBuffer block900Buffer = reader.fetchSerializedBlockBufferForHeight(900);
+			assertTrue(block900Buffer.isReadOnly());
+			byte[] block900BufferBytes = new byte[block900Buffer.remaining()];
+			block900Buffer.get(block900BufferBytes);
+			assertArrayEquals(reader.fetchSerializedBlockBytesForHeight(900), block900BufferBytes);
+
+			// Heights outside archive
+			assertNull(reader.fetchSerializedBlockBufferForHeight(1));
+			assertNull(reader.fetchSerializedBlockBufferForHeight(901));
+
+			// Stream whole archive, checking blocks arrive in order and form a chain
+			final int[] expectedHeight = { 2 };
+			final byte[][] previousSignature = { repository.getBlockRepository().fromHeight(1).getSignature() };
+			int streamedCount = reader.streamSerializedBlocks(2, 900, (height, serializedBlock) -> {
+				assertEquals(expectedHeight[0]++, height);
+				assertArrayEquals(previousSignature[0], BlockTransformer.getReferenceFromByteBuffer(serializedBlock));
+				previousSignature[0] = BlockTransformer.getSignatureFromByteBuffer(serializedBlock);
+				return true;
+			});
+			assertEquals(900 - 1, streamedCount);
+			assertArrayEquals(block900RepositoryData.getSignature(), previousSignature[0]);
+
+			// Stream should stop at end of archive, or when consumer asks
+			assertEquals(900 - 1, reader.streamSerializedBlocks(2, 1000, (height, serializedBlock) -> true));
+			assertEquals(10, reader.streamBlocks(2, 900, blockInfo -> blockInfo.getA().getHeight() < 11));
+
+		}
+	}
+
+	@Test
+	public void testVersion2WriterAndReader() throws DataException, InterruptedException, TransformationException, IOException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+
+			// Mint some blocks so that we are able to archive them later
+			for (int i = 0; i < 1000; i++) {
+				BlockMinter.mintTestingBlock(repository, Common.getTestAccount(repository, "alice-reward-share"));
+			}
+
+			// 900 blocks are trimmed (this specifies the first untrimmed height)
+			repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(901);
+			repository.getATRepository().setAtTrimHeight(901);
+
+			// Write blocks 2-900 to a compressed archive file
+			BlockArchiveWriter writer = new BlockArchiveWriter(0, BlockArchiveWriter.getMaxArchiveHeight(repository), repository);
+			writer.setShouldEnforceFileSizeTarget(false); // To avoid the need to pre-calculate file sizes
+			writer.setVersion(2);
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, writer.write());
+			assertEquals(900 - 1, writer.getWrittenCount());
+
+			// Every block should match the repository
+			BlockArchiveReader reader = BlockArchiveReader.getInstance();
+			for (int height = 2; height <= 900; height++) {
+				BlockData archiveData = reader.fetchBlockAtHeight(height).getA();
+				BlockData repositoryData = repository.getBlockRepository().fromHeight(height);
+
+				assertEquals(repositoryData.getHeight(), archiveData.getHeight());
+				assertArrayEquals(repositoryData.getSignature(), archiveData.getSignature());
+			}
+
+			// Streaming should work across chunks
+			assertEquals(900 - 1, reader.streamSerializedBlocks(2, 900, (height, serializedBlock) -> true));
+			assertNull(reader.fetchSerializedBlockBufferForHeight(901));
+		}
+	}
+
+	/**
+	 * Migrates an uncompressed archive file to version 2 and back, comparing size and random-read latency.
+	 */
+	@Test
+	public void testMigration() throws DataException, InterruptedException, TransformationException, IOException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+
+			// Mint some blocks so that we are able to archive them later
+			for (int i = 0; i < 1000; i++) {
+				BlockMinter.mintTestingBlock(repository, Common.getTestAccount(repository, "alice-reward-share"));
+			}
+
+			// 900 blocks are trimmed (this specifies the first untrimmed height)
+			repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(901);
+			repository.getATRepository().setAtTrimHeight(901);
+
+			BlockArchiveWriter writer = new BlockArchiveWriter(0, BlockArchiveWriter.getMaxArchiveHeight(repository), repository);
+			writer.setShouldEnforceFileSizeTarget(false); // To avoid the need to pre-calculate file sizes
+			writer.setVersion(1);
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, writer.write());
+
+			Path archiveFile = writer.getOutputPath();
+			byte[] version1Bytes = Files.readAllBytes(archiveFile);
+			final long version1Latency = measureRandomReadLatency(2, 900);
+
+			// Migrate to compressed format
+			assertTrue(BlockArchiveWriter.migrateFile(archiveFile, 2));
+			assertFalse(BlockArchiveWriter.migrateFile(archiveFile, 2));
+			BlockArchiveReader.getInstance().invalidateFileListCache();
+
+			final long version2Size = Files.size(archiveFile);
+			final long version2Latency = measureRandomReadLatency(2, 900);
+
+			System.out.println(String.format("Version 1: %d bytes, %d ns per random read", version1Bytes.length, version1Latency));
+			System.out.println(String.format("Version 2: %d bytes (%.1f%%), %d ns per random read",
+					version2Size, version2Size * 100.0 / version1Bytes.length, version2Latency));
+
+			assertTrue(version2Size < version1Bytes.length);
+
+			// Migrating back should reproduce original file exactly
+			assertTrue(BlockArchiveWriter.migrateFile(archiveFile, 1));
+			BlockArchiveReader.getInstance().invalidateFileListCache();
+			assertArrayEquals(version1Bytes, Files.readAllBytes(archiveFile));
+		}
+	}
+
+	/** Returns mean time (ns) to fetch a random block, checking each one has the expected height. */
+	private static long measureRandomReadLatency(int startHeight, int endHeight) {
+		BlockArchiveReader reader = BlockArchiveReader.getInstance();
+		Random random = new Random(0L);
+		final int readCount = 10000;
+
+		final long startTime = System.nanoTime();
+		for (int i = 0; i < readCount; i++) {
+			int height = startHeight + random.nextInt(endHeight - startHeight + 1);
+			assertEquals(height, reader.fetchBlockAtHeight(height).getA().getHeight().intValue());
 		}
+		return (System.nanoTime() - startTime) / readCount;
 	}
 
 	@Test
@@ -0,0 +1,239 @@
+package org.qortal.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.block.Block;
+import org.qortal.block.Block.ValidationResult;
+import org.qortal.controller.BlockFetchPipeline;
+import org.qortal.controller.BlockFetchPipeline.FetchResult;
+import org.qortal.controller.BlockFetchPipeline.FetchStatus;
+import org.qortal.data.at.ATStateData;
+import org.qortal.data.block.BlockData;
+import org.qortal.data.network.PeerData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.network.Peer;
+import org.qortal.network.PeerAddress;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.transaction.Transaction;
+import org.qortal.transform.TransformationException;
+import org.qortal.transform.block.BlockTransformer;
+import org.qortal.utils.ByteArray;
+import org.qortal.utils.Triple;
+
+import static org.junit.Assert.*;
+
+public class BlockFetchPipelineTests extends Common {
+
+	private static final int BLOCK_COUNT = 100;
+	/** Simulated round-trip time for each block request (ms) */
+	private static final long REQUEST_LATENCY = 20L;
+
+	/** Serialized blocks, as "peers" would send them, keyed by signature */
+	private final Map<ByteArray, byte[]> blockBytesBySignature = new HashMap<>();
+	private final Map<ByteArray, Integer> heightsBySignature = new HashMap<>();
+	private final List<byte[]> signatures = new ArrayList<>();
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testFallbackToOtherPeers() throws DataException, TransformationException, InterruptedException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			final int initialHeight = repository.getBlockRepository().getBlockchainHeight();
+			this.mintAndOrphanBlocks(repository, 3);
+
+			Peer forkedPeer = newPeer(1);
+			Peer maliciousPeer = newPeer(2);
+			Peer goodPeer = newPeer(3);
+
+			BlockFetchPipeline.BlockRequester requester = (peer, signature) -> {
+				if (peer == forkedPeer)
+					// Reply of 'block unknown'
+					return null;
+
+				Block block = this.decodeBlock(repository, signature);
+
+				if (peer == maliciousPeer)
+					// Tamper with block
+					block.getBlockData().getTransactionsSignature()[0] ^= 0x01;
+
+				return block;
+			};
+
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			try {
+				// Every block should come from good peer, regardless of which peer was asked first
+				try (BlockFetchPipeline pipeline = new BlockFetchPipeline(executor, List.of(forkedPeer, maliciousPeer, goodPeer), 4, requester)) {
+					for (byte[] signature : this.signatures)
+						pipeline.request(signature);
+
+					for (byte[] signature : this.signatures) {
+						FetchResult fetchResult = pipeline.take();
+						assertEquals(FetchStatus.OK, fetchResult.status);
+						assertSame(goodPeer, fetchResult.peer);
+						assertArrayEquals(signature, fetchResult.block.getSignature());
+					}
+				}
+
+				// Without good peer, we expect to be told block signature was invalid
+				try (BlockFetchPipeline pipeline = new BlockFetchPipeline(executor, List.of(forkedPeer, maliciousPeer), 4, requester)) {
+					pipeline.request(this.signatures.get(0));
+					assertEquals(FetchStatus.INVALID_SIGNATURE, pipeline.take().status);
+				}
+
+				// No peer has block
+				try (BlockFetchPipeline pipeline = new BlockFetchPipeline(executor, List.of(forkedPeer), 4, requester)) {
+					pipeline.request(this.signatures.get(0));
+					assertEquals(FetchStatus.NO_REPLY, pipeline.take().status);
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+
+			assertEquals(initialHeight, repository.getBlockRepository().getBlockchainHeight());
+		}
+	}
+
+	@Test
+	public void testFetchFailure() throws InterruptedException {
+		byte[] signature = new byte[64];
+		signature[0] = 0x01;
+
+		BlockFetchPipeline.BlockRequester requester = (peer, requestedSignature) -> {
+			throw new IllegalStateException("Simulated failure while fetching block");
+		};
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (BlockFetchPipeline pipeline = new BlockFetchPipeline(executor, List.of(newPeer(1)), 4, requester)) {
+			pipeline.request(signature);
+
+			// Failed request should still tell us which block wasn't fetched
+			FetchResult fetchResult = pipeline.take();
+			assertEquals(FetchStatus.NO_REPLY, fetchResult.status);
+			assertArrayEquals(signature, fetchResult.signature);
+			assertNull(fetchResult.block);
+			assertTrue(pipeline.isEmpty());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Simulates catching up with peers, comparing one-block-at-a-time from a single peer
+	 * against pipelined requests spread over several peers, one of which is on a different fork.
+	 */
+	@Test
+	public void testPipelinedCatchUp() throws DataException, TransformationException, InterruptedException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			final int initialHeight = repository.getBlockRepository().getBlockchainHeight();
+			this.mintAndOrphanBlocks(repository, BLOCK_COUNT);
+
+			List<Peer> peers = List.of(newPeer(1), newPeer(2), newPeer(3), newPeer(4));
+			Peer forkedPeer = peers.get(3);
+
+			BlockFetchPipeline.BlockRequester requester = (peer, signature) -> {
+				Thread.sleep(REQUEST_LATENCY);
+
+				if (peer == forkedPeer)
+					return null;
+
+				return this.decodeBlock(repository, signature);
+			};
+
+			for (int windowSize : new int[] { 1, 16 }) {
+				List<Peer> fetchPeers = windowSize == 1 ? peers.subList(0, 1) : peers;
+
+				ExecutorService executor = Executors.newFixedThreadPool(windowSize);
+				final long startTime = System.currentTimeMillis();
+
+				try (BlockFetchPipeline pipeline = new BlockFetchPipeline(executor, fetchPeers, windowSize, requester)) {
+					int requestedCount = 0;
+
+					for (int i = 0; i < BLOCK_COUNT; ++i) {
+						// Keep request window full
+						while (pipeline.hasCapacity() && requestedCount < BLOCK_COUNT)
+							pipeline.request(this.signatures.get(requestedCount++));
+
+						FetchResult fetchResult = pipeline.take();
+						assertEquals(FetchStatus.OK, fetchResult.status);
+
+						// Ordered apply stage, as Synchronizer does
+						Block block = fetchResult.block;
+						for (Transaction transaction : block.getTransactions())
+							transaction.setInitialApprovalStatus();
+
+						block.preProcess();
+						assertEquals(ValidationResult.OK, block.isValid());
+
+						for (Transaction transaction : block.getTransactions())
+							repository.getTransactionRepository().save(transaction.getTransactionData());
+
+						block.process();
+						repository.saveChanges();
+					}
+				} finally {
+					executor.shutdownNow();
+				}
+
+				final long duration = Math.max(1L, System.currentTimeMillis() - startTime);
+				System.out.println(String.format("Window %d, %d peer%s: %d blocks in %d ms (%.1f blocks/s)",
+						windowSize, fetchPeers.size(), (fetchPeers.size() != 1 ? "s" : ""),
+						BLOCK_COUNT, duration, BLOCK_COUNT * 1000.0 / duration));
+
+				assertEquals(initialHeight + BLOCK_COUNT, repository.getBlockRepository().getBlockchainHeight());
+
+				BlockUtils.orphanToBlock(repository, initialHeight);
+			}
+		}
+	}
+
+	/** Mints blocks, keeping serialized copies, then orphans them so they can be fetched and applied again. */
+	private void mintAndOrphanBlocks(Repository repository, int count) throws DataException, TransformationException {
+		final int initialHeight = repository.getBlockRepository().getBlockchainHeight();
+
+		for (int i = 0; i < count; ++i) {
+			Block block = BlockUtils.mintBlock(repository);
+
+			ByteArray signature = ByteArray.wrap(block.getSignature());
+			this.blockBytesBySignature.put(signature, BlockTransformer.toBytes(block));
+			this.heightsBySignature.put(signature, block.getBlockData().getHeight());
+			this.signatures.add(block.getSignature());
+		}
+
+		BlockUtils.orphanToBlock(repository, initialHeight);
+	}
+
+	/** Decodes block much like a BLOCK message would be. */
+	private Block decodeBlock(Repository repository, byte[] signature) {
+		ByteArray key = ByteArray.wrap(signature);
+
+		try {
+			Triple<BlockData, List<TransactionData>, List<ATStateData>> blockInfo = BlockTransformer.fromBytes(this.blockBytesBySignature.get(key));
+
+			BlockData blockData = blockInfo.getA();
+			blockData.setHeight(this.heightsBySignature.get(key));
+
+			return new Block(repository, blockData, blockInfo.getB(), blockInfo.getC());
+		} catch (TransformationException e) {
+			return null;
+		}
+	}
+
+	private static Peer newPeer(int id) {
+		return new Peer(new PeerData(PeerAddress.fromString("127.0.0." + id + ":12392")));
+	}
+
+}
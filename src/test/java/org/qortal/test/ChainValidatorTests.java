@@ -0,0 +1,165 @@
+package org.qortal.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.block.ChainValidator;
+import org.qortal.block.ChainValidator.Progress;
+import org.qortal.block.ChainValidator.Stage;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+
+public class ChainValidatorTests extends Common {
+
+	private static final Random RANDOM = new Random();
+
+	private ChainValidator chainValidator;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+
+		this.chainValidator = new ChainValidator(4);
+	}
+
+	@After
+	public void afterTest() {
+		this.chainValidator.shutdown();
+	}
+
+	@Test
+	public void testValidChain() throws DataException {
+		final int chainHeight;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			// Enough blocks to need several fork/join leaves
+			for (int i = 0; i < 1200; ++i)
+				BlockUtils.mintBlock(repository);
+
+			chainHeight = repository.getBlockRepository().getBlockchainHeight();
+		}
+
+		final long startTime = System.currentTimeMillis();
+		this.chainValidator.validate(1, chainHeight);
+		final long duration = Math.max(1L, System.currentTimeMillis() - startTime);
+
+		Progress progress = this.chainValidator.getProgress();
+		assertEquals(Stage.COMPLETE, progress.stage);
+		assertEquals(2, progress.startHeight);
+		assertEquals(chainHeight, progress.endHeight);
+		assertEquals(chainHeight - 1, progress.blocksVerified);
+		assertEquals(chainHeight - 1, progress.blocksChecked);
+		assertNull(progress.error);
+
+		System.out.println(String.format("Validated %d blocks in %d ms (%.1f blocks/s)",
+				chainHeight - 1, duration, (chainHeight - 1) * 1000.0 / duration));
+	}
+
+	@Test
+	public void testMissingBlocks() throws DataException {
+		final int chainHeight;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			for (int i = 0; i < 10; ++i)
+				BlockUtils.mintBlock(repository);
+
+			chainHeight = repository.getBlockRepository().getBlockchainHeight();
+		}
+
+		try {
+			this.chainValidator.validate(2, chainHeight + 5);
+			fail("Validation of missing blocks should fail");
+		} catch (DataException e) {
+			// Expected
+		}
+
+		Progress progress = this.chainValidator.getProgress();
+		assertEquals(Stage.FAILED, progress.stage);
+		assertNotNull(progress.error);
+	}
+
+	@Test
+	public void testTamperedSignature() throws DataException, SQLException {
+		final int chainHeight = mintBlocks(10);
+		final int tamperedHeight = 6;
+
+		byte[] minterSignature = new byte[64];
+		RANDOM.nextBytes(minterSignature);
+		tamperBlock("minter_signature", minterSignature, tamperedHeight);
+
+		assertValidationFails(chainHeight, String.format("Invalid signature for block at height %d", tamperedHeight));
+	}
+
+	@Test
+	public void testBrokenReference() throws DataException, SQLException {
+		final int chainHeight = mintBlocks(10);
+		final int tamperedHeight = 6;
+
+		byte[] reference = new byte[128];
+		RANDOM.nextBytes(reference);
+		tamperBlock("reference", reference, tamperedHeight);
+
+		assertValidationFails(chainHeight, String.format("Invalid reference for block at height %d", tamperedHeight));
+	}
+
+	@Test
+	public void testBrokenTimestamp() throws DataException, SQLException {
+		final int chainHeight = mintBlocks(10);
+		final int tamperedHeight = 6;
+
+		// Block timestamp isn't covered by minter signature, so only sequential stage can catch this
+		long parentTimestamp;
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			parentTimestamp = repository.getBlockRepository().fromHeight(tamperedHeight - 1).getTimestamp();
+		}
+		tamperBlock("minted_when", parentTimestamp, tamperedHeight);
+
+		assertValidationFails(chainHeight, String.format("Block at height %d has timestamp older than parent", tamperedHeight));
+		assertEquals(chainHeight - 1, this.chainValidator.getProgress().blocksVerified);
+	}
+
+	private static int mintBlocks(int count) throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			for (int i = 0; i < count; ++i)
+				BlockUtils.mintBlock(repository);
+
+			return repository.getBlockRepository().getBlockchainHeight();
+		}
+	}
+
+	/** Overwrites <tt>column</tt> of block at <tt>height</tt>, directly in repository. */
+	private static void tamperBlock(String column, Object value, int height) throws DataException, SQLException {
+		try (final HSQLDBRepository hsqldb = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			PreparedStatement pstmt = hsqldb.prepareStatement("UPDATE Blocks SET " + column + " = ? WHERE height = ?");
+			pstmt.setObject(1, value);
+			pstmt.setInt(2, height);
+			assertEquals(1, pstmt.executeUpdate());
+
+			hsqldb.saveChanges();
+		}
+	}
+
+	private void assertValidationFails(int chainHeight, String expectedError) {
+		try {
+			this.chainValidator.validate(2, chainHeight);
+			fail("Validation of tampered chain should fail");
+		} catch (DataException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(expectedError));
+		}
+
+		Progress progress = this.chainValidator.getProgress();
+		assertEquals(Stage.FAILED, progress.stage);
+		assertTrue(progress.error, progress.error.startsWith(expectedError));
+	}
+
+}
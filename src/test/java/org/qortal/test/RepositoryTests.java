@@ -12,7 +12,10 @@ import org.qortal.data.account.AccountData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBConnectionMonitor;
 import org.qortal.repository.hsqldb.HSQLDBRepository;
+import org.qortal.repository.hsqldb.HSQLDBRepositoryFactory;
+import org.qortal.repository.hsqldb.HSQLDBStatementCache;
 import org.qortal.test.common.BlockUtils;
 import org.qortal.test.common.Common;
 
@@ -295,6 +298,91 @@ public class RepositoryTests extends Common {
 		}
 	}
 
+	/** Check that prepared statements are reused by later repository sessions. */
+	@Test
+	public void testStatementCacheAcrossSessions() throws DataException {
+		final int sessionCount = 1000;
+		String address = Common.getTestAccount(null, "alice").getAddress();
+
+		HSQLDBStatementCache.StatsSnapshot stats = HSQLDBStatementCache.getStatsSnapshot();
+
+		// Prime cache
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			repository.getAccountRepository().getLastReference(address);
+			repository.getAccountRepository().getBalance(address, Asset.QORT);
+		}
+
+		final long initialMisses = stats.misses.get();
+		final long initialHits = stats.hits.get();
+		final long startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < sessionCount; ++i)
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				repository.getAccountRepository().getLastReference(address);
+				repository.getAccountRepository().getBalance(address, Asset.QORT);
+			}
+
+		final long duration = System.currentTimeMillis() - startTime;
+
+		// Sequential sessions on same thread get same connection back, so nothing needs preparing again
+		assertEquals(initialMisses, stats.misses.get());
+		assertTrue(stats.hits.get() - initialHits >= 2 * sessionCount);
+
+		System.out.println(String.format("%d repository sessions in %d ms, %d statement cache hits, %d misses, %d evictions, %d ms preparing",
+				sessionCount, duration, stats.hits.get(), stats.misses.get(), stats.evictions.get(), stats.prepareNanos.get() / 1_000_000L));
+	}
+
+	@Test
+	public void testConnectionPoolStats() throws DataException {
+		HSQLDBRepositoryFactory repositoryFactory = (HSQLDBRepositoryFactory) RepositoryManager.getRepositoryFactory();
+		final int n_instances = 5;
+		Repository[] repositories = new Repository[n_instances];
+
+		HSQLDBConnectionMonitor.StatsSnapshot initialStats = repositoryFactory.getConnectionStatsSnapshot();
+
+		for (int i = 0; i < n_instances; ++i)
+			repositories[i] = RepositoryManager.getRepository();
+
+		HSQLDBConnectionMonitor.StatsSnapshot stats = repositoryFactory.getConnectionStatsSnapshot();
+		assertEquals(initialStats.acquisitions + n_instances, stats.acquisitions);
+		assertEquals(initialStats.activeConnections + n_instances, stats.activeConnections);
+
+		final String threadName = Thread.currentThread().getName();
+		assertEquals(n_instances, stats.holders.stream().filter(holder -> holder.threadName.equals(threadName)).count());
+
+		for (int i = 0; i < n_instances; ++i)
+			repositories[i].close();
+
+		stats = repositoryFactory.getConnectionStatsSnapshot();
+		assertEquals(initialStats.activeConnections, stats.activeConnections);
+		assertTrue(stats.idleConnections >= n_instances);
+		assertTrue(stats.acquireLatencyP50 <= stats.acquireLatencyP99);
+		assertTrue(stats.acquireLatencyP99 <= stats.acquireLatencyMax);
+	}
+
+	@Test
+	public void testReadOnlyRepository() throws DataException {
+		HSQLDBRepositoryFactory repositoryFactory = (HSQLDBRepositoryFactory) RepositoryManager.getRepositoryFactory();
+
+		final long initialAcquisitions = repositoryFactory.getConnectionStatsSnapshot().acquisitions;
+		final long initialReadOnlyAcquisitions = repositoryFactory.getReadOnlyConnectionStatsSnapshot().acquisitions;
+
+		try (final Repository repository = RepositoryManager.getReadOnlyRepository()) {
+			assertTrue(repository.getBlockRepository().getBlockchainHeight() > 0);
+
+			try {
+				((HSQLDBRepository) repository).prepareStatement("CREATE TABLE ReadOnlyTest (id INT)").execute();
+				fail("Read-only repository should reject writes");
+			} catch (SQLException e) {
+				// Expected
+			}
+		}
+
+		// Read-only session shouldn't have used main pool
+		assertEquals(initialAcquisitions, repositoryFactory.getConnectionStatsSnapshot().acquisitions);
+		assertEquals(initialReadOnlyAcquisitions + 1, repositoryFactory.getReadOnlyConnectionStatsSnapshot().acquisitions);
+	}
+
 	/** Test proper action of interrupt inside an HSQLDB statement. */
 	@Test
 	public void testInterrupt() {
@@ -0,0 +1,111 @@
+package org.qortal.test;
+
+import static org.junit.Assert.*;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bouncycastle.crypto.params.Ed25519PrivateKeyParameters;
+import org.junit.Test;
+import org.qortal.crypto.Crypto;
+import org.qortal.crypto.SignatureBatchVerifier;
+import org.qortal.data.network.OnlineAccountData;
+
+import com.google.common.primitives.Longs;
+
+public class SignatureBatchVerifierTests {
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final long ONLINE_TIMESTAMP = 1600000000000L;
+	private static final byte[] ONLINE_TIMESTAMP_BYTES = Longs.toByteArray(ONLINE_TIMESTAMP);
+
+	@Test
+	public void testEmptyBatch() {
+		assertTrue(SignatureBatchVerifier.getInstance().verifyAll(new ArrayList<>()));
+	}
+
+	@Test
+	public void testValidBatches() {
+		SignatureBatchVerifier verifier = SignatureBatchVerifier.getInstance();
+
+		// Small batch is verified inline, larger batch uses pool
+		for (int batchSize : new int[] { 1, SignatureBatchVerifier.MIN_PARALLEL_BATCH_SIZE - 1, 1000 })
+			assertTrue(verifier.verifyAll(generateEntries(batchSize)));
+	}
+
+	@Test
+	public void testInvalidSignatureDetected() {
+		SignatureBatchVerifier verifier = SignatureBatchVerifier.getInstance();
+
+		for (int batchSize : new int[] { 1, SignatureBatchVerifier.MIN_PARALLEL_BATCH_SIZE - 1, 1000 }) {
+			List<SignatureBatchVerifier.Entry> entries = generateEntries(batchSize);
+
+			// Corrupt the last entry, which is the one most likely to be reached last
+			SignatureBatchVerifier.Entry lastEntry = entries.get(batchSize - 1);
+			byte[] badSignature = lastEntry.getSignature().clone();
+			badSignature[0] ^= 0x01;
+			entries.set(batchSize - 1, new SignatureBatchVerifier.Entry(lastEntry.getPublicKey(), badSignature, lastEntry.getMessage()));
+
+			assertFalse(verifier.verifyAll(entries));
+		}
+	}
+
+	@Test
+	public void testOnlineAccountsVerificationTimings() {
+		for (int accountsCount : new int[] { 1000, 5000, 20000 }) {
+			List<SignatureBatchVerifier.Entry> entries = generateEntries(accountsCount);
+
+			List<OnlineAccountData> blockOnlineAccounts = new ArrayList<>(accountsCount);
+			for (SignatureBatchVerifier.Entry entry : entries)
+				blockOnlineAccounts.add(new OnlineAccountData(ONLINE_TIMESTAMP, entry.getSignature(), entry.getPublicKey()));
+
+			// Pretend we already know about half of the accounts, as would be typical on a live node
+			List<OnlineAccountData> knownOnlineAccounts = new ArrayList<>(blockOnlineAccounts.subList(0, accountsCount / 2));
+
+			// Previous approach: list lookups and serial Ed25519 verify
+			List<OnlineAccountData> currentOnlineAccounts = new ArrayList<>(knownOnlineAccounts);
+			long beforeSerial = System.nanoTime();
+			for (OnlineAccountData onlineAccountData : blockOnlineAccounts) {
+				if (currentOnlineAccounts.remove(onlineAccountData))
+					continue;
+
+				assertTrue(Crypto.verify(onlineAccountData.getPublicKey(), onlineAccountData.getSignature(), ONLINE_TIMESTAMP_BYTES));
+			}
+			long serialNanos = System.nanoTime() - beforeSerial;
+
+			// New approach: hash lookups then batch verify
+			long beforeBatch = System.nanoTime();
+			Set<OnlineAccountData> knownOnlineAccountsSet = new HashSet<>(knownOnlineAccounts);
+			List<SignatureBatchVerifier.Entry> signaturesToVerify = new ArrayList<>();
+			for (int i = 0; i < accountsCount; ++i)
+				if (!knownOnlineAccountsSet.contains(blockOnlineAccounts.get(i)))
+					signaturesToVerify.add(entries.get(i));
+
+			assertTrue(SignatureBatchVerifier.getInstance().verifyAll(signaturesToVerify));
+			long batchNanos = System.nanoTime() - beforeBatch;
+
+			System.out.println(String.format("%d online accounts: serial %dms vs batch %dms",
+					accountsCount,
+					serialNanos / 1_000_000L,
+					batchNanos / 1_000_000L));
+		}
+	}
+
+	private static List<SignatureBatchVerifier.Entry> generateEntries(int count) {
+		List<SignatureBatchVerifier.Entry> entries = new ArrayList<>(count);
+
+		for (int i = 0; i < count; ++i) {
+			Ed25519PrivateKeyParameters privateKeyParams = new Ed25519PrivateKeyParameters(RANDOM);
+			byte[] publicKey = privateKeyParams.generatePublicKey().getEncoded();
+			byte[] signature = Crypto.sign(privateKeyParams, ONLINE_TIMESTAMP_BYTES);
+
+			entries.add(new SignatureBatchVerifier.Entry(publicKey, signature, ONLINE_TIMESTAMP_BYTES));
+		}
+
+		return entries;
+	}
+
+}
@@ -0,0 +1,251 @@
+package org.qortal.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.asset.Asset;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.ChatTransactionData;
+import org.qortal.data.transaction.PresenceTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.group.Group;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.transaction.MessageTestTransaction;
+import org.qortal.test.common.transaction.PresenceTestTransaction;
+import org.qortal.transaction.MessageTransaction;
+import org.qortal.transaction.PresenceTransaction;
+import org.qortal.transaction.PresenceTransaction.PresenceType;
+import org.qortal.transaction.Transaction;
+import org.qortal.transaction.Transaction.ValidationResult;
+import org.qortal.utils.Amounts;
+import org.qortal.utils.NTP;
+
+public class UnconfirmedImportTests extends Common {
+
+	private static final Random RANDOM = new Random();
+	/** Same as TransactionImporter */
+	private static final int IMPORT_CHUNK_SIZE = 100;
+
+	@Before
+	public void before() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testBatchImport() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<Transaction> transactions = generateTransactions(repository, 200);
+
+			List<ValidationResult> results = Transaction.importAsUnconfirmed(repository, transactions);
+
+			assertEquals(transactions.size(), results.size());
+			for (ValidationResult result : results)
+				assertEquals(ValidationResult.OK, result);
+
+			assertEquals(transactions.size(), repository.getTransactionRepository().getUnconfirmedTransactions().size());
+		}
+	}
+
+	@Test
+	public void testBatchImportDuplicates() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<Transaction> transactions = generateTransactions(repository, 10);
+
+			// Import some transactions individually first
+			assertEquals(ValidationResult.OK, transactions.get(0).importAsUnconfirmed());
+
+			// Duplicate within batch too
+			List<Transaction> batch = new ArrayList<>(transactions);
+			batch.add(Transaction.fromData(repository, transactions.get(5).getTransactionData()));
+
+			List<ValidationResult> results = Transaction.importAsUnconfirmed(repository, batch);
+
+			assertEquals(ValidationResult.TRANSACTION_ALREADY_EXISTS, results.get(0));
+			for (int i = 1; i < transactions.size(); ++i)
+				assertEquals(ValidationResult.OK, results.get(i));
+			assertEquals(ValidationResult.TRANSACTION_ALREADY_EXISTS, results.get(batch.size() - 1));
+
+			assertEquals(transactions.size(), repository.getTransactionRepository().getUnconfirmedTransactions().size());
+		}
+	}
+
+	@Test
+	public void testBatchImportMaxUnconfirmedPerAccount() throws DataException {
+		final int maxUnconfirmedPerAccount = Settings.getInstance().getMaxUnconfirmedPerAccount();
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount account = createFundedAccount(repository);
+
+			List<Transaction> transactions = new ArrayList<>();
+			for (int i = 0; i < maxUnconfirmedPerAccount + 5; ++i)
+				transactions.add(signedTransaction(repository, account));
+
+			// Limit must take earlier, not-yet-saved, transactions in same batch into account
+			List<ValidationResult> results = Transaction.importAsUnconfirmed(repository, transactions);
+
+			for (int i = 0; i < results.size(); ++i)
+				assertEquals(i < maxUnconfirmedPerAccount ? ValidationResult.OK : ValidationResult.TOO_MANY_UNCONFIRMED, results.get(i));
+		}
+	}
+
+	@Test
+	public void testBatchImportFallback() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+
+			// Older PRESENCE transaction, which importing a newer one should delete
+			TransactionData olderPresenceData = new PresenceTransactionData(new BaseTransactionData(NTP.getTime() - 1000L, Group.NO_GROUP,
+					alice.getLastReference(), alice.getPublicKey(), 0L, null), 0, PresenceType.TRADE_BOT, new byte[64]);
+			Transaction olderPresence = Transaction.fromData(repository, olderPresenceData);
+			olderPresence.sign(alice);
+			repository.getTransactionRepository().save(olderPresenceData);
+			repository.getTransactionRepository().unconfirmTransaction(olderPresenceData);
+			repository.saveChanges();
+
+			TransactionData presenceData = PresenceTestTransaction.randomTransaction(repository, alice, true);
+			Transaction presence = new PresenceTransaction(repository, presenceData) {
+				@Override
+				public ValidationResult isValid() {
+					// Skip checks for matching trade AT, which aren't relevant here
+					return ValidationResult.OK;
+				}
+			};
+			presence.sign(alice);
+
+			// CHAT transaction from account not yet in repository
+			PrivateKeyAccount chatter = createUnsavedAccount(repository);
+			byte[] chatReference = new byte[64];
+			RANDOM.nextBytes(chatReference);
+			TransactionData chatData = new ChatTransactionData(new BaseTransactionData(NTP.getTime(), Group.NO_GROUP,
+					chatReference, chatter.getPublicKey(), 0L, null), chatter.getAddress(), 0, null, "chat contents".getBytes(), true, false);
+			Transaction chat = Transaction.fromData(repository, chatData);
+			chat.sign(chatter);
+
+			// Transaction that fails batch import, but imports individually
+			PrivateKeyAccount sender = createFundedAccount(repository);
+			int[] failingCallCount = new int[] { 0 };
+			Transaction failing = new MessageTransaction(repository, MessageTestTransaction.randomTransaction(repository, sender, true)) {
+				@Override
+				protected void onImportAsUnconfirmed() throws DataException {
+					if (failingCallCount[0]++ == 0)
+						throw new DataException("Forced batch import failure");
+				}
+			};
+			failing.sign(sender);
+
+			List<ValidationResult> results = Transaction.importAsUnconfirmed(repository, List.of(presence, chat, failing));
+
+			for (ValidationResult result : results)
+				assertEquals(ValidationResult.OK, result);
+
+			// Batch must have failed, then each transaction imported individually
+			assertEquals(2, failingCallCount[0]);
+
+			for (Transaction transaction : List.of(presence, chat, failing))
+				assertTrue(repository.getTransactionRepository().exists(transaction.getTransactionData().getSignature()));
+
+			// Side effects from individual imports should be present, not rolled back with batch
+			assertFalse(repository.getTransactionRepository().exists(olderPresenceData.getSignature()));
+			assertTrue(repository.getAccountRepository().accountExists(chatter.getAddress()));
+		}
+	}
+
+	@Test
+	public void testImportThroughput() throws DataException {
+		// Individual import gets slower as unconfirmed transactions accumulate, so keep counts small enough for regular test runs
+		for (int transactionCount : new int[] { 100, 1000 }) {
+			// Previous approach: one validation, save and commit per transaction
+			Common.useDefaultSettings();
+			long individualMillis;
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				List<Transaction> transactions = generateTransactions(repository, transactionCount);
+
+				long before = System.currentTimeMillis();
+				for (Transaction transaction : transactions)
+					assertEquals(ValidationResult.OK, transaction.importAsUnconfirmed());
+				individualMillis = System.currentTimeMillis() - before;
+			}
+
+			// New approach: batched validation, saves and commit
+			Common.useDefaultSettings();
+			long batchMillis;
+			try (final Repository repository = RepositoryManager.getRepository()) {
+				List<Transaction> transactions = generateTransactions(repository, transactionCount);
+
+				long before = System.currentTimeMillis();
+				for (int i = 0; i < transactions.size(); i += IMPORT_CHUNK_SIZE) {
+					List<Transaction> chunk = transactions.subList(i, Math.min(i + IMPORT_CHUNK_SIZE, transactions.size()));
+
+					for (ValidationResult result : Transaction.importAsUnconfirmed(repository, chunk))
+						assertEquals(ValidationResult.OK, result);
+				}
+				batchMillis = System.currentTimeMillis() - before;
+
+				assertEquals(transactionCount, repository.getTransactionRepository().getUnconfirmedTransactions().size());
+			}
+
+			System.out.println(String.format("%d unconfirmed transactions: individual import %dms (%.0f tx/s) vs batch import %dms (%.0f tx/s)",
+					transactionCount,
+					individualMillis, transactionCount * 1000.0 / Math.max(1L, individualMillis),
+					batchMillis, transactionCount * 1000.0 / Math.max(1L, batchMillis)));
+		}
+	}
+
+	/** Generates signed MESSAGE transactions, spread across enough accounts to stay within unconfirmed-per-account limit. */
+	private static List<Transaction> generateTransactions(Repository repository, int count) throws DataException {
+		final int perAccount = Math.max(1, Settings.getInstance().getMaxUnconfirmedPerAccount() - 1);
+
+		List<Transaction> transactions = new ArrayList<>(count);
+		PrivateKeyAccount account = null;
+
+		for (int i = 0; i < count; ++i) {
+			if (i % perAccount == 0)
+				account = createFundedAccount(repository);
+
+			transactions.add(signedTransaction(repository, account));
+		}
+
+		repository.saveChanges();
+
+		return transactions;
+	}
+
+	private static Transaction signedTransaction(Repository repository, PrivateKeyAccount account) throws DataException {
+		TransactionData transactionData = MessageTestTransaction.randomTransaction(repository, account, true);
+
+		Transaction transaction = Transaction.fromData(repository, transactionData);
+		transaction.sign(account);
+
+		return transaction;
+	}
+
+	private static PrivateKeyAccount createUnsavedAccount(Repository repository) {
+		byte[] privateKey = new byte[32];
+		RANDOM.nextBytes(privateKey);
+		return new PrivateKeyAccount(repository, privateKey);
+	}
+
+	private static PrivateKeyAccount createFundedAccount(Repository repository) throws DataException {
+		PrivateKeyAccount account = createUnsavedAccount(repository);
+
+		byte[] lastReference = new byte[64];
+		RANDOM.nextBytes(lastReference);
+		account.setLastReference(lastReference);
+		account.setConfirmedBalance(Asset.QORT, 1_000_000L * Amounts.MULTIPLIER);
+
+		repository.saveChanges();
+
+		return account;
+	}
+
+}
@@ -0,0 +1,223 @@
+package org.qortal.test.assets;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.data.asset.OrderData;
+import org.qortal.data.asset.TradeData;
+import org.qortal.data.transaction.BaseTransactionData;
+import org.qortal.data.transaction.CreateAssetOrderTransactionData;
+import org.qortal.data.transaction.TransactionData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBOrderBook;
+import org.qortal.settings.Settings;
+import org.qortal.test.common.AssetUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.test.common.TransactionUtils;
+import org.qortal.utils.Amounts;
+import org.qortal.utils.Base58;
+
+public class OrderBookTests extends Common {
+
+	private static final long RANDOM_SEED = 0x5eed_0b00cL;
+	private static final int ORDER_COUNT = 40;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	/** Replays same orders, and cancels, with and without order book, checking trades and orders are identical. */
+	@Test
+	public void testReplayMatchesSqlMatcher() throws DataException, IllegalAccessException {
+		List<String> expectedOutcome = replay(false);
+
+		// Fresh repository, using order book this time
+		Common.useDefaultSettings();
+		List<String> actualOutcome = replay(true);
+
+		assertEquals(expectedOutcome.size(), actualOutcome.size());
+		for (int i = 0; i < expectedOutcome.size(); ++i)
+			assertEquals(expectedOutcome.get(i), actualOutcome.get(i));
+	}
+
+	/** Matches against orders with same price and timestamp, with and without order book, checking trades and orders are identical. */
+	@Test
+	public void testTiedOrdersMatchSqlMatcher() throws DataException, IllegalAccessException {
+		List<String> expectedOutcome = replayTiedOrders(false);
+
+		// Fresh repository, using order book this time
+		Common.useDefaultSettings();
+		List<String> actualOutcome = replayTiedOrders(true);
+
+		assertEquals(expectedOutcome, actualOutcome);
+	}
+
+	private static List<String> replayTiedOrders(boolean isOrderBookEnabled) throws DataException, IllegalAccessException {
+		FieldUtils.writeField(Settings.getInstance(), "orderBookEnabled", isOrderBookEnabled, true);
+
+		final long amount = 10L * Amounts.MULTIPLIER;
+		final long price = 1L * Amounts.MULTIPLIER;
+		final List<String> sellerNames = List.of("alice", "chloe", "dilbert");
+
+		try (Repository repository = RepositoryManager.getRepository()) {
+			// Chloe and Dilbert need TEST to sell
+			AssetUtils.transferAsset(repository, "alice", "chloe", AssetUtils.testAssetId, amount);
+			AssetUtils.transferAsset(repository, "alice", "dilbert", AssetUtils.testAssetId, amount);
+
+			// Sell orders have same price and same timestamp, so their priority is only decided by SQL
+			long timestamp = 0L;
+			for (String sellerName : sellerNames) {
+				byte[] reference = Common.getTestAccount(repository, sellerName).getLastReference();
+				timestamp = Math.max(timestamp, repository.getTransactionRepository().fromSignature(reference).getTimestamp() + 1);
+			}
+
+			List<byte[]> orderIds = new ArrayList<>();
+			for (String sellerName : sellerNames) {
+				PrivateKeyAccount seller = Common.getTestAccount(repository, sellerName);
+
+				BaseTransactionData baseTransactionData = new BaseTransactionData(timestamp, AssetUtils.txGroupId, seller.getLastReference(), seller.getPublicKey(), AssetUtils.fee, null);
+				TransactionData transactionData = new CreateAssetOrderTransactionData(baseTransactionData, AssetUtils.testAssetId, AssetUtils.otherAssetId, amount, price);
+
+				TransactionUtils.signAndImportValid(repository, transactionData, seller);
+				orderIds.add(transactionData.getSignature());
+			}
+
+			BlockUtils.mintBlock(repository);
+
+			// Bob's order only matches some of the tied orders
+			final long previousTieFallbacks = HSQLDBOrderBook.getStatsSnapshot().tieFallbacks.get();
+
+			orderIds.add(AssetUtils.createOrder(repository, "bob", AssetUtils.otherAssetId, AssetUtils.testAssetId, amount * 3 / 2, price));
+
+			if (isOrderBookEnabled) {
+				// Order book should have deferred to SQL
+				assertTrue(HSQLDBOrderBook.getStatsSnapshot().tieFallbacks.get() > previousTieFallbacks);
+
+				assertOrderBookMatchesSql(repository);
+			}
+
+			List<String> outcome = new ArrayList<>();
+			for (byte[] orderId : orderIds) {
+				OrderData orderData = repository.getAssetRepository().fromOrderId(orderId);
+				outcome.add(String.format("order %s: fulfilled %d, closed %b, fulfilled %b", Base58.encode(orderId),
+						orderData.getFulfilled(), orderData.getIsClosed(), orderData.getIsFulfilled()));
+			}
+
+			return outcome;
+		}
+	}
+
+	private static List<String> replay(boolean isOrderBookEnabled) throws DataException, IllegalAccessException {
+		FieldUtils.writeField(Settings.getInstance(), "orderBookEnabled", isOrderBookEnabled, true);
+
+		Random random = new Random(RANDOM_SEED);
+
+		try (Repository repository = RepositoryManager.getRepository()) {
+			final int startHeight = repository.getBlockRepository().getBlockchainHeight();
+			final long previousRebuilds = HSQLDBOrderBook.getStatsSnapshot().rebuilds.get();
+
+			List<byte[]> orderIds = new ArrayList<>();
+
+			for (int i = 0; i < ORDER_COUNT; ++i) {
+				// Occasionally cancel a random open order instead
+				if (i % 7 == 6) {
+					byte[] orderId = orderIds.get(random.nextInt(orderIds.size()));
+					OrderData orderData = repository.getAssetRepository().fromOrderId(orderId);
+
+					if (!orderData.getIsClosed()) {
+						String accountName = orderData.getHaveAssetId() == AssetUtils.testAssetId ? "alice" : "bob";
+						AssetUtils.cancelOrder(repository, accountName, orderId);
+						continue;
+					}
+				}
+
+				// Alice sells TEST for OTHER, Bob sells OTHER for TEST, at prices around 1 TEST per OTHER
+				boolean isAlice = random.nextBoolean();
+				long amount = (1 + random.nextInt(50)) * Amounts.MULTIPLIER;
+				long price = (90 + random.nextInt(21)) * Amounts.MULTIPLIER / 100;
+
+				if (isAlice)
+					orderIds.add(AssetUtils.createOrder(repository, "alice", AssetUtils.testAssetId, AssetUtils.otherAssetId, amount, price));
+				else
+					orderIds.add(AssetUtils.createOrder(repository, "bob", AssetUtils.otherAssetId, AssetUtils.testAssetId, amount, price));
+
+				if (isOrderBookEnabled)
+					assertOrderBookMatchesSql(repository);
+			}
+
+			// Outcome is each order's state and trades, in creation order
+			List<String> outcome = new ArrayList<>();
+			for (byte[] orderId : orderIds) {
+				OrderData orderData = repository.getAssetRepository().fromOrderId(orderId);
+				outcome.add(String.format("order %s: fulfilled %d, closed %b, fulfilled %b", Base58.encode(orderId),
+						orderData.getFulfilled(), orderData.getIsClosed(), orderData.getIsFulfilled()));
+
+				for (TradeData tradeData : repository.getAssetRepository().getOrdersTrades(orderId))
+					outcome.add(String.format("trade %s -> %s: %d / %d, saving %d", Base58.encode(tradeData.getInitiator()), Base58.encode(tradeData.getTarget()),
+							tradeData.getInitiatorAmount(), tradeData.getTargetAmount(), tradeData.getInitiatorSaving()));
+			}
+
+			// Orphaning should reopen cancelled orders and undo trades
+			BlockUtils.orphanToBlock(repository, startHeight + (repository.getBlockRepository().getBlockchainHeight() - startHeight) / 2);
+
+			if (isOrderBookEnabled) {
+				assertOrderBookMatchesSql(repository);
+
+				// Order book should only have been built once, then updated by each block processed or orphaned
+				assertEquals(previousRebuilds + 1, HSQLDBOrderBook.getStatsSnapshot().rebuilds.get());
+			}
+
+			return outcome;
+		}
+	}
+
+	private static void assertOrderBookMatchesSql(Repository repository) throws DataException, IllegalAccessException {
+		for (long[] assetPair : new long[][] { { AssetUtils.testAssetId, AssetUtils.otherAssetId }, { AssetUtils.otherAssetId, AssetUtils.testAssetId } }) {
+			final long haveAssetId = assetPair[0];
+			final long wantAssetId = assetPair[1];
+
+			final long previousMisses = HSQLDBOrderBook.getStatsSnapshot().misses.get();
+
+			List<String> bookOrders = describe(repository.getAssetRepository().getOpenOrders(haveAssetId, wantAssetId));
+			List<String> bookAggregates = describe(repository.getAssetRepository().getAggregatedOpenOrders(haveAssetId, wantAssetId, null, null, true));
+
+			// Order book should have been used, rather than bypassed in favour of SQL
+			assertEquals(previousMisses, HSQLDBOrderBook.getStatsSnapshot().misses.get());
+
+			FieldUtils.writeField(Settings.getInstance(), "orderBookEnabled", false, true);
+			try {
+				assertEquals(describe(repository.getAssetRepository().getOpenOrders(haveAssetId, wantAssetId)), bookOrders);
+				assertEquals(describe(repository.getAssetRepository().getAggregatedOpenOrders(haveAssetId, wantAssetId, null, null, true)), bookAggregates);
+			} finally {
+				FieldUtils.writeField(Settings.getInstance(), "orderBookEnabled", true, true);
+			}
+		}
+	}
+
+	private static List<String> describe(List<OrderData> orders) {
+		return orders.stream()
+				.map(orderData -> String.format("%s: %d @ %d, fulfilled %d, at %d",
+						orderData.getOrderId() != null ? Base58.encode(orderData.getOrderId()) : "aggregate",
+						orderData.getAmount(), orderData.getPrice(), orderData.getFulfilled(), orderData.getTimestamp()))
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,161 @@
+package org.qortal.test.assets;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.data.TradeCandleData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.AssetUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.utils.Amounts;
+import org.qortal.utils.ByteArray;
+
+public class TradeCandleTests extends Common {
+
+	private static final int TRADE_COUNT = 12;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@After
+	public void afterTest() throws DataException {
+		Common.orphanCheck();
+	}
+
+	@Test
+	public void testCandlesMatchRebuild() throws DataException {
+		try (Repository repository = RepositoryManager.getRepository()) {
+			final int startHeight = repository.getBlockRepository().getBlockchainHeight();
+
+			long expectedVolume = 0;
+			long expectedOtherVolume = 0;
+			long lastPrice = 0;
+
+			// Each pair of orders makes one trade: Alice sells GOLD for OTHER, then Bob buys GOLD with OTHER, at same price
+			for (int i = 0; i < TRADE_COUNT; ++i) {
+				// GOLD has a higher assetId than OTHER, so amounts are in GOLD and prices are in OTHER/GOLD
+				long goldAmount = (1 + i) * Amounts.MULTIPLIER;
+				long price = (2 + i % 3) * Amounts.MULTIPLIER;
+
+				AssetUtils.createOrder(repository, "alice", AssetUtils.goldAssetId, AssetUtils.otherAssetId, goldAmount, price);
+				AssetUtils.createOrder(repository, "bob", AssetUtils.otherAssetId, AssetUtils.goldAssetId, goldAmount, price);
+
+				expectedVolume += goldAmount;
+				expectedOtherVolume += Amounts.roundDownScaledMultiply(goldAmount, price);
+				lastPrice = price;
+			}
+
+			List<TradeCandleData> dayCandles = getCandles(repository, TradeCandleData.Interval.DAY);
+			assertEquals(TRADE_COUNT, dayCandles.stream().mapToInt(TradeCandleData::getTradeCount).sum());
+			assertEquals(expectedVolume, dayCandles.stream().mapToLong(TradeCandleData::getVolume).sum());
+			assertEquals(expectedOtherVolume, dayCandles.stream().mapToLong(TradeCandleData::getOtherVolume).sum());
+			assertEquals(4L * Amounts.MULTIPLIER, dayCandles.stream().mapToLong(TradeCandleData::getHigh).max().getAsLong());
+			assertEquals(2L * Amounts.MULTIPLIER, dayCandles.stream().mapToLong(TradeCandleData::getLow).min().getAsLong());
+			assertEquals(lastPrice, dayCandles.get(dayCandles.size() - 1).getClose());
+
+			// Asset pair order shouldn't matter
+			assertEquals(describeAllCandles(repository), describeCandles(repository, AssetUtils.otherAssetId, AssetUtils.goldAssetId));
+
+			// Candles maintained as trades were processed should match those built from scratch
+			assertCandlesMatchRebuild(repository);
+
+			// Orphan half the trades
+			BlockUtils.orphanToBlock(repository, startHeight + TRADE_COUNT);
+
+			dayCandles = getCandles(repository, TradeCandleData.Interval.DAY);
+			assertEquals(TRADE_COUNT / 2, dayCandles.stream().mapToInt(TradeCandleData::getTradeCount).sum());
+
+			// Candles recalculated as trades were orphaned should match those built from scratch
+			assertCandlesMatchRebuild(repository);
+
+			// Orphan remaining trades
+			BlockUtils.orphanToBlock(repository, startHeight);
+
+			for (TradeCandleData.Interval interval : TradeCandleData.Interval.values())
+				assertTrue(getCandles(repository, interval).isEmpty());
+		}
+	}
+
+	@Test
+	public void testTiedTrades() throws DataException {
+		try (Repository repository = RepositoryManager.getRepository()) {
+			final int startHeight = repository.getBlockRepository().getBlockchainHeight();
+
+			// Alice sells GOLD at several prices
+			final long goldAmount = 1L * Amounts.MULTIPLIER;
+			Map<ByteArray, Long> pricesByOrderId = new HashMap<>();
+			for (long price = 2; price <= 4; ++price) {
+				byte[] orderId = AssetUtils.createOrder(repository, "alice", AssetUtils.goldAssetId, AssetUtils.otherAssetId, goldAmount, price * Amounts.MULTIPLIER);
+				pricesByOrderId.put(ByteArray.wrap(orderId), price * Amounts.MULTIPLIER);
+			}
+
+			// Bob's single order matches all of Alice's, cheapest first, so trades all have Bob's order's timestamp
+			AssetUtils.createOrder(repository, "bob", AssetUtils.otherAssetId, AssetUtils.goldAssetId, 3 * goldAmount, 4L * Amounts.MULTIPLIER);
+
+			// Tied trades are ordered by order IDs, not by the order they were matched
+			List<byte[]> orderIds = pricesByOrderId.keySet().stream().map(orderId -> orderId.value).sorted(Arrays::compareUnsigned).collect(Collectors.toList());
+
+			List<TradeCandleData> minuteCandles = getCandles(repository, TradeCandleData.Interval.MINUTE);
+			TradeCandleData minuteCandle = minuteCandles.get(minuteCandles.size() - 1);
+			assertEquals(3, minuteCandle.getTradeCount());
+			assertEquals((long) pricesByOrderId.get(ByteArray.wrap(orderIds.get(0))), minuteCandle.getOpen());
+			assertEquals((long) pricesByOrderId.get(ByteArray.wrap(orderIds.get(2))), minuteCandle.getClose());
+
+			assertCandlesMatchRebuild(repository);
+
+			// Orphaned trades return as unconfirmed, so reprocessing them should produce same candles
+			List<String> candles = describeAllCandles(repository);
+
+			BlockUtils.orphanLastBlock(repository);
+			assertTrue(getCandles(repository, TradeCandleData.Interval.MINUTE).isEmpty());
+
+			BlockUtils.mintBlock(repository);
+			assertEquals(candles, describeAllCandles(repository));
+
+			BlockUtils.orphanToBlock(repository, startHeight);
+		}
+	}
+
+	private static void assertCandlesMatchRebuild(Repository repository) throws DataException {
+		List<String> candles = describeAllCandles(repository);
+
+		repository.getAssetRepository().rebuildTradeCandles();
+
+		assertEquals(candles, describeAllCandles(repository));
+	}
+
+	private static List<TradeCandleData> getCandles(Repository repository, TradeCandleData.Interval interval) throws DataException {
+		return repository.getAssetRepository().getTradeCandles(AssetUtils.goldAssetId, AssetUtils.otherAssetId, interval, null, null, null, null, null);
+	}
+
+	private static List<String> describeAllCandles(Repository repository) throws DataException {
+		return describeCandles(repository, AssetUtils.goldAssetId, AssetUtils.otherAssetId);
+	}
+
+	private static List<String> describeCandles(Repository repository, long assetId, long otherAssetId) throws DataException {
+		List<String> descriptions = new ArrayList<>();
+
+		for (TradeCandleData.Interval interval : TradeCandleData.Interval.values())
+			for (TradeCandleData candle : repository.getAssetRepository().getTradeCandles(assetId, otherAssetId, interval, null, null, null, null, null))
+				descriptions.add(String.format("%s %d: O %d H %d L %d C %d, V %d / %d, %d trades", interval.name(), candle.getTimestamp(),
+						candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(),
+						candle.getVolume(), candle.getOtherVolume(), candle.getTradeCount()));
+
+		return descriptions;
+	}
+
+}
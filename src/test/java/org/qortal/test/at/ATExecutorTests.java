@@ -0,0 +1,148 @@
+package org.qortal.test.at;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ciyam.at.CompilationException;
+import org.ciyam.at.MachineState;
+import org.ciyam.at.OpCode;
+import org.junit.Before;
+import org.junit.Test;
+import org.qortal.account.PrivateKeyAccount;
+import org.qortal.at.AT;
+import org.qortal.at.ATExecutor;
+import org.qortal.data.at.ATData;
+import org.qortal.data.at.ATStateData;
+import org.qortal.data.block.BlockData;
+import org.qortal.repository.DataException;
+import org.qortal.repository.Repository;
+import org.qortal.repository.RepositoryManager;
+import org.qortal.test.common.AtUtils;
+import org.qortal.test.common.BlockUtils;
+import org.qortal.test.common.Common;
+import org.qortal.transaction.DeployAtTransaction;
+
+public class ATExecutorTests extends Common {
+
+	private static final long fundingAmount = 1_00000000L;
+	private static final int AT_COUNT = 20;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testParallelMatchesSequential() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "alice");
+
+			byte[] simpleCreationBytes = AtUtils.buildSimpleAT();
+			byte[] sleepingCreationBytes = buildSleepingAT();
+
+			String sleepingAtAddress = null;
+			for (int i = 0; i < AT_COUNT; ++i) {
+				DeployAtTransaction deployAtTransaction = AtUtils.doDeployAT(repository, deployer, i % 5 == 4 ? sleepingCreationBytes : simpleCreationBytes, fundingAmount);
+
+				if (i % 5 == 4)
+					sleepingAtAddress = deployAtTransaction.getATAccount().getAddress();
+			}
+
+			// Allow all ATs to run at least once, so sleeping ATs are asleep
+			BlockUtils.mintBlock(repository);
+
+			BlockData lastBlockData = repository.getBlockRepository().getLastBlock();
+			final int blockHeight = lastBlockData.getHeight() + 1;
+			final long blockTimestamp = lastBlockData.getTimestamp() + 60_000L;
+
+			// Sleeping ATs shouldn't be returned
+			final int currentBlockHeight = repository.getBlockRepository().getBlockchainHeight();
+			List<ATData> nonSleepingATs = repository.getATRepository().getAllExecutableATs(currentBlockHeight);
+			assertEquals(AT_COUNT, repository.getATRepository().getAllExecutableATs().size());
+			assertEquals(AT_COUNT - AT_COUNT / 5, nonSleepingATs.size());
+			for (ATData atData : nonSleepingATs)
+				assertNotEquals(sleepingAtAddress, atData.getATAddress());
+
+			List<ATStateData> expectedAtStates = runLegacy(repository, blockHeight, blockTimestamp);
+			assertEquals(AT_COUNT - AT_COUNT / 5, expectedAtStates.size());
+
+			ATExecutor.Result sequentialResult = new ATExecutor(repository, blockHeight, blockTimestamp, 1).execute();
+			assertAtStatesEqual(expectedAtStates, sequentialResult.getAtStates());
+
+			final long startTime = System.nanoTime();
+			ATExecutor.Result parallelResult = new ATExecutor(repository, blockHeight, blockTimestamp, 4).execute();
+			final long duration = System.nanoTime() - startTime;
+
+			assertAtStatesEqual(expectedAtStates, parallelResult.getAtStates());
+			assertEquals(sequentialResult.getAtFees(), parallelResult.getAtFees());
+			assertEquals(sequentialResult.getAtTransactions().size(), parallelResult.getAtTransactions().size());
+
+			System.out.println(String.format("Executed %d ATs in parallel in %d µs", parallelResult.getAtStates().size(), duration / 1000L));
+
+			// Minted block should be valid, and agree, using parallel execution
+			BlockUtils.mintBlock(repository);
+		}
+	}
+
+	/** Runs ATs one by one, as before ATExecutor */
+	private static List<ATStateData> runLegacy(Repository repository, int blockHeight, long blockTimestamp) throws DataException {
+		List<ATStateData> atStates = new ArrayList<>();
+
+		for (ATData atData : repository.getATRepository().getAllExecutableATs()) {
+			AT at = new AT(repository, atData);
+			at.run(blockHeight, blockTimestamp);
+
+			ATStateData atStateData = at.getATStateData();
+			if (atStateData != null)
+				atStates.add(atStateData);
+		}
+
+		return atStates;
+	}
+
+	private static void assertAtStatesEqual(List<ATStateData> expectedAtStates, List<ATStateData> actualAtStates) {
+		assertEquals(expectedAtStates.size(), actualAtStates.size());
+
+		for (int i = 0; i < expectedAtStates.size(); ++i) {
+			ATStateData expectedAtState = expectedAtStates.get(i);
+			ATStateData actualAtState = actualAtStates.get(i);
+
+			assertEquals(expectedAtState.getATAddress(), actualAtState.getATAddress());
+			assertArrayEquals(expectedAtState.getStateHash(), actualAtState.getStateHash());
+			assertArrayEquals(expectedAtState.getStateData(), actualAtState.getStateData());
+			assertEquals(expectedAtState.getFees(), actualAtState.getFees());
+		}
+	}
+
+	/** Builds AT that sleeps until a height far in the future. */
+	private static byte[] buildSleepingAT() {
+		// Data segment
+		ByteBuffer dataByteBuffer = ByteBuffer.allocate(1 * MachineState.VALUE_SIZE);
+		dataByteBuffer.putLong(1_000_000L);
+
+		ByteBuffer codeByteBuffer = ByteBuffer.allocate(512);
+
+		try {
+			codeByteBuffer.put(OpCode.SLP_DAT.compile(0));
+			codeByteBuffer.put(OpCode.FIN_IMD.compile());
+		} catch (CompilationException e) {
+			throw new IllegalStateException("Unable to compile AT?", e);
+		}
+
+		codeByteBuffer.flip();
+
+		byte[] codeBytes = new byte[codeByteBuffer.limit()];
+		codeByteBuffer.get(codeBytes);
+
+		final short ciyamAtVersion = 2;
+		final short numCallStackPages = 0;
+		final short numUserStackPages = 0;
+		final long minActivationAmount = 0L;
+
+		return MachineState.toCreationBytes(ciyamAtVersion, codeBytes, dataByteBuffer.array(), numCallStackPages, numUserStackPages, minActivationAmount);
+	}
+
+}
@@ -12,6 +12,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.qortal.account.PrivateKeyAccount;
 import org.qortal.asset.Asset;
+import org.qortal.crypto.Crypto;
 import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.transaction.BaseTransactionData;
@@ -21,6 +22,7 @@ import org.qortal.group.Group;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBATCodeCache;
 import org.qortal.test.common.AtUtils;
 import org.qortal.test.common.BlockUtils;
 import org.qortal.test.common.Common;
@@ -110,6 +112,31 @@ public class AtRepositoryTests extends Common {
 		}
 	}
 
+	@Test
+	public void testExecutableATsSharedCode() throws DataException {
+		byte[] creationBytes = AtUtils.buildSimpleAT();
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "alice");
+
+			long fundingAmount = 1_00000000L;
+			for (int i = 0; i < 5; ++i)
+				AtUtils.doDeployAT(repository, deployer, creationBytes, fundingAmount);
+
+			final long hitsBefore = HSQLDBATCodeCache.getStatsSnapshot().hits.get();
+
+			List<ATData> executableATs = repository.getATRepository().getAllExecutableATs();
+			assertEquals(5, executableATs.size());
+
+			for (ATData atData : executableATs)
+				assertArrayEquals(atData.getCodeHash(), Crypto.digest(atData.getCodeBytes()));
+
+			// All ATs share the same code, so at most one fetch from repository
+			final long hits = HSQLDBATCodeCache.getStatsSnapshot().hits.get() - hitsBefore;
+			assertTrue(hits >= executableATs.size() - 1);
+		}
+	}
+
 	@Test
 	public void testGetLatestATStatePostTrimming() throws DataException {
 		byte[] creationBytes = AtUtils.buildSimpleAT();
@@ -144,6 +171,58 @@ public class AtRepositoryTests extends Common {
 		}
 	}
 
+	@Test
+	public void testRefreshLatestATStates() throws DataException {
+		byte[] creationBytes = AtUtils.buildSimpleAT();
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "alice");
+
+			long fundingAmount = 1_00000000L;
+			DeployAtTransaction deployAtTransaction = AtUtils.doDeployAT(repository, deployer, creationBytes, fundingAmount);
+			String atAddress = deployAtTransaction.getATAccount().getAddress();
+
+			// Mint a few blocks
+			for (int i = 0; i < 10; ++i)
+				BlockUtils.mintBlock(repository);
+
+			// Journal hasn't been used yet, so needs full rebuild
+			assertEquals(-1, repository.getATRepository().refreshLatestAtStates());
+			// Nothing new since
+			assertEquals(0, repository.getATRepository().refreshLatestAtStates());
+
+			// Mint a few more blocks, so only our AT needs refreshing
+			for (int i = 0; i < 5; ++i)
+				BlockUtils.mintBlock(repository);
+
+			assertEquals(1, repository.getATRepository().refreshLatestAtStates());
+
+			int blockchainHeight = repository.getBlockRepository().getBlockchainHeight();
+			int maxTrimHeight = blockchainHeight - 4;
+			int maxHeight = blockchainHeight + 100; // more than latest block height
+
+			repository.getATRepository().trimAtStates(2, maxTrimHeight, 1000);
+
+			// Orphaning means cached latest AT state no longer exists, so cache needs rebuilding
+			BlockUtils.orphanBlocks(repository, 3);
+
+			assertEquals(-1, repository.getATRepository().refreshLatestAtStates());
+
+			// Prune in bounded batches, leaving latest AT state
+			int prunableHeight = blockchainHeight - 3;
+			assertEquals(1, repository.getATRepository().pruneAtStates(2, prunableHeight, 1));
+			while (repository.getATRepository().pruneAtStates(2, prunableHeight, 1) > 0)
+				continue;
+
+			repository.getATRepository().trimAtStates(2, maxHeight, 1000);
+
+			ATStateData atStateData = repository.getATRepository().getLatestATState(atAddress);
+			assertEquals(prunableHeight, atStateData.getHeight().intValue());
+			// We should always have the latest AT state data available
+			assertNotNull(atStateData.getStateData());
+		}
+	}
+
 	@Test
 	public void testOrphanTrimmedATStates() throws DataException {
 		byte[] creationBytes = AtUtils.buildSimpleAT();
@@ -2,6 +2,7 @@ package org.qortal.test.crosschain.litecoinv3;
 
 import com.google.common.hash.HashCode;
 import com.google.common.primitives.Bytes;
+import org.ciyam.at.MachineState;
 import org.junit.Before;
 import org.junit.Test;
 import org.qortal.account.Account;
@@ -9,8 +10,11 @@ import org.qortal.account.PrivateKeyAccount;
 import org.qortal.asset.Asset;
 import org.qortal.block.Block;
 import org.qortal.crosschain.AcctMode;
+import org.qortal.crosschain.CompletedTrades;
 import org.qortal.crosschain.LitecoinACCTv3;
+import org.qortal.crosschain.SupportedBlockchain;
 import org.qortal.crypto.Crypto;
+import org.qortal.data.TradeCandleData;
 import org.qortal.data.at.ATData;
 import org.qortal.data.at.ATStateData;
 import org.qortal.data.crosschain.CrossChainTradeData;
@@ -29,6 +33,7 @@ import org.qortal.transaction.DeployAtTransaction;
 import org.qortal.transaction.MessageTransaction;
 import org.qortal.utils.Amounts;
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -421,9 +426,23 @@ public class LitecoinACCTv3Tests extends Common {
 
 			assertEquals("Partner's post-redeem balance incorrect", expectedBalance, actualBalance);
 
+			// Check completed trade is in trade candles
+			for (TradeCandleData.Interval interval : TradeCandleData.Interval.values()) {
+				List<TradeCandleData> candles = repository.getCrossChainRepository().getTradeCandles(SupportedBlockchain.LITECOIN.name(), interval, null, null, null, null, null);
+				assertEquals(1, candles.size());
+				assertEquals(1, candles.get(0).getTradeCount());
+				assertEquals(litecoinAmount, candles.get(0).getVolume());
+				assertEquals(redeemAmount, candles.get(0).getOtherVolume());
+				assertEquals(Amounts.scaledDivide(redeemAmount, litecoinAmount), candles.get(0).getClose());
+			}
+
 			// Orphan redeem
 			BlockUtils.orphanLastBlock(repository);
 
+			// Check completed trade is no longer in trade candles
+			for (TradeCandleData.Interval interval : TradeCandleData.Interval.values())
+				assertTrue(repository.getCrossChainRepository().getTradeCandles(SupportedBlockchain.LITECOIN.name(), interval, null, null, null, null, null).isEmpty());
+
 			// Check balances
 			expectedBalance = partnersInitialBalance - messageTransaction.getTransactionData().getFee();
 			actualBalance = partner.getConfirmedBalance(Asset.QORT);
@@ -603,6 +622,52 @@ public class LitecoinACCTv3Tests extends Common {
 		}
 	}
 
+	@Test
+	public void testMalformedAt() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "chloe");
+			PrivateKeyAccount tradeAccount = createTradeAccount(repository);
+
+			// Same code as a genuine ACCT, hence same code hash, but data segment too short to hold trade info
+			byte[] genuineCreationBytes = LitecoinACCTv3.buildQortalAT(tradeAccount.getAddress(), litecoinPublicKeyHash, redeemAmount, litecoinAmount, tradeTimeout);
+			// Version 2 creation bytes: 20-byte header, including number of (1-byte) code pages at offset 4, then code bytes
+			int codeLength = ByteBuffer.wrap(genuineCreationBytes).getShort(4);
+			byte[] codeBytes = Arrays.copyOfRange(genuineCreationBytes, 20, 20 + codeLength);
+			assertTrue(Arrays.equals(LitecoinACCTv3.CODE_BYTES_HASH, Crypto.digest(codeBytes)));
+
+			byte[] creationBytes = MachineState.toCreationBytes((short) 2, codeBytes, new byte[MachineState.VALUE_SIZE], (short) 0, (short) 0, 0L);
+
+			DeployAtTransaction deployAtTransaction = doDeploy(repository, deployer, creationBytes);
+			String atAddress = deployAtTransaction.getATAccount().getAddress();
+
+			// AT should fail when it first runs, which must not prevent block from being processed
+			BlockUtils.mintBlock(repository);
+
+			ATData atData = repository.getATRepository().fromATAddress(atAddress);
+			assertTrue(atData.getIsFinished());
+
+			// Mode lies beyond end of AT's data segment
+			ATStateData atStateData = repository.getATRepository().getLatestATState(atAddress);
+			assertTrue(MachineState.HEADER_LENGTH + MachineState.VALUE_SIZE < LitecoinACCTv3.MODE_BYTE_OFFSET + Long.BYTES);
+
+			// Even if AT had finished without error, its short data segment mustn't be decoded as a trade
+			ATData cleanlyFinishedAtData = repository.getATRepository().fromATAddress(atAddress);
+			cleanlyFinishedAtData.setHadFatalError(false);
+			long timestamp = repository.getBlockRepository().getLastBlock().getTimestamp();
+			CompletedTrades.processAtState(repository, cleanlyFinishedAtData, false, atStateData, timestamp);
+
+			// No completed trade
+			for (TradeCandleData.Interval interval : TradeCandleData.Interval.values())
+				assertTrue(repository.getCrossChainRepository().getTradeCandles(SupportedBlockchain.LITECOIN.name(), interval, null, null, null, null, null).isEmpty());
+
+			// Orphaning AT's final block must not fail either
+			BlockUtils.orphanLastBlock(repository);
+
+			atData = repository.getATRepository().fromATAddress(atAddress);
+			assertFalse(atData.getIsFinished());
+		}
+	}
+
 	@SuppressWarnings("unused")
 	@Test
 	public void testDescribeDeployed() throws DataException {
@@ -646,6 +711,10 @@ public class LitecoinACCTv3Tests extends Common {
 	private DeployAtTransaction doDeploy(Repository repository, PrivateKeyAccount deployer, String tradeAddress) throws DataException {
 		byte[] creationBytes = LitecoinACCTv3.buildQortalAT(tradeAddress, litecoinPublicKeyHash, redeemAmount, litecoinAmount, tradeTimeout);
 
+		return doDeploy(repository, deployer, creationBytes);
+	}
+
+	private DeployAtTransaction doDeploy(Repository repository, PrivateKeyAccount deployer, byte[] creationBytes) throws DataException {
 		long txTimestamp = System.currentTimeMillis();
 		byte[] lastReference = deployer.getLastReference();
 
@@ -2,6 +2,8 @@ package org.qortal.test.minting;
 
 import static org.junit.Assert.*;
 
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -11,6 +13,7 @@ import org.qortal.data.transaction.TransactionData;
 import org.qortal.repository.DataException;
 import org.qortal.repository.Repository;
 import org.qortal.repository.RepositoryManager;
+import org.qortal.repository.hsqldb.HSQLDBRewardShareIndex;
 import org.qortal.test.common.AccountUtils;
 import org.qortal.test.common.BlockUtils;
 import org.qortal.test.common.Common;
@@ -111,6 +114,61 @@ public class RewardShareTests extends Common {
 		}
 	}
 
+	@Test
+	public void testRewardShareIndex() throws DataException {
+		final int sharePercent = 12_80; // 12.80%
+
+		try (final Repository repository = RepositoryManager.getRepository();
+				final Repository otherRepository = RepositoryManager.getRepository()) {
+			// Start other session's transaction
+			List<byte[]> initialPublicKeys = otherRepository.getAccountRepository().getRewardSharePublicKeys();
+
+			// Create reward-share
+			byte[] rewardSharePrivateKey = AccountUtils.rewardShare(repository, "alice", "bob", sharePercent);
+			byte[] rewardSharePublicKey = new PrivateKeyAccount(repository, rewardSharePrivateKey).getPublicKey();
+
+			// Other session's transaction predates new reward-share, so it shouldn't be visible
+			assertNull("Reward-share shouldn't be visible", otherRepository.getAccountRepository().getRewardShare(rewardSharePublicKey));
+			assertEquals(initialPublicKeys.size(), otherRepository.getAccountRepository().getRewardSharePublicKeys().size());
+
+			// New transaction should see new reward-share, via index
+			otherRepository.discardChanges();
+
+			final long hitsBefore = HSQLDBRewardShareIndex.getStatsSnapshot().hits.get();
+
+			assertNotNull("Reward-share should be visible", otherRepository.getAccountRepository().getRewardShare(rewardSharePublicKey));
+
+			List<byte[]> rewardSharePublicKeys = otherRepository.getAccountRepository().getRewardSharePublicKeys();
+			assertEquals(initialPublicKeys.size() + 1, rewardSharePublicKeys.size());
+
+			// Indexes and public keys should agree
+			int[] indexes = new int[rewardSharePublicKeys.size()];
+			for (int i = 0; i < indexes.length; ++i) {
+				byte[] publicKey = rewardSharePublicKeys.get(i);
+
+				assertEquals(Integer.valueOf(i), otherRepository.getAccountRepository().getRewardShareIndex(publicKey));
+				assertArrayEquals(publicKey, otherRepository.getAccountRepository().getRewardShareByIndex(i).getRewardSharePublicKey());
+				indexes[i] = i;
+			}
+
+			List<RewardShareData> rewardShares = otherRepository.getAccountRepository().getRewardSharesByIndexes(indexes);
+			for (int i = 0; i < indexes.length; ++i)
+				assertArrayEquals(rewardSharePublicKeys.get(i), rewardShares.get(i).getRewardSharePublicKey());
+
+			assertNull("Out-of-bounds index should return null", otherRepository.getAccountRepository().getRewardSharesByIndexes(new int[] { indexes.length }));
+
+			assertTrue("Reward-share index should have been used", HSQLDBRewardShareIndex.getStatsSnapshot().hits.get() > hitsBefore);
+
+			// Orphan block to remove reward-share
+			BlockUtils.orphanLastBlock(repository);
+
+			otherRepository.discardChanges();
+			assertNull("Reward-share shouldn't exist", otherRepository.getAccountRepository().getRewardShare(rewardSharePublicKey));
+			assertFalse("Reward-share shouldn't exist", otherRepository.getAccountRepository().rewardShareExists(rewardSharePublicKey));
+			assertEquals(initialPublicKeys.size(), otherRepository.getAccountRepository().getRewardSharePublicKeys().size());
+		}
+	}
+
 	@Test
 	public void testNegativeInitialShareInvalid() throws DataException {
 		try (final Repository repository = RepositoryManager.getRepository()) {
@@ -0,0 +1,140 @@
+package org.qortal.test.network;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
+import org.junit.Test;
+import org.qortal.data.network.OnlineAccountData;
+import org.qortal.network.ByteBufferPool;
+import org.qortal.network.PeerSendQueue;
+import org.qortal.network.message.*;
+import org.qortal.transform.Transformer;
+
+import java.nio.ByteBuffer;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BroadcastTests {
+
+    private static final Random RANDOM = new Random();
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    static {
+        // This must go before any calls to LogManager/Logger
+        System.setProperty("java.util.logging.manager", "org.apache.logging.log4j.jul.LogManager");
+
+        Security.insertProviderAt(new BouncyCastleProvider(), 0);
+        Security.insertProviderAt(new BouncyCastleJsseProvider(), 1);
+    }
+
+    @Test
+    public void testPreSerialization() throws Message.MessageException {
+        ByteBufferPool pool = new ByteBufferPool(MAX_BUFFER_SIZE);
+
+        Message message = randomOnlineAccountsMessage(10);
+        byte[] expectedBytes = message.toBytes();
+
+        message.preSerialize();
+        assertTrue(message.isPreSerialized());
+
+        assertArrayEquals(expectedBytes, message.toBytes());
+        assertArrayEquals(expectedBytes, pooledBytes(message, pool));
+    }
+
+    @Test
+    public void testIdPatching() throws Message.MessageException {
+        ByteBufferPool pool = new ByteBufferPool(MAX_BUFFER_SIZE);
+
+        Message message = new GetArbitraryMetadataMessage(randomBytes(Transformer.SIGNATURE_LENGTH), 1000L, 0);
+        message.setId(1234);
+        message.preSerialize();
+
+        // Changing ID should be reflected in shared bytes
+        message.setId(5678);
+        Message messageIn = Message.fromByteBuffer(ByteBuffer.wrap(pooledBytes(message, pool)));
+        assertNotNull(messageIn);
+        assertEquals(5678, messageIn.getId());
+
+        // Removing ID changes message length, so falls back to full serialization
+        message.setId(-1);
+        messageIn = Message.fromByteBuffer(ByteBuffer.wrap(message.toBytes()));
+        assertNotNull(messageIn);
+        assertFalse(messageIn.hasId());
+    }
+
+    /**
+     * Compares serializing per peer, as previous broadcaster did (ignoring its sleeps),
+     * against serializing once and sharing bytes, for 300 peers.
+     */
+    @Test
+    public void testFanOut() throws Message.MessageException {
+        final int peerCount = 300;
+        ByteBufferPool pool = new ByteBufferPool(MAX_BUFFER_SIZE);
+
+        List<PeerSendQueue> sendQueues = new ArrayList<>(peerCount);
+        for (int i = 0; i < peerCount; ++i)
+            sendQueues.add(new PeerSendQueue());
+
+        for (boolean preSerialize : new boolean[] { false, true }) {
+            Message message = randomOnlineAccountsMessage(500);
+            byte[] expectedBytes = message.toBytes();
+
+            long before = System.nanoTime();
+
+            if (preSerialize)
+                message.preSerialize();
+
+            for (PeerSendQueue sendQueue : sendQueues)
+                assertTrue(sendQueue.offer(message, Long.MAX_VALUE));
+
+            // Simulate each peer's network thread draining its queue
+            final long now = System.currentTimeMillis();
+            long totalBytes = 0;
+            for (PeerSendQueue sendQueue : sendQueues) {
+                Message queuedMessage = sendQueue.poll(now);
+
+                ByteBuffer outputBuffer = queuedMessage.toPooledBuffer(pool);
+                totalBytes += outputBuffer.remaining();
+                pool.release(outputBuffer);
+            }
+
+            long duration = (System.nanoTime() - before) / 1000L;
+
+            System.out.println(String.format("%s: %d peers, %d KiB in %dus",
+                    preSerialize ? "Serialized once" : "Serialized per peer",
+                    peerCount, totalBytes / 1024, duration));
+
+            assertEquals((long) expectedBytes.length * peerCount, totalBytes);
+            assertArrayEquals(expectedBytes, pooledBytes(message, pool));
+        }
+    }
+
+    private static byte[] pooledBytes(Message message, ByteBufferPool pool) throws Message.MessageException {
+        ByteBuffer pooledBuffer = message.toPooledBuffer(pool);
+        byte[] bytes = new byte[pooledBuffer.remaining()];
+        pooledBuffer.get(bytes);
+        pool.release(pooledBuffer);
+
+        return bytes;
+    }
+
+    private static OnlineAccountsV2Message randomOnlineAccountsMessage(int count) {
+        final long timestamp = System.currentTimeMillis();
+
+        List<OnlineAccountData> onlineAccounts = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            onlineAccounts.add(new OnlineAccountData(timestamp, randomBytes(Transformer.SIGNATURE_LENGTH), randomBytes(Transformer.PUBLIC_KEY_LENGTH)));
+
+        return new OnlineAccountsV2Message(onlineAccounts);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+}
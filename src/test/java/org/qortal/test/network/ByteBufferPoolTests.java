@@ -0,0 +1,280 @@
+package org.qortal.test.network;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
+import org.junit.Test;
+import org.qortal.network.ByteBufferPool;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.PingMessage;
+import org.qortal.network.message.TransactionSignaturesMessage;
+import org.qortal.test.common.FakePeer;
+import org.qortal.test.common.PeerMessage;
+import org.qortal.transform.Transformer;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ByteBufferPoolTests {
+
+    private static final Random RANDOM = new Random();
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    static {
+        // This must go before any calls to LogManager/Logger
+        System.setProperty("java.util.logging.manager", "org.apache.logging.log4j.jul.LogManager");
+
+        Security.insertProviderAt(new BouncyCastleProvider(), 0);
+        Security.insertProviderAt(new BouncyCastleJsseProvider(), 1);
+    }
+
+    @Test
+    public void testAcquireAndReuse() {
+        ByteBufferPool pool = new ByteBufferPool(MAX_BUFFER_SIZE);
+
+        ByteBuffer buffer = pool.acquire(100);
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteBufferPool.MIN_BUFFER_SIZE, buffer.capacity());
+
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        // Same size class should reuse released buffer, cleared
+        ByteBuffer reusedBuffer = pool.acquire(ByteBufferPool.MIN_BUFFER_SIZE);
+        assertSame(buffer, reusedBuffer);
+        assertEquals(0, reusedBuffer.position());
+
+        // Larger size class
+        ByteBuffer largerBuffer = pool.acquire(ByteBufferPool.MIN_BUFFER_SIZE + 1);
+        assertEquals(ByteBufferPool.MIN_BUFFER_SIZE * 2, largerBuffer.capacity());
+
+        // Too big to pool
+        ByteBuffer hugeBuffer = pool.acquire(MAX_BUFFER_SIZE * 2);
+        assertFalse(hugeBuffer.isDirect());
+
+        ByteBufferPool.StatsSnapshot stats = pool.getStatsSnapshot();
+        assertEquals(4, stats.acquiredCount);
+        assertEquals(1, stats.reusedCount);
+        assertEquals(2, stats.allocatedCount);
+        assertEquals(1, stats.unpooledCount);
+    }
+
+    @Test
+    public void testGrow() {
+        ByteBufferPool pool = new ByteBufferPool(MAX_BUFFER_SIZE);
+
+        byte[] data = randomBytes(ByteBufferPool.MIN_BUFFER_SIZE);
+
+        ByteBuffer buffer = pool.acquire(data.length);
+        buffer.put(data);
+
+        ByteBuffer grownBuffer = pool.grow(buffer, data.length * 4);
+        assertEquals(data.length * 4, grownBuffer.capacity());
+        assertEquals(data.length, grownBuffer.position());
+
+        byte[] grownData = new byte[data.length];
+        grownBuffer.flip().get(grownData);
+        assertArrayEquals(data, grownData);
+
+        // Original buffer should have been returned to pool
+        assertEquals(1, pool.getStatsSnapshot().pooledBuffers);
+    }
+
+    @Test
+    public void testIdleEviction() {
+        ByteBufferPool pool = new ByteBufferPool(MAX_BUFFER_SIZE);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 10; ++i)
+            buffers.add(pool.acquire(RANDOM.nextInt(MAX_BUFFER_SIZE)));
+
+        buffers.forEach(pool::release);
+        assertEquals(10, pool.getStatsSnapshot().pooledBuffers);
+
+        // Not idle for long enough yet
+        pool.evictIdle(System.currentTimeMillis());
+        assertEquals(10, pool.getStatsSnapshot().pooledBuffers);
+
+        pool.evictIdle(System.currentTimeMillis() + ByteBufferPool.IDLE_TIMEOUT + 1);
+        ByteBufferPool.StatsSnapshot stats = pool.getStatsSnapshot();
+        assertEquals(0, stats.pooledBuffers);
+        assertEquals(0, stats.pooledBytes);
+        assertEquals(10, stats.evictedCount);
+    }
+
+    @Test
+    public void testPooledSerialization() throws Message.MessageException {
+        ByteBufferPool pool = new ByteBufferPool(MAX_BUFFER_SIZE);
+
+        for (Message message : Arrays.asList(new PingMessage(), randomSignaturesMessage(100))) {
+            message.setId(RANDOM.nextInt(Integer.MAX_VALUE - 1) + 1);
+
+            byte[] expectedBytes = message.toBytes();
+
+            ByteBuffer pooledBuffer = message.toPooledBuffer(pool);
+            byte[] actualBytes = new byte[pooledBuffer.remaining()];
+            pooledBuffer.get(actualBytes);
+            pool.release(pooledBuffer);
+
+            assertArrayEquals(expectedBytes, actualBytes);
+        }
+    }
+
+    /**
+     * Compares heap and GC use of previous buffer handling against pooled buffers, for 200 simulated peers.
+     * <p>
+     * Legacy read buffers are scaled down to {@link #MAX_BUFFER_SIZE}, rather than max message size, to keep test heap modest.
+     */
+    @Test
+    public void testSimulatedPeers() throws Message.MessageException {
+        final int peerCount = 200;
+        final int rounds = 50;
+
+        for (boolean usePool : new boolean[] { false, true }) {
+            ByteBufferPool pool = new ByteBufferPool(MAX_BUFFER_SIZE);
+
+            List<BufferedPeer> peers = new ArrayList<>(peerCount);
+            for (int i = 0; i < peerCount; ++i)
+                peers.add(new BufferedPeer(i, pool, usePool));
+
+            // Each peer connects to 8 random others
+            for (BufferedPeer peer : peers)
+                for (int c = 0; c < 8; ++c)
+                    peer.connect(peers.get(RANDOM.nextInt(peerCount)));
+
+            System.gc();
+            MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+            long heapBefore = memoryBean.getHeapMemoryUsage().getUsed();
+            long gcCountBefore = totalGcCount();
+            long gcTimeBefore = totalGcTime();
+            long before = System.currentTimeMillis();
+
+            for (int round = 0; round < rounds; ++round) {
+                for (BufferedPeer peer : peers)
+                    peer.broadcastRandomMessage();
+
+                for (BufferedPeer peer : peers)
+                    peer.processPendingMessages();
+            }
+
+            long duration = System.currentTimeMillis() - before;
+            long heapAfter = memoryBean.getHeapMemoryUsage().getUsed();
+            long messageCount = peers.stream().mapToLong(peer -> peer.messagesProcessed).sum();
+
+            System.out.println(String.format("%s buffers, %d peers, %d messages in %dms: heap delta %d KiB, GC count %d, GC time %dms",
+                    usePool ? "Pooled" : "Legacy",
+                    peerCount, messageCount, duration,
+                    (heapAfter - heapBefore) / 1024,
+                    totalGcCount() - gcCountBefore,
+                    totalGcTime() - gcTimeBefore));
+
+            if (usePool) {
+                ByteBufferPool.StatsSnapshot stats = pool.getStatsSnapshot();
+                System.out.println(String.format("Pool: %d acquired, %d reused, %d allocated (%d KiB direct), %d pooled",
+                        stats.acquiredCount, stats.reusedCount, stats.allocatedCount, stats.allocatedBytes / 1024, stats.pooledBuffers));
+
+                // Idle peers don't hold on to buffers
+                assertEquals(stats.pooledBuffers, stats.allocatedCount - stats.evictedCount);
+            }
+
+            // Keep peers, and their legacy buffers, reachable until measured
+            assertEquals(peerCount, peers.size());
+        }
+    }
+
+    private static class BufferedPeer extends FakePeer {
+        private final ByteBufferPool pool;
+        private final boolean usePool;
+
+        /** Legacy: read buffer held for lifetime of connection */
+        private ByteBuffer legacyReadBuffer;
+
+        long messagesProcessed = 0;
+
+        public BufferedPeer(int id, ByteBufferPool pool, boolean usePool) {
+            super(id);
+            this.pool = pool;
+            this.usePool = usePool;
+        }
+
+        void broadcastRandomMessage() {
+            Message message = RANDOM.nextBoolean() ? new PingMessage() : randomSignaturesMessage(1 + RANDOM.nextInt(20));
+            this.broadcast(message);
+        }
+
+        void processPendingMessages() throws Message.MessageException {
+            PeerMessage peerMessage;
+            while ((peerMessage = this.pendingMessages.poll()) != null)
+                this.processBytes(peerMessage.message);
+        }
+
+        @Override
+        protected void processMessage(FakePeer peer, Message message) {
+            // Driven synchronously by processPendingMessages() instead
+        }
+
+        @Override
+        protected void performIdleTasks() {
+        }
+
+        /** Simulates sending peer serializing message, then us reading those bytes into read buffer and decoding. */
+        private void processBytes(Message message) throws Message.MessageException {
+            ByteBuffer readBuffer;
+
+            if (this.usePool) {
+                ByteBuffer outputBuffer = message.toPooledBuffer(this.pool);
+
+                readBuffer = this.pool.acquire(outputBuffer.remaining());
+                readBuffer.put(outputBuffer);
+                this.pool.release(outputBuffer);
+            } else {
+                ByteBuffer outputBuffer = ByteBuffer.wrap(message.toBytes());
+
+                if (this.legacyReadBuffer == null)
+                    this.legacyReadBuffer = ByteBuffer.allocate(MAX_BUFFER_SIZE);
+
+                readBuffer = this.legacyReadBuffer;
+                readBuffer.put(outputBuffer);
+            }
+
+            Message decodedMessage = Message.fromByteBuffer(readBuffer.asReadOnlyBuffer().flip());
+            assertNotNull(decodedMessage);
+            ++this.messagesProcessed;
+
+            readBuffer.clear();
+            if (this.usePool)
+                this.pool.release(readBuffer);
+        }
+    }
+
+    private static TransactionSignaturesMessage randomSignaturesMessage(int count) {
+        List<byte[]> signatures = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            signatures.add(randomBytes(Transformer.SIGNATURE_LENGTH));
+
+        return new TransactionSignaturesMessage(signatures);
+    }
+
+    private static long totalGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long totalGcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+}
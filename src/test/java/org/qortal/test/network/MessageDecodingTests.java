@@ -0,0 +1,95 @@
+package org.qortal.test.network;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
+import org.junit.Test;
+import org.qortal.network.message.HeightV2Message;
+import org.qortal.network.message.Message;
+import org.qortal.network.message.PingMessage;
+import org.qortal.network.message.TransactionSignaturesMessage;
+import org.qortal.transform.Transformer;
+
+import java.nio.ByteBuffer;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MessageDecodingTests {
+
+    private static final Random RANDOM = new Random();
+
+    static {
+        // This must go before any calls to LogManager/Logger
+        System.setProperty("java.util.logging.manager", "org.apache.logging.log4j.jul.LogManager");
+
+        Security.insertProviderAt(new BouncyCastleProvider(), 0);
+        Security.insertProviderAt(new BouncyCastleJsseProvider(), 1);
+    }
+
+    @Test
+    public void testDirectBufferRoundTrip() throws Message.MessageException {
+        List<byte[]> signatures = new ArrayList<>();
+        for (int i = 0; i < 50; ++i)
+            signatures.add(randomBytes(Transformer.SIGNATURE_LENGTH));
+
+        Message messageOut = new TransactionSignaturesMessage(signatures);
+        messageOut.setId(1234);
+
+        TransactionSignaturesMessage messageIn = (TransactionSignaturesMessage) decodeFromDirectBuffer(messageOut.toBytes());
+
+        assertNotNull(messageIn);
+        assertEquals(1234, messageIn.getId());
+        assertEquals(signatures.size(), messageIn.getSignatures().size());
+        for (int i = 0; i < signatures.size(); ++i)
+            assertArrayEquals(signatures.get(i), messageIn.getSignatures().get(i));
+    }
+
+    @Test
+    public void testEmptyPayload() throws Message.MessageException {
+        Message messageIn = decodeFromDirectBuffer(new PingMessage().toBytes());
+
+        assertTrue(messageIn instanceof PingMessage);
+        assertFalse(messageIn.hasId());
+    }
+
+    @Test
+    public void testIncompleteMessage() throws Message.MessageException {
+        byte[] messageBytes = new HeightV2Message(123, randomBytes(Transformer.SIGNATURE_LENGTH), 1600000000000L, randomBytes(Transformer.PUBLIC_KEY_LENGTH)).toBytes();
+
+        // Every truncation should simply report "not yet complete"
+        for (int length = 0; length < messageBytes.length; ++length) {
+            byte[] truncatedBytes = new byte[length];
+            System.arraycopy(messageBytes, 0, truncatedBytes, 0, length);
+
+            assertNull(decodeFromDirectBuffer(truncatedBytes));
+        }
+
+        assertNotNull(decodeFromDirectBuffer(messageBytes));
+    }
+
+    @Test(expected = Message.MessageException.class)
+    public void testIncorrectMagic() throws Message.MessageException {
+        byte[] messageBytes = new PingMessage().toBytes();
+        messageBytes[0] ^= 0x01;
+
+        decodeFromDirectBuffer(messageBytes);
+    }
+
+    /** Decodes from read-only view of direct buffer, as Peer does with pooled read buffer. */
+    private static Message decodeFromDirectBuffer(byte[] messageBytes) throws Message.MessageException {
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(messageBytes.length + 64);
+        directBuffer.put(messageBytes);
+
+        return Message.fromByteBuffer(directBuffer.asReadOnlyBuffer().flip());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+}
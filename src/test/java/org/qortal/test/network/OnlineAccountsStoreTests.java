@@ -0,0 +1,157 @@
+package org.qortal.test.network;
+
+import org.junit.Test;
+import org.qortal.controller.OnlineAccountsStore;
+import org.qortal.data.network.OnlineAccountData;
+import org.qortal.transform.Transformer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OnlineAccountsStoreTests {
+
+    private static final Random RANDOM = new Random();
+    private static final long TIMESTAMP_MODULUS = 5 * 60 * 1000L;
+
+    @Test
+    public void testAddAndReplace() {
+        OnlineAccountsStore store = new OnlineAccountsStore();
+        byte[] publicKey = randomBytes(Transformer.PUBLIC_KEY_LENGTH);
+
+        OnlineAccountData olderAccountData = new OnlineAccountData(TIMESTAMP_MODULUS, randomBytes(Transformer.SIGNATURE_LENGTH), publicKey);
+        OnlineAccountData newerAccountData = new OnlineAccountData(2 * TIMESTAMP_MODULUS, randomBytes(Transformer.SIGNATURE_LENGTH), publicKey);
+
+        assertTrue(store.addOrUpdate(olderAccountData));
+        assertTrue(store.contains(olderAccountData));
+
+        // Newer entry replaces older
+        assertTrue(store.addOrUpdate(newerAccountData));
+        assertFalse(store.contains(olderAccountData));
+        assertTrue(store.contains(newerAccountData));
+        assertEquals(1, store.size());
+
+        // Older entry doesn't replace newer
+        assertFalse(store.addOrUpdate(olderAccountData));
+        assertTrue(store.contains(newerAccountData));
+
+        // Buckets are updated too
+        assertTrue(store.getByTimestamp(TIMESTAMP_MODULUS).isEmpty());
+        assertEquals(1, store.getByTimestamp(2 * TIMESTAMP_MODULUS).size());
+    }
+
+    @Test
+    public void testExpiry() {
+        OnlineAccountsStore store = new OnlineAccountsStore();
+
+        List<OnlineAccountData> olderAccounts = generateOnlineAccounts(TIMESTAMP_MODULUS, 100);
+        List<OnlineAccountData> newerAccounts = generateOnlineAccounts(2 * TIMESTAMP_MODULUS, 100);
+
+        olderAccounts.forEach(store::addOrUpdate);
+        newerAccounts.forEach(store::addOrUpdate);
+        assertEquals(200, store.size());
+
+        List<OnlineAccountData> expiredAccounts = store.expire(2 * TIMESTAMP_MODULUS);
+        assertEquals(100, expiredAccounts.size());
+        assertTrue(expiredAccounts.containsAll(olderAccounts));
+
+        assertEquals(100, store.size());
+        assertTrue(store.getByTimestamp(TIMESTAMP_MODULUS).isEmpty());
+        assertTrue(store.getByTimestamp(2 * TIMESTAMP_MODULUS).containsAll(newerAccounts));
+    }
+
+    @Test
+    public void testAddAfterExpiry() {
+        OnlineAccountsStore store = new OnlineAccountsStore();
+
+        store.expire(2 * TIMESTAMP_MODULUS);
+
+        // Entries older than expiry cutoff aren't added, and don't recreate expired buckets
+        List<OnlineAccountData> olderAccounts = generateOnlineAccounts(TIMESTAMP_MODULUS, 10);
+        for (OnlineAccountData onlineAccountData : olderAccounts)
+            assertFalse(store.addOrUpdate(onlineAccountData));
+
+        assertEquals(0, store.size());
+        assertTrue(store.getByTimestamp(TIMESTAMP_MODULUS).isEmpty());
+
+        List<OnlineAccountData> newerAccounts = generateOnlineAccounts(2 * TIMESTAMP_MODULUS, 10);
+        for (OnlineAccountData onlineAccountData : newerAccounts)
+            assertTrue(store.addOrUpdate(onlineAccountData));
+
+        assertEquals(10, store.size());
+    }
+
+    @Test
+    public void testConcurrentImportAndExpiry() throws InterruptedException {
+        OnlineAccountsStore store = new OnlineAccountsStore();
+
+        final int threadCount = 8;
+        final int accountsPerThread = 5000;
+
+        List<List<OnlineAccountData>> accountsByThread = new ArrayList<>();
+        for (int t = 0; t < threadCount; ++t)
+            accountsByThread.add(generateOnlineAccounts(TIMESTAMP_MODULUS, accountsPerThread));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount + 1);
+
+        for (List<OnlineAccountData> accounts : accountsByThread)
+            executor.execute(() -> accounts.forEach(store::addOrUpdate));
+
+        executor.execute(() -> store.expire(2 * TIMESTAMP_MODULUS));
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        // Whether added before or after expiry, no entries or buckets should remain
+        assertEquals(0, store.size());
+        assertTrue(store.getByTimestamp(TIMESTAMP_MODULUS).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentImport() throws InterruptedException {
+        OnlineAccountsStore store = new OnlineAccountsStore();
+
+        final int threadCount = 8;
+        final int accountsPerThread = 5000;
+
+        List<List<OnlineAccountData>> accountsByThread = new ArrayList<>();
+        for (int t = 0; t < threadCount; ++t)
+            accountsByThread.add(generateOnlineAccounts(TIMESTAMP_MODULUS, accountsPerThread));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        long before = System.currentTimeMillis();
+        for (List<OnlineAccountData> accounts : accountsByThread)
+            executor.execute(() -> accounts.forEach(store::addOrUpdate));
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        long duration = System.currentTimeMillis() - before;
+
+        assertEquals(threadCount * accountsPerThread, store.size());
+        assertEquals(threadCount * accountsPerThread, store.getByTimestamp(TIMESTAMP_MODULUS).size());
+
+        System.out.println(String.format("Imported %d online accounts using %d threads in %dms", threadCount * accountsPerThread, threadCount, duration));
+    }
+
+    private static List<OnlineAccountData> generateOnlineAccounts(long timestamp, int count) {
+        List<OnlineAccountData> onlineAccounts = new ArrayList<>(count);
+
+        for (int a = 0; a < count; ++a)
+            onlineAccounts.add(new OnlineAccountData(timestamp, randomBytes(Transformer.SIGNATURE_LENGTH), randomBytes(Transformer.PUBLIC_KEY_LENGTH)));
+
+        return onlineAccounts;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+}
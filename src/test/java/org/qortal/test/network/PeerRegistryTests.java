@@ -0,0 +1,188 @@
+package org.qortal.test.network;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.Test;
+import org.qortal.data.network.PeerData;
+import org.qortal.network.Peer;
+import org.qortal.network.PeerAddress;
+import org.qortal.network.PeerRegistry;
+import org.qortal.transform.Transformer;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PeerRegistryTests {
+
+    private static final Random RANDOM = new Random();
+
+    @Test
+    public void testAddAndRemoveConnected() throws IllegalAccessException, IOException {
+        PeerRegistry peerRegistry = new PeerRegistry();
+
+        List<Peer> peers = new ArrayList<>();
+        for (int i = 1; i <= 3; ++i) {
+            Peer peer = newPeer(i);
+            FieldUtils.writeField(peer, "socketChannel", SocketChannel.open(), true);
+
+            peers.add(peer);
+            peerRegistry.addConnectedPeer(peer);
+        }
+
+        // Snapshot is in connection order, and doesn't change as peers are added/removed
+        List<Peer> snapshot = peerRegistry.getConnectedPeers();
+        assertEquals(peers, snapshot);
+
+        for (Peer peer : peers)
+            assertSame(peer, peerRegistry.getConnectedPeerByChannel(peer.getSocketChannel()));
+
+        Peer removedPeer = peers.remove(1);
+        peerRegistry.removeConnectedPeer(removedPeer);
+
+        assertEquals(3, snapshot.size());
+        assertEquals(peers, peerRegistry.getConnectedPeers());
+        assertNull(peerRegistry.getConnectedPeerByChannel(removedPeer.getSocketChannel()));
+
+        // Removing again is harmless
+        peerRegistry.removeConnectedPeer(removedPeer);
+        assertEquals(peers, peerRegistry.getConnectedPeers());
+
+        for (Peer peer : peers)
+            peer.getSocketChannel().close();
+        removedPeer.getSocketChannel().close();
+    }
+
+    @Test
+    public void testAddAndRemoveHandshaked() throws IllegalAccessException {
+        PeerRegistry peerRegistry = new PeerRegistry();
+
+        Peer peer = newPeer(1);
+        byte[] publicKey = setPublicKey(peer);
+
+        peerRegistry.addConnectedPeer(peer);
+        assertNull(peerRegistry.getHandshakedPeerByPublicKey(publicKey));
+        assertTrue(peerRegistry.getHandshakedPeers().isEmpty());
+
+        assertSame(peer, peerRegistry.addHandshakedPeer(peer));
+        assertSame(peer, peerRegistry.getHandshakedPeerByPublicKey(publicKey));
+        assertEquals(List.of(peer), peerRegistry.getHandshakedPeers());
+        // Peers constructed from peer data are outbound
+        assertEquals(List.of(peer), peerRegistry.getOutboundHandshakedPeers());
+
+        // Removing connected peer also removes it from handshaked peers and index
+        peerRegistry.removeConnectedPeer(peer);
+
+        assertNull(peerRegistry.getHandshakedPeerByPublicKey(publicKey));
+        assertTrue(peerRegistry.getHandshakedPeers().isEmpty());
+        assertTrue(peerRegistry.getOutboundHandshakedPeers().isEmpty());
+        assertTrue(peerRegistry.getConnectedPeers().isEmpty());
+
+        assertNull(peerRegistry.getHandshakedPeerByPublicKey(null));
+    }
+
+    @Test
+    public void testDuplicatePublicKey() throws IllegalAccessException {
+        PeerRegistry peerRegistry = new PeerRegistry();
+
+        Peer peer = newPeer(1);
+        byte[] publicKey = setPublicKey(peer);
+
+        Peer duplicatePeer = newPeer(2);
+        FieldUtils.writeField(duplicatePeer, "peersPublicKey", publicKey.clone(), true);
+
+        peerRegistry.addConnectedPeer(peer);
+        peerRegistry.addConnectedPeer(duplicatePeer);
+
+        assertSame(peer, peerRegistry.addHandshakedPeer(peer));
+
+        // Second peer with same public key isn't added, and existing peer is returned instead
+        assertSame(peer, peerRegistry.addHandshakedPeer(duplicatePeer));
+        assertEquals(List.of(peer), peerRegistry.getHandshakedPeers());
+
+        // Removing duplicate peer mustn't remove existing peer from index
+        peerRegistry.removeConnectedPeer(duplicatePeer);
+
+        assertSame(peer, peerRegistry.getHandshakedPeerByPublicKey(publicKey));
+        assertEquals(List.of(peer), peerRegistry.getHandshakedPeers());
+        assertEquals(List.of(peer), peerRegistry.getConnectedPeers());
+    }
+
+    @Test
+    public void testConcurrentAddAndRemove() throws IllegalAccessException, InterruptedException {
+        PeerRegistry peerRegistry = new PeerRegistry();
+
+        final int threadCount = 8;
+        final int peersPerThread = 250;
+
+        List<List<Peer>> peersByThread = new ArrayList<>();
+        for (int t = 0; t < threadCount; ++t) {
+            List<Peer> peers = new ArrayList<>();
+
+            for (int i = 0; i < peersPerThread; ++i) {
+                Peer peer = newPeer(t * peersPerThread + i);
+                setPublicKey(peer);
+                peers.add(peer);
+            }
+
+            peersByThread.add(peers);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        // Each thread connects and handshakes all its peers, then disconnects every other peer
+        for (List<Peer> peers : peersByThread)
+            executor.execute(() -> {
+                for (Peer peer : peers) {
+                    peerRegistry.addConnectedPeer(peer);
+                    peerRegistry.addHandshakedPeer(peer);
+
+                    // Readers shouldn't be affected by concurrent changes
+                    peerRegistry.getHandshakedPeers().size();
+                }
+
+                for (int i = 0; i < peers.size(); i += 2)
+                    peerRegistry.removeConnectedPeer(peers.get(i));
+            });
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        final int expectedPeerCount = threadCount * peersPerThread / 2;
+        assertEquals(expectedPeerCount, peerRegistry.getConnectedPeers().size());
+        assertEquals(expectedPeerCount, peerRegistry.getHandshakedPeers().size());
+        assertEquals(expectedPeerCount, peerRegistry.getOutboundHandshakedPeers().size());
+
+        // Indexes should agree with peer sets
+        for (List<Peer> peers : peersByThread)
+            for (int i = 0; i < peers.size(); ++i) {
+                Peer peer = peers.get(i);
+                Peer indexedPeer = peerRegistry.getHandshakedPeerByPublicKey(peer.getPeersPublicKey());
+
+                if (i % 2 == 0)
+                    assertNull(indexedPeer);
+                else
+                    assertSame(peer, indexedPeer);
+            }
+    }
+
+    private static Peer newPeer(int id) {
+        return new Peer(new PeerData(PeerAddress.fromString(String.format("127.0.%d.%d:12392", id / 256, id % 256))));
+    }
+
+    private static byte[] setPublicKey(Peer peer) throws IllegalAccessException {
+        byte[] publicKey = new byte[Transformer.PUBLIC_KEY_LENGTH];
+        RANDOM.nextBytes(publicKey);
+
+        FieldUtils.writeField(peer, "peersPublicKey", publicKey, true);
+
+        return publicKey;
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.qortal.test.network;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
+import org.junit.Test;
+import org.qortal.network.PeerSendQueue;
+import org.qortal.network.message.*;
+import org.qortal.transform.Transformer;
+
+import java.security.Security;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PeerSendQueueTests {
+
+    private static final Random RANDOM = new Random();
+    private static final long DEADLINE = Long.MAX_VALUE;
+
+    static {
+        // This must go before any calls to LogManager/Logger
+        System.setProperty("java.util.logging.manager", "org.apache.logging.log4j.jul.LogManager");
+
+        // Queued messages are serialized, which needs network's message magic
+        Security.insertProviderAt(new BouncyCastleProvider(), 0);
+        Security.insertProviderAt(new BouncyCastleJsseProvider(), 1);
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        PeerSendQueue sendQueue = new PeerSendQueue();
+
+        Message arbitraryMessage = new GetArbitraryDataMessage(randomBytes(Transformer.SIGNATURE_LENGTH));
+        Message transactionSignaturesMessage = new TransactionSignaturesMessage(Collections.singletonList(randomBytes(Transformer.SIGNATURE_LENGTH)));
+        Message pingMessage = new PingMessage();
+        Message getBlockMessage = new GetBlockMessage(randomBytes(Transformer.SIGNATURE_LENGTH));
+
+        // Queue in reverse priority order
+        assertTrue(sendQueue.offer(arbitraryMessage, DEADLINE));
+        assertTrue(sendQueue.offer(transactionSignaturesMessage, DEADLINE));
+        assertTrue(sendQueue.offer(pingMessage, DEADLINE));
+        assertTrue(sendQueue.offer(getBlockMessage, DEADLINE));
+        assertEquals(4, sendQueue.size());
+
+        final long now = System.currentTimeMillis();
+
+        // High priority first, in queued order
+        assertSame(pingMessage, sendQueue.poll(now));
+        assertSame(getBlockMessage, sendQueue.poll(now));
+        assertSame(transactionSignaturesMessage, sendQueue.poll(now));
+        assertSame(arbitraryMessage, sendQueue.poll(now));
+
+        assertNull(sendQueue.poll(now));
+        assertTrue(sendQueue.isEmpty());
+    }
+
+    @Test
+    public void testHeightCoalescing() {
+        PeerSendQueue sendQueue = new PeerSendQueue();
+
+        Message olderHeightMessage = heightMessage(100);
+        Message newerHeightMessage = heightMessage(101);
+
+        // Replies have IDs so aren't coalesced
+        Message heightReplyMessage = heightMessage(100);
+        heightReplyMessage.setId(1234);
+
+        assertTrue(sendQueue.offer(olderHeightMessage, DEADLINE));
+        assertTrue(sendQueue.offer(heightReplyMessage, DEADLINE));
+        assertTrue(sendQueue.offer(newerHeightMessage, DEADLINE));
+
+        assertEquals(2, sendQueue.size());
+        assertEquals(1, sendQueue.getCoalescedCount());
+
+        final long now = System.currentTimeMillis();
+        assertSame(heightReplyMessage, sendQueue.poll(now));
+        assertSame(newerHeightMessage, sendQueue.poll(now));
+        assertNull(sendQueue.poll(now));
+    }
+
+    @Test
+    public void testBounds() {
+        PeerSendQueue sendQueue = new PeerSendQueue();
+
+        for (int i = 0; i < PeerSendQueue.Priority.LOW.maxQueued; ++i)
+            assertTrue(sendQueue.offer(new GetArbitraryDataMessage(randomBytes(Transformer.SIGNATURE_LENGTH)), DEADLINE));
+
+        // Low priority queue is full
+        assertFalse(sendQueue.offer(new GetArbitraryDataMessage(randomBytes(Transformer.SIGNATURE_LENGTH)), DEADLINE));
+        assertEquals(1, sendQueue.getDroppedCount());
+
+        // ...but other priorities are unaffected
+        assertTrue(sendQueue.offer(new PingMessage(), DEADLINE));
+    }
+
+    @Test
+    public void testByteBounds() {
+        PeerSendQueue sendQueue = new PeerSendQueue();
+
+        final int dataLength = 3 * 1024 * 1024;
+        final long now = System.currentTimeMillis();
+
+        // Far fewer large messages than maxQueued should fill low priority queue's byte budget
+        int acceptedCount = 0;
+        while (sendQueue.offer(new ArbitraryDataMessage(randomBytes(Transformer.SIGNATURE_LENGTH), new byte[dataLength]), DEADLINE))
+            ++acceptedCount;
+
+        assertTrue(acceptedCount > 0);
+        assertTrue(acceptedCount < PeerSendQueue.Priority.LOW.maxQueued);
+        assertEquals(1, sendQueue.getDroppedCount());
+        assertTrue(sendQueue.getQueuedBytes() > (long) acceptedCount * dataLength);
+        assertTrue(sendQueue.getQueuedBytes() <= PeerSendQueue.Priority.LOW.maxQueuedBytes);
+
+        // Other priorities are unaffected
+        assertTrue(sendQueue.offer(new PingMessage(), DEADLINE));
+        assertSame(PingMessage.class, sendQueue.poll(now).getClass());
+
+        // Taking a message frees up room for another
+        final long queuedBytes = sendQueue.getQueuedBytes();
+        assertTrue(sendQueue.poll(now) instanceof ArbitraryDataMessage);
+        assertTrue(sendQueue.getQueuedBytes() < queuedBytes);
+        assertTrue(sendQueue.offer(new ArbitraryDataMessage(randomBytes(Transformer.SIGNATURE_LENGTH), new byte[dataLength]), DEADLINE));
+
+        sendQueue.clear();
+        assertEquals(0, sendQueue.getQueuedBytes());
+    }
+
+    @Test
+    public void testExpiry() {
+        PeerSendQueue sendQueue = new PeerSendQueue();
+
+        final long now = System.currentTimeMillis();
+
+        Message expiredMessage = new PingMessage();
+        Message validMessage = new PingMessage();
+
+        assertTrue(sendQueue.offer(expiredMessage, now - 1));
+        assertTrue(sendQueue.offer(validMessage, now + 1000));
+
+        assertSame(validMessage, sendQueue.poll(now));
+        assertEquals(1, sendQueue.getExpiredCount());
+    }
+
+    private static HeightV2Message heightMessage(int height) {
+        return new HeightV2Message(height, randomBytes(Transformer.SIGNATURE_LENGTH), System.currentTimeMillis(), randomBytes(Transformer.PUBLIC_KEY_LENGTH));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+}